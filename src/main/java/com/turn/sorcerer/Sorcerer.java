@@ -11,10 +11,15 @@ import com.turn.sorcerer.exception.SorcererException;
 import com.turn.sorcerer.executor.Abortable;
 import com.turn.sorcerer.executor.PipelineExecutor;
 import com.turn.sorcerer.executor.PipelineScheduler;
+import com.turn.sorcerer.executor.RetentionCollector;
+import com.turn.sorcerer.executor.TaskExecutionPool;
+import com.turn.sorcerer.executor.TaskExecutionResult;
 import com.turn.sorcerer.executor.TaskExecutor;
+import com.turn.sorcerer.executor.TaskWatchdog;
 import com.turn.sorcerer.injector.SorcererInjector;
 import com.turn.sorcerer.pipeline.Pipeline;
 import com.turn.sorcerer.pipeline.type.PipelineType;
+import com.turn.sorcerer.status.IterationStatus;
 import com.turn.sorcerer.status.Status;
 import com.turn.sorcerer.status.StatusManager;
 import com.turn.sorcerer.task.type.TaskType;
@@ -25,8 +30,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.SortedMap;
+import java.util.concurrent.Future;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -57,7 +62,6 @@ public class Sorcerer {
 	/**
 	 * List of pipeline scheduling threads
 	 */
-	private List<ExecutorService> pipelineThreads = Lists.newArrayList();
 	private List<PipelineScheduler> scheduledPipelines = Lists.newArrayList();
 	private Map<String, Abortable> adhocTasks = Maps.newHashMap();
 	private Map<String, Abortable> adhocPipelines = Maps.newHashMap();
@@ -102,6 +106,9 @@ public class Sorcerer {
 
 		// Schedule and run pipelines
 		scheduleAndRunPipelines();
+
+		// Delete the statuses of expired iterations in the background
+		RetentionCollector.get().start();
 	}
 
 	/**
@@ -136,10 +143,7 @@ public class Sorcerer {
 		logger.info("Starting pipeline {}", pipeline.toString());
 
 		PipelineScheduler pipelineScheduler = new PipelineScheduler(pipeline);
-
-		ExecutorService pipelineThread = Executors.newSingleThreadExecutor();
-		pipelineThread.submit(pipelineScheduler);
-		pipelineThreads.add(pipelineThread);
+		pipelineScheduler.start();
 
 		logger.debug("Successfully scheduled pipeline {}", pipeline.toString());
 
@@ -168,9 +172,12 @@ public class Sorcerer {
 	 * scheduling threads.
 	 */
 	public void stop() {
-		for (ExecutorService thread : pipelineThreads) {
-			thread.shutdown();
+		for (PipelineScheduler scheduledPipeline : scheduledPipelines) {
+			scheduledPipeline.abort();
 		}
+
+		RetentionCollector.get().stop();
+		StatusManager.get().flushStatusWrites();
 	}
 
 	/**
@@ -283,6 +290,36 @@ public class Sorcerer {
 		return StatusManager.get().checkPipelineStatus(pipelineName, iterNo);
 	}
 
+	/**
+	 * Provides the status history of a task for a range of iterations
+	 *
+	 * @param taskName Name of task
+	 * @param from     First iteration number of the range, inclusive
+	 * @param to       Last iteration number of the range, inclusive
+	 * @return         Status and status time of the iterations that have a
+	 *                 status, by iteration number. Other iterations are
+	 *                 pending.
+	 */
+	public SortedMap<Integer, IterationStatus> getTaskStatusHistory(String taskName,
+	                                                                int from, int to) {
+		return StatusManager.get().getTaskStatusRange(taskName, from, to);
+	}
+
+	/**
+	 * Provides the status history of a pipeline for a range of iterations
+	 *
+	 * @param pipelineName Name of pipeline
+	 * @param from         First iteration number of the range, inclusive
+	 * @param to           Last iteration number of the range, inclusive
+	 * @return             Status and status time of the iterations that have
+	 *                     a status, by iteration number. Other iterations are
+	 *                     pending.
+	 */
+	public SortedMap<Integer, IterationStatus> getPipelineStatusHistory(String pipelineName,
+	                                                                    int from, int to) {
+		return StatusManager.get().getPipelineStatusRange(pipelineName, from, to);
+	}
+
 	/**
 	 * Sets the status of a task
 	 *
@@ -388,7 +425,9 @@ public class Sorcerer {
 
 		TaskExecutor executor = new TaskExecutor(type, iterNo, arguments, true);
 
-		Executors.newSingleThreadExecutor().submit(executor);
+		Future<TaskExecutionResult> future = TaskExecutionPool.get().submit(
+				null, executor, Boolean.TRUE.equals(type.getVirtualThreads()));
+		TaskWatchdog.get().watch(executor, future);
 		this.adhocTasks.put(taskName + iterNo, executor);
 	}
 
@@ -409,7 +448,7 @@ public class Sorcerer {
 
 		PipelineExecutor executor = new PipelineExecutor(type, iterNo, taskArgMap, true, overwrite);
 
-		Executors.newSingleThreadExecutor().submit(executor);
+		executor.start();
 		this.adhocPipelines.put(pipelineName + iterNo, executor);
 	}
 
@@ -10,9 +10,13 @@ import com.turn.sorcerer.module.ModuleType;
 import com.turn.sorcerer.pipeline.Pipeline;
 import com.turn.sorcerer.pipeline.type.PipelineType;
 import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.impl.FileStatusStorage;
 import com.turn.sorcerer.status.impl.HDFSStatusStorage;
+import com.turn.sorcerer.status.impl.MemoryStatusStorage;
 import com.turn.sorcerer.status.impl.ZookeeperStatusStorage;
+import com.turn.sorcerer.status.type.impl.FileStatusStorageType;
 import com.turn.sorcerer.status.type.impl.HDFSStatusStorageType;
+import com.turn.sorcerer.status.type.impl.MemoryStatusStorageType;
 import com.turn.sorcerer.status.type.impl.ZookeeperStatusStorageType;
 import com.turn.sorcerer.task.Task;
 import com.turn.sorcerer.task.type.TaskType;
@@ -96,13 +100,50 @@ public class SorcererAbstractModule extends AbstractModule {
 		bind(StatusStorage.class).to(module.getStorage().getStorageClass());
 
 		if (module.getStorage().getClass() == HDFSStatusStorageType.class) {
-			bind(String.class).annotatedWith(HDFSStatusStorage.HDFSStorageRoot.class)
-					.toInstance(((HDFSStatusStorageType) module.getStorage()).getRoot());
+			bindHDFSStorage();
 		} else if (module.getStorage().getClass() == ZookeeperStatusStorageType.class) {
 			bindZookeeperStorage();
+		} else if (module.getStorage().getClass() == FileStatusStorageType.class) {
+			bindFileStorage();
+		} else if (module.getStorage().getClass() == MemoryStatusStorageType.class) {
+			bindMemoryStorage();
 		}
 	}
 
+	private void bindHDFSStorage() {
+		bind(String.class).annotatedWith(HDFSStatusStorage.HDFSStorageRoot.class)
+				.toInstance(((HDFSStatusStorageType) module.getStorage()).getRoot());
+		bind(Boolean.class).annotatedWith(Names.named(HDFSStatusStorage.COMPACT_LAYOUT))
+				.toInstance(((HDFSStatusStorageType) module.getStorage()).isCompactLayout());
+		bind(Boolean.class).annotatedWith(Names.named(HDFSStatusStorage.MIGRATE_LAYOUT))
+				.toInstance(((HDFSStatusStorageType) module.getStorage()).isMigrateLayout());
+		bind(Boolean.class).annotatedWith(Names.named(HDFSStatusStorage.BUCKETED_LAYOUT))
+				.toInstance(((HDFSStatusStorageType) module.getStorage()).isBucketedLayout());
+	}
+
+	private void bindFileStorage() {
+		bind(String.class).annotatedWith(FileStatusStorage.FileStorageRoot.class)
+				.toInstance(((FileStatusStorageType) module.getStorage()).getRoot());
+		bind(Boolean.class).annotatedWith(Names.named(FileStatusStorage.SYNC))
+				.toInstance(((FileStatusStorageType) module.getStorage()).isSync());
+		bind(Integer.class).annotatedWith(Names.named(FileStatusStorage.SNAPSHOT_INTERVAL))
+				.toInstance(((FileStatusStorageType) module.getStorage()).getSnapshotInterval());
+	}
+
+	private void bindMemoryStorage() {
+		MemoryStatusStorageType storage = (MemoryStatusStorageType) module.getStorage();
+
+		// Not journaled unless a directory is configured
+		if (storage.getJournal() != null) {
+			bind(String.class).annotatedWith(Names.named(MemoryStatusStorage.JOURNAL))
+					.toInstance(storage.getJournal());
+		}
+		bind(Integer.class).annotatedWith(Names.named(MemoryStatusStorage.FLUSH_INTERVAL))
+				.toInstance(storage.getFlushInterval());
+		bind(Integer.class).annotatedWith(Names.named(MemoryStatusStorage.SNAPSHOT_INTERVAL))
+				.toInstance(storage.getSnapshotInterval());
+	}
+
 	private void bindZookeeperStorage() {
 		bind(String.class).annotatedWith(ZookeeperStatusStorage.StorageRoot.class)
 				.toInstance(((ZookeeperStatusStorageType) module.getStorage()).getRoot());
@@ -116,6 +157,10 @@ public class SorcererAbstractModule extends AbstractModule {
 				.toInstance(((ZookeeperStatusStorageType) module.getStorage()).getRetryDuration());
 		bind(Integer.class).annotatedWith(Names.named(ZookeeperStatusStorage.RETRY_INTERVAL))
 				.toInstance(((ZookeeperStatusStorageType) module.getStorage()).getRetryInterval());
+		bind(Boolean.class).annotatedWith(Names.named(ZookeeperStatusStorage.BUCKETED_LAYOUT))
+				.toInstance(((ZookeeperStatusStorageType) module.getStorage()).isBucketedLayout());
+		bind(Boolean.class).annotatedWith(Names.named(ZookeeperStatusStorage.MIGRATE_LAYOUT))
+				.toInstance(((ZookeeperStatusStorageType) module.getStorage()).isMigrateLayout());
 	}
 
 }
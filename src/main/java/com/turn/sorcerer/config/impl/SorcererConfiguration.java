@@ -124,6 +124,22 @@ public class SorcererConfiguration {
 				logger.error(FATAL, "Task SLA could not be initialized", se);
 				success = false;
 			}
+
+			// Check timeout strings
+			try {
+				entry.getValue().initTimeout();
+			} catch (SorcererException se) {
+				logger.error(FATAL, "Task timeout could not be initialized", se);
+				success = false;
+			}
+
+			// Check retry delay strings
+			try {
+				entry.getValue().initRetryPolicy();
+			} catch (SorcererException se) {
+				logger.error(FATAL, "Task retry policy could not be initialized", se);
+				success = false;
+			}
 		}
 
 		// Reconcile Pipelines
@@ -10,6 +10,7 @@ import com.turn.sorcerer.config.ConfigReader;
 import com.turn.sorcerer.exception.SorcererException;
 import com.turn.sorcerer.module.ModuleType;
 import com.turn.sorcerer.pipeline.type.PipelineType;
+import com.turn.sorcerer.status.type.impl.FileStatusStorageType;
 import com.turn.sorcerer.status.type.impl.HDFSStatusStorageType;
 import com.turn.sorcerer.status.type.impl.MemoryStatusStorageType;
 import com.turn.sorcerer.status.type.impl.ZookeeperStatusStorageType;
@@ -50,6 +51,7 @@ public class YamlConfigReader implements ConfigReader {
 	private static final String HDFS_STATUS_TAG = "hdfs";
 	private static final String ZK_STATUS_TAG = "zookeeper";
 	private static final String MEMORY_STATUS_TAG = "memory";
+	private static final String FILE_STATUS_TAG = "file";
 	private static final String EMAIL_TAG = "email";
 
 	private static final YamlConfig YAML_CONFIG = new YamlConfig();
@@ -60,6 +62,7 @@ public class YamlConfigReader implements ConfigReader {
 		YAML_CONFIG.setClassTag(HDFS_STATUS_TAG, HDFSStatusStorageType.class);
 		YAML_CONFIG.setClassTag(ZK_STATUS_TAG, ZookeeperStatusStorageType.class);
 		YAML_CONFIG.setClassTag(MEMORY_STATUS_TAG, MemoryStatusStorageType.class);
+		YAML_CONFIG.setClassTag(FILE_STATUS_TAG, FileStatusStorageType.class);
 		YAML_CONFIG.setClassTag(EMAIL_TAG, EmailType.class);
 		YAML_CONFIG.setPrivateFields(true);
 	}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency;
+
+/**
+ * Dependency whose check results can be shared between tasks
+ *
+ * <p>
+ * Results of dependencies implementing this interface are kept in the
+ * {@link DependencyCache}, so that a dependency checked by many tasks and
+ * iterations (e.g. the same input path) only hits the underlying storage
+ * once in a while.
+ * </p>
+ *
+ * @author tshiou
+ * @see DependencyCache
+ */
+public interface CacheableDependency extends Dependency {
+
+	/**
+	 * Provides the key identifying what this dependency checks for an
+	 * iteration. Dependencies with the same key for the same iteration number
+	 * must have the same result.
+	 *
+	 * @param iterNo Current iteration number
+	 * @return Key of the dependency, or null if the result should not be
+	 *         cached
+	 */
+	String getCacheKey(int iterNo);
+
+	/**
+	 * Provides the iteration number the result is cached for, e.g. the
+	 * iteration of the requisite task for a dependency on a given iteration
+	 * of another task. Defaults to the current iteration number.
+	 *
+	 * @param iterNo Current iteration number
+	 * @return Iteration number of the cached result
+	 */
+	default int getCacheIterNo(int iterNo) {
+		return iterNo;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency;
+
+import com.turn.sorcerer.metrics.MetricUnit;
+import com.turn.sorcerer.metrics.MetricsMonitor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Process-wide cache of {@link CacheableDependency} check results, keyed by
+ * dependency key and iteration number. Met results are kept for
+ * {@link #POSITIVE_TTL_MILLIS} unless invalidated, unmet results are checked
+ * again with an exponential backoff.
+ *
+ * @author tshiou
+ */
+public class DependencyCache {
+
+	// Bounds how long a met dependency may be seen after it is unmet again
+	static final long POSITIVE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+	static final long MIN_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+	static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	// Entries of iterations nobody checks anymore are dropped
+	private static final long ENTRY_TTL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	private static final long MAX_ENTRIES = 100000;
+
+	public static final String HITS_METRIC = "Dependency_Cache_Hits";
+	public static final String MISSES_METRIC = "Dependency_Cache_Misses";
+
+	private static final DependencyCache INSTANCE = new DependencyCache(Ticker.systemTicker());
+
+	public static DependencyCache get() {
+		return INSTANCE;
+	}
+
+	private final Ticker ticker;
+	private final Cache<Key, Result> cache;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	DependencyCache(Ticker ticker) {
+		this.ticker = ticker;
+		this.cache = CacheBuilder.newBuilder()
+				.ticker(ticker)
+				.maximumSize(MAX_ENTRIES)
+				.expireAfterWrite(ENTRY_TTL_MILLIS, TimeUnit.MILLISECONDS)
+				.build();
+	}
+
+	/**
+	 * Checks a dependency, using the cached result if there is one. Results
+	 * of dependencies that do not implement {@link CacheableDependency} are
+	 * not cached.
+	 *
+	 * @param dependency Dependency to check
+	 * @param iterNo Current iteration number
+	 * @return Return true if dependency requirement is fulfilled
+	 */
+	public boolean check(Dependency dependency, int iterNo) {
+		if (dependency instanceof CacheableDependency == false) {
+			return dependency.check(iterNo);
+		}
+
+		CacheableDependency cacheable = (CacheableDependency) dependency;
+		String cacheKey = cacheable.getCacheKey(iterNo);
+
+		if (cacheKey == null) {
+			return dependency.check(iterNo);
+		}
+
+		Key key = new Key(cacheKey, cacheable.getCacheIterNo(iterNo));
+		Result cached = cache.getIfPresent(key);
+		long now = TimeUnit.NANOSECONDS.toMillis(ticker.read());
+
+		if (cached != null && now < cached.recheckTime) {
+			hits.incrementAndGet();
+			return cached.met;
+		}
+
+		misses.incrementAndGet();
+
+		boolean met = dependency.check(iterNo);
+
+		if (met) {
+			cache.put(key, new Result(true, 0, now + POSITIVE_TTL_MILLIS));
+		} else {
+			int failures = cached == null ? 1 : cached.failures + 1;
+			cache.put(key, new Result(false, failures, now + getBackoffMillis(failures)));
+		}
+
+		return met;
+	}
+
+	/**
+	 * Removes the cached result of a dependency for an iteration, e.g. when
+	 * the underlying state is known to have changed
+	 *
+	 * @param cacheKey Key of the dependency
+	 * @param iterNo Iteration number the result is cached for (see
+	 *               {@link CacheableDependency#getCacheIterNo(int)})
+	 */
+	public void invalidate(String cacheKey, int iterNo) {
+		cache.invalidate(new Key(cacheKey, iterNo));
+	}
+
+	static long getBackoffMillis(int failures) {
+		long backoff = MIN_BACKOFF_MILLIS;
+		for (int i = 1; i < failures && backoff < MAX_BACKOFF_MILLIS; i++) {
+			backoff *= 2;
+		}
+		return Math.min(backoff, MAX_BACKOFF_MILLIS);
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Publishes the hit and miss counts to the metrics monitor
+	 */
+	public void publishMetrics() {
+		MetricsMonitor.getInstance().addGenericMetric(
+				MetricUnit.getMetricUnit(true, null, HITS_METRIC), hits.get());
+		MetricsMonitor.getInstance().addGenericMetric(
+				MetricUnit.getMetricUnit(true, null, MISSES_METRIC), misses.get());
+	}
+
+	private static class Key {
+		private final String key;
+		private final int iterNo;
+
+		private Key(String key, int iterNo) {
+			this.key = key;
+			this.iterNo = iterNo;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(key, iterNo);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key
+					&& this.key.equals(((Key) o).key)
+					&& this.iterNo == ((Key) o).iterNo;
+		}
+	}
+
+	private static class Result {
+		private final boolean met;
+
+		// Number of consecutive unmet checks
+		private final int failures;
+
+		// Time after which the dependency is checked again
+		private final long recheckTime;
+
+		private Result(boolean met, int failures, long recheckTime) {
+			this.met = met;
+			this.failures = failures;
+			this.recheckTime = recheckTime;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency;
+
+import com.turn.sorcerer.injector.SorcererInjector;
+import com.turn.sorcerer.util.VirtualThreads;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the dependencies of a task concurrently, on a pool shared by all
+ * tasks or on virtual threads for tasks running on virtual threads, and
+ * stops at the first dependency that is not met
+ *
+ * @author tshiou
+ */
+public class DependencyEvaluator {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(DependencyEvaluator.class);
+
+	private static class Holder {
+		private static final DependencyEvaluator INSTANCE = new DependencyEvaluator(
+				SorcererInjector.get().getModule().getDependencyThreads());
+	}
+
+	public static DependencyEvaluator get() {
+		return Holder.INSTANCE;
+	}
+
+	private final ExecutorService executor;
+	private final ExecutorService virtualExecutor;
+	private final DependencyCache cache;
+
+	DependencyEvaluator(int threads) {
+		this(threads, DependencyCache.get());
+	}
+
+	DependencyEvaluator(int threads, DependencyCache cache) {
+		this.cache = cache;
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads),
+				new ThreadFactoryBuilder()
+						.setNameFormat("sorcerer-dependency-%d")
+						.build());
+		this.virtualExecutor = VirtualThreads.newExecutor();
+	}
+
+	/**
+	 * Checks a collection of dependencies
+	 *
+	 * <p>
+	 * A dependency throwing an exception is considered not met. If the
+	 * calling thread is interrupted while waiting, one of the dependencies
+	 * that have not been checked yet is returned and the interrupt flag is
+	 * restored.
+	 * </p>
+	 *
+	 * @param dependencies Dependencies to check
+	 * @param iterNo Iteration number to check the dependencies for
+	 * @return The dependency blocking the task, or null if all dependencies
+	 *         are met
+	 */
+	public Dependency evaluate(Collection<? extends Dependency> dependencies, int iterNo) {
+		if (dependencies == null || dependencies.isEmpty()) {
+			return null;
+		}
+
+		try {
+			return evaluateAll(dependencies, iterNo);
+		} finally {
+			cache.publishMetrics();
+		}
+	}
+
+	private Dependency evaluateAll(Collection<? extends Dependency> dependencies, int iterNo) {
+		List<Dependency> list = ImmutableList.copyOf(dependencies);
+
+		// No need to hand off a single dependency
+		if (list.size() == 1) {
+			return check(list.get(0), iterNo) ? null : list.get(0);
+		}
+
+		// A task on a virtual thread does not wait for the bounded pool
+		ExecutorCompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(
+				virtualExecutor != null && VirtualThreads.isCurrentThreadVirtual()
+						? virtualExecutor : executor);
+		Map<Future<Boolean>, Dependency> pending = Maps.newHashMap();
+
+		for (Dependency dependency : list) {
+			pending.put(completion.submit(checkTask(dependency, iterNo)), dependency);
+		}
+
+		try {
+			while (pending.isEmpty() == false) {
+				Future<Boolean> done = completion.take();
+				Dependency dependency = pending.remove(done);
+
+				if (getQuietly(done) == false) {
+					return dependency;
+				}
+			}
+
+			return null;
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return pending.values().iterator().next();
+
+		} finally {
+			// Checks that have not started are skipped. Running checks are not
+			// interrupted since some clients (e.g. HDFS) do not handle it well.
+			for (Future<Boolean> future : pending.keySet()) {
+				future.cancel(false);
+			}
+		}
+	}
+
+	private Callable<Boolean> checkTask(final Dependency dependency, final int iterNo) {
+		return new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return check(dependency, iterNo);
+			}
+		};
+	}
+
+	private boolean check(Dependency dependency, int iterNo) {
+		try {
+			return cache.check(dependency, iterNo);
+		} catch (RuntimeException e) {
+			logger.error("Dependency {} could not be checked", dependency, e);
+			return false;
+		}
+	}
+
+	private static boolean getQuietly(Future<Boolean> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			return false;
+		}
+	}
+}
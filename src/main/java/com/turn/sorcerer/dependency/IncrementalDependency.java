@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency;
+
+import java.util.List;
+
+/**
+ * Dependency on new input since the last successful run of a task, tracked
+ * by a watermark kept in the status storage
+ *
+ * @author tshiou
+ * @see com.turn.sorcerer.dependency.impl.HDFSIncrementalDependency
+ */
+public interface IncrementalDependency extends Dependency {
+
+	/**
+	 * Name of the input, unique among the dependencies of the task. The
+	 * watermark is stored and the inputs are provided under this name.
+	 */
+	String getName();
+
+	/**
+	 * Sets the watermark committed by the last successful run of the task,
+	 * null if the task never completed with this input
+	 */
+	void setWatermark(String watermark);
+
+	/**
+	 * Inputs found since the watermark by the last call to {@link #check(int)}
+	 */
+	List<String> getNewInputs();
+
+	/**
+	 * Watermark to commit once the task consumed the new inputs
+	 */
+	String getNewWatermark();
+}
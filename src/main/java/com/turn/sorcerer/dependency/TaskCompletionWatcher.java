@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency;
+
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusListener;
+import com.turn.sorcerer.status.StatusManager;
+import com.turn.sorcerer.task.type.TaskType;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide registry of watches on the completion of task iterations.
+ * Each awaited {@code (task, iteration)} is watched once in the status
+ * storage, checks are answered from the registry until the watch fires, and
+ * the callbacks of the blocked tasks are run once it does.
+ *
+ * @author tshiou
+ */
+public class TaskCompletionWatcher {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(TaskCompletionWatcher.class);
+
+	static final long VERIFY_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	private static final TaskCompletionWatcher INSTANCE = new TaskCompletionWatcher();
+
+	public static TaskCompletionWatcher get() {
+		return INSTANCE;
+	}
+
+	// Entries of iterations nobody checks anymore are dropped
+	private final ConcurrentMap<Key, Watch> watches = CacheBuilder.newBuilder()
+			.expireAfterAccess(1, TimeUnit.DAYS)
+			.<Key, Watch>build()
+			.asMap();
+
+	private TaskCompletionWatcher() {
+		// Statuses changed by this process, e.g. cleared through the API
+		StatusManager.get().addTaskStatusListener(new StatusListener() {
+			@Override
+			public void onStatus(String identifier, int id, Status status) {
+				if (Status.SUCCESS.equals(status) == false) {
+					invalidate(new Key(identifier, id));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Checks if a task iteration has completed successfully
+	 */
+	public boolean isComplete(TaskType task, int iterNo) {
+		Watch watch = getWatch(task, iterNo);
+
+		if (watch == null) {
+			return StatusManager.get().isTaskComplete(task, iterNo);
+		}
+
+		return watch.isComplete();
+	}
+
+	/**
+	 * Registers a one-shot callback run once a task iteration completes
+	 * successfully
+	 *
+	 * @return false if the status storage does not support watches
+	 */
+	public boolean whenComplete(TaskType task, int iterNo, Runnable callback) {
+		Watch watch = getWatch(task, iterNo);
+
+		if (watch == null) {
+			return false;
+		}
+
+		watch.addCallback(callback);
+		return true;
+	}
+
+	/**
+	 * Drops a callback registered with
+	 * {@link #whenComplete(TaskType, int, Runnable)} that has not run yet
+	 */
+	public void removeCallback(TaskType task, int iterNo, Runnable callback) {
+		Watch watch = watches.get(new Key(task.getName(), iterNo));
+
+		if (watch != null) {
+			watch.removeCallback(callback);
+		}
+	}
+
+	/**
+	 * Checks if completion is watched rather than polled
+	 */
+	public boolean isWatchSupported() {
+		return StatusManager.get().isTaskStatusWatchable();
+	}
+
+	// Provides the watch of an iteration, setting it in the storage if needed.
+	// Returns null if the storage does not support watches.
+	private Watch getWatch(TaskType task, int iterNo) {
+		if (isWatchSupported() == false) {
+			return null;
+		}
+
+		Key key = new Key(task.getName(), iterNo);
+		Watch watch = watches.get(key);
+
+		if (watch != null) {
+			return watch;
+		}
+
+		Watch created = new Watch(task, iterNo, key);
+		watch = watches.putIfAbsent(key, created);
+
+		if (watch != null) {
+			return watch;
+		}
+
+		logger.debug("Watching completion of {}:{}", task.getName(), iterNo);
+
+		if (created.arm() == false) {
+			// Poll until the watch can be set
+			watches.remove(key, created);
+			return null;
+		}
+
+		return created;
+	}
+
+	// Drops a completed iteration whose statuses changed, the next check
+	// reads and watches it again. Blocked tasks of an incomplete iteration
+	// keep waiting on its watch.
+	private void invalidate(Key key) {
+		Watch watch = watches.get(key);
+
+		if (watch != null && watch.isCompleted() && watches.remove(key, watch)) {
+			logger.debug("{}:{} changed after completing, watching it again",
+					key.taskName, key.iterNo);
+		}
+	}
+
+	private class Watch implements StatusListener {
+		private final TaskType task;
+		private final int iterNo;
+		private final Key key;
+
+		private boolean complete = false;
+
+		// The watch is set in the storage
+		private boolean armed = false;
+
+		// Time after which completion is read from the storage again
+		private long verifyTime = 0;
+
+		private List<Runnable> callbacks = Lists.newArrayList();
+
+		private Watch(TaskType task, int iterNo, Key key) {
+			this.task = task;
+			this.iterNo = iterNo;
+			this.key = key;
+		}
+
+		// Sets the watch in the storage, which notifies right away if the
+		// iteration is already complete
+		private boolean arm() {
+			synchronized (this) {
+				armed = true;
+				verifyTime = System.currentTimeMillis() + VERIFY_INTERVAL_MILLIS;
+			}
+
+			if (StatusManager.get().watchTaskStatus(task, iterNo, Status.SUCCESS, this)) {
+				return true;
+			}
+
+			synchronized (this) {
+				armed = false;
+			}
+			return false;
+		}
+
+		private synchronized boolean isCompleted() {
+			return complete;
+		}
+
+		private boolean isComplete() {
+			boolean rearm;
+
+			synchronized (this) {
+				if (complete) {
+					return true;
+				}
+
+				if (armed && System.currentTimeMillis() < verifyTime) {
+					return false;
+				}
+
+				rearm = armed == false;
+			}
+
+			if (rearm && arm()) {
+				return isCompleted();
+			}
+
+			// The watch is due for verification or could not be set again
+			synchronized (this) {
+				verifyTime = System.currentTimeMillis() + VERIFY_INTERVAL_MILLIS;
+			}
+
+			if (StatusManager.get().isTaskComplete(task, iterNo)) {
+				onStatus(task.getName(), iterNo, Status.SUCCESS);
+			}
+
+			return isCompleted();
+		}
+
+		private void addCallback(Runnable callback) {
+			synchronized (this) {
+				if (complete == false) {
+					callbacks.add(callback);
+					return;
+				}
+			}
+			callback.run();
+		}
+
+		private synchronized void removeCallback(Runnable callback) {
+			callbacks.remove(callback);
+		}
+
+		@Override
+		public void onStatus(String identifier, int id, Status status) {
+			if (status == null) {
+				logger.debug("Lost the watch of {}:{}", identifier, id);
+
+				synchronized (this) {
+					armed = false;
+				}
+				return;
+			}
+
+			List<Runnable> notified;
+
+			synchronized (this) {
+				if (complete) {
+					return;
+				}
+
+				complete = true;
+				notified = ImmutableList.copyOf(callbacks);
+				callbacks.clear();
+			}
+
+			// Changes made by other processes, e.g. a rerun of the iteration
+			if (StatusManager.get().watchTaskChanges(task, iterNo, new StatusListener() {
+				@Override
+				public void onStatus(String identifier, int id, Status status) {
+					invalidate(key);
+				}
+			}) == false) {
+				invalidate(key);
+			}
+
+			logger.debug("{}:{} completed, notifying {} waiting tasks",
+					identifier, id, notified.size());
+
+			for (Runnable callback : notified) {
+				try {
+					callback.run();
+				} catch (RuntimeException e) {
+					logger.error("Completion callback of {}:{} failed", identifier, id, e);
+				}
+			}
+		}
+	}
+
+	private static class Key {
+		private final String taskName;
+		private final int iterNo;
+
+		private Key(String taskName, int iterNo) {
+			this.taskName = taskName;
+			this.iterNo = iterNo;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(taskName, iterNo);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key
+					&& this.taskName.equals(((Key) o).taskName)
+					&& this.iterNo == ((Key) o).iterNo;
+		}
+	}
+}
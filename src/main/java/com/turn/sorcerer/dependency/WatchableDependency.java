@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency;
+
+/**
+ * Dependency that can notify when it becomes met instead of being polled
+ *
+ * <p>
+ * When a task is blocked by a watchable dependency, the task scheduler
+ * registers a callback that launches the task as soon as the dependency is
+ * met instead of waiting for the next pipeline interval.
+ * </p>
+ *
+ * @author tshiou
+ */
+public interface WatchableDependency extends Dependency {
+
+	/**
+	 * Registers a one-shot callback run once the dependency is met for an
+	 * iteration. The callback is run right away if the dependency is already
+	 * met, and may be run from a storage thread so it should not block.
+	 *
+	 * @param iterNo Current iteration number
+	 * @param callback Callback to run
+	 * @return false if the dependency cannot be watched, in which case it
+	 *         has to be polled
+	 */
+	boolean watch(int iterNo, Runnable callback);
+
+	/**
+	 * Drops a callback registered with {@link #watch(int, Runnable)} that has
+	 * not run yet, e.g. when the pipeline is aborted. Does nothing by default.
+	 *
+	 * @param iterNo Iteration number the callback was registered for
+	 * @param callback Registered callback
+	 */
+	default void unwatch(int iterNo, Runnable callback) {
+	}
+}
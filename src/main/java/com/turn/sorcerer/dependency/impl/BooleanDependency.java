@@ -24,4 +24,9 @@ public class BooleanDependency implements Dependency {
 	public boolean check(int iterNo) {
 		return success;
 	}
+
+	@Override
+	public String toString() {
+		return "Boolean : " + success;
+	}
 }
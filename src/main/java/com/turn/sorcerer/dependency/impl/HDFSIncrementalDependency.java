@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency.impl;
+
+import com.turn.sorcerer.dependency.IncrementalDependency;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Longs;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Task dependency on files in HDFS directories that arrived since the last
+ * successful run of the task, i.e. files after the watermark in
+ * modification time and path
+ *
+ * @author tshiou
+ */
+public abstract class HDFSIncrementalDependency implements IncrementalDependency {
+	private static final Logger logger =
+			LoggerFactory.getLogger(HDFSIncrementalDependency.class);
+
+	private static final char SEPARATOR = '\t';
+
+	private final String name;
+
+	private FileSystem fs = null;
+
+	private long watermarkTime = -1;
+	private String watermarkPath = "";
+	private boolean validWatermark = true;
+
+	private List<String> newInputs = ImmutableList.of();
+	private String newWatermark = null;
+
+	/**
+	 * @param name Name of the input, unique among the dependencies of the task
+	 */
+	public HDFSIncrementalDependency(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public void setWatermark(String watermark) {
+		validWatermark = true;
+
+		if (watermark == null) {
+			watermarkTime = -1;
+			watermarkPath = "";
+			return;
+		}
+
+		int i = watermark.indexOf(SEPARATOR);
+		Long time = i > 0 ? Longs.tryParse(watermark.substring(0, i)) : null;
+
+		if (time == null) {
+			logger.error("Invalid watermark '{}' of input {}", watermark, name);
+			validWatermark = false;
+			return;
+		}
+
+		watermarkTime = time;
+		watermarkPath = watermark.substring(i + 1);
+	}
+
+	@Override
+	public boolean check(int iterNo) {
+		newInputs = ImmutableList.of();
+		newWatermark = null;
+
+		if (validWatermark == false) {
+			logger.error("Input {} is not checked until its watermark is fixed", name);
+			return false;
+		}
+
+		Collection<String> directories = directories(iterNo);
+
+		// zero directories is considered invalid
+		if (directories == null || directories.size() == 0) {
+			return false;
+		}
+
+		if (fs == null) {
+			try {
+				fs = FileSystem.get(new Configuration());
+			} catch (IOException e) {
+				logger.error("Filesystem unreachable!", e);
+				return false;
+			}
+		}
+
+		List<FileStatus> files = Lists.newArrayList();
+
+		for (String directory : directories) {
+			if (directory == null) {
+				return false;
+			}
+
+			try {
+				FileStatus[] statuses = fs.listStatus(new Path(directory));
+
+				if (statuses == null) {
+					continue;
+				}
+
+				for (FileStatus status : statuses) {
+					if (accept(status) && isAfterWatermark(status)) {
+						files.add(status);
+					}
+				}
+			} catch (FileNotFoundException e) {
+				logger.debug("Input directory {} does not exist", directory);
+			} catch (IOException e) {
+				logger.error("Could not list input directory {}", directory, e);
+				return false;
+			}
+		}
+
+		Collections.sort(files, WATERMARK_ORDER);
+
+		List<String> inputs = Lists.newArrayListWithCapacity(files.size());
+		for (FileStatus file : files) {
+			inputs.add(file.getPath().toString());
+		}
+
+		newInputs = ImmutableList.copyOf(inputs);
+		newWatermark = files.isEmpty()
+				? null
+				: toWatermark(files.get(files.size() - 1));
+
+		logger.debug("{} new files in input {}", newInputs.size(), name);
+
+		return newInputs.isEmpty() == false || requireNewInputs() == false;
+	}
+
+	private boolean isAfterWatermark(FileStatus status) {
+		long time = status.getModificationTime();
+
+		return time > watermarkTime
+				|| (time == watermarkTime
+						&& status.getPath().toString().compareTo(watermarkPath) > 0);
+	}
+
+	private static String toWatermark(FileStatus status) {
+		return Long.toString(status.getModificationTime()) + SEPARATOR + status.getPath();
+	}
+
+	@Override
+	public List<String> getNewInputs() {
+		return newInputs;
+	}
+
+	@Override
+	public String getNewWatermark() {
+		return newWatermark;
+	}
+
+	/**
+	 * Filters the entries of the input directories. By default files whose
+	 * name starts with {@code _} or {@code .} (e.g. {@code _SUCCESS} markers
+	 * or files being written) and directories are ignored.
+	 */
+	protected boolean accept(FileStatus status) {
+		String fileName = status.getPath().getName();
+
+		return status.isFile()
+				&& fileName.startsWith("_") == false
+				&& fileName.startsWith(".") == false;
+	}
+
+	/**
+	 * Requires at least one new file for the dependency to be met. Enabled
+	 * by default.
+	 */
+	protected boolean requireNewInputs() {
+		return true;
+	}
+
+	/**
+	 * Provides the directories to look for new files in
+	 *
+	 * @param iterNo Current iteration number
+	 */
+	public abstract Collection<String> directories(int iterNo);
+
+	private static final Comparator<FileStatus> WATERMARK_ORDER = new Comparator<FileStatus>() {
+		@Override
+		public int compare(FileStatus a, FileStatus b) {
+			if (a.getModificationTime() != b.getModificationTime()) {
+				return a.getModificationTime() < b.getModificationTime() ? -1 : 1;
+			}
+			return a.getPath().toString().compareTo(b.getPath().toString());
+		}
+	};
+}
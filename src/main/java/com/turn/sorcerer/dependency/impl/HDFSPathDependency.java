@@ -6,12 +6,21 @@
 
 package com.turn.sorcerer.dependency.impl;
 
-import com.turn.sorcerer.dependency.Dependency;
+import com.turn.sorcerer.dependency.CacheableDependency;
+import com.turn.sorcerer.dependency.DependencyCache;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Set;
 
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Joiner;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
@@ -20,18 +29,42 @@ import org.slf4j.LoggerFactory;
 /**
  * Task Dependency implementation based on the existence of a path in HDFS
  *
+ * <p>
+ * By default each path is checked with its own existence check. With
+ * {@link #batchListing()} enabled, paths are grouped by parent directory and
+ * each parent directory is listed once, so the number of NameNode requests
+ * scales with the number of directories instead of the number of paths.
+ * With {@link #isCacheable()} enabled, dependencies on the same paths share
+ * their results through the {@link DependencyCache}.
+ * </p>
+ *
  * @author tshiou
  */
-public abstract class HDFSPathDependency implements Dependency {
+public abstract class HDFSPathDependency implements CacheableDependency {
 	private static final Logger logger =
 			LoggerFactory.getLogger(HDFSPathDependency.class);
 
+	private static final Joiner JOINER = Joiner.on(',').useForNull("null");
+
+	public static final String SUCCESS_MARKER = "_SUCCESS";
+
+	private static final CharMatcher GLOB_CHARACTERS = CharMatcher.anyOf("{}[]*?,\\");
+
 	private FileSystem fs = null;
 
+	// Paths resolved by getCacheKey for the check that follows on the same
+	// thread, so that they are only resolved once per check
+	private final ThreadLocal<ResolvedPaths> resolved = new ThreadLocal<ResolvedPaths>();
+
 	@Override
 	public boolean check(int iterNo){
 
-		Collection<String> paths = paths(iterNo);
+		ResolvedPaths previous = resolved.get();
+		resolved.remove();
+
+		Collection<String> paths = previous != null && previous.iterNo == iterNo
+				? previous.paths
+				: paths(iterNo);
 
 		// zero paths is considered invalid
 		if (paths == null || paths.size() == 0) {
@@ -47,29 +80,187 @@ public abstract class HDFSPathDependency implements Dependency {
 			}
 		}
 
-
-		for (String p: paths) {
-			logger.debug("Checking path {}", p);
-
+		for (String p : paths) {
 			if (p == null) {
 				return false;
 			}
+		}
+
+		try {
+			if (batchListing()) {
+				return checkBatched(paths);
+			}
+
+			for (String p: paths) {
+				if (exists(new Path(p)) == false) {
+					return false;
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Could not check existence of paths {}", paths, e);
+			return false;
+		}
+
+		return true;
+	}
 
+	private boolean exists(Path path) throws IOException {
+		logger.debug("Checking path {}", path);
+
+		Path checked = requireSuccessMarker() ? new Path(path, SUCCESS_MARKER) : path;
+
+		if (fs.exists(checked) == false) {
+			logger.debug("Dependency Check Failed - Path does not exist: {}", checked.toUri());
+			return false;
+		}
+
+		return true;
+	}
+
+	// Resolves the paths with one listing per parent directory
+	private boolean checkBatched(Collection<String> paths) throws IOException {
+		SetMultimap<Path, String> namesByParent = LinkedHashMultimap.create();
+
+		for (String p : paths) {
 			Path path = new Path(p);
 
-			try {
-				if (!fs.exists(path)) {
-					logger.debug("Dependency Check Failed - Path does not exist: {}", path.toUri());
+			// Root directory
+			if (path.getParent() == null) {
+				if (exists(path) == false) {
+					return false;
+				}
+				continue;
+			}
+
+			namesByParent.put(path.getParent(), path.getName());
+		}
+
+		for (Path parent : namesByParent.keySet()) {
+			Set<String> names = namesByParent.get(parent);
+
+			logger.debug("Listing {} for {} paths", parent, names.size());
+
+			Set<String> found = requireSuccessMarker()
+					? listMarked(parent, names)
+					: listChildren(parent);
+
+			for (String name : names) {
+				if (found.contains(name) == false) {
+					logger.debug("Dependency Check Failed - Path does not exist: {}",
+							new Path(parent, requireSuccessMarker()
+									? name + Path.SEPARATOR + SUCCESS_MARKER : name).toUri());
 					return false;
 				}
-			} catch (IOException e) {
-				logger.error("Could not check existence of path {}", path);
-				return false;
 			}
 		}
 
 		return true;
 	}
 
+	// Names of the children of a directory
+	private Set<String> listChildren(Path parent) throws IOException {
+		Set<String> children = Sets.newHashSet();
+
+		FileStatus[] statuses;
+		try {
+			statuses = fs.listStatus(parent);
+		} catch (FileNotFoundException e) {
+			return children;
+		}
+
+		if (statuses != null) {
+			for (FileStatus status : statuses) {
+				children.add(status.getPath().getName());
+			}
+		}
+
+		return children;
+	}
+
+	// Names of the children of a directory that contain a success marker
+	private Set<String> listMarked(Path parent, Set<String> names) throws IOException {
+		Set<String> marked = Sets.newHashSet();
+
+		boolean globSafe = true;
+		for (String name : names) {
+			globSafe &= GLOB_CHARACTERS.matchesNoneOf(name);
+		}
+
+		// Names that cannot be put in a glob pattern are checked one by one
+		if (globSafe == false) {
+			for (String name : names) {
+				if (fs.exists(new Path(new Path(parent, name), SUCCESS_MARKER))) {
+					marked.add(name);
+				}
+			}
+			return marked;
+		}
+
+		FileStatus[] statuses = fs.globStatus(new Path(parent,
+				"{" + Joiner.on(',').join(names) + "}" + Path.SEPARATOR + SUCCESS_MARKER));
+
+		if (statuses != null) {
+			for (FileStatus status : statuses) {
+				marked.add(status.getPath().getParent().getName());
+			}
+		}
+
+		return marked;
+	}
+
+	/**
+	 * Resolves the paths with one directory listing per parent directory
+	 * instead of one existence check per path. Should be enabled when the
+	 * paths share a few parent directories (e.g. hourly partitions).
+	 * Disabled by default.
+	 */
+	protected boolean batchListing() {
+		return false;
+	}
+
+	/**
+	 * Requires each path to be a directory containing a {@code _SUCCESS}
+	 * marker instead of only checking that it exists. Disabled by default.
+	 */
+	protected boolean requireSuccessMarker() {
+		return false;
+	}
+
+	/**
+	 * Shares the results of dependencies on the same paths through the
+	 * {@link DependencyCache}. Paths that do not exist are then checked
+	 * again after a backoff of up to 10 minutes, so new input may be seen up
+	 * to 10 minutes late. Disabled by default.
+	 */
+	protected boolean isCacheable() {
+		return false;
+	}
+
+	@Override
+	public String getCacheKey(int iterNo) {
+		if (isCacheable() == false) {
+			return null;
+		}
+
+		Collection<String> paths = paths(iterNo);
+		resolved.set(new ResolvedPaths(iterNo, paths));
+
+		if (paths == null || paths.size() == 0) {
+			return null;
+		}
+
+		return (requireSuccessMarker() ? "hdfs-success:" : "hdfs:") + JOINER.join(paths);
+	}
+
 	public abstract Collection<String> paths(int iterNo);
+
+	private static class ResolvedPaths {
+		private final int iterNo;
+		private final Collection<String> paths;
+
+		private ResolvedPaths(int iterNo, Collection<String> paths) {
+			this.iterNo = iterNo;
+			this.paths = paths;
+		}
+	}
 }
@@ -6,14 +6,22 @@
 
 package com.turn.sorcerer.dependency.impl;
 
+import com.turn.sorcerer.dependency.CacheableDependency;
 import com.turn.sorcerer.dependency.Dependency;
+import com.turn.sorcerer.dependency.DependencyCache;
+import com.turn.sorcerer.dependency.TaskCompletionWatcher;
+import com.turn.sorcerer.dependency.WatchableDependency;
 import com.turn.sorcerer.exception.SorcererException;
 import com.turn.sorcerer.injector.SorcererInjector;
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusListener;
 import com.turn.sorcerer.status.StatusManager;
 import com.turn.sorcerer.task.SorcererTask;
 import com.turn.sorcerer.task.Task;
 import com.turn.sorcerer.task.type.TaskType;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,13 +34,35 @@ import org.slf4j.LoggerFactory;
  * pipeline.
  * </p>
  *
+ * <p>
+ * If the status storage supports watches, completion of the requisite task
+ * is watched instead of polled (see {@link TaskCompletionWatcher}).
+ * Otherwise the result is cached by the {@link DependencyCache}, and dropped
+ * when this process clears or reruns the requisite task iteration.
+ * </p>
+ *
  * @author tshiou
  */
-public class SorcererTaskDependency implements Dependency {
+public class SorcererTaskDependency implements CacheableDependency, WatchableDependency {
 
 	private static final Logger logger =
 			LoggerFactory.getLogger(SorcererTaskDependency.class);
 
+	// Drops the cached results of the task iterations whose statuses are
+	// changed by this process, e.g. cleared or rerun through the API
+	static final StatusListener CACHE_INVALIDATION = new StatusListener() {
+		@Override
+		public void onStatus(String identifier, int id, Status status) {
+			if (Status.SUCCESS.equals(status) == false) {
+				DependencyCache.get().invalidate(cacheKey(identifier, id), id);
+			}
+		}
+	};
+
+	// Registered on the first cached check rather than on class loading,
+	// which may happen before the injector is configured
+	private static final AtomicBoolean listening = new AtomicBoolean(false);
+
 	// Requisite task type
 	private final TaskType task;
 
@@ -155,7 +185,62 @@ public class SorcererTaskDependency implements Dependency {
 
 	@Override
 	public boolean check(int iterNo) {
-		return task != null && StatusManager.get().isTaskComplete(
+		return task != null && TaskCompletionWatcher.get().isComplete(
 				task, customIterNo == null ? iterNo : customIterNo);
 	}
+
+	@Override
+	public boolean watch(int iterNo, Runnable callback) {
+		return task != null && TaskCompletionWatcher.get().whenComplete(
+				task, customIterNo == null ? iterNo : customIterNo, callback);
+	}
+
+	@Override
+	public void unwatch(int iterNo, Runnable callback) {
+		if (task != null) {
+			TaskCompletionWatcher.get().removeCallback(
+					task, customIterNo == null ? iterNo : customIterNo, callback);
+		}
+	}
+
+	@Override
+	public String getCacheKey(int iterNo) {
+		if (task == null || isCached() == false) {
+			return null;
+		}
+
+		return cacheKey(task.getName(), getCacheIterNo(iterNo));
+	}
+
+	/**
+	 * Results are cached for the iteration of the requisite task, so that
+	 * they are dropped when that iteration changes
+	 */
+	@Override
+	public int getCacheIterNo(int iterNo) {
+		return customIterNo == null ? iterNo : customIterNo;
+	}
+
+	// Watched completion is already answered without reading the storage
+	boolean isCached() {
+		if (TaskCompletionWatcher.get().isWatchSupported()) {
+			return false;
+		}
+
+		if (listening.compareAndSet(false, true)) {
+			StatusManager.get().addTaskStatusListener(CACHE_INVALIDATION);
+		}
+
+		return true;
+	}
+
+	private static String cacheKey(String taskName, int iterNo) {
+		return "task:" + taskName + ":" + iterNo;
+	}
+
+	@Override
+	public String toString() {
+		return "Task : " + (task == null ? null : task.getName())
+				+ (customIterNo == null ? "" : ":" + customIterNo);
+	}
 }
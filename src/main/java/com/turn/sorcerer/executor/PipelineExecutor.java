@@ -14,8 +14,7 @@ import com.turn.sorcerer.task.type.TaskType;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -32,11 +31,12 @@ public class PipelineExecutor implements Runnable, Abortable {
 	private static final Logger logger =
 			LoggerFactory.getLogger(PipelineExecutor.class);
 
-	private final ScheduledExecutorService executor;
 	private final ExecutablePipeline pipeline;
 	private final TaskScheduler taskScheduler;
 	private final int interval;
 
+	private ScheduledFuture<?> tick;
+
 	public PipelineExecutor(PipelineType pipelineType, int jobId) {
 		this(pipelineType, jobId, new HashMap<TaskType, Map<String, String>>(), false, false);
 	}
@@ -46,43 +46,63 @@ public class PipelineExecutor implements Runnable, Abortable {
 	                        boolean adhoc, boolean overwriteTasks) {
 		this.interval = pipelineType.getInterval();
 
-		int threads = pipelineType.getThreads();
-
-		executor = Executors.newSingleThreadScheduledExecutor();
-
 		pipeline = PipelineFactory.get().getExecutablePipeline(pipelineType, jobId);
 
 		// after we call getExecutablePipeline(), all parameters of pipelineFactory are cleared
 
 		taskScheduler = new TaskScheduler(
-				pipeline, pipeline.getId(), threads, taskArgMap, adhoc, overwriteTasks);
+				pipeline, pipeline.getId(), taskArgMap, adhoc, overwriteTasks);
 	}
 
-	@Override
-	public void run() {
+	/**
+	 * Registers the periodic tick of the pipeline instance with the
+	 * {@link PipelineTimer}. The tick is cancelled once the pipeline instance
+	 * is complete.
+	 */
+	public synchronized void start() {
+		if (tick != null) {
+			return;
+		}
 
 		logger.info("Scheduling {} every {} seconds", pipeline, interval);
 
-		pipeline.updatePipelineCompletion();
+		tick = PipelineTimer.get().schedule(this, 0, interval, TimeUnit.SECONDS);
+	}
 
-		executor.scheduleWithFixedDelay(taskScheduler, 0, interval,	TimeUnit.SECONDS);
+	/**
+	 * Updates the task completion map of the pipeline instance
+	 */
+	public void updatePipelineCompletion() {
+		taskScheduler.updatePipelineCompletion();
+	}
+
+	/**
+	 * Single tick of the pipeline instance: launches ready tasks and stops
+	 * the pipeline executor once the pipeline instance is complete
+	 */
+	@Override
+	public void run() {
+		taskScheduler.run();
 
-		while (pipeline.isCompleted() == false) {
-			try {
-				Thread.sleep(1000 * interval);
-			} catch (InterruptedException e) {
-				logger.warn("Sleep interrupted");
-				Thread.currentThread().interrupt();
-			}
+		if (pipeline.isCompleted()) {
+			abort();
 		}
+	}
 
-		abort();
+	/**
+	 * Stops scheduling tasks of the pipeline instance. Tasks that are already
+	 * running are left to complete.
+	 */
+	public synchronized void stop() {
+		if (tick != null) {
+			tick.cancel(false);
+		}
 	}
 
 	public void abort() {
 		logger.info("Shutting down pipeline executor for " + pipeline);
+		stop();
 		taskScheduler.abort();
-		executor.shutdown();
 	}
 
 }
@@ -10,12 +10,18 @@ import com.turn.sorcerer.pipeline.Pipeline;
 import com.turn.sorcerer.pipeline.executable.ExecutablePipeline;
 import com.turn.sorcerer.pipeline.executable.impl.PipelineFactory;
 import com.turn.sorcerer.pipeline.type.PipelineType;
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusManager;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -36,7 +42,6 @@ public class PipelineScheduler implements Runnable {
 	private final PipelineType pipelineType;
 	private final Pipeline iterNoGenerator;
 
-	// The scheduler should only use a single thread
 	volatile boolean abort = false;
 
 	// Instances of pipeline to run
@@ -44,7 +49,8 @@ public class PipelineScheduler implements Runnable {
 
 	// Pipeline executors
 	private Map<Integer, PipelineExecutor> pipelineExecutors = Maps.newConcurrentMap();
-	private Map<Integer, ExecutorService> pipelineSchedulers = Maps.newHashMap();
+
+	private ScheduledFuture<?> tick;
 
 	public PipelineScheduler(PipelineType pipelineType) {
 		this.pipelineType = pipelineType;
@@ -55,105 +61,148 @@ public class PipelineScheduler implements Runnable {
 		return this.pipelineType;
 	}
 
-	@Override
-	public void run() {
+	/**
+	 * Registers the periodic tick of the pipeline with the
+	 * {@link PipelineTimer}
+	 */
+	public synchronized void start() {
+		if (tick != null) {
+			return;
+		}
 
 		logger.debug("Launching pipeline {}", pipelineType.getName());
 
-		while (!abort) {
-			int currIter = iterNoGenerator.getCurrentIterationNumber();
+		tick = PipelineTimer.get().schedule(
+				this, 0, pipelineType.getInterval(), TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Single tick of the pipeline: creates instances of the pipeline for the
+	 * iterations to run and starts their pipeline executors
+	 */
+	@Override
+	public synchronized void run() {
+
+		if (abort) {
+			return;
+		}
+
+		int currIter = iterNoGenerator.getCurrentIterationNumber();
+
+		// Get prior days
+		List<Integer> iterationsToRun = Lists.newArrayList();
+
+		for (int i = 0 ; i <= pipelineType.getLookback() ; i++ ) {
+			int sequenceNumber = iterNoGenerator.getPreviousIterationNumber(currIter, i);
+
+			if (sequenceNumber < 0) {
+				continue;
+			}
+
+			iterationsToRun.add(sequenceNumber);
 
-			// Get prior days
-			List<Integer> iterationsToRun = Lists.newArrayList();
+			if (pipelineInstances.containsKey(sequenceNumber) == false) {
+				pipelineInstances.put(sequenceNumber, null);
+			}
+		}
 
-			for (int i = 0 ; i <= pipelineType.getLookback() ; i++ ) {
-				int sequenceNumber = iterNoGenerator.getPreviousIterationNumber(currIter, i);
+		// Statuses of the whole lookback window in a single range scan
+		SortedMap<Integer, IterationStatus> windowStatuses = iterationsToRun.isEmpty()
+				? new TreeMap<Integer, IterationStatus>()
+				: StatusManager.get().getPipelineStatusRange(pipelineType.getName(),
+						Collections.min(iterationsToRun), Collections.max(iterationsToRun));
 
-				if (sequenceNumber < 0) {
-					continue;
-				}
+		// Start reading the task statuses of the incomplete instances of the
+		// window at once, each instance then waits for its own read
+		for (Integer sequenceNumber : iterationsToRun) {
+			ExecutablePipeline pipelineInstance = pipelineInstances.get(sequenceNumber);
 
-				iterationsToRun.add(sequenceNumber);
+			if (pipelineInstance != null && isCompleted(windowStatuses, sequenceNumber) == false) {
+				pipelineInstance.prefetchTaskStatuses();
+			}
+		}
 
-				if (pipelineInstances.containsKey(sequenceNumber) == false) {
-					pipelineInstances.put(sequenceNumber, null);
-				}
+		// Attempt to run pipeline on
+		Set<Integer> sequenceNumbers = Sets.newHashSet(pipelineInstances.keySet());
+		for (Integer sequenceNumber : sequenceNumbers) {
+			logger.debug("Attempting to run {} for iteration {}",
+					pipelineType.getName(), sequenceNumber);
+
+			ExecutablePipeline pipelineInstance = pipelineInstances.get(sequenceNumber);
+			PipelineExecutor executor = pipelineExecutors.get(sequenceNumber);
+
+			// If we're not interested in running a date, remove from pipeline instances
+			if (iterationsToRun.contains(sequenceNumber) == false) {
+				logger.info("Removing {} from pipeline queue", pipelineInstance);
+				pipelineInstances.remove(sequenceNumber);
+				removeExecutorForPipeline(sequenceNumber);
+				PipelineFactory.get().expireSequenceNumber(pipelineType, sequenceNumber);
+				continue;
 			}
 
-			// Attempt to run pipeline on
-			Set<Integer> sequenceNumbers = Sets.newHashSet(pipelineInstances.keySet());
-			for (Integer sequenceNumber : sequenceNumbers) {
-				logger.debug("Attempting to run {} for iteration {}",
+			// If this is the first time running this instance of pipeline, create it
+			if (pipelineInstance == null) {
+				logger.debug("Creating new instance of pipeline {} for {}",
 						pipelineType.getName(), sequenceNumber);
+				pipelineInstance = PipelineFactory.get()
+						.getExecutablePipeline(pipelineType, sequenceNumber);
+				pipelineInstances.put(sequenceNumber, pipelineInstance);
+			}
+
+			// Completed instances don't need their task statuses refreshed
+			if (isCompleted(windowStatuses, sequenceNumber)) {
+				logger.debug("Pipeline {} is completed", pipelineInstance);
+				continue;
+			}
 
-				ExecutablePipeline pipelineInstance = pipelineInstances.get(sequenceNumber);
-				ExecutorService executor = pipelineSchedulers.get(sequenceNumber);
-
-				// If we're not interested in running a date, remove from pipeline instances
-				if (iterationsToRun.contains(sequenceNumber) == false) {
-					logger.info("Removing {} from pipeline queue", pipelineInstance);
-					pipelineInstances.remove(sequenceNumber);
-					removeExecutorForPipeline(sequenceNumber);
-					pipelineExecutors.remove(sequenceNumber);
-					PipelineFactory.get().expireSequenceNumber(pipelineType, sequenceNumber);
-				}
-
-				// If this is the first time running this instance of pipeline, create it
-				if (pipelineInstance == null) {
-					logger.debug("Creating new instance of pipeline {} for {}",
-							pipelineType.getName(), sequenceNumber);
-					pipelineInstance = PipelineFactory.get()
-							.getExecutablePipeline(pipelineType, sequenceNumber);
-					pipelineInstances.put(sequenceNumber, pipelineInstance);
-				}
-
-				// Update pipeline status
+			// Update pipeline status, under the lock of the task scheduler once
+			// tasks of the instance can complete
+			if (executor != null) {
+				executor.updatePipelineCompletion();
+			} else {
 				pipelineInstance.updatePipelineCompletion();
+			}
 
-				// If instance of pipeline is completed, don't schedule
-				if (pipelineInstance.isCompleted()) {
-					logger.debug("Pipeline {} is completed", pipelineInstance);
-					continue;
-				}
-
-				// If pipeline hasn't been scheduled, schedule pipeline
-				if (executor == null) {
-					logger.debug("Scheduling pipeline {}", pipelineType);
-					executor = Executors.newSingleThreadExecutor();
-
-					PipelineExecutor pipelineExecutor =
-							new PipelineExecutor(pipelineType, sequenceNumber);
-					pipelineExecutors.put(sequenceNumber, pipelineExecutor);
-					executor.submit(pipelineExecutor);
-					pipelineSchedulers.put(sequenceNumber, executor);
-				}
+			// If instance of pipeline is completed, don't schedule
+			if (pipelineInstance.isCompleted()) {
+				logger.debug("Pipeline {} is completed", pipelineInstance);
+				continue;
 			}
 
-			try {
-				Thread.sleep(1000 * pipelineType.getInterval());
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
+			// If pipeline hasn't been scheduled, schedule pipeline
+			if (executor == null) {
+				logger.debug("Scheduling pipeline {}", pipelineType);
+
+				executor = new PipelineExecutor(pipelineType, sequenceNumber);
+				pipelineExecutors.put(sequenceNumber, executor);
+				executor.start();
 			}
 		}
+	}
 
+	// Checks if an iteration of the window is complete according to the scan
+	private static boolean isCompleted(SortedMap<Integer, IterationStatus> windowStatuses,
+	                                   int sequenceNumber) {
+		IterationStatus status = windowStatuses.get(sequenceNumber);
+		return status != null && Status.SUCCESS.equals(status.getStatus());
 	}
 
 	private void removeExecutorForPipeline(int sequenceNumber) {
-		ExecutorService executor = pipelineSchedulers.get(sequenceNumber);
+		PipelineExecutor executor = pipelineExecutors.remove(sequenceNumber);
 
 		if (executor == null) {
 			return;
 		}
 
-		if (executor.isShutdown() == false) {
-			executor.shutdown();
-		}
-		pipelineSchedulers.remove(sequenceNumber);
+		executor.stop();
 	}
 
-	public void abort() {
+	public synchronized void abort() {
 		abort = true;
+
+		if (tick != null) {
+			tick.cancel(false);
+		}
 	}
 
 }
-
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide timer driving the periodic ticks of all pipelines and
+ * pipeline iterations, which run on a shared pool of tick threads
+ *
+ * @author tshiou
+ */
+public class PipelineTimer {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(PipelineTimer.class);
+
+	static final int TIMER_THREADS = 2;
+
+	// Ticks wait on the storage layer, not the CPU
+	static final int TICK_THREADS = 16;
+
+	private static final PipelineTimer INSTANCE = new PipelineTimer(TIMER_THREADS, TICK_THREADS);
+
+	public static PipelineTimer get() {
+		return INSTANCE;
+	}
+
+	private final ScheduledThreadPoolExecutor timer;
+
+	private final ExecutorService ticks;
+
+	PipelineTimer(int timerThreads, int tickThreads) {
+		timer = new ScheduledThreadPoolExecutor(timerThreads, new ThreadFactoryBuilder()
+				.setNameFormat("sorcerer-timer-%d")
+				.build());
+
+		ticks = Executors.newFixedThreadPool(tickThreads, new ThreadFactoryBuilder()
+				.setNameFormat("sorcerer-tick-%d")
+				.build());
+
+		// Cancelled ticks (e.g. completed iterations) are removed right away
+		// instead of staying in the queue until their next execution time
+		timer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Runs a tick periodically until the returned future is cancelled
+	 *
+	 * <p>
+	 * The first tick runs after the initial delay, and each following tick
+	 * is due after the delay from the time the previous tick was due, or
+	 * from the end of the previous tick if it ran late. Ticks run on the
+	 * tick threads and never overlap. Exceptions thrown by a tick are logged
+	 * and do not prevent the following ticks.
+	 * </p>
+	 *
+	 * @param tick Tick to run
+	 * @param initialDelay Delay before the first tick
+	 * @param delay Delay between the end of a tick and the start of the next
+	 * @param unit Time unit of the delays
+	 * @return Future to cancel the tick with
+	 */
+	public ScheduledFuture<?> schedule(final Runnable tick, long initialDelay, long delay,
+	                                   TimeUnit unit) {
+		final AtomicBoolean running = new AtomicBoolean(false);
+
+		return timer.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				// The previous tick is still blocked, e.g. on the storage layer
+				if (running.compareAndSet(false, true) == false) {
+					logger.debug("Tick {} is still running, skipping it", tick);
+					return;
+				}
+
+				ticks.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							tick.run();
+						} catch (RuntimeException e) {
+							logger.error("Tick {} failed", tick, e);
+						} finally {
+							running.set(false);
+						}
+					}
+				});
+			}
+		}, initialDelay, delay, unit);
+	}
+
+	/**
+	 * Runs a task once after a delay
+	 *
+	 * <p>
+	 * Delayed tasks wait in the delay queue of the timer and do not hold a
+	 * thread until they are due, then run on the tick threads. Exceptions
+	 * thrown by the task are logged.
+	 * </p>
+	 *
+	 * @param task Task to run
+	 * @param delay Delay before the task runs
+	 * @param unit Time unit of the delay
+	 * @return Future to cancel the task with
+	 */
+	public ScheduledFuture<?> scheduleOnce(final Runnable task, long delay, TimeUnit unit) {
+		return timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				ticks.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							task.run();
+						} catch (RuntimeException e) {
+							logger.error("Delayed task {} failed", task, e);
+						}
+					}
+				});
+			}
+		}, delay, unit);
+	}
+
+	/**
+	 * Number of ticks currently registered
+	 */
+	public int getTickCount() {
+		return timer.getQueue().size() + timer.getActiveCount();
+	}
+
+	/**
+	 * Number of timer and tick threads
+	 */
+	public int getThreads() {
+		return timer.getCorePoolSize() + TICK_THREADS;
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import com.turn.sorcerer.injector.SorcererInjector;
+import com.turn.sorcerer.metrics.MetricUnit;
+import com.turn.sorcerer.metrics.MetricsMonitor;
+import com.turn.sorcerer.pipeline.Pipeline;
+import com.turn.sorcerer.pipeline.executable.impl.PipelineFactory;
+import com.turn.sorcerer.pipeline.type.PipelineType;
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusManager;
+import com.turn.sorcerer.task.type.TaskType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes the statuses of iterations older than their retention, every hour
+ * and at most {@code retention_rate} iterations per second
+ *
+ * @author tshiou
+ */
+public class RetentionCollector implements Runnable {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(RetentionCollector.class);
+
+	// Leave the first minutes after startup to the pipelines
+	private static final long INITIAL_DELAY_MINUTES = 5;
+
+	private static final long INTERVAL_MINUTES = 60;
+
+	// Max number of deletions outstanding at once
+	private static final int BATCH_SIZE = 100;
+
+	private static final String DELETED_METRIC = "retention_deleted_iterations";
+
+	private static class Holder {
+		private static final RetentionCollector INSTANCE = new RetentionCollector(
+				SorcererInjector.get().getModule().getRetentionRate());
+	}
+
+	public static RetentionCollector get() {
+		return Holder.INSTANCE;
+	}
+
+	private final RateLimiter limiter;
+
+	private final AtomicLong deleted = new AtomicLong();
+
+	// Lowest iteration left by the last collection of a pipeline or task,
+	// the next collection does not scan the older iterations again
+	private final ConcurrentMap<String, Integer> lowWaterMarks = Maps.newConcurrentMap();
+
+	private ScheduledExecutorService executor;
+
+	private volatile boolean stopped = false;
+
+	RetentionCollector(int rate) {
+		this.limiter = RateLimiter.create(Math.max(rate, 1));
+	}
+
+	/**
+	 * Runs a collection every hour on a background thread
+	 */
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+
+		stopped = false;
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("sorcerer-retention-%d")
+				.setDaemon(true)
+				.build());
+		executor.scheduleWithFixedDelay(
+				this, INITIAL_DELAY_MINUTES, INTERVAL_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Stops the collections, a running collection stops after its current
+	 * batch
+	 */
+	public synchronized void stop() {
+		stopped = true;
+
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	@Override
+	public void run() {
+		// A scheduled executor runs nothing more after an exception
+		try {
+			collect();
+		} catch (RuntimeException e) {
+			logger.error("Retention collection failed", e);
+		}
+	}
+
+	/**
+	 * Deletes the expired iterations of all pipelines and their tasks
+	 *
+	 * @return Number of deleted iterations
+	 */
+	public int collect() {
+		Set<PipelineType> pipelines = SorcererInjector.get().getPipelines();
+
+		if (pipelines == null) {
+			return 0;
+		}
+
+		long start = System.currentTimeMillis();
+		int moduleRetention = SorcererInjector.get().getModule().getRetention();
+
+		int pipelineCount = 0;
+		Map<String, Retention> tasks = Maps.newHashMap();
+
+		for (PipelineType type : pipelines) {
+			int days = type.getRetention() == null ? moduleRetention : type.getRetention();
+
+			Pipeline pipeline = PipelineFactory.get().getPipeline(type);
+			Integer firstKept = pipeline.getPreviousIterationNumber(
+					pipeline.getCurrentIterationNumber(), type.getLookback());
+
+			if (firstKept == null) {
+				logger.warn("No lookback window for {}, skipping its retention", type.getName());
+
+				// Its tasks are kept for the other pipelines too
+				for (String taskName : getTaskNames(type)) {
+					tasks.put(taskName, new Retention(0, 0).merge(tasks.get(taskName)));
+				}
+				continue;
+			}
+
+			Retention retention = new Retention(days, firstKept);
+
+			for (String taskName : getTaskNames(type)) {
+				tasks.put(taskName, retention.merge(tasks.get(taskName)));
+			}
+
+			pipelineCount += collect(type.getName(), true, retention, start);
+		}
+
+		int taskCount = 0;
+		for (Map.Entry<String, Retention> task : tasks.entrySet()) {
+			taskCount += collect(task.getKey(), false, task.getValue(), start);
+		}
+
+		long total = deleted.addAndGet(pipelineCount + taskCount);
+		MetricsMonitor.getInstance().addGenericMetric(
+				MetricUnit.getMetricUnit(true, null, DELETED_METRIC), total);
+
+		logger.info("Deleted {} expired pipeline iterations and {} task iterations in {}ms",
+				pipelineCount, taskCount, System.currentTimeMillis() - start);
+
+		return pipelineCount + taskCount;
+	}
+
+	/**
+	 * Total number of iterations deleted since startup
+	 */
+	public long getDeletedCount() {
+		return deleted.get();
+	}
+
+	// Deletes the expired iterations of a pipeline or task
+	int collect(String identifier, boolean pipeline, Retention retention, long now) {
+		if (retention.days <= 0 || retention.firstKept <= 0 || stopped) {
+			return 0;
+		}
+
+		long cutoff = now - TimeUnit.DAYS.toMillis(retention.days);
+
+		String key = (pipeline ? "pipeline:" : "task:") + identifier;
+		Integer lowWaterMark = lowWaterMarks.get(key);
+		int from = lowWaterMark == null ? 0 : lowWaterMark;
+
+		SortedMap<Integer, IterationStatus> statuses =
+				getStatusRange(identifier, pipeline, from, retention.firstKept - 1);
+
+		int count = 0;
+		Set<Integer> removed = Sets.newHashSet();
+		for (List<Integer> batch : Lists.partition(getExpired(statuses, cutoff), BATCH_SIZE)) {
+			if (stopped) {
+				break;
+			}
+
+			limiter.acquire(batch.size());
+
+			int batchCount = Futures.getUnchecked(delete(identifier, pipeline, batch));
+			count += batchCount;
+
+			// Failed deletions are retried by the next collection
+			if (batchCount == batch.size()) {
+				removed.addAll(batch);
+			}
+		}
+
+		int next = Math.max(from, retention.firstKept);
+		for (int iterNo : statuses.keySet()) {
+			if (removed.contains(iterNo) == false) {
+				next = iterNo;
+				break;
+			}
+		}
+		lowWaterMarks.put(key, next);
+
+		if (count > 0) {
+			logger.debug("Deleted {} expired iterations of {}", count, identifier);
+		}
+
+		return count;
+	}
+
+	SortedMap<Integer, IterationStatus> getStatusRange(String identifier, boolean pipeline,
+	                                                   int from, int to) {
+		return pipeline
+				? StatusManager.get().getPipelineStatusRange(identifier, from, to)
+				: StatusManager.get().getTaskStatusRange(identifier, from, to);
+	}
+
+	ListenableFuture<Integer> delete(String identifier, boolean pipeline, List<Integer> iterNos) {
+		return pipeline
+				? StatusManager.get().deletePipelineStatuses(identifier, iterNos)
+				: StatusManager.get().deleteTaskStatuses(identifier, iterNos);
+	}
+
+	/**
+	 * Provides the iterations of a range scan whose status was committed
+	 * before a cutoff time, except running iterations
+	 */
+	static List<Integer> getExpired(SortedMap<Integer, IterationStatus> statuses, long cutoff) {
+		List<Integer> expired = Lists.newArrayList();
+
+		for (IterationStatus status : statuses.values()) {
+			if (Status.IN_PROGRESS.equals(status.getStatus()) == false
+					&& status.getTime().isBefore(new DateTime(cutoff))) {
+				expired.add(status.getIterNo());
+			}
+		}
+
+		return expired;
+	}
+
+	// Names of the tasks reachable from the init task of a pipeline
+	private static Set<String> getTaskNames(PipelineType type) {
+		Set<String> names = Sets.newHashSet();
+		List<String> next = Lists.newArrayList(type.getInitTaskName());
+
+		while (next.isEmpty() == false) {
+			String name = next.remove(next.size() - 1);
+
+			if (name == null || names.add(name) == false) {
+				continue;
+			}
+
+			TaskType task = SorcererInjector.get().getTaskType(name);
+			if (task != null && task.getNextTaskNames() != null) {
+				next.addAll(task.getNextTaskNames());
+			}
+		}
+
+		return names;
+	}
+
+	/**
+	 * Retention of the iterations of a pipeline or task
+	 */
+	static class Retention {
+		// Days statuses are kept, 0 keeps them forever
+		final int days;
+
+		// First iteration of the lookback window, only older iterations expire
+		final int firstKept;
+
+		Retention(int days, int firstKept) {
+			this.days = days;
+			this.firstKept = firstKept;
+		}
+
+		/**
+		 * Combines the retentions of a task of several pipelines, keeping
+		 * iterations if any of the pipelines keeps them
+		 */
+		Retention merge(Retention other) {
+			if (other == null) {
+				return this;
+			}
+
+			int mergedDays = days <= 0 || other.days <= 0 ? 0 : Math.max(days, other.days);
+
+			return new Retention(mergedDays, Math.min(firstKept, other.firstKept));
+		}
+	}
+}
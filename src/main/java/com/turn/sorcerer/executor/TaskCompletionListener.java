@@ -6,6 +6,7 @@
 
 package com.turn.sorcerer.executor;
 
+import com.turn.sorcerer.dependency.WatchableDependency;
 import com.turn.sorcerer.executor.TaskExecutionResult.ExecutionStatus;
 import com.turn.sorcerer.pipeline.executable.ExecutablePipeline;
 import com.turn.sorcerer.status.Status;
@@ -32,14 +33,16 @@ public class TaskCompletionListener implements FutureCallback<TaskExecutionResul
 	private final TaskType task;
 	private ConcurrentMap<String, TaskExecutor> runningTasks;
 	private ExecutablePipeline pipeline;
+	private TaskScheduler scheduler;
 
 	public TaskCompletionListener(TaskType taskType,
 	                              ConcurrentMap<String, TaskExecutor> runningTasks,
-	                              ExecutablePipeline pipeline) {
+	                              ExecutablePipeline pipeline,
+	                              TaskScheduler scheduler) {
 		this.task = taskType;
 		this.runningTasks = runningTasks;
 		this.pipeline = pipeline;
-
+		this.scheduler = scheduler;
 	}
 
 	@Override
@@ -51,23 +54,51 @@ public class TaskCompletionListener implements FutureCallback<TaskExecutionResul
 
 		if (ExecutionStatus.SUCCESS.equals(executionStatus)) {
 			// If success, then update pipeline status
-			pipeline.updateTaskAsComplete(t);
+			scheduler.updateTaskAsComplete(t);
 		} else if (ExecutionStatus.ABORTED.equals(executionStatus)) {
 			logger.info("Task {}:{} aborted", task, pipeline.getId());
 		}
 
 		// Update running tasks
 		runningTasks.remove(t.getName());
+		scheduler.removeTaskFuture(t.getName());
+
+		// Wake up the scheduler so the next tasks in the workflow are launched
+		// without waiting for the next scheduling interval. Tasks that did not
+		// run are retried on the next scheduling interval.
+		if (ExecutionStatus.SUCCESS.equals(executionStatus)
+				|| ExecutionStatus.COMPLETED.equals(executionStatus)) {
+			scheduler.onTaskComplete(t);
+		} else if (ExecutionStatus.ERROR.equals(executionStatus)) {
+			scheduler.onTaskFailed(t);
+		} else if (executionResult.getBlockingDependency() instanceof WatchableDependency) {
+			scheduler.deferTask(t, (WatchableDependency) executionResult.getBlockingDependency());
+		} else {
+			scheduler.deferTask(t);
+		}
 	}
 
 	@Override
 	public void onFailure(Throwable throwable) {
 		logger.error("{} - {} failed!", pipeline, task.getName(), throwable);
-		runningTasks.remove(task.getName());
+		TaskExecutor executor = runningTasks.remove(task.getName());
+		scheduler.removeTaskFuture(task.getName());
+
+		// Transient failures are retried according to the retry policy of
+		// the task instead of leaving the task in error. Tasks stopped by the
+		// watchdog are not retried since their thread may still be running.
+		boolean timedOut = executor != null && executor.isTimedOut();
+		if (timedOut == false && scheduler.retryTask(task, throwable)) {
+			return;
+		}
+
 		StatusManager.get().commitTaskStatus(task, pipeline.getId(), Status.ERROR);
 
 		new Emailer(pipeline + ":" + task.getName() + " failed", new Exception(throwable))
 				.send();
+
+		// Next tasks can still proceed if the failed task has low criticality
+		scheduler.onTaskFailed(task);
 	}
 
 }
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import com.turn.sorcerer.injector.SorcererInjector;
+import com.turn.sorcerer.pipeline.type.PipelineType;
+import com.turn.sorcerer.util.VirtualThreads;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide pool executing the tasks of all pipelines, bounded by the
+ * {@code threads} field of the module and shared between pipelines by
+ * weighted fair queuing within their minimum and maximum number of threads
+ *
+ * @author tshiou
+ */
+public class TaskExecutionPool {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(TaskExecutionPool.class);
+
+	// Lazy so that the module is loaded first
+	private static class Holder {
+		private static final TaskExecutionPool INSTANCE =
+				new TaskExecutionPool(SorcererInjector.get().getModule().getThreads());
+	}
+
+	public static TaskExecutionPool get() {
+		return Holder.INSTANCE;
+	}
+
+	// Tenant of tasks that are not part of a pipeline (e.g. adhoc tasks)
+	private static final String DEFAULT_TENANT = "";
+
+	private final int maxThreads;
+	private final ExecutorService executor;
+	private final ExecutorService virtualExecutor;
+
+	// Pipeline name -> tenant
+	private final Map<String, Tenant> tenants = Maps.newHashMap();
+
+	// Future -> task, for the tasks holding an execution slot
+	private final Map<Runnable, QueuedTask> executing = Maps.newIdentityHashMap();
+
+	// Number of tasks currently executing on platform threads
+	private int running = 0;
+
+	// Number of tasks currently executing on virtual threads
+	private int runningVirtual = 0;
+
+	// Virtual time of the fair queue (finish tag of the last dispatched task)
+	private double virtualTime = 0;
+
+	// Submission order of tasks with the same priority
+	private long sequence = 0;
+
+	TaskExecutionPool(int maxThreads) {
+		this.maxThreads = maxThreads;
+
+		// Threads are bounded by the dispatcher, the underlying pool only
+		// recycles idle threads
+		this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+				.setNameFormat("sorcerer-task-%d")
+				.build());
+
+		this.virtualExecutor = VirtualThreads.newExecutor();
+	}
+
+	/**
+	 * Checks if tasks submitted in virtual thread mode actually run on
+	 * virtual threads
+	 */
+	public boolean isVirtualThreadSupported() {
+		return virtualExecutor != null;
+	}
+
+	/**
+	 * Queues a task of a pipeline for execution on a platform thread
+	 *
+	 * @param pipelineType Pipeline of the task, null if the task is not part
+	 *                     of a pipeline
+	 * @param task Task to execute
+	 * @return Future of the task. Cancelling the future with interruption
+	 *         interrupts the task if it is executing.
+	 */
+	public <T> ListenableFuture<T> submit(PipelineType pipelineType, Callable<T> task) {
+		return submit(pipelineType, task, false);
+	}
+
+	/**
+	 * Queues a task of a pipeline for execution
+	 *
+	 * @param pipelineType Pipeline of the task, null if the task is not part
+	 *                     of a pipeline
+	 * @param task Task to execute
+	 * @param virtual Execute the task on a virtual thread
+	 * @return Future of the task. Cancelling the future with interruption
+	 *         interrupts the task if it is executing.
+	 */
+	public <T> ListenableFuture<T> submit(PipelineType pipelineType, Callable<T> task,
+	                                      boolean virtual) {
+		return submit(pipelineType, task, virtual, TaskPriority.NONE);
+	}
+
+	/**
+	 * Queues a task of a pipeline for execution
+	 *
+	 * @param pipelineType Pipeline of the task, null if the task is not part
+	 *                     of a pipeline
+	 * @param task Task to execute
+	 * @param virtual Execute the task on a virtual thread
+	 * @param priority Priority of the task among the queued tasks of the
+	 *                 pipeline
+	 * @return Future of the task. Cancelling the future with interruption
+	 *         interrupts the task if it is executing.
+	 */
+	public <T> ListenableFuture<T> submit(PipelineType pipelineType, Callable<T> task,
+	                                      boolean virtual, TaskPriority priority) {
+		ListenableFutureTask<T> future = ListenableFutureTask.create(task);
+
+		synchronized (this) {
+			Tenant tenant = getTenant(pipelineType);
+
+			tenant.queue.add(new QueuedTask(
+					tenant, future, priority, sequence++, virtual && virtualExecutor != null));
+
+			dispatch();
+		}
+
+		return future;
+	}
+
+	/**
+	 * Releases the execution slot of a task whose thread does not return
+	 * (e.g. a hung task that ignores interruption) so that other tasks can
+	 * use it. The thread of the task is not stopped and no longer counts
+	 * against any bound.
+	 *
+	 * @param future Future returned by {@link #submit} for the task
+	 * @return true if the task was holding an execution slot
+	 */
+	public synchronized boolean abandon(Future<?> future) {
+		QueuedTask task = executing.get(future);
+
+		if (task == null) {
+			return false;
+		}
+
+		release(task);
+		return true;
+	}
+
+	/**
+	 * Number of tasks currently executing
+	 */
+	public synchronized int getRunningCount() {
+		return running + runningVirtual;
+	}
+
+	/**
+	 * Number of tasks waiting for an execution slot
+	 */
+	public synchronized int getQueuedCount() {
+		int queued = 0;
+		for (Tenant tenant : tenants.values()) {
+			queued += tenant.queue.size();
+		}
+		return queued;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	private Tenant getTenant(PipelineType pipelineType) {
+		String name = pipelineType == null ? DEFAULT_TENANT : pipelineType.getName();
+
+		Tenant tenant = tenants.get(name);
+
+		if (tenant == null) {
+			tenant = pipelineType == null
+					? new Tenant(name, 0, 0, 1)
+					: new Tenant(name, pipelineType.getMinThreads(),
+							pipelineType.getThreads(), pipelineType.getWeight());
+			tenants.put(name, tenant);
+		}
+
+		return tenant;
+	}
+
+	// Launches queued tasks while there are free execution slots
+	private void dispatch() {
+		while (true) {
+			Tenant tenant = nextTenant();
+
+			if (tenant == null) {
+				return;
+			}
+
+			final QueuedTask task = tenant.queue.poll();
+			executing.put(task.future, task);
+
+			tenant.lastFinish = tenant.nextFinish(virtualTime);
+			virtualTime = Math.max(virtualTime, tenant.lastFinish);
+			tenant.running++;
+			if (task.virtual) {
+				runningVirtual++;
+			} else {
+				running++;
+			}
+
+			logger.trace("Dispatching task of {} ({} running in pipeline, {} running total)",
+					tenant.name, tenant.running, running + runningVirtual);
+
+			Runnable runnable = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.future.run();
+					} finally {
+						release(task);
+					}
+				}
+			};
+
+			if (task.virtual) {
+				virtualExecutor.execute(runnable);
+			} else {
+				executor.execute(runnable);
+			}
+		}
+	}
+
+	private synchronized void release(QueuedTask task) {
+		// Already released if the task was abandoned
+		if (executing.remove(task.future) == null) {
+			return;
+		}
+
+		task.tenant.running--;
+		if (task.virtual) {
+			runningVirtual--;
+		} else {
+			running--;
+		}
+		dispatch();
+	}
+
+	/**
+	 * Picks the tenant to serve next: tenants below their minimum first,
+	 * then the tenant whose next task has the smallest finish tag. Tenants
+	 * at their maximum are skipped, and so are tenants whose next task needs
+	 * a platform thread while the module bound is reached.
+	 */
+	private Tenant nextTenant() {
+		Tenant next = null;
+		boolean nextBelowMin = false;
+		boolean platformAvailable = maxThreads <= 0 || running < maxThreads;
+
+		for (Tenant tenant : tenants.values()) {
+			if (tenant.queue.isEmpty()) {
+				continue;
+			}
+
+			if (tenant.max > 0 && tenant.running >= tenant.max) {
+				continue;
+			}
+
+			if (tenant.queue.peek().virtual == false && platformAvailable == false) {
+				continue;
+			}
+
+			boolean belowMin = tenant.running < tenant.min;
+
+			if (next == null
+					|| (belowMin && nextBelowMin == false)
+					|| (belowMin == nextBelowMin
+							&& tenant.nextFinish(virtualTime) < next.nextFinish(virtualTime))) {
+				next = tenant;
+				nextBelowMin = belowMin;
+			}
+		}
+
+		return next;
+	}
+
+	private static class Tenant {
+		private final String name;
+		private final int min;
+		private final int max;
+		private final double weight;
+
+		private final PriorityQueue<QueuedTask> queue =
+				new PriorityQueue<QueuedTask>(11, QUEUE_ORDER);
+		private int running = 0;
+		private double lastFinish = 0;
+
+		private Tenant(String name, int min, int max, double weight) {
+			this.name = name;
+			this.min = min;
+			this.max = max;
+			this.weight = weight > 0 ? weight : 1;
+		}
+
+		// Finish tag of the next task of the tenant in the weighted fair queue
+		private double nextFinish(double virtualTime) {
+			return Math.max(virtualTime, lastFinish) + 1.0 / weight;
+		}
+	}
+
+	private static final Comparator<QueuedTask> QUEUE_ORDER = new Comparator<QueuedTask>() {
+		@Override
+		public int compare(QueuedTask a, QueuedTask b) {
+			int c = a.priority.compareTo(b.priority);
+			if (c != 0) {
+				return c;
+			}
+			return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+		}
+	};
+
+	private static class QueuedTask {
+		private final Tenant tenant;
+		private final Runnable future;
+		private final TaskPriority priority;
+		private final long sequence;
+		private final boolean virtual;
+
+		private QueuedTask(Tenant tenant, Runnable future, TaskPriority priority,
+		                   long sequence, boolean virtual) {
+			this.tenant = tenant;
+			this.future = future;
+			this.priority = priority;
+			this.sequence = sequence;
+			this.virtual = virtual;
+		}
+	}
+}
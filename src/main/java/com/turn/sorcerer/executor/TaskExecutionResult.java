@@ -6,6 +6,7 @@
 
 package com.turn.sorcerer.executor;
 
+import com.turn.sorcerer.dependency.Dependency;
 import com.turn.sorcerer.metrics.MetricUnit;
 import com.turn.sorcerer.task.type.TaskType;
 
@@ -34,6 +35,7 @@ public class TaskExecutionResult {
 	private TaskType taskType;
 	private ExecutionStatus status;
 	private List<MetricUnit> metrics = Lists.newArrayList();
+	private Dependency blockingDependency;
 
 	public void setTask(TaskType taskType) {
 		this.taskType = taskType;
@@ -51,6 +53,17 @@ public class TaskExecutionResult {
 		return status;
 	}
 
+	/**
+	 * Dependency that was not met if the status is DEPENDENCY_FAILURE
+	 */
+	public Dependency getBlockingDependency() {
+		return blockingDependency;
+	}
+
+	public void setBlockingDependency(Dependency blockingDependency) {
+		this.blockingDependency = blockingDependency;
+	}
+
 	public void addMetric(MetricUnit metric) {
 		this.metrics.add(metric);
 	}
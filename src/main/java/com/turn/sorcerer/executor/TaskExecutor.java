@@ -43,12 +43,15 @@ public class TaskExecutor implements Callable<TaskExecutionResult>, Abortable {
 	public static final String COMPLETION_TIME_METRIC = "Task_Completion_Time";
 	public static final String SUCCESSFUL_FINISH_TIME_METRIC = "Successful_Finish_Time";
 
-	protected long taskStartTime = 0;
+	protected volatile long taskStartTime = 0;
 	protected long taskFinishTime = 0;
 
-	private ExecutableTask task = null;
+	private volatile ExecutableTask task = null;
 	private int jobId;
-	private boolean abortSignalReceived = false;
+	private volatile boolean abortSignalReceived = false;
+
+	// Set by the watchdog when the task exceeds its timeout
+	private volatile boolean timedOut = false;
 	protected final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy_MM_dd");
 
 	private TypedDictionary taskArgs;
@@ -118,11 +121,25 @@ public class TaskExecutor implements Callable<TaskExecutionResult>, Abortable {
 			// Skip if dependencies are not met
 			if (!task.checkDependencies()) {
 				status.setStatus(ExecutionStatus.DEPENDENCY_FAILURE);
-				LOGGER.debug("{} dependencies are not met. Exiting", task);
+				status.setBlockingDependency(task.getBlockingDependency());
+				LOGGER.debug("{} dependencies are not met ({}). Exiting",
+						task, task.getBlockingDependency());
 				return status;
 			}
+
+			task.addInputs(context);
+		}
+
+		try {
+			return execute(context, status);
+		} finally {
+			// The next iteration consumes the inputs after the watermarks
+			task.releaseInputs();
 		}
+	}
 
+	private TaskExecutionResult execute(Context context, TaskExecutionResult status)
+			throws SorcererException {
 		// Execute task
 		try {
 			LOGGER.info("Executing Task {}", task.name());
@@ -146,10 +163,18 @@ public class TaskExecutor implements Callable<TaskExecutionResult>, Abortable {
 			StatusManager.get().removeInProgressTaskStatus(taskType, jobId);
 		}
 
-		if (abortSignalReceived) {
+		if (timedOut) {
+			status.setStatus(ExecutionStatus.ERROR);
+			LOGGER.error("{} aborted after exceeding its timeout", task.name());
+			StatusManager.get().commitTaskStatus(taskType, jobId, Status.ERROR);
+		} else if (abortSignalReceived) {
 			status.setStatus(ExecutionStatus.ABORTED);
 		} else {
 			StatusManager.get().commitTaskStatus(taskType, jobId, Status.SUCCESS, true);
+
+			// Committed after the success status so that inputs are consumed
+			// again rather than skipped if the process stops in between
+			task.commitWatermarks();
 		}
 
 		return status;
@@ -168,9 +193,38 @@ public class TaskExecutor implements Callable<TaskExecutionResult>, Abortable {
 	 */
 	public void abort() {
 		this.abortSignalReceived = true;
-		LOGGER.info("Abort signal received, attempting to abort {}", task.toString());
+		LOGGER.info("Abort signal received, attempting to abort {}", taskType.getName());
 		if (this.task != null) {
 			this.task.abort();
 		}
 	}
+
+	/**
+	 * Attempt to gracefully abort a task that exceeded its timeout. The task
+	 * is marked as in error once it exits.
+	 */
+	public void timeout() {
+		this.timedOut = true;
+		abort();
+	}
+
+	public boolean isTimedOut() {
+		return this.timedOut;
+	}
+
+	public TaskType getTaskType() {
+		return this.taskType;
+	}
+
+	public int getJobId() {
+		return this.jobId;
+	}
+
+	/**
+	 * Time in epoch milliseconds at which the task started executing, 0 if
+	 * it has not started yet
+	 */
+	public long getStartTime() {
+		return this.taskStartTime;
+	}
 }
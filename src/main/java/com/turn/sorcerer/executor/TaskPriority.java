@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Priority of a task waiting for an execution slot
+ *
+ * <p>
+ * Tasks with the earliest SLA deadline come first. Tasks with the same
+ * deadline (or without SLA) are ordered by the length of the longest chain of
+ * tasks that still has to run after them, so the head of a long chain is not
+ * stuck behind leaf tasks. Ties are broken in submission order.
+ * </p>
+ *
+ * @author tshiou
+ */
+public class TaskPriority implements Comparable<TaskPriority> {
+
+	/**
+	 * Priority of tasks without SLA that are not part of a workflow
+	 */
+	public static final TaskPriority NONE = new TaskPriority(Long.MAX_VALUE, 0);
+
+	private final long deadline;
+	private final int remainingPath;
+
+	/**
+	 * @param deadline SLA deadline in epoch milliseconds, Long.MAX_VALUE if
+	 *                 there is no SLA
+	 * @param remainingPath Number of tasks in the longest chain of tasks
+	 *                      starting at the task
+	 */
+	public TaskPriority(long deadline, int remainingPath) {
+		this.deadline = deadline;
+		this.remainingPath = remainingPath;
+	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	public int getRemainingPath() {
+		return remainingPath;
+	}
+
+	@Override
+	public int compareTo(TaskPriority o) {
+		if (this.deadline != o.deadline) {
+			return this.deadline < o.deadline ? -1 : 1;
+		}
+
+		return o.remainingPath - this.remainingPath;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("deadline", this.deadline == Long.MAX_VALUE ? "none" : this.deadline)
+				.add("remainingPath", this.remainingPath)
+				.toString();
+	}
+}
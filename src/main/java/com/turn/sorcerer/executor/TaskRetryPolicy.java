@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import com.turn.sorcerer.task.type.TaskType;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry policy of failed tasks as configured in the task definition
+ *
+ * <p>
+ * A failed task is retried until it has been attempted {@code max_attempts}
+ * times, as long as the exception it failed with (or one of its causes) is
+ * one of the {@code retry_exceptions} of the task. The delay before a retry
+ * starts at {@code retry_delay}, doubles with each attempt up to
+ * {@code max_retry_delay}, and is randomized between half and all of that
+ * value so that tasks failing together do not retry together.
+ * </p>
+ *
+ * @author tshiou
+ */
+final class TaskRetryPolicy {
+
+	private static final Random RANDOM = new Random();
+
+	private TaskRetryPolicy() {
+
+	}
+
+	/**
+	 * Checks if a task should be retried after a failure
+	 *
+	 * @param t Failed task
+	 * @param attempts Number of attempts of the task so far, including the
+	 *                 failed one
+	 * @param cause Exception the task failed with
+	 */
+	static boolean shouldRetry(TaskType t, int attempts, Throwable cause) {
+		return attempts < t.getMaxAttempts() && isRetryable(t, cause);
+	}
+
+	/**
+	 * Checks if an exception or one of its causes is an instance of one of
+	 * the retryable exception classes of a task. All exceptions are
+	 * retryable if the task does not list any.
+	 */
+	static boolean isRetryable(TaskType t, Throwable cause) {
+		List<String> retryExceptions = t.getRetryExceptions();
+
+		if (retryExceptions == null || retryExceptions.isEmpty()) {
+			return true;
+		}
+
+		for (Throwable e = cause; e != null; e = e.getCause()) {
+			// Compare names up the class hierarchy so that the exception
+			// classes do not need to be loaded
+			for (Class<?> c = e.getClass(); c != null; c = c.getSuperclass()) {
+				if (retryExceptions.contains(c.getName())) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Delay before the next attempt of a task, in milliseconds
+	 *
+	 * @param t Failed task
+	 * @param attempts Number of attempts of the task so far, including the
+	 *                 failed one
+	 */
+	static long getBackoffMillis(TaskType t, int attempts) {
+		return getBackoffMillis(
+				TimeUnit.SECONDS.toMillis(t.getRetryDelay()),
+				TimeUnit.SECONDS.toMillis(t.getMaxRetryDelay()),
+				attempts, RANDOM.nextDouble());
+	}
+
+	static long getBackoffMillis(long baseDelay, long maxDelay, int attempts, double jitter) {
+		double delay = baseDelay * Math.pow(2, Math.max(0, attempts - 1));
+
+		if (maxDelay > 0) {
+			delay = Math.min(delay, maxDelay);
+		}
+
+		// Between half and all of the exponential delay
+		return (long) (delay / 2 + delay / 2 * jitter);
+	}
+}
@@ -6,21 +6,24 @@
 
 package com.turn.sorcerer.executor;
 
-import com.turn.sorcerer.injector.SorcererInjector;
+import com.turn.sorcerer.dependency.WatchableDependency;
+import com.turn.sorcerer.pipeline.executable.CompiledTaskGraph;
 import com.turn.sorcerer.pipeline.executable.ExecutablePipeline;
+import com.turn.sorcerer.status.Status;
 import com.turn.sorcerer.status.StatusManager;
 import com.turn.sorcerer.task.type.TaskType;
 
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,13 +45,27 @@ class TaskScheduler implements Runnable {
 
 	private boolean ignoreTaskComplete = false;
 	private boolean adhoc = false;
-	private boolean abort = false;
+	private volatile boolean abort = false;
 
-	private ListeningExecutorService executionPool;
+	// Futures of the tasks submitted to the shared execution pool
+	private ConcurrentMap<String, ListenableFuture<TaskExecutionResult>> taskFutures;
+
+	// Failed tasks waiting on the pipeline timer for their next attempt
+	private ConcurrentMap<String, ScheduledFuture<?>> pendingRetries;
+
+	// Blocked tasks waiting on the watch of their blocking dependency
+	private ConcurrentMap<String, PendingWatch> pendingWatches;
+
+	// Failed attempts of each task counted by this scheduler, for storage
+	// layers that do not record attempt counts
+	private final Map<String, Integer> attemptCounts = Maps.newHashMap();
+
+	// Task statuses read in bulk at the start of the periodic tick, null
+	// outside of the tick
+	private Map<String, Status> snapshot = null;
 
 	public TaskScheduler(ExecutablePipeline pipeline,
 	                     int jobId,
-	                     int numOfThreads,
 	                     Map<TaskType, Map<String, String>> taskArgMap,
 	                     boolean adhoc,
 	                     boolean overwriteTasks
@@ -59,122 +76,393 @@ class TaskScheduler implements Runnable {
 		this.jobId = jobId;
 		this.ignoreTaskComplete = overwriteTasks;
 
-		if (numOfThreads > 0) {
-			executionPool = MoreExecutors.listeningDecorator(
-					Executors.newFixedThreadPool(numOfThreads));
-		} else {
-			executionPool = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
-		}
 		runningTasks = Maps.newConcurrentMap();
+		taskFutures = Maps.newConcurrentMap();
+		pendingRetries = Maps.newConcurrentMap();
+		pendingWatches = Maps.newConcurrentMap();
 
 	}
 
+	/**
+	 * Periodic tick which refreshes the scheduling state of the pipeline
+	 *
+	 * <p>
+	 * Tasks are normally launched as soon as their parents complete (see
+	 * {@link #onTaskComplete(TaskType)}). The periodic tick is kept as a
+	 * safety net that picks up status changes made outside of this scheduler
+	 * (e.g. a manual status change) and retries the tasks that were deferred
+	 * because their task dependencies were not met or they were in error.
+	 * </p>
+	 */
 	@Override
-	public void run() {
+	public synchronized void run() {
 		if (abort) {
 			return;
 		}
 
 		logger.debug("Scheduling tasks for {}", pipeline);
-		logger.debug("pipeline: {} - Task map size: {}",
-				pipeline, pipeline.getTaskGraph().size());
 
-		int submittedTasks = 0;
+		pipeline.updatePipelineCompletion();
+		pipeline.getReadyQueue().promoteDeferred();
+
+		// Tasks of the tick are checked against the snapshot read by the
+		// completion update instead of reading their status one by one
+		snapshot = pipeline.getTaskStatuses();
+		int submittedTasks;
+		try {
+			submittedTasks = scheduleReadyTasks();
+		} finally {
+			snapshot = null;
+		}
+
+		logger.debug("pipeline:{} - Submitted {} tasks",
+				pipeline, submittedTasks);
+	}
+
+	/**
+	 * Updates the task completion map of the pipeline, serialized with the
+	 * scheduling of its tasks and with task completions
+	 */
+	public synchronized void updatePipelineCompletion() {
+		pipeline.updatePipelineCompletion();
+	}
+
+	/**
+	 * Records the success of a task in the pipeline
+	 */
+	public synchronized void updateTaskAsComplete(TaskType completed) {
+		pipeline.updateTaskAsComplete(completed);
+	}
+
+	/**
+	 * Marks a task as complete and launches the next tasks that became ready
+	 *
+	 * <p>
+	 * Called by {@link TaskCompletionListener} once a task exits so that the
+	 * next tasks in the workflow are launched immediately instead of waiting
+	 * for the next periodic tick. Only the tasks put on the ready queue by
+	 * the completion are evaluated.
+	 * </p>
+	 *
+	 * @param completed Task that has just finished executing
+	 */
+	public synchronized void onTaskComplete(TaskType completed) {
+		pipeline.getReadyQueue().markComplete(completed.getName());
+
+		if (abort) {
+			return;
+		}
+
+		int submittedTasks = scheduleReadyTasks();
+
+		logger.debug("pipeline:{} - {} completed, submitted {} tasks",
+				pipeline, completed.getName(), submittedTasks);
+	}
+
+	/**
+	 * Defers a task that has failed until the next periodic tick. The next
+	 * tasks are launched if the failed task has low criticality.
+	 *
+	 * @param failed Task that has just failed
+	 */
+	public synchronized void onTaskFailed(TaskType failed) {
+		if (failed.getCriticality() == TaskType.CRITICALITY.LOW && ignoreTaskComplete == false) {
+			pipeline.getReadyQueue().release(failed.getName());
+		}
+		pipeline.getReadyQueue().defer(failed.getName());
+
+		if (abort) {
+			return;
+		}
+
+		scheduleReadyTasks();
+	}
+
+	/**
+	 * Records a failed attempt of a task and schedules the next attempt if
+	 * the retry policy of the task allows it
+	 *
+	 * <p>
+	 * The error status of the task is removed so that the task is pending
+	 * while it waits for its next attempt. The wait happens in the delay
+	 * queue of the {@link PipelineTimer}, so no worker thread is held.
+	 * </p>
+	 *
+	 * @param failed Task that has just failed
+	 * @param cause Exception the task failed with
+	 * @return true if the task will be retried, false if it should be left
+	 *         in error
+	 */
+	public synchronized boolean retryTask(final TaskType failed, Throwable cause) {
+		Integer counted = attemptCounts.get(failed.getName());
+		int attempts = Math.max(StatusManager.get().getTaskAttemptCount(failed, jobId),
+				counted == null ? 0 : counted) + 1;
+		attemptCounts.put(failed.getName(), attempts);
+		StatusManager.get().commitTaskAttemptCount(failed, jobId, attempts);
+
+		if (abort || TaskRetryPolicy.shouldRetry(failed, attempts, cause) == false) {
+			return false;
+		}
 
-		for(Map.Entry<String, Collection<TaskType>> entry :
-				pipeline.getTaskGraph().asMap().entrySet()) {
+		long delay = TaskRetryPolicy.getBackoffMillis(failed, attempts);
 
-			// Check if all task dependencies are satisfied
-			TaskType t = SorcererInjector.get().getTaskType(entry.getKey());
+		StatusManager.get().removeErrorTaskStatus(failed, jobId);
 
-			if (runningTasks.containsKey(t.getName())) {
-				continue;
+		pendingRetries.put(failed.getName(), PipelineTimer.get().scheduleOnce(new Runnable() {
+			@Override
+			public void run() {
+				onRetry(failed);
 			}
+		}, delay, TimeUnit.MILLISECONDS));
+
+		logger.warn("pipeline:{} - {} failed on attempt {} of {}, retrying in {} ms",
+				pipeline, failed.getName(), attempts, failed.getMaxAttempts(), delay);
+
+		return true;
+	}
+
+	private synchronized void onRetry(TaskType t) {
+		pendingRetries.remove(t.getName());
+
+		if (abort) {
+			return;
+		}
+
+		if (scheduleTask(t)) {
+			logger.info("pipeline:{} - Submitted retry of {}", pipeline, t.getName());
+		}
+	}
+
+	/**
+	 * Defers a task that exited without running (e.g. dependencies not met)
+	 * until the next periodic tick
+	 *
+	 * @param task Task to defer
+	 */
+	public synchronized void deferTask(TaskType task) {
+		pipeline.getReadyQueue().defer(task.getName());
+	}
+
+	/**
+	 * Defers a task blocked by a dependency that can be watched. The task is
+	 * put back on the ready queue and launched as soon as the dependency is
+	 * met, or on the next periodic tick if that comes first.
+	 *
+	 * <p>
+	 * A task has at most one watch at a time. A task deferred again while
+	 * its watch is pending, e.g. by a periodic tick, keeps that watch, and is
+	 * watched again once it fires if it is still blocked.
+	 * </p>
+	 *
+	 * @param task Task to defer
+	 * @param blocking Dependency blocking the task
+	 */
+	public synchronized void deferTask(final TaskType task, WatchableDependency blocking) {
+		pipeline.getReadyQueue().defer(task.getName());
+
+		if (abort || pendingWatches.containsKey(task.getName())) {
+			return;
+		}
 
-			if (StatusManager.get().isTaskComplete(t, jobId)) {
-				continue;
+		final Runnable onMet = new Runnable() {
+			@Override
+			public void run() {
+				onDependencyMet(task);
+			}
+		};
+
+		// Watch callbacks run on storage threads (e.g. the ZooKeeper event
+		// thread or the thread committing the status), hand them off
+		Runnable callback = new Runnable() {
+			@Override
+			public void run() {
+				PipelineTimer.get().scheduleOnce(onMet, 0, TimeUnit.MILLISECONDS);
 			}
+		};
 
-			boolean dependencySuccess = true;
+		pendingWatches.put(task.getName(), new PendingWatch(blocking, callback));
 
-			// If no task dependencies, run task
-			for (TaskType taskDependency : entry.getValue()) {
-				if (taskDependency == null) {
-					continue;
-				}
+		if (blocking.watch(jobId, callback) == false) {
+			pendingWatches.remove(task.getName());
+		}
+	}
+
+	private synchronized void onDependencyMet(TaskType task) {
+		pendingWatches.remove(task.getName());
+
+		if (abort) {
+			return;
+		}
+
+		logger.debug("pipeline:{} - Dependency of {} met", pipeline, task.getName());
+
+		pipeline.getReadyQueue().promote(task.getName());
+		scheduleReadyTasks();
+	}
+
+	// Drains the ready queue, including tasks released while draining
+	private int scheduleReadyTasks() {
+		int submittedTasks = 0;
 
-				if (ignoreTaskComplete) {
-					if (pipeline.getTaskCompletionMap().get(taskDependency.getName()) == false) {
-						logger.debug("pipeline: {} - dependency for {}, {} not complete",
-								pipeline, t.getName(), taskDependency.getName());
-						dependencySuccess = false;
-					}
-				} else {
-					if (StatusManager.get().isTaskInError(taskDependency, jobId) == true) {
-
-						// If the task is in error, we can ignore it if criticality is low
-						if (taskDependency.getCriticality() == TaskType.CRITICALITY.HIGH) {
-							dependencySuccess = false;
-						}
-					} else if (StatusManager.get().isTaskComplete(taskDependency, jobId) == false) {
-						logger.debug("pipeline: {} - dependency for {}, {}:{} not complete",
-								pipeline, t.getName(), jobId, taskDependency.getName());
-						dependencySuccess = false;
-					}
+		List<TaskType> readyTasks = pipeline.getReadyQueue().poll();
+		while (readyTasks.isEmpty() == false) {
+			// Stable sort keeps the ready order for tasks of equal priority
+			Collections.sort(readyTasks, priorityOrder);
+
+			for (TaskType t : readyTasks) {
+				if (scheduleTask(t)) {
+					submittedTasks++;
 				}
 			}
+			readyTasks = pipeline.getReadyQueue().poll();
+		}
 
-			if (dependencySuccess == false) {
-				continue;
-			}
+		return submittedTasks;
+	}
+
+	/**
+	 * Submits a ready task for execution if it is not running and not
+	 * complete. All parents of the task in the workflow have completed
+	 * according to the ready queue.
+	 *
+	 * @return true if the task was submitted
+	 */
+	private boolean scheduleTask(TaskType t) {
+
+		if (runningTasks.containsKey(t.getName())
+				|| pendingRetries.containsKey(t.getName())) {
+			return false;
+		}
 
-			// If adhoc pipeline, then rely on task completion map
-			// to check if task should be run again
-			if (adhoc && pipeline.getTaskCompletionMap().get(t.getName())) {
-				continue;
+		Status status = snapshot != null && snapshot.containsKey(t.getName())
+				? snapshot.get(t.getName())
+				: StatusManager.get().checkTaskStatus(t.getName(), jobId);
+
+		if (Status.SUCCESS.equals(status)) {
+			// Completion of overwritten tasks is tracked by the pipeline instead
+			if (ignoreTaskComplete == false) {
+				pipeline.getReadyQueue().markComplete(t.getName());
 			}
+			return false;
+		}
+
+		// If adhoc pipeline, then rely on task completion map
+		// to check if task should be run again
+		if (adhoc && pipeline.getTaskCompletionMap().get(t.getName())) {
+			return false;
+		}
+
+		if (Status.ERROR.equals(status)) {
+			logger.debug("Task {}:{} is in error status, skipping", t.getName(), jobId);
 
-			if (StatusManager.get().isTaskInError(t, jobId)) {
-				logger.debug("Task {}:{} is in error status, skipping", t.getName(), jobId);
-				continue;
+			// If the task is in error, next tasks can proceed if criticality is low
+			if (t.getCriticality() == TaskType.CRITICALITY.LOW && ignoreTaskComplete == false) {
+				pipeline.getReadyQueue().release(t.getName());
 			}
+			pipeline.getReadyQueue().defer(t.getName());
+			return false;
+		}
 
-			// If the task returns that it is currently running, but it isn't in the running task
-			// list, we need to resolve it notify job owners
-			// This will happen if the PipelineExecutor thread was restarted while the task
-			// was still in progress. We don't want to spawn multiple instances of the same
-//			if (t.isExternalJob() &&
-//					StatusManager.get().isTaskRunning(t, jobId) &&
-//					runningTasks.contains(t.getName()) == false) {
-//				logger.warn("{}:{} is already running.", t.getName(), jobId);
-//				new Emailer(t.getName() + ":" + jobId + " has a previous iteration running",
-//						"This needs to be resolved manually").send();
+		// If the task returns that it is currently running, but it isn't in the running task
+		// list, we need to resolve it notify job owners
+		// This will happen if the PipelineExecutor thread was restarted while the task
+		// was still in progress. We don't want to spawn multiple instances of the same
+//		if (t.isExternalJob() &&
+//				StatusManager.get().isTaskRunning(t, jobId) &&
+//				runningTasks.contains(t.getName()) == false) {
+//			logger.warn("{}:{} is already running.", t.getName(), jobId);
+//			new Emailer(t.getName() + ":" + jobId + " has a previous iteration running",
+//					"This needs to be resolved manually").send();
 //
-//				// Commit error status
-//				StatusManager.get().commitTaskStatus(t, jobId, Status.ERROR);
-//				continue;
-//			}
+//			// Commit error status
+//			StatusManager.get().commitTaskStatus(t, jobId, Status.ERROR);
+//			return false;
+//		}
+
+		// Submit task for execution
+		logger.debug("pipeline:{} - Submitting task {}",
+				pipeline.name(), t.getName());
+
+		// Register the task as running before submitting it so that a fast
+		// completion callback cannot race with the registration
+		TaskExecutor executor = new TaskExecutor(t, jobId, taskArgMap.get(t), adhoc);
+		runningTasks.put(t.getName(), executor);
+		ListenableFuture<TaskExecutionResult> future = TaskExecutionPool.get().submit(
+				pipeline.getPipelineType(), executor, isVirtualThreads(t), getPriority(t));
+		taskFutures.put(t.getName(), future);
+		TaskWatchdog.get().watch(executor, future);
+		TaskCompletionListener callback =
+				new TaskCompletionListener(t, runningTasks, pipeline, this);
+		Futures.addCallback(future, callback);
+
+		return true;
+	}
+
+	/**
+	 * Priority of a task based on the compiled workflow: the SLA deadline of
+	 * the task or of the earliest task after it, then the length of the
+	 * longest chain of tasks starting at the task
+	 */
+	private TaskPriority getPriority(TaskType t) {
+		CompiledTaskGraph graph = pipeline.getReadyQueue().getGraph();
+		int i = graph.indexOf(t.getName());
+
+		if (i < 0) {
+			return TaskPriority.NONE;
+		}
 
-			// Submit task for execution
-			logger.debug("pipeline:{} - Submitting task {}",
-					pipeline.name(), t.getName());
+		int sla = graph.getDownstreamSLA(i);
+		long deadline = sla > 0
+				? pipeline.getReadyQueue().getStartTime() + TimeUnit.SECONDS.toMillis(sla)
+				: Long.MAX_VALUE;
 
-			TaskExecutor executor = new TaskExecutor(t, jobId, taskArgMap.get(t), adhoc);
-			ListenableFuture<TaskExecutionResult> future = executionPool.submit(executor);
-			runningTasks.put(t.getName(), executor);
-			TaskCompletionListener callback = new TaskCompletionListener(t, runningTasks, pipeline);
-			Futures.addCallback(future, callback);
-			submittedTasks++;
+		return new TaskPriority(deadline, graph.getRemainingPath(i));
+	}
+
+	private final Comparator<TaskType> priorityOrder = new Comparator<TaskType>() {
+		@Override
+		public int compare(TaskType a, TaskType b) {
+			return getPriority(a).compareTo(getPriority(b));
 		}
+	};
 
-		logger.debug("pipeline:{} - Submitted {} tasks",
-				pipeline, submittedTasks);
+	// Task-level execution mode overrides the pipeline-level mode
+	private boolean isVirtualThreads(TaskType t) {
+		if (t.getVirtualThreads() != null) {
+			return t.getVirtualThreads();
+		}
+
+		return pipeline.getPipelineType().isVirtualThreads();
 	}
 
 	public void abort() {
 		logger.debug("Shutting down pipeline executor for {}", pipeline);
 		this.abort = true;
-		executionPool.shutdownNow();
+
+		// Interrupt running tasks and drop queued tasks of this pipeline
+		// instance from the shared execution pool
+		for (ListenableFuture<TaskExecutionResult> future : taskFutures.values()) {
+			future.cancel(true);
+		}
+
+		for (ScheduledFuture<?> retry : pendingRetries.values()) {
+			retry.cancel(false);
+		}
+
+		// Watches outlive the pipeline instance otherwise
+		for (PendingWatch watch : pendingWatches.values()) {
+			watch.dependency.unwatch(jobId, watch.callback);
+		}
+		pendingWatches.clear();
+	}
+
+	/**
+	 * Drops the future of a task that has exited. Called by
+	 * {@link TaskCompletionListener} before the task is rescheduled, so that
+	 * the futures of past attempts are not kept until the pipeline ends.
+	 */
+	void removeTaskFuture(String taskName) {
+		taskFutures.remove(taskName);
 	}
 
 	public boolean isTaskRunning(String taskName) {
@@ -186,4 +474,14 @@ class TaskScheduler implements Runnable {
 			this.runningTasks.get(taskName).abort();
 		}
 	}
+
+	private static class PendingWatch {
+		private final WatchableDependency dependency;
+		private final Runnable callback;
+
+		private PendingWatch(WatchableDependency dependency, Runnable callback) {
+			this.dependency = dependency;
+			this.callback = callback;
+		}
+	}
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusManager;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Enforces the execution timeout of tasks: a task past its deadline is
+ * aborted, then interrupted and marked as {@code ERROR}, and finally its
+ * execution slot is given back to the pool
+ *
+ * @author tshiou
+ */
+public class TaskWatchdog {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(TaskWatchdog.class);
+
+	// Time given to a task to react to each stage before the next one
+	private static final long DEFAULT_GRACE_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+	private static class Holder {
+		private static final TaskWatchdog INSTANCE = new TaskWatchdog(
+				PipelineTimer.get(), TaskExecutionPool.get(), DEFAULT_GRACE_MILLIS);
+	}
+
+	public static TaskWatchdog get() {
+		return Holder.INSTANCE;
+	}
+
+	private final PipelineTimer timer;
+	private final TaskExecutionPool pool;
+	private final long graceMillis;
+
+	TaskWatchdog(PipelineTimer timer, TaskExecutionPool pool, long graceMillis) {
+		this.timer = timer;
+		this.pool = pool;
+		this.graceMillis = graceMillis;
+	}
+
+	/**
+	 * Enforces the timeout of a task submitted to the execution pool. Does
+	 * nothing if the task does not have a timeout.
+	 *
+	 * @param executor Executor of the task
+	 * @param future Future returned by the execution pool for the executor
+	 */
+	public void watch(TaskExecutor executor, Future<?> future) {
+		int timeout = executor.getTaskType().getTimeout();
+
+		if (timeout <= 0) {
+			return;
+		}
+
+		watch(executor, future, TimeUnit.SECONDS.toMillis(timeout));
+	}
+
+	void watch(TaskExecutor executor, Future<?> future, long timeoutMillis) {
+		schedule(new Check(executor, future, timeoutMillis), timeoutMillis);
+	}
+
+	private void schedule(Runnable stage, long delayMillis) {
+		timer.scheduleOnce(stage, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	// Checks the deadline of a task, the deadline counts from the start of
+	// the execution of the task and not from its submission
+	private class Check implements Runnable {
+		private final TaskExecutor executor;
+		private final Future<?> future;
+		private final long timeoutMillis;
+
+		private Check(TaskExecutor executor, Future<?> future, long timeoutMillis) {
+			this.executor = executor;
+			this.future = future;
+			this.timeoutMillis = timeoutMillis;
+		}
+
+		@Override
+		public void run() {
+			if (future.isDone()) {
+				return;
+			}
+
+			long startTime = executor.getStartTime();
+
+			// Still waiting for a slot or checking its dependencies
+			if (startTime == 0) {
+				schedule(this, timeoutMillis);
+				return;
+			}
+
+			long remaining = startTime + timeoutMillis - System.currentTimeMillis();
+
+			if (remaining > 0) {
+				schedule(this, remaining);
+				return;
+			}
+
+			logger.warn("{}:{} exceeded its timeout of {} ms, aborting",
+					executor.getTaskType().getName(), executor.getJobId(), timeoutMillis);
+
+			executor.timeout();
+
+			schedule(new Interrupt(executor, future), graceMillis);
+		}
+
+		@Override
+		public String toString() {
+			return "timeout check of " + executor.getTaskType().getName();
+		}
+	}
+
+	private class Interrupt implements Runnable {
+		private final TaskExecutor executor;
+		private final Future<?> future;
+
+		private Interrupt(TaskExecutor executor, Future<?> future) {
+			this.executor = executor;
+			this.future = future;
+		}
+
+		@Override
+		public void run() {
+			if (future.isDone()) {
+				return;
+			}
+
+			logger.warn("{}:{} did not abort, interrupting",
+					executor.getTaskType().getName(), executor.getJobId());
+
+			StatusManager.get().removeInProgressTaskStatus(
+					executor.getTaskType(), executor.getJobId());
+			StatusManager.get().commitTaskStatus(
+					executor.getTaskType(), executor.getJobId(), Status.ERROR);
+
+			future.cancel(true);
+
+			schedule(new Abandon(executor, future), graceMillis);
+		}
+	}
+
+	private class Abandon implements Runnable {
+		private final TaskExecutor executor;
+		private final Future<?> future;
+
+		private Abandon(TaskExecutor executor, Future<?> future) {
+			this.executor = executor;
+			this.future = future;
+		}
+
+		@Override
+		public void run() {
+			if (pool.abandon(future)) {
+				logger.error("{}:{} did not respond to interruption, "
+								+ "releasing its execution slot and abandoning its thread",
+						executor.getTaskType().getName(), executor.getJobId());
+			}
+		}
+	}
+}
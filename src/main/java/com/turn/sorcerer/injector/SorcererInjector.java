@@ -11,11 +11,14 @@ import com.turn.sorcerer.module.ModuleType;
 import com.turn.sorcerer.pipeline.Pipeline;
 import com.turn.sorcerer.pipeline.type.PipelineType;
 import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.impl.CachingStatusStorage;
+import com.turn.sorcerer.status.impl.ExecutorStatusStorage;
 import com.turn.sorcerer.task.Task;
 import com.turn.sorcerer.task.type.TaskType;
 import com.turn.sorcerer.util.email.EmailType;
 
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.google.inject.ConfigurationException;
 import com.google.inject.Guice;
@@ -216,10 +219,19 @@ public class SorcererInjector {
 	}
 
 	/**
-	 * Provides an instance of the storage layer
+	 * Provides an instance of the storage layer with an asynchronous API
+	 * (see {@link ExecutorStatusStorage}), behind a status cache if the
+	 * module enables it
 	 */
 	public StatusStorage getStorageInstance() {
-		return INJECTOR.getInstance(StatusStorage.class);
+		StatusStorage storage = ExecutorStatusStorage.wrap(INJECTOR.getInstance(StatusStorage.class));
+
+		Integer ttl = getModule().getStatusCacheTTL();
+		if (ttl != null && ttl > 0) {
+			return CachingStatusStorage.wrap(storage, TimeUnit.SECONDS.toMillis(ttl));
+		}
+
+		return storage;
 	}
 
 }
@@ -25,8 +25,22 @@ public class ModuleType {
 
 	private EmailType email = new EmailType();
 
+	// Days iteration statuses are kept, 0 keeps them forever
 	private Integer retention = 0;
 
+	// Max number of expired iterations deleted per second
+	private Integer retention_rate = 100;
+
+	private Integer threads = 0;
+
+	private Integer dependency_threads = 16;
+
+	// Seconds statuses are cached in memory, 0 disables the cache
+	private Integer status_cache_ttl = 0;
+
+	// Milliseconds status writes are delayed to be coalesced, 0 writes them right away
+	private Integer status_write_delay = 0;
+
 	private List<String> packages;
 
 	private StatusStorageType storage;
@@ -51,12 +65,41 @@ public class ModuleType {
 		return this.pipelines;
 	}
 
+	public Integer getThreads() {
+		return this.threads;
+	}
+
+	public Integer getDependencyThreads() {
+		return this.dependency_threads;
+	}
+
+	public Integer getStatusCacheTTL() {
+		return this.status_cache_ttl;
+	}
+
+	public Integer getStatusWriteDelay() {
+		return this.status_write_delay;
+	}
+
+	public Integer getRetention() {
+		return this.retention;
+	}
+
+	public Integer getRetentionRate() {
+		return this.retention_rate;
+	}
+
 	public String toString() {
 		return MoreObjects.toStringHelper(this)
 				.add("name", this.name)
 				.add("pipelines", this.pipelines)
 				.add("email", this.email.isEnabled() ? this.email.toString() : "disabled")
 				.add("storage", this.storage.name())
+				.add("threads", this.threads)
+				.add("dependency_threads", this.dependency_threads)
+				.add("status_cache_ttl", this.status_cache_ttl)
+				.add("status_write_delay", this.status_write_delay)
+				.add("retention", this.retention)
 				.toString();
 	}
 }
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.pipeline.executable;
+
+import com.turn.sorcerer.task.type.TaskType;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Immutable, integer-indexed representation of a pipeline workflow DAG
+ *
+ * <p>
+ * Tasks are indexed in topological order so that the parents of a task
+ * always have a lower index than the task itself. Parent and child edges are
+ * stored as arrays of task indexes which makes walking the graph cheap
+ * compared to the {@code SetMultimap} representation kept by
+ * {@link ExecutablePipeline}.
+ * </p>
+ *
+ * @author tshiou
+ */
+public class CompiledTaskGraph {
+
+	private static final int[] NO_EDGES = new int[0];
+
+	private final TaskType[] tasks;
+	private final ImmutableMap<String, Integer> index;
+	private final int[][] parents;
+	private final int[][] children;
+
+	// Number of tasks in the longest chain starting at each task
+	private final int[] remainingPath;
+
+	// Smallest SLA of each task and all of its descendants, -1 if none
+	private final int[] downstreamSLA;
+
+	private CompiledTaskGraph(TaskType[] tasks, ImmutableMap<String, Integer> index,
+	                          int[][] parents, int[][] children) {
+		this.tasks = tasks;
+		this.index = index;
+		this.parents = parents;
+		this.children = children;
+		this.remainingPath = new int[tasks.length];
+		this.downstreamSLA = new int[tasks.length];
+
+		// Children always have a higher index so walk the graph backwards
+		for (int i = tasks.length - 1; i >= 0; i--) {
+			int sla = tasks[i].getSLA() > 0 ? tasks[i].getSLA() : -1;
+			int path = 0;
+
+			for (int child : children[i]) {
+				path = Math.max(path, remainingPath[child]);
+
+				if (downstreamSLA[child] > 0 && (sla < 0 || downstreamSLA[child] < sla)) {
+					sla = downstreamSLA[child];
+				}
+			}
+
+			remainingPath[i] = path + 1;
+			downstreamSLA[i] = sla;
+		}
+	}
+
+	/**
+	 * Compiles a collection of task types into a DAG
+	 *
+	 * <p>
+	 * Edges are built from {@link TaskType#getNextTaskNames()}. Next tasks
+	 * that are not part of the provided collection are ignored.
+	 * </p>
+	 *
+	 * @param taskTypes All tasks of the pipeline
+	 * @return Compiled graph
+	 * @throws IllegalArgumentException if the workflow contains a cycle
+	 */
+	public static CompiledTaskGraph compile(Collection<TaskType> taskTypes) {
+		Map<String, TaskType> byName = Maps.newLinkedHashMap();
+		for (TaskType t : taskTypes) {
+			byName.put(t.getName(), t);
+		}
+
+		// Count parents of each task
+		Map<String, Integer> inDegree = Maps.newLinkedHashMap();
+		for (String name : byName.keySet()) {
+			inDegree.put(name, 0);
+		}
+		for (TaskType t : byName.values()) {
+			for (String next : nextTasks(t, byName)) {
+				inDegree.put(next, inDegree.get(next) + 1);
+			}
+		}
+
+		// Kahn's algorithm to assign indexes in topological order
+		Deque<String> queue = new ArrayDeque<String>();
+		for (Map.Entry<String, Integer> entry : inDegree.entrySet()) {
+			if (entry.getValue() == 0) {
+				queue.add(entry.getKey());
+			}
+		}
+
+		List<TaskType> ordered = Lists.newArrayListWithCapacity(byName.size());
+		while (queue.isEmpty() == false) {
+			TaskType t = byName.get(queue.poll());
+			ordered.add(t);
+
+			for (String next : nextTasks(t, byName)) {
+				int remaining = inDegree.get(next) - 1;
+				inDegree.put(next, remaining);
+				if (remaining == 0) {
+					queue.add(next);
+				}
+			}
+		}
+
+		if (ordered.size() != byName.size()) {
+			throw new IllegalArgumentException("Cycle detected in workflow containing tasks "
+					+ byName.keySet());
+		}
+
+		ImmutableMap.Builder<String, Integer> indexBuilder = ImmutableMap.builder();
+		TaskType[] tasks = new TaskType[ordered.size()];
+		for (int i = 0; i < tasks.length; i++) {
+			tasks[i] = ordered.get(i);
+			indexBuilder.put(tasks[i].getName(), i);
+		}
+		ImmutableMap<String, Integer> index = indexBuilder.build();
+
+		List<List<Integer>> parentLists = Lists.newArrayListWithCapacity(tasks.length);
+		for (int i = 0; i < tasks.length; i++) {
+			parentLists.add(Lists.<Integer>newArrayList());
+		}
+
+		int[][] children = new int[tasks.length][];
+		for (int i = 0; i < tasks.length; i++) {
+			List<String> next = nextTasks(tasks[i], byName);
+			children[i] = next.isEmpty() ? NO_EDGES : new int[next.size()];
+			for (int j = 0; j < next.size(); j++) {
+				int child = index.get(next.get(j));
+				children[i][j] = child;
+				parentLists.get(child).add(i);
+			}
+		}
+
+		int[][] parents = new int[tasks.length][];
+		for (int i = 0; i < tasks.length; i++) {
+			parents[i] = toArray(parentLists.get(i));
+		}
+
+		return new CompiledTaskGraph(tasks, index, parents, children);
+	}
+
+	// Distinct next task names that are part of the graph
+	private static List<String> nextTasks(TaskType t, Map<String, TaskType> byName) {
+		List<String> next = Lists.newArrayList();
+
+		if (t.getNextTaskNames() == null) {
+			return next;
+		}
+
+		for (String name : t.getNextTaskNames()) {
+			if (name != null && byName.containsKey(name) && next.contains(name) == false) {
+				next.add(name);
+			}
+		}
+
+		return next;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		if (list.isEmpty()) {
+			return NO_EDGES;
+		}
+
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Number of tasks in the graph
+	 */
+	public int size() {
+		return tasks.length;
+	}
+
+	/**
+	 * Provides the index of a task, or -1 if the task is not in the graph
+	 */
+	public int indexOf(String taskName) {
+		Integer i = index.get(taskName);
+		return i == null ? -1 : i;
+	}
+
+	public TaskType getTask(int i) {
+		return tasks[i];
+	}
+
+	/**
+	 * Indexes of the tasks that must complete before task {@code i} can run.
+	 * The returned array must not be modified.
+	 */
+	public int[] getParents(int i) {
+		return parents[i];
+	}
+
+	/**
+	 * Indexes of the next tasks of task {@code i}. The returned array must
+	 * not be modified.
+	 */
+	public int[] getChildren(int i) {
+		return children[i];
+	}
+
+	/**
+	 * Number of tasks in the longest chain of tasks starting at task
+	 * {@code i}, including the task itself
+	 */
+	public int getRemainingPath(int i) {
+		return remainingPath[i];
+	}
+
+	/**
+	 * Smallest SLA in seconds of task {@code i} and all tasks after it in the
+	 * workflow, or -1 if none of them has an SLA. The task has to complete
+	 * within this SLA for the SLAs of the next tasks to be met.
+	 */
+	public int getDownstreamSLA(int i) {
+		return downstreamSLA[i];
+	}
+}
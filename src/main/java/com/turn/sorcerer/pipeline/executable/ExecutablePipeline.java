@@ -8,14 +8,19 @@ package com.turn.sorcerer.pipeline.executable;
 
 import com.turn.sorcerer.injector.SorcererInjector;
 import com.turn.sorcerer.pipeline.type.PipelineType;
+import com.turn.sorcerer.status.Status;
 import com.turn.sorcerer.status.StatusManager;
 import com.turn.sorcerer.task.type.TaskType;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Class Description Here
@@ -28,9 +33,20 @@ public abstract class ExecutablePipeline {
 
 	protected Map<String, Boolean> taskCompletionMap;
 
+	// Statuses of all tasks of the iteration, read in a single bulk read on
+	// the last completion update
+	private volatile Map<String, Status> taskStatuses = Collections.emptyMap();
+
+	// Read of the task statuses started ahead of the next completion update
+	private final AtomicReference<ListenableFuture<Map<String, Status>>> prefetch =
+			new AtomicReference<ListenableFuture<Map<String, Status>>>();
+
 	// Map representation of workflow graph
 	protected SetMultimap<String, TaskType> taskGraph;
 
+	// Compiled workflow graph and scheduling state of this iteration
+	protected TaskReadyQueue readyQueue;
+
 	// This should never be used
 	private ExecutablePipeline() {
 		this.iterationNum = -1;
@@ -52,7 +68,10 @@ public abstract class ExecutablePipeline {
 		}
 
 		// Initialize list of tasks in pipeline
-		initTask(initTask);
+		Map<String, TaskType> tasks = Maps.newLinkedHashMap();
+		initTask(initTask, tasks);
+		readyQueue = new TaskReadyQueue(CompiledTaskGraph.compile(tasks.values()));
+
 		updatePipelineCompletion();
 	}
 
@@ -64,14 +83,19 @@ public abstract class ExecutablePipeline {
 		return iterationNum;
 	}
 
+	public PipelineType getPipelineType() {
+		return pipelineType;
+	}
+
 	// recursive init task
-	private void initTask(TaskType task) {
+	private void initTask(TaskType task, Map<String, TaskType> tasks) {
 
 		if (task == null) {
 			return;
 		}
 
 		taskCompletionMap.put(task.getName(), false);
+		tasks.put(task.getName(), task);
 
 		if (task.getNextTaskNames() == null) {
 			return;
@@ -86,19 +110,61 @@ public abstract class ExecutablePipeline {
 			TaskType nextTask = SorcererInjector.get().getTaskType(nextTaskName);
 			taskGraph.put(nextTask.getName(), task);
 
-			initTask(nextTask);
+			initTask(nextTask, tasks);
 		}
 	}
 
 	public void updateTaskAsComplete(TaskType task) {
 		taskCompletionMap.put(task.getName(), true);
-		updatePipelineCompletion();
+		readyQueue.markComplete(task.getName());
+
+		// A prefetch started before the task committed its status would
+		// mark it incomplete again
+		prefetch.set(null);
+		updatePipelineCompletion(false);
 	}
 
 	public boolean isCompleted() {
 		return StatusManager.get().isPipelineComplete(this.pipelineType, this.iterationNum);
 	}
 
+	/**
+	 * Starts reading the statuses of all tasks of the iteration without
+	 * waiting for the result, which is used by the next periodic completion
+	 * update (see {@link #updatePipelineCompletion()}). Prefetching several
+	 * iterations before updating them keeps their reads outstanding at once
+	 * instead of issuing them one at a time.
+	 */
+	public void prefetchTaskStatuses() {
+		prefetch.set(StatusManager.get().checkTaskStatusesAsync(
+				taskCompletionMap.keySet(), this.iterationNum));
+	}
+
+	/**
+	 * Reads the statuses of all tasks of the iteration in a single bulk read
+	 * of the storage layer, or takes the prefetched ones if allowed, and
+	 * keeps them as the snapshot of the iteration
+	 */
+	protected Map<String, Status> refreshTaskStatuses(boolean usePrefetch) {
+		ListenableFuture<Map<String, Status>> prefetched =
+				usePrefetch ? prefetch.getAndSet(null) : null;
+
+		// Failed reads are already replaced by pending statuses
+		taskStatuses = prefetched != null
+				? Futures.getUnchecked(prefetched)
+				: StatusManager.get().checkTaskStatuses(taskCompletionMap.keySet(), this.iterationNum);
+		return taskStatuses;
+	}
+
+	/**
+	 * Statuses of all tasks of the iteration as of the last completion update
+	 * (see {@link #updatePipelineCompletion()}). The snapshot is not updated
+	 * when tasks are committed in between.
+	 */
+	public Map<String, Status> getTaskStatuses() {
+		return taskStatuses;
+	}
+
 	public Map<String, Boolean> getTaskCompletionMap() {
 		return taskCompletionMap;
 	}
@@ -107,10 +173,37 @@ public abstract class ExecutablePipeline {
 		return taskGraph;
 	}
 
+	public TaskReadyQueue getReadyQueue() {
+		return readyQueue;
+	}
+
+	/**
+	 * Propagates the task completion map to the ready queue so that changes
+	 * made in the storage layer outside of the task scheduler (e.g. a status
+	 * manually set or cleared) are reflected in the scheduling state.
+	 */
+	protected void syncReadyQueue() {
+		for (Map.Entry<String, Boolean> entry : taskCompletionMap.entrySet()) {
+			if (entry.getValue()) {
+				readyQueue.markComplete(entry.getKey());
+			} else {
+				readyQueue.markIncomplete(entry.getKey());
+			}
+		}
+	}
+
 	public String toString() {
 		return pipelineType.getName() + ":" + iterationNum;
 	}
 
-	public abstract void updatePipelineCompletion();
+	/**
+	 * Updates the task completion map from the storage layer, taking the
+	 * prefetched task statuses if any
+	 */
+	public void updatePipelineCompletion() {
+		updatePipelineCompletion(true);
+	}
+
+	protected abstract void updatePipelineCompletion(boolean usePrefetch);
 }
 
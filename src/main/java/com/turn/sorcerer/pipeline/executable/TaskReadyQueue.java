@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.pipeline.executable;
+
+import com.turn.sorcerer.task.type.TaskType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Per-iteration scheduling state of a {@link CompiledTaskGraph}, keeping the
+ * number of pending parents of every task and the tasks ready to run
+ *
+ * @author tshiou
+ */
+public class TaskReadyQueue {
+
+	private final CompiledTaskGraph graph;
+
+	private final int[] pendingParents;
+	private final boolean[] complete;
+
+	// Children of the task have been released (counters decremented)
+	private final boolean[] released;
+
+	// Task is either on the ready queue or the deferred queue
+	private final boolean[] queued;
+
+	private final Deque<Integer> ready = new ArrayDeque<Integer>();
+	private final Deque<Integer> deferred = new ArrayDeque<Integer>();
+
+	// Time the iteration started being scheduled, SLAs are relative to it
+	private final long startTime = System.currentTimeMillis();
+
+	public TaskReadyQueue(CompiledTaskGraph graph) {
+		this.graph = graph;
+		this.pendingParents = new int[graph.size()];
+		this.complete = new boolean[graph.size()];
+		this.released = new boolean[graph.size()];
+		this.queued = new boolean[graph.size()];
+
+		for (int i = 0; i < graph.size(); i++) {
+			pendingParents[i] = graph.getParents(i).length;
+			enqueue(i);
+		}
+	}
+
+	/**
+	 * Removes and returns all tasks currently on the ready queue, in the
+	 * order in which they became ready
+	 */
+	public synchronized List<TaskType> poll() {
+		List<TaskType> tasks = Lists.newArrayListWithCapacity(ready.size());
+
+		while (ready.isEmpty() == false) {
+			int i = ready.poll();
+			queued[i] = false;
+
+			// State may have changed since the task was queued
+			if (complete[i] || pendingParents[i] > 0) {
+				continue;
+			}
+
+			tasks.add(graph.getTask(i));
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Marks a task as successfully completed and releases its children
+	 */
+	public synchronized void markComplete(String taskName) {
+		int i = graph.indexOf(taskName);
+
+		if (i < 0 || complete[i]) {
+			return;
+		}
+
+		complete[i] = true;
+		releaseChildren(i);
+	}
+
+	/**
+	 * Marks a previously completed task as not complete, for example when
+	 * its status was cleared in the storage layer, and puts it back on the
+	 * ready queue if its parents are complete.
+	 */
+	public synchronized void markIncomplete(String taskName) {
+		int i = graph.indexOf(taskName);
+
+		if (i < 0 || complete[i] == false) {
+			return;
+		}
+
+		complete[i] = false;
+
+		if (released[i]) {
+			released[i] = false;
+			for (int child : graph.getChildren(i)) {
+				pendingParents[child]++;
+			}
+		}
+
+		enqueue(i);
+	}
+
+	/**
+	 * Releases the children of a task without marking the task as complete.
+	 * Used for failed tasks with low criticality.
+	 */
+	public synchronized void release(String taskName) {
+		int i = graph.indexOf(taskName);
+
+		if (i < 0) {
+			return;
+		}
+
+		releaseChildren(i);
+	}
+
+	/**
+	 * Defers a ready task until the next call to {@link #promoteDeferred()}
+	 */
+	public synchronized void defer(String taskName) {
+		int i = graph.indexOf(taskName);
+
+		if (i < 0 || complete[i] || queued[i]) {
+			return;
+		}
+
+		queued[i] = true;
+		deferred.add(i);
+	}
+
+	/**
+	 * Moves a deferred task back onto the ready queue without waiting for
+	 * the next call to {@link #promoteDeferred()}
+	 */
+	public synchronized void promote(String taskName) {
+		int i = graph.indexOf(taskName);
+
+		if (i >= 0 && deferred.remove(i)) {
+			ready.add(i);
+		}
+	}
+
+	/**
+	 * Moves all deferred tasks back onto the ready queue
+	 */
+	public synchronized void promoteDeferred() {
+		ready.addAll(deferred);
+		deferred.clear();
+	}
+
+	public synchronized boolean isComplete(String taskName) {
+		int i = graph.indexOf(taskName);
+		return i >= 0 && complete[i];
+	}
+
+	public CompiledTaskGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Time in epoch milliseconds at which the iteration started being
+	 * scheduled
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	private void releaseChildren(int i) {
+		if (released[i]) {
+			return;
+		}
+
+		released[i] = true;
+
+		for (int child : graph.getChildren(i)) {
+			pendingParents[child]--;
+			enqueue(child);
+		}
+	}
+
+	private void enqueue(int i) {
+		if (complete[i] || queued[i] || pendingParents[i] > 0) {
+			return;
+		}
+
+		queued[i] = true;
+		ready.add(i);
+	}
+}
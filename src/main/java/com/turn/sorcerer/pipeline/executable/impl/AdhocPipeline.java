@@ -9,9 +9,11 @@ package com.turn.sorcerer.pipeline.executable.impl;
 import com.turn.sorcerer.injector.SorcererInjector;
 import com.turn.sorcerer.pipeline.executable.ExecutablePipeline;
 import com.turn.sorcerer.pipeline.type.PipelineType;
-import com.turn.sorcerer.status.StatusManager;
+import com.turn.sorcerer.status.Status;
 import com.turn.sorcerer.task.type.TaskType;
 
+import java.util.Map;
+
 /**
  * Class Description Here
  *
@@ -33,18 +35,21 @@ public class AdhocPipeline extends ExecutablePipeline {
 	 *
 	 */
 	@Override
-	public void updatePipelineCompletion() {
+	protected void updatePipelineCompletion(boolean usePrefetch) {
 		if (overwriteTasks == false) {
 			return;
 		}
 
 		// Check task completion
+		Map<String, Status> statuses = refreshTaskStatuses(usePrefetch);
+
 		for (String t : taskCompletionMap.keySet()) {
-			if (StatusManager.get().isTaskComplete(
-					SorcererInjector.get().getTaskType(t), this.iterationNum)) {
+			if (Status.SUCCESS.equals(statuses.get(t))) {
 				taskCompletionMap.put(t, true);
 			}
 		}
+
+		syncReadyQueue();
 	}
 
 	@Override
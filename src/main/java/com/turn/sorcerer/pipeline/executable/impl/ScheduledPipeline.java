@@ -6,7 +6,6 @@
 
 package com.turn.sorcerer.pipeline.executable.impl;
 
-import com.turn.sorcerer.injector.SorcererInjector;
 import com.turn.sorcerer.pipeline.executable.ExecutablePipeline;
 import com.turn.sorcerer.pipeline.type.PipelineType;
 import com.turn.sorcerer.status.Status;
@@ -37,18 +36,16 @@ public class ScheduledPipeline extends ExecutablePipeline {
 	 *
 	 */
 	@Override
-	public void updatePipelineCompletion() {
+	protected void updatePipelineCompletion(boolean usePrefetch) {
 		Map<String, Boolean> newTaskCompletionMap = Maps.newConcurrentMap();
+		Map<String, Status> statuses = refreshTaskStatuses(usePrefetch);
 
 		for (String t : taskCompletionMap.keySet()) {
-			newTaskCompletionMap.put(t, false);
-			if (StatusManager.get().isTaskComplete(
-					SorcererInjector.get().getTaskType(t), this.iterationNum)) {
-				newTaskCompletionMap.put(t, true);
-			}
+			newTaskCompletionMap.put(t, Status.SUCCESS.equals(statuses.get(t)));
 		}
 
 		taskCompletionMap = newTaskCompletionMap;
+		syncReadyQueue();
 
 		for (boolean completed : taskCompletionMap.values()) {
 			if (!completed) {
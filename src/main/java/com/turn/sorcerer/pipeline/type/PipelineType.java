@@ -25,6 +25,15 @@ public class PipelineType {
 
 	private Integer threads = 0;
 
+	private Integer min_threads = 0;
+
+	private Double weight = 1.0;
+
+	private boolean virtual_threads = false;
+
+	// Days iteration statuses are kept, the module retention if not set
+	private Integer retention;
+
 	private String cron;
 
 	public String getName() {
@@ -47,10 +56,26 @@ public class PipelineType {
 		return this.threads;
 	}
 
+	public Integer getMinThreads() {
+		return this.min_threads;
+	}
+
+	public Double getWeight() {
+		return this.weight;
+	}
+
+	public boolean isVirtualThreads() {
+		return this.virtual_threads;
+	}
+
 	public String getCronString() {
 		return this.cron;
 	}
 
+	public Integer getRetention() {
+		return this.retention;
+	}
+
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this)
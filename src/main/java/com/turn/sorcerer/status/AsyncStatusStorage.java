@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.joda.time.DateTime;
+
+/**
+ * Status storage whose status reads and writes can be issued without
+ * blocking, so that many requests can be outstanding at once (e.g. the
+ * task statuses of every iteration of a lookback window)
+ *
+ * <p>
+ * Each method is the non-blocking variant of the {@link StatusStorage}
+ * method of the same name. Futures fail with the {@link java.io.IOException}
+ * the blocking variant would throw.
+ * </p>
+ *
+ * @author tshiou
+ */
+public interface AsyncStatusStorage extends StatusStorage {
+
+	ListenableFuture<Status> checkStatusAsync(String identifier, int id);
+
+	/**
+	 * @see #checkStatuses(Collection, int)
+	 */
+	ListenableFuture<Map<String, Status>> checkStatusesAsync(Collection<String> identifiers, int id);
+
+	/**
+	 * @see #getStatusRange(String, int, int)
+	 */
+	ListenableFuture<SortedMap<Integer, IterationStatus>> getStatusRangeAsync(
+			String identifier, int from, int to);
+
+	/**
+	 * @see #clearAllStatuses(String, int)
+	 */
+	ListenableFuture<Void> clearAllStatusesAsync(String identifier, int jobId);
+
+	ListenableFuture<Void> removeStatusAsync(String identifier, int jobId, Status status);
+
+	ListenableFuture<Void> commitStatusAsync(String identifier, int jobId, Status status,
+	                                         DateTime time, boolean overwrite);
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status;
+
+import com.google.common.base.MoreObjects;
+import org.joda.time.DateTime;
+
+/**
+ * Status of one iteration of a task or pipeline, as returned by range scans
+ * of the storage layer
+ *
+ * @author tshiou
+ * @see StatusStorage#getStatusRange(String, int, int)
+ */
+public class IterationStatus {
+
+	private final int iterNo;
+	private final Status status;
+	private final DateTime time;
+
+	public IterationStatus(int iterNo, Status status, DateTime time) {
+		this.iterNo = iterNo;
+		this.status = status;
+		this.time = time;
+	}
+
+	public int getIterNo() {
+		return this.iterNo;
+	}
+
+	public Status getStatus() {
+		return this.status;
+	}
+
+	/**
+	 * Time the status was committed
+	 */
+	public DateTime getTime() {
+		return this.time;
+	}
+
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("iterNo", this.iterNo)
+				.add("status", this.status)
+				.add("time", this.time)
+				.toString();
+	}
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status;
+
+/**
+ * Listener notified when a watched status is committed
+ *
+ * @author tshiou
+ * @see WatchableStatusStorage
+ */
+public interface StatusListener {
+
+	/**
+	 * Called when the watched status is committed. May be called more than
+	 * once for the same status, and from a storage thread so it should not
+	 * block. The status is null if the watch was lost or the storage does
+	 * not know which status changed.
+	 */
+	void onStatus(String identifier, int id, Status status);
+}
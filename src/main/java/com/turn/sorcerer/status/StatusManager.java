@@ -8,10 +8,29 @@ package com.turn.sorcerer.status;
 
 import com.turn.sorcerer.injector.SorcererInjector;
 import com.turn.sorcerer.pipeline.type.PipelineType;
+import com.turn.sorcerer.status.impl.ExecutorStatusStorage;
 import com.turn.sorcerer.task.type.TaskType;
 
 import java.io.IOException;
-
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,8 +55,30 @@ public class StatusManager {
 	StatusStorage taskStorage = SorcererInjector.get().getStorageInstance().setType("tasks");
 	StatusStorage pipelineStorage = SorcererInjector.get().getStorageInstance().setType("pipelines");
 
-	private StatusManager() {
+	// Write-behind queues of status changes, null if statuses are written
+	// right away
+	private final StatusWriteQueue taskWrites;
+	private final StatusWriteQueue pipelineWrites;
+
+	// Listeners of the task status changes made by this process
+	private final List<StatusListener> taskListeners =
+			new CopyOnWriteArrayList<StatusListener>();
 
+	private StatusManager() {
+		Integer delay = SorcererInjector.get().getModule().getStatusWriteDelay();
+
+		if (delay != null && delay > 0) {
+			ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder()
+							.setNameFormat("sorcerer-status-writes-%d")
+							.setDaemon(true)
+							.build());
+			taskWrites = new StatusWriteQueue(taskStorage, delay, timer);
+			pipelineWrites = new StatusWriteQueue(pipelineStorage, delay, timer);
+		} else {
+			taskWrites = null;
+			pipelineWrites = null;
+		}
 	}
 
 	public boolean initialized() {
@@ -62,8 +103,15 @@ public class StatusManager {
 
 	private void commitTaskStatus(
 			String taskName, int seq, Status status, DateTime time, boolean overwrite) {
+		writeTaskStatus(taskName, seq, status, time, overwrite);
+		notifyTaskListeners(taskName, seq, Status.PENDING.equals(status) ? null : status);
+	}
+
+	private void writeTaskStatus(
+			String taskName, int seq, Status status, DateTime time, boolean overwrite) {
 
 		if (Status.PENDING.equals(status)) {
+			barrier(taskWrites, taskName, seq);
 			try {
 				taskStorage.clearAllStatuses(taskName, seq);
 			} catch (IOException e) {
@@ -72,6 +120,17 @@ public class StatusManager {
 			return;
 		}
 
+		if (taskWrites != null) {
+			taskWrites.commit(taskName, seq, status, time, overwrite);
+
+			// Successes are durable once committed, e.g. before the
+			// watermarks of the task are committed or its next tasks run
+			if (Status.SUCCESS.equals(status)) {
+				barrier(taskWrites, taskName, seq);
+			}
+			return;
+		}
+
 		try {
 			taskStorage.commitStatus(taskName, seq, status, time, overwrite);
 		} catch (IOException e) {
@@ -80,6 +139,7 @@ public class StatusManager {
 	}
 
 	public Status checkTaskStatus(String taskName, int seq) {
+		barrier(taskWrites, taskName, seq);
 		try {
 			return taskStorage.checkStatus(taskName, seq);
 		} catch (IOException e) {
@@ -88,7 +148,121 @@ public class StatusManager {
 		return Status.PENDING;
 	}
 
+	/**
+	 * Provides the statuses of tasks for an iteration in a single bulk read
+	 * of the storage layer. All tasks are pending if the storage layer is
+	 * unreachable.
+	 */
+	public Map<String, Status> checkTaskStatuses(Collection<String> taskNames, int seq) {
+		if (taskWrites != null) {
+			Futures.getUnchecked(taskWrites.flush(taskNames, seq));
+		}
+
+		try {
+			return taskStorage.checkStatuses(taskNames, seq);
+		} catch (IOException e) {
+			logger.error("Storage layer unreachable!", e);
+		}
+
+		return allPending(taskNames);
+	}
+
+	/**
+	 * Asynchronous variant of {@link #checkTaskStatus(String, int)}, so
+	 * that the reads of several iterations can be outstanding at once
+	 */
+	public ListenableFuture<Status> checkTaskStatusAsync(final String taskName, final int seq) {
+		ListenableFuture<Void> flush = taskWrites == null
+				? Futures.<Void>immediateFuture(null)
+				: taskWrites.flush(taskName, seq);
+
+		return Futures.transformAsync(flush, new AsyncFunction<Void, Status>() {
+			@Override
+			public ListenableFuture<Status> apply(Void flushed) {
+				return orElse(async(taskStorage).checkStatusAsync(taskName, seq), Status.PENDING);
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Asynchronous variant of {@link #checkTaskStatuses(Collection, int)}
+	 */
+	public ListenableFuture<Map<String, Status>> checkTaskStatusesAsync(
+			final Collection<String> taskNames, final int seq) {
+		ListenableFuture<Void> flush = taskWrites == null
+				? Futures.<Void>immediateFuture(null)
+				: taskWrites.flush(taskNames, seq);
+
+		return Futures.transformAsync(flush, new AsyncFunction<Void, Map<String, Status>>() {
+			@Override
+			public ListenableFuture<Map<String, Status>> apply(Void flushed) {
+				return orElse(async(taskStorage).checkStatusesAsync(taskNames, seq),
+						allPending(taskNames));
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	private static Map<String, Status> allPending(Collection<String> taskNames) {
+		Map<String, Status> statuses = Maps.newHashMap();
+		for (String taskName : taskNames) {
+			statuses.put(taskName, Status.PENDING);
+		}
+		return statuses;
+	}
+
+	/**
+	 * Provides the statuses of a task for a range of iterations in a single
+	 * scan of the storage layer. Iterations without a status are not in the
+	 * returned map, which is empty if the storage layer is unreachable.
+	 */
+	public SortedMap<Integer, IterationStatus> getTaskStatusRange(String taskName, int from, int to) {
+		barrier(taskWrites, taskName);
+		try {
+			return taskStorage.getStatusRange(taskName, from, to);
+		} catch (IOException e) {
+			logger.error("Storage layer unreachable!", e);
+		}
+		return new TreeMap<Integer, IterationStatus>();
+	}
+
+	/**
+	 * Provides the statuses of a pipeline for a range of iterations in a
+	 * single scan of the storage layer. Iterations without a status are not
+	 * in the returned map, which is empty if the storage layer is
+	 * unreachable.
+	 */
+	public SortedMap<Integer, IterationStatus> getPipelineStatusRange(String pipelineName,
+	                                                                  int from, int to) {
+		barrier(pipelineWrites, pipelineName);
+		try {
+			return pipelineStorage.getStatusRange(pipelineName, from, to);
+		} catch (IOException e) {
+			logger.error("Storage layer unreachable!", e);
+		}
+		return new TreeMap<Integer, IterationStatus>();
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getPipelineStatusRange(String, int, int)}
+	 */
+	public ListenableFuture<SortedMap<Integer, IterationStatus>> getPipelineStatusRangeAsync(
+			final String pipelineName, final int from, final int to) {
+		ListenableFuture<Void> flush = pipelineWrites == null
+				? Futures.<Void>immediateFuture(null)
+				: pipelineWrites.flush(pipelineName);
+
+		return Futures.transformAsync(flush,
+				new AsyncFunction<Void, SortedMap<Integer, IterationStatus>>() {
+			@Override
+			public ListenableFuture<SortedMap<Integer, IterationStatus>> apply(Void flushed) {
+				return orElse(async(pipelineStorage).getStatusRangeAsync(pipelineName, from, to),
+						(SortedMap<Integer, IterationStatus>) new TreeMap<Integer, IterationStatus>());
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
 	public Status checkPipelineStatus(String pipelineName, int seq) {
+		barrier(pipelineWrites, pipelineName, seq);
 		try {
 			return pipelineStorage.checkStatus(pipelineName, seq);
 		} catch (IOException e) {
@@ -102,14 +276,142 @@ public class StatusManager {
 	}
 
 	private void removeInProgressTaskStatus(String taskName, int seq) {
+		if (taskWrites != null) {
+			taskWrites.remove(taskName, seq, Status.IN_PROGRESS);
+		} else {
+			try {
+				taskStorage.removeStatus(taskName, seq, Status.IN_PROGRESS);
+			} catch (IOException e) {
+				logger.error("Storage layer unreachable!", e);
+			}
+		}
+
+		notifyTaskListeners(taskName, seq, null);
+	}
+
+	public void removeErrorTaskStatus(TaskType type, int seq) {
+		if (taskWrites != null) {
+			taskWrites.remove(type.getName(), seq, Status.ERROR);
+		} else {
+			try {
+				taskStorage.removeStatus(type.getName(), seq, Status.ERROR);
+			} catch (IOException e) {
+				logger.error("Storage layer unreachable!", e);
+			}
+		}
+
+		notifyTaskListeners(type.getName(), seq, null);
+	}
+
+	public int getTaskAttemptCount(TaskType type, int seq) {
+		barrier(taskWrites, type.getName(), seq);
 		try {
-			taskStorage.removeStatus(taskName, seq, Status.IN_PROGRESS);
+			return taskStorage.getAttemptCount(type.getName(), seq);
+		} catch (IOException e) {
+			logger.error("Storage layer unreachable!", e);
+		}
+		return 0;
+	}
+
+	public void commitTaskAttemptCount(TaskType type, int seq, int attempts) {
+		barrier(taskWrites, type.getName(), seq);
+		try {
+			taskStorage.commitAttemptCount(type.getName(), seq, attempts);
 		} catch (IOException e) {
 			logger.error("Storage layer unreachable!", e);
 		}
 	}
 
+	/**
+	 * Unlike the other methods, storage failures are not swallowed since
+	 * treating an unreadable watermark as missing would make the task
+	 * consume all of its input again
+	 */
+	public String getTaskWatermark(TaskType type, String name) throws IOException {
+		return taskStorage.getWatermark(type.getName(), name);
+	}
+
+	public void commitTaskWatermark(TaskType type, String name, String watermark) {
+		try {
+			taskStorage.commitWatermark(type.getName(), name, watermark);
+		} catch (IOException e) {
+			logger.error("Storage layer unreachable!", e);
+		}
+	}
+
+	/**
+	 * Checks if the task storage can notify of committed statuses
+	 */
+	public boolean isTaskStatusWatchable() {
+		return taskStorage instanceof WatchableStatusStorage;
+	}
+
+	/**
+	 * Registers a listener notified once a task status is committed
+	 *
+	 * @return false if the task storage does not support watches or the
+	 *         watch could not be set, in which case the status has to be
+	 *         polled
+	 */
+	public boolean watchTaskStatus(TaskType type, int seq, Status status,
+	                               StatusListener listener) {
+		if (isTaskStatusWatchable() == false) {
+			return false;
+		}
+
+		try {
+			((WatchableStatusStorage) taskStorage).watchStatus(
+					type.getName(), seq, status, listener);
+			return true;
+		} catch (IOException e) {
+			logger.error("Storage layer unreachable!", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Registers a listener notified once, the next time a status of a task
+	 * iteration changes or the watch is lost
+	 *
+	 * @return false if the task storage does not support watches or the
+	 *         watch could not be set
+	 */
+	public boolean watchTaskChanges(TaskType type, int seq, StatusListener listener) {
+		if (isTaskStatusWatchable() == false) {
+			return false;
+		}
+
+		try {
+			((WatchableStatusStorage) taskStorage).watchChanges(type.getName(), seq, listener);
+			return true;
+		} catch (IOException e) {
+			logger.error("Storage layer unreachable!", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Registers a listener notified of every change of a task status made
+	 * through this manager, e.g. to invalidate state derived from the
+	 * statuses. The listener gets the committed status, or null when a
+	 * status is removed or the statuses of the iteration are cleared.
+	 */
+	public void addTaskStatusListener(StatusListener listener) {
+		taskListeners.add(listener);
+	}
+
+	private void notifyTaskListeners(String taskName, int seq, Status status) {
+		for (StatusListener listener : taskListeners) {
+			try {
+				listener.onStatus(taskName, seq, status);
+			} catch (RuntimeException e) {
+				logger.error("Status listener of {}:{} failed", taskName, seq, e);
+			}
+		}
+	}
+
 	public boolean isTaskComplete(TaskType type, int seq) {
+		barrier(taskWrites, type.getName(), seq);
 		try {
 			return Status.SUCCESS.equals(taskStorage.checkStatus(type.getName(), seq));
 		} catch (IOException e) {
@@ -119,6 +421,7 @@ public class StatusManager {
 	}
 
 	public boolean isTaskRunning(TaskType type, int seq) {
+		barrier(taskWrites, type.getName(), seq);
 		try {
 			return Status.IN_PROGRESS.equals(taskStorage.checkStatus(type.getName(), seq));
 		} catch (IOException e) {
@@ -128,6 +431,7 @@ public class StatusManager {
 	}
 
 	public boolean isTaskInError(TaskType type, int seq) {
+		barrier(taskWrites, type.getName(), seq);
 		try {
 			return Status.ERROR.equals(taskStorage.checkStatus(type.getName(), seq));
 		} catch (IOException e) {
@@ -137,11 +441,14 @@ public class StatusManager {
 	}
 
 	public void clearTaskStatus(TaskType type, int seq) {
+		barrier(taskWrites, type.getName(), seq);
 		try {
 			taskStorage.clearAllStatuses(type.getName(), seq);
 		} catch (IOException e) {
 			logger.error("Storage layer unreachable!", e);
 		}
+
+		notifyTaskListeners(type.getName(), seq, null);
 	}
 
 	public DateTime getTaskLastSuccessTime(TaskType type, int seq) {
@@ -149,6 +456,7 @@ public class StatusManager {
 	}
 
 	public DateTime getTaskLastSuccessTime(String taskName, int seq) {
+		barrier(taskWrites, taskName, seq);
 		try {
 			return taskStorage.getStatusUpdateTime(taskName, seq, Status.SUCCESS);
 		} catch (IOException e) {
@@ -158,6 +466,7 @@ public class StatusManager {
 	}
 
 	private DateTime getTaskLastUpdateTimeForStatus(TaskType type, int seq, Status status) {
+		barrier(taskWrites, type.getName(), seq);
 		try {
 			return taskStorage.getStatusUpdateTime(type.getName(), seq, status);
 		} catch (IOException e) {
@@ -171,6 +480,7 @@ public class StatusManager {
 	}
 
 	public int getCurrentIterationNumberForPipeline(String pipelineName) {
+		barrier(pipelineWrites, pipelineName);
 		try {
 			return pipelineStorage.getCurrentIterNo(pipelineName);
 		} catch (IOException e) {
@@ -188,6 +498,15 @@ public class StatusManager {
 	}
 
 	private void commitPipelineStatus(String taskName, int seq, Status status, DateTime time, boolean overwrite) {
+		if (pipelineWrites != null) {
+			pipelineWrites.commit(taskName, seq, status, time, overwrite);
+
+			if (Status.SUCCESS.equals(status)) {
+				barrier(pipelineWrites, taskName, seq);
+			}
+			return;
+		}
+
 		try {
 			pipelineStorage.commitStatus(taskName, seq, status, time, overwrite);
 		} catch (IOException e) {
@@ -196,6 +515,7 @@ public class StatusManager {
 	}
 
 	public boolean isPipelineComplete(PipelineType type, int seq) {
+		barrier(pipelineWrites, type.getName(), seq);
 		try {
 			return Status.SUCCESS.equals(pipelineStorage.checkStatus(type.getName(), seq));
 		} catch (IOException e) {
@@ -205,11 +525,103 @@ public class StatusManager {
 	}
 
 	public void clearPipelineStatus(PipelineType type, int seq) {
+		barrier(pipelineWrites, type.getName(), seq);
 		try {
 			pipelineStorage.clearAllStatuses(type.getName(), seq);
 		} catch (IOException e) {
 			logger.error("Storage layer unreachable!", e);
 		}
 	}
+
+	/**
+	 * Deletes the statuses of several iterations of a task, with all
+	 * deletions outstanding at once
+	 *
+	 * @return Future of the number of deleted iterations. Failed deletions
+	 *         are logged and not counted.
+	 */
+	public ListenableFuture<Integer> deleteTaskStatuses(String taskName, Collection<Integer> seqs) {
+		barrier(taskWrites, taskName);
+
+		for (int seq : seqs) {
+			notifyTaskListeners(taskName, seq, null);
+		}
+
+		return delete(taskStorage, taskName, seqs);
+	}
+
+	/**
+	 * Deletes the statuses of several iterations of a pipeline, with all
+	 * deletions outstanding at once
+	 *
+	 * @see #deleteTaskStatuses(String, Collection)
+	 */
+	public ListenableFuture<Integer> deletePipelineStatuses(String pipelineName,
+	                                                        Collection<Integer> seqs) {
+		barrier(pipelineWrites, pipelineName);
+		return delete(pipelineStorage, pipelineName, seqs);
+	}
+
+	private static ListenableFuture<Integer> delete(StatusStorage storage, String identifier,
+	                                                Collection<Integer> seqs) {
+		List<ListenableFuture<Boolean>> deletions = Lists.newArrayListWithCapacity(seqs.size());
+
+		for (int seq : seqs) {
+			deletions.add(orElse(Futures.transform(
+					async(storage).clearAllStatusesAsync(identifier, seq),
+					Functions.constant(true), MoreExecutors.directExecutor()), false));
+		}
+
+		return Futures.transform(Futures.allAsList(deletions), new Function<List<Boolean>, Integer>() {
+			@Override
+			public Integer apply(List<Boolean> results) {
+				return Collections.frequency(results, true);
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Writes all status changes held by the write-behind queues, e.g. before
+	 * stopping. Statuses are written right away unless the module sets a
+	 * {@code status_write_delay}.
+	 */
+	public void flushStatusWrites() {
+		if (taskWrites != null) {
+			Futures.getUnchecked(taskWrites.flush());
+			Futures.getUnchecked(pipelineWrites.flush());
+		}
+	}
+
+	// Writes the queued changes of an iteration before it is read or written
+	// without the queue, so that reads see them and writes stay in order
+	private static void barrier(StatusWriteQueue writes, String identifier, int seq) {
+		if (writes != null) {
+			Futures.getUnchecked(writes.flush(identifier, seq));
+		}
+	}
+
+	// Writes the queued changes of all iterations of a task or pipeline
+	private static void barrier(StatusWriteQueue writes, String identifier) {
+		if (writes != null) {
+			Futures.getUnchecked(writes.flush(identifier));
+		}
+	}
+
+	// Storages provided by the injector already have an asynchronous API
+	private static AsyncStatusStorage async(StatusStorage storage) {
+		return ExecutorStatusStorage.wrap(storage);
+	}
+
+	// Like the blocking calls, storage failures of asynchronous calls are
+	// logged and replaced by a default value
+	private static <V> ListenableFuture<V> orElse(ListenableFuture<V> future, final V fallback) {
+		return Futures.catching(future, Exception.class, new Function<Exception, V>() {
+			@Override
+			public V apply(Exception e) {
+				logger.error("Storage layer unreachable!", e);
+				return fallback;
+			}
+		}, MoreExecutors.directExecutor());
+	}
 }
 
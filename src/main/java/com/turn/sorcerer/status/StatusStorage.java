@@ -7,7 +7,12 @@
 package com.turn.sorcerer.status;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
+import com.google.common.collect.Maps;
 import org.joda.time.DateTime;
 
 /**
@@ -27,14 +32,109 @@ public interface StatusStorage {
 
 	DateTime getStatusUpdateTime(String identifier, int id, Status status) throws IOException;
 
+	/**
+	 * Provides the highest iteration number of an identifier, 0 if it has
+	 * no iteration. Storage layers that persist it as a high-water mark
+	 * updated on commit (HDFS, Zookeeper) do not lower it when the statuses
+	 * of the highest iteration are cleared.
+	 */
 	int getCurrentIterNo(String identifier) throws IOException;
 
 	Status checkStatus(String identifier, int id) throws IOException;
 
+	/**
+	 * Provides the statuses of several identifiers for the same iteration
+	 * (e.g. all tasks of a pipeline iteration) in a single bulk read instead
+	 * of one {@link #checkStatus(String, int)} per identifier
+	 *
+	 * @param identifiers Identifiers to check
+	 * @param id Iteration number
+	 * @return Status of every identifier, {@link Status#PENDING} if it has
+	 *         no status for the iteration
+	 */
+	default Map<String, Status> checkStatuses(Collection<String> identifiers, int id)
+			throws IOException {
+		// Storage layers without a bulk read check each identifier
+		Map<String, Status> statuses = Maps.newHashMap();
+		for (String identifier : identifiers) {
+			statuses.put(identifier, checkStatus(identifier, id));
+		}
+		return statuses;
+	}
+
+	/**
+	 * Provides the statuses of an identifier for a range of iterations in a
+	 * single scan instead of one {@link #checkStatus(String, int)} per
+	 * iteration (e.g. for lookback windows and status history)
+	 *
+	 * @param identifier Identifier to scan
+	 * @param from First iteration number of the range, inclusive
+	 * @param to Last iteration number of the range, inclusive
+	 * @return Status and status commit time of the iterations of the range
+	 *         that have a status, by iteration number. Iterations that are
+	 *         not in the map are pending.
+	 */
+	default SortedMap<Integer, IterationStatus> getStatusRange(String identifier, int from, int to)
+			throws IOException {
+		// Storage layers without a range scan check each iteration up to the
+		// current one
+		SortedMap<Integer, IterationStatus> range = new TreeMap<Integer, IterationStatus>();
+		int last = Math.min(to, getCurrentIterNo(identifier));
+
+		for (int id = from; id <= last; id++) {
+			Status status = checkStatus(identifier, id);
+
+			if (status != Status.PENDING) {
+				range.put(id, new IterationStatus(id, status,
+						getStatusUpdateTime(identifier, id, status)));
+			}
+		}
+
+		return range;
+	}
+
 	void clearAllStatuses(String identifier, int jobId) throws IOException;
 
 	void removeStatus(String identifier, int jobId, Status status) throws IOException;
 
 	void commitStatus(String identifier, int jobId, Status status, DateTime time, boolean overwrite) throws IOException;
 
+	/**
+	 * Provides the number of failed execution attempts recorded for an
+	 * iteration, 0 if none. Storage layers that do not record attempt
+	 * counts return 0, attempts are then only counted by the running
+	 * process.
+	 */
+	default int getAttemptCount(String identifier, int id) throws IOException {
+		return 0;
+	}
+
+	/**
+	 * Records the number of failed execution attempts of an iteration. The
+	 * count is removed along with the statuses by
+	 * {@link #clearAllStatuses(String, int)}. Not recorded by default.
+	 */
+	default void commitAttemptCount(String identifier, int jobId, int attempts)
+			throws IOException {
+
+	}
+
+	/**
+	 * Provides a named watermark of an identifier that is not tied to an
+	 * iteration (e.g. the last input consumed by a task), null if none.
+	 * Storage layers that do not record watermarks return null, tasks then
+	 * consume all of their input every iteration.
+	 */
+	default String getWatermark(String identifier, String name) throws IOException {
+		return null;
+	}
+
+	/**
+	 * Records a named watermark of an identifier. Not recorded by default.
+	 */
+	default void commitWatermark(String identifier, String name, String watermark)
+			throws IOException {
+
+	}
+
 }
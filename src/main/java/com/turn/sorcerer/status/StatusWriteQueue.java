@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status;
+
+import com.turn.sorcerer.status.impl.ExecutorStatusStorage;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind queue coalescing the status changes of each iteration for a
+ * short delay, so that the transitions of a short task cost a single write
+ *
+ * @author tshiou
+ */
+class StatusWriteQueue {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(StatusWriteQueue.class);
+
+	private final AsyncStatusStorage storage;
+
+	private final long delayMillis;
+
+	private final ScheduledExecutorService timer;
+
+	// Changes not written yet, guarded by this
+	private final Map<Key, Change> changes = Maps.newLinkedHashMap();
+
+	// Last write of each iteration being written, guarded by this
+	private final Map<Key, ListenableFuture<Void>> writes = Maps.newHashMap();
+
+	// A write of all changes is scheduled, guarded by this
+	private boolean scheduled = false;
+
+	StatusWriteQueue(StatusStorage storage, long delayMillis, ScheduledExecutorService timer) {
+		this.storage = ExecutorStatusStorage.wrap(storage);
+		this.delayMillis = delayMillis;
+		this.timer = timer;
+	}
+
+	synchronized void commit(String identifier, int id, Status status, DateTime time,
+	                         boolean overwrite) {
+		change(new Key(identifier, id)).commit(status, time.getMillis(), overwrite);
+	}
+
+	synchronized void remove(String identifier, int id, Status status) {
+		change(new Key(identifier, id)).remove(status);
+	}
+
+	// Change of an iteration, scheduling the write of all changes on the
+	// first one
+	private Change change(Key key) {
+		Change change = changes.get(key);
+
+		if (change == null) {
+			change = new Change();
+			changes.put(key, change);
+		}
+
+		if (scheduled == false) {
+			scheduled = true;
+			timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					flush();
+				}
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		}
+
+		return change;
+	}
+
+	/**
+	 * Writes the queued changes of an iteration
+	 *
+	 * @return Future completed once the changes of the iteration queued so
+	 *         far are written. It does not fail.
+	 */
+	synchronized ListenableFuture<Void> flush(String identifier, int id) {
+		Key key = new Key(identifier, id);
+		Change change = changes.remove(key);
+
+		if (change != null) {
+			return write(key, change);
+		}
+
+		ListenableFuture<Void> write = writes.get(key);
+		return write == null ? Futures.<Void>immediateFuture(null) : write;
+	}
+
+	/**
+	 * Writes the queued changes of several identifiers for an iteration
+	 *
+	 * @see #flush(String, int)
+	 */
+	synchronized ListenableFuture<Void> flush(Collection<String> identifiers, int id) {
+		List<ListenableFuture<Void>> flushes = Lists.newArrayList();
+
+		for (String identifier : identifiers) {
+			flushes.add(flush(identifier, id));
+		}
+
+		return all(flushes);
+	}
+
+	/**
+	 * Writes the queued changes of all iterations of an identifier
+	 *
+	 * @see #flush(String, int)
+	 */
+	synchronized ListenableFuture<Void> flush(String identifier) {
+		List<ListenableFuture<Void>> flushes = Lists.newArrayList();
+
+		for (Iterator<Map.Entry<Key, Change>> it = changes.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<Key, Change> entry = it.next();
+
+			if (entry.getKey().identifier.equals(identifier)) {
+				it.remove();
+				write(entry.getKey(), entry.getValue());
+			}
+		}
+
+		for (Map.Entry<Key, ListenableFuture<Void>> write : writes.entrySet()) {
+			if (write.getKey().identifier.equals(identifier)) {
+				flushes.add(write.getValue());
+			}
+		}
+
+		return all(flushes);
+	}
+
+	/**
+	 * Writes all queued changes
+	 *
+	 * @see #flush(String, int)
+	 */
+	synchronized ListenableFuture<Void> flush() {
+		scheduled = false;
+
+		for (Map.Entry<Key, Change> entry : changes.entrySet()) {
+			write(entry.getKey(), entry.getValue());
+		}
+		changes.clear();
+
+		return all(Lists.newArrayList(writes.values()));
+	}
+
+	// Number of iterations with queued changes
+	synchronized int size() {
+		return changes.size();
+	}
+
+	// Starts writing the change of an iteration once its previous writes
+	// are done, guarded by this
+	private ListenableFuture<Void> write(final Key key, final Change change) {
+		ListenableFuture<Void> previous = writes.get(key);
+
+		final ListenableFuture<Void> write = previous == null
+				? change.write(storage, key)
+				: Futures.transformAsync(previous, new AsyncFunction<Void, Void>() {
+					@Override
+					public ListenableFuture<Void> apply(Void written) {
+						return change.write(storage, key);
+					}
+				}, MoreExecutors.directExecutor());
+
+		writes.put(key, write);
+
+		write.addListener(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (StatusWriteQueue.this) {
+					if (writes.get(key) == write) {
+						writes.remove(key);
+					}
+				}
+			}
+		}, MoreExecutors.directExecutor());
+
+		return write;
+	}
+
+	private static ListenableFuture<Void> all(List<ListenableFuture<Void>> futures) {
+		if (futures.isEmpty()) {
+			return Futures.immediateFuture(null);
+		}
+
+		return Futures.transform(Futures.allAsList(futures), new Function<List<Void>, Void>() {
+			@Override
+			public Void apply(List<Void> written) {
+				return null;
+			}
+		}, MoreExecutors.directExecutor());
+	}
+
+	/**
+	 * Net change to the statuses of an iteration
+	 */
+	private static class Change {
+		// All statuses are cleared before the other changes
+		private boolean clear = false;
+
+		private final Set<Status> removes = EnumSet.noneOf(Status.class);
+
+		// Status -> commit time
+		private final Map<Status, Long> commits = Maps.newEnumMap(Status.class);
+
+		private void commit(Status status, long time, boolean overwrite) {
+			if (overwrite) {
+				clear = true;
+				removes.clear();
+				commits.clear();
+			}
+
+			removes.remove(status);
+			commits.put(status, time);
+		}
+
+		private void remove(Status status) {
+			commits.remove(status);
+
+			// Nothing to remove from cleared statuses
+			if (clear == false) {
+				removes.add(status);
+			}
+		}
+
+		/**
+		 * Writes the change in order: the clear, carried by the first commit
+		 * if any, then the removals and the commits
+		 */
+		private ListenableFuture<Void> write(final AsyncStatusStorage storage, final Key key) {
+			List<AsyncFunction<Void, Void>> steps = Lists.newArrayList();
+
+			if (clear && commits.isEmpty()) {
+				steps.add(new AsyncFunction<Void, Void>() {
+					@Override
+					public ListenableFuture<Void> apply(Void previous) {
+						return storage.clearAllStatusesAsync(key.identifier, key.id);
+					}
+				});
+			}
+
+			for (final Status status : removes) {
+				steps.add(new AsyncFunction<Void, Void>() {
+					@Override
+					public ListenableFuture<Void> apply(Void previous) {
+						return storage.removeStatusAsync(key.identifier, key.id, status);
+					}
+				});
+			}
+
+			boolean overwrite = clear;
+			for (final Map.Entry<Status, Long> commit : commits.entrySet()) {
+				final boolean first = overwrite;
+				steps.add(new AsyncFunction<Void, Void>() {
+					@Override
+					public ListenableFuture<Void> apply(Void previous) {
+						return storage.commitStatusAsync(key.identifier, key.id, commit.getKey(),
+								new DateTime(commit.getValue()), first);
+					}
+				});
+				overwrite = false;
+			}
+
+			ListenableFuture<Void> write = Futures.immediateFuture(null);
+			for (AsyncFunction<Void, Void> step : steps) {
+				write = Futures.transformAsync(write, step, MoreExecutors.directExecutor());
+			}
+
+			return Futures.catching(write, Exception.class, new Function<Exception, Void>() {
+				@Override
+				public Void apply(Exception e) {
+					logger.error("Storage layer unreachable!", e);
+					return null;
+				}
+			}, MoreExecutors.directExecutor());
+		}
+	}
+
+	private static class Key {
+		private final String identifier;
+		private final int id;
+
+		private Key(String identifier, int id) {
+			this.identifier = identifier;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * identifier.hashCode() + id;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key
+					&& ((Key) o).id == id
+					&& ((Key) o).identifier.equals(identifier);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status;
+
+import java.io.IOException;
+
+/**
+ * Status storage that can notify of committed statuses instead of being
+ * polled
+ *
+ * @author tshiou
+ */
+public interface WatchableStatusStorage extends StatusStorage {
+
+	/**
+	 * Registers a listener notified once the status is committed for the
+	 * iteration. The listener is notified right away if the status is
+	 * already committed, and with a null status if the watch is lost (e.g.
+	 * when the Zookeeper session expires), in which case the status has to
+	 * be read and watched again.
+	 *
+	 * @param identifier Identifier to watch
+	 * @param id Iteration number to watch
+	 * @param status Status to watch for
+	 * @param listener Listener to notify
+	 */
+	void watchStatus(String identifier, int id, Status status, StatusListener listener)
+			throws IOException;
+
+	/**
+	 * Registers a listener notified once, the next time any status of the
+	 * iteration is committed or removed, or when the watch is lost, for
+	 * example to invalidate a cached status
+	 *
+	 * @param identifier Identifier to watch
+	 * @param id Iteration number to watch
+	 * @param listener Listener to notify. The status passed to the listener
+	 *                 is null if the storage does not know which status
+	 *                 changed.
+	 */
+	void watchChanges(String identifier, int id, StatusListener listener) throws IOException;
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.AsyncStatusStorage;
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusListener;
+import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.WatchableStatusStorage;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-through cache of the statuses of a status storage. Entries are
+ * dropped on changes seen through the watches of a
+ * {@link WatchableStatusStorage} and otherwise expire after a TTL.
+ *
+ * @author tshiou
+ */
+public class CachingStatusStorage implements AsyncStatusStorage {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(CachingStatusStorage.class);
+
+	private static final long MAX_ENTRIES = 100000;
+
+	protected final StatusStorage storage;
+
+	private final AsyncStatusStorage asyncStorage;
+
+	private final ConcurrentMap<Key, Entry> cache;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	CachingStatusStorage(StatusStorage storage, long ttlMillis, Ticker ticker) {
+		this.storage = storage;
+		this.asyncStorage = ExecutorStatusStorage.wrap(storage);
+		this.cache = CacheBuilder.newBuilder()
+				.ticker(ticker)
+				.maximumSize(MAX_ENTRIES)
+				.expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+				.<Key, Entry>build()
+				.asMap();
+	}
+
+	/**
+	 * Wraps a status storage in a cache. The returned storage is watchable if
+	 * the wrapped storage is.
+	 *
+	 * @param storage Storage to wrap
+	 * @param ttlMillis Time after which a cached status is read again from
+	 *                  the storage
+	 */
+	public static StatusStorage wrap(StatusStorage storage, long ttlMillis) {
+		return wrap(storage, ttlMillis, Ticker.systemTicker());
+	}
+
+	static StatusStorage wrap(StatusStorage storage, long ttlMillis, Ticker ticker) {
+		if (storage instanceof WatchableStatusStorage) {
+			return new Watchable((WatchableStatusStorage) storage, ttlMillis, ticker);
+		}
+
+		return new CachingStatusStorage(storage, ttlMillis, ticker);
+	}
+
+	@Override
+	public String toString() {
+		return "Cached " + storage.toString();
+	}
+
+	@Override
+	public void init() throws IOException {
+		storage.init();
+	}
+
+	@Override
+	public StatusStorage setType(String type) {
+		storage.setType(type);
+		return this;
+	}
+
+	@Override
+	public DateTime getLastUpdateTime(String identifier, int id) throws IOException {
+		return storage.getLastUpdateTime(identifier, id);
+	}
+
+	@Override
+	public DateTime getStatusUpdateTime(String identifier, int id, Status status)
+			throws IOException {
+		return storage.getStatusUpdateTime(identifier, id, status);
+	}
+
+	@Override
+	public int getCurrentIterNo(String identifier) throws IOException {
+		return storage.getCurrentIterNo(identifier);
+	}
+
+	@Override
+	public Status checkStatus(String identifier, int id) throws IOException {
+		Key key = new Key(identifier, id);
+		Entry seen = cache.get(key);
+
+		if (seen != null && seen.status != null) {
+			hits.incrementAndGet();
+			return seen.status;
+		}
+
+		misses.incrementAndGet();
+
+		// Watch before reading so a change made in between is not missed
+		beforeRead(key);
+
+		Status status = storage.checkStatus(identifier, id);
+
+		read(key, seen, status);
+
+		return status;
+	}
+
+	@Override
+	public ListenableFuture<Status> checkStatusAsync(String identifier, int id) {
+		final Key key = new Key(identifier, id);
+		final Entry seen = cache.get(key);
+
+		if (seen != null && seen.status != null) {
+			hits.incrementAndGet();
+			return Futures.immediateFuture(seen.status);
+		}
+
+		misses.incrementAndGet();
+
+		try {
+			beforeRead(key);
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+
+		return Futures.transform(asyncStorage.checkStatusAsync(identifier, id),
+				new Function<Status, Status>() {
+					@Override
+					public Status apply(Status status) {
+						read(key, seen, status);
+						return status;
+					}
+				}, MoreExecutors.directExecutor());
+	}
+
+	@Override
+	public Map<String, Status> checkStatuses(Collection<String> identifiers, int id)
+			throws IOException {
+		Map<String, Status> statuses = Maps.newHashMapWithExpectedSize(identifiers.size());
+		Map<String, Entry> missed = lookup(identifiers, id, statuses);
+
+		if (missed.isEmpty()) {
+			return statuses;
+		}
+
+		// Identifiers missing from the cache are read in a single bulk read
+		Map<String, Status> read = storage.checkStatuses(missed.keySet(), id);
+
+		return merge(statuses, missed, read, id);
+	}
+
+	@Override
+	public ListenableFuture<Map<String, Status>> checkStatusesAsync(
+			Collection<String> identifiers, final int id) {
+		final Map<String, Status> statuses = Maps.newHashMapWithExpectedSize(identifiers.size());
+		final Map<String, Entry> missed;
+
+		try {
+			missed = lookup(identifiers, id, statuses);
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+
+		if (missed.isEmpty()) {
+			return Futures.immediateFuture(statuses);
+		}
+
+		return Futures.transform(asyncStorage.checkStatusesAsync(missed.keySet(), id),
+				new Function<Map<String, Status>, Map<String, Status>>() {
+					@Override
+					public Map<String, Status> apply(Map<String, Status> read) {
+						return merge(statuses, missed, read, id);
+					}
+				}, MoreExecutors.directExecutor());
+	}
+
+	// Collects the cached statuses of an iteration, and the entries seen for
+	// the identifiers missing from the cache (null if none)
+	private Map<String, Entry> lookup(Collection<String> identifiers, int id,
+	                                  Map<String, Status> statuses) throws IOException {
+		Map<String, Entry> missed = Maps.newHashMap();
+
+		for (String identifier : identifiers) {
+			Key key = new Key(identifier, id);
+			Entry seen = cache.get(key);
+
+			if (seen != null && seen.status != null) {
+				hits.incrementAndGet();
+				statuses.put(identifier, seen.status);
+			} else {
+				misses.incrementAndGet();
+				missed.put(identifier, seen);
+				beforeRead(key);
+			}
+		}
+
+		return missed;
+	}
+
+	// Caches the statuses read for the missed identifiers
+	private Map<String, Status> merge(Map<String, Status> statuses, Map<String, Entry> missed,
+	                                  Map<String, Status> read, int id) {
+		for (Map.Entry<String, Entry> entry : missed.entrySet()) {
+			Status status = read.get(entry.getKey());
+			if (status == null) {
+				status = Status.PENDING;
+			}
+
+			read(new Key(entry.getKey(), id), entry.getValue(), status);
+			statuses.put(entry.getKey(), status);
+		}
+
+		return statuses;
+	}
+
+	@Override
+	public SortedMap<Integer, IterationStatus> getStatusRange(String identifier, int from, int to)
+			throws IOException {
+		return storage.getStatusRange(identifier, from, to);
+	}
+
+	@Override
+	public ListenableFuture<SortedMap<Integer, IterationStatus>> getStatusRangeAsync(
+			String identifier, int from, int to) {
+		return asyncStorage.getStatusRangeAsync(identifier, from, to);
+	}
+
+	@Override
+	public void clearAllStatuses(String identifier, int jobId) throws IOException {
+		storage.clearAllStatuses(identifier, jobId);
+
+		writeThrough(new Key(identifier, jobId), Status.PENDING);
+	}
+
+	@Override
+	public ListenableFuture<Void> clearAllStatusesAsync(final String identifier, final int jobId) {
+		return Futures.transform(asyncStorage.clearAllStatusesAsync(identifier, jobId),
+				new Function<Void, Void>() {
+					@Override
+					public Void apply(Void result) {
+						writeThrough(new Key(identifier, jobId), Status.PENDING);
+						return null;
+					}
+				}, MoreExecutors.directExecutor());
+	}
+
+	@Override
+	public void removeStatus(String identifier, int jobId, Status status) throws IOException {
+		storage.removeStatus(identifier, jobId, status);
+
+		// Statuses hidden by the removed status are not known
+		invalidate(new Key(identifier, jobId));
+	}
+
+	@Override
+	public ListenableFuture<Void> removeStatusAsync(final String identifier, final int jobId,
+	                                                Status status) {
+		return Futures.transform(asyncStorage.removeStatusAsync(identifier, jobId, status),
+				new Function<Void, Void>() {
+					@Override
+					public Void apply(Void result) {
+						invalidate(new Key(identifier, jobId));
+						return null;
+					}
+				}, MoreExecutors.directExecutor());
+	}
+
+	@Override
+	public void commitStatus(String identifier, int jobId, Status status, DateTime time,
+	                         boolean overwrite) throws IOException {
+		storage.commitStatus(identifier, jobId, status, time, overwrite);
+
+		committed(new Key(identifier, jobId), status, overwrite);
+	}
+
+	@Override
+	public ListenableFuture<Void> commitStatusAsync(String identifier, int jobId,
+	                                                final Status status, DateTime time,
+	                                                final boolean overwrite) {
+		final Key key = new Key(identifier, jobId);
+
+		return Futures.transform(
+				asyncStorage.commitStatusAsync(identifier, jobId, status, time, overwrite),
+				new Function<Void, Void>() {
+					@Override
+					public Void apply(Void result) {
+						committed(key, status, overwrite);
+						return null;
+					}
+				}, MoreExecutors.directExecutor());
+	}
+
+	// Writes a status committed to the storage through to the cache
+	private void committed(Key key, Status status, boolean overwrite) {
+		Entry cached = cache.get(key);
+
+		if (overwrite) {
+			writeThrough(key, status);
+		} else if (cached != null && cached.status != null) {
+			writeThrough(key, precedence(cached.status, status));
+		} else {
+			invalidate(key);
+		}
+	}
+
+	@Override
+	public int getAttemptCount(String identifier, int id) throws IOException {
+		return storage.getAttemptCount(identifier, id);
+	}
+
+	@Override
+	public void commitAttemptCount(String identifier, int jobId, int attempts)
+			throws IOException {
+		storage.commitAttemptCount(identifier, jobId, attempts);
+	}
+
+	@Override
+	public String getWatermark(String identifier, String name) throws IOException {
+		return storage.getWatermark(identifier, name);
+	}
+
+	@Override
+	public void commitWatermark(String identifier, String name, String watermark)
+			throws IOException {
+		storage.commitWatermark(identifier, name, watermark);
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	// Caches a status written through the cache
+	private void writeThrough(Key key, Status status) {
+		cache.put(key, new Entry(isCacheable(key) ? status : null));
+	}
+
+	// Caches a status read from the storage, unless the entry seen before
+	// reading it (null if none) was replaced in the meantime
+	private void read(Key key, Entry seen, Status status) {
+		Entry entry = new Entry(status);
+
+		if (seen == null) {
+			cache.putIfAbsent(key, entry);
+		} else {
+			cache.replace(key, seen, entry);
+		}
+	}
+
+	/**
+	 * Drops the cached status of an iteration, e.g. whose statuses changed.
+	 * Reads of the iteration in progress are not cached.
+	 */
+	protected void invalidate(Key key) {
+		cache.put(key, new Entry(null));
+	}
+
+	/**
+	 * Called before the status of an iteration missing from the cache is
+	 * read from the storage. Does nothing by default.
+	 */
+	protected void beforeRead(Key key) throws IOException {
+	}
+
+	/**
+	 * Checks if a status written through the cache can be cached. Always
+	 * true by default.
+	 */
+	protected boolean isCacheable(Key key) {
+		return true;
+	}
+
+	// Status returned by checkStatus when both statuses are set
+	private static Status precedence(Status a, Status b) {
+		for (Status s : new Status[] {Status.SUCCESS, Status.IN_PROGRESS, Status.ERROR}) {
+			if (a == s || b == s) {
+				return s;
+			}
+		}
+		return Status.PENDING;
+	}
+
+	/**
+	 * Cache in front of a watchable storage, invalidated by change watches
+	 */
+	private static class Watchable extends CachingStatusStorage
+			implements WatchableStatusStorage {
+
+		// Change watches set in the underlying storage, at most one per
+		// iteration until it fires. Entries expiring from the cache keep
+		// their watch so reading them again does not set another one.
+		private final ConcurrentMap<Key, StatusListener> watches = Maps.newConcurrentMap();
+
+		private Watchable(WatchableStatusStorage storage, long ttlMillis, Ticker ticker) {
+			super(storage, ttlMillis, ticker);
+		}
+
+		@Override
+		protected void beforeRead(final Key key) throws IOException {
+			if (watches.containsKey(key)) {
+				return;
+			}
+
+			StatusListener watch = new StatusListener() {
+				@Override
+				public void onStatus(String identifier, int id, Status status) {
+					logger.trace("Statuses of {}:{} changed", identifier, id);
+					watches.remove(key, this);
+					invalidate(key);
+				}
+			};
+
+			if (watches.putIfAbsent(key, watch) != null) {
+				return;
+			}
+
+			try {
+				((WatchableStatusStorage) storage).watchChanges(key.identifier, key.id, watch);
+			} catch (IOException e) {
+				watches.remove(key, watch);
+				throw e;
+			}
+		}
+
+		// Without a watch set on the iteration the entry would not be
+		// invalidated by other processes
+		@Override
+		protected boolean isCacheable(Key key) {
+			return watches.containsKey(key);
+		}
+
+		@Override
+		public void watchStatus(String identifier, int id, Status status,
+		                        StatusListener listener) throws IOException {
+			((WatchableStatusStorage) storage).watchStatus(identifier, id, status, listener);
+		}
+
+		@Override
+		public void watchChanges(String identifier, int id, StatusListener listener)
+				throws IOException {
+			((WatchableStatusStorage) storage).watchChanges(identifier, id, listener);
+		}
+	}
+
+	protected static class Key {
+		private final String identifier;
+		private final int id;
+
+		private Key(String identifier, int id) {
+			this.identifier = identifier;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(identifier, id);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key
+					&& this.identifier.equals(((Key) o).identifier)
+					&& this.id == ((Key) o).id;
+		}
+	}
+
+	// Cached status of an iteration, null if it is not known. Compared by
+	// identity so that a read only replaces the entry it has seen.
+	private static class Entry {
+		private final Status status;
+
+		private Entry(Status status) {
+			this.status = status;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.AsyncStatusStorage;
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusListener;
+import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.WatchableStatusStorage;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.joda.time.DateTime;
+
+/**
+ * Asynchronous API over a status storage that only has blocking calls (e.g.
+ * HDFS), running the calls on the {@link StorageExecutor}
+ *
+ * @author tshiou
+ */
+public class ExecutorStatusStorage implements AsyncStatusStorage {
+
+	protected final StatusStorage storage;
+
+	private final StorageExecutor executor;
+
+	ExecutorStatusStorage(StatusStorage storage, StorageExecutor executor) {
+		this.storage = storage;
+		this.executor = executor;
+	}
+
+	/**
+	 * Provides the asynchronous API of a status storage. Storages with a
+	 * native asynchronous API are returned as is. The returned storage is
+	 * watchable if the wrapped storage is.
+	 */
+	public static AsyncStatusStorage wrap(StatusStorage storage) {
+		if (storage instanceof AsyncStatusStorage) {
+			return (AsyncStatusStorage) storage;
+		}
+
+		if (storage instanceof WatchableStatusStorage) {
+			return new Watchable((WatchableStatusStorage) storage, StorageExecutor.get());
+		}
+
+		return new ExecutorStatusStorage(storage, StorageExecutor.get());
+	}
+
+	@Override
+	public String toString() {
+		return storage.toString();
+	}
+
+	@Override
+	public void init() throws IOException {
+		storage.init();
+	}
+
+	@Override
+	public StatusStorage setType(String type) {
+		storage.setType(type);
+		return this;
+	}
+
+	@Override
+	public DateTime getLastUpdateTime(String identifier, int id) throws IOException {
+		return storage.getLastUpdateTime(identifier, id);
+	}
+
+	@Override
+	public DateTime getStatusUpdateTime(String identifier, int id, Status status)
+			throws IOException {
+		return storage.getStatusUpdateTime(identifier, id, status);
+	}
+
+	@Override
+	public int getCurrentIterNo(String identifier) throws IOException {
+		return storage.getCurrentIterNo(identifier);
+	}
+
+	@Override
+	public Status checkStatus(String identifier, int id) throws IOException {
+		return storage.checkStatus(identifier, id);
+	}
+
+	@Override
+	public ListenableFuture<Status> checkStatusAsync(final String identifier, final int id) {
+		return executor.submit(new Callable<Status>() {
+			@Override
+			public Status call() throws IOException {
+				return storage.checkStatus(identifier, id);
+			}
+		});
+	}
+
+	@Override
+	public Map<String, Status> checkStatuses(Collection<String> identifiers, int id)
+			throws IOException {
+		return storage.checkStatuses(identifiers, id);
+	}
+
+	@Override
+	public ListenableFuture<Map<String, Status>> checkStatusesAsync(
+			final Collection<String> identifiers, final int id) {
+		return executor.submit(new Callable<Map<String, Status>>() {
+			@Override
+			public Map<String, Status> call() throws IOException {
+				return storage.checkStatuses(identifiers, id);
+			}
+		});
+	}
+
+	@Override
+	public SortedMap<Integer, IterationStatus> getStatusRange(String identifier, int from, int to)
+			throws IOException {
+		return storage.getStatusRange(identifier, from, to);
+	}
+
+	@Override
+	public ListenableFuture<SortedMap<Integer, IterationStatus>> getStatusRangeAsync(
+			final String identifier, final int from, final int to) {
+		return executor.submit(new Callable<SortedMap<Integer, IterationStatus>>() {
+			@Override
+			public SortedMap<Integer, IterationStatus> call() throws IOException {
+				return storage.getStatusRange(identifier, from, to);
+			}
+		});
+	}
+
+	@Override
+	public void clearAllStatuses(String identifier, int jobId) throws IOException {
+		storage.clearAllStatuses(identifier, jobId);
+	}
+
+	@Override
+	public void removeStatus(String identifier, int jobId, Status status) throws IOException {
+		storage.removeStatus(identifier, jobId, status);
+	}
+
+	@Override
+	public ListenableFuture<Void> clearAllStatusesAsync(final String identifier,
+	                                                    final int jobId) {
+		return executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				storage.clearAllStatuses(identifier, jobId);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Void> removeStatusAsync(final String identifier, final int jobId,
+	                                                final Status status) {
+		return executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				storage.removeStatus(identifier, jobId, status);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void commitStatus(String identifier, int jobId, Status status, DateTime time,
+	                         boolean overwrite) throws IOException {
+		storage.commitStatus(identifier, jobId, status, time, overwrite);
+	}
+
+	@Override
+	public ListenableFuture<Void> commitStatusAsync(final String identifier, final int jobId,
+	                                                final Status status, final DateTime time,
+	                                                final boolean overwrite) {
+		return executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				storage.commitStatus(identifier, jobId, status, time, overwrite);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public int getAttemptCount(String identifier, int id) throws IOException {
+		return storage.getAttemptCount(identifier, id);
+	}
+
+	@Override
+	public void commitAttemptCount(String identifier, int jobId, int attempts)
+			throws IOException {
+		storage.commitAttemptCount(identifier, jobId, attempts);
+	}
+
+	@Override
+	public String getWatermark(String identifier, String name) throws IOException {
+		return storage.getWatermark(identifier, name);
+	}
+
+	@Override
+	public void commitWatermark(String identifier, String name, String watermark)
+			throws IOException {
+		storage.commitWatermark(identifier, name, watermark);
+	}
+
+	/**
+	 * Asynchronous API over a watchable storage
+	 */
+	private static class Watchable extends ExecutorStatusStorage
+			implements WatchableStatusStorage {
+
+		private Watchable(WatchableStatusStorage storage, StorageExecutor executor) {
+			super(storage, executor);
+		}
+
+		@Override
+		public void watchStatus(String identifier, int id, Status status,
+		                        StatusListener listener) throws IOException {
+			((WatchableStatusStorage) storage).watchStatus(identifier, id, status, listener);
+		}
+
+		@Override
+		public void watchChanges(String identifier, int id, StatusListener listener)
+				throws IOException {
+			((WatchableStatusStorage) storage).watchChanges(identifier, id, listener);
+		}
+	}
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.AsyncStatusStorage;
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.impl.util.PathUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.BindingAnnotation;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Status storage in a local directory, for single node deployments that do
+ * not run HDFS or Zookeeper. Statuses are kept in memory and made durable
+ * by a {@link StatusJournal}.
+ *
+ * @author tshiou
+ */
+public class FileStatusStorage implements AsyncStatusStorage {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(FileStatusStorage.class);
+
+	private String type = "default";
+
+	@Inject
+	@FileStorageRoot
+	private String root;
+
+	@Inject(optional = true)
+	@Named(SYNC)
+	private Boolean sync = true;
+
+	@Inject(optional = true)
+	@Named(SNAPSHOT_INTERVAL)
+	private Integer snapshotInterval = 10000;
+
+	private volatile StatusJournal journal;
+
+	// identifier -> iteration number -> statuses of the iteration
+	private final ConcurrentMap<String, ConcurrentNavigableMap<Integer, Iteration>> index =
+			Maps.newConcurrentMap();
+
+	// identifier -> name -> watermark
+	private final ConcurrentMap<String, ConcurrentMap<String, String>> watermarks =
+			Maps.newConcurrentMap();
+
+	public FileStatusStorage() {
+
+	}
+
+	FileStatusStorage(String root, boolean sync, int snapshotInterval) {
+		this.root = root;
+		this.sync = sync;
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	@Override
+	public String toString() {
+		return "File status storage @ " + new File(root, type);
+	}
+
+	@Override
+	public synchronized void init() throws IOException {
+		if (journal != null) {
+			return;
+		}
+
+		StatusJournal opened = new StatusJournal(new File(root, type), sync, snapshotInterval,
+				new StatusJournal.State() {
+					@Override
+					public void apply(StatusJournal.Record record) {
+						FileStatusStorage.this.apply(record);
+					}
+
+					@Override
+					public void snapshot(StatusJournal.Snapshot snapshot) throws IOException {
+						FileStatusStorage.this.snapshot(snapshot);
+					}
+				});
+		opened.open();
+
+		logger.info("Loaded {} identifiers from {}", index.size(), opened);
+		journal = opened;
+	}
+
+	/**
+	 * Closes the log and releases the directory
+	 */
+	synchronized void close() throws IOException {
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
+	}
+
+	@Override
+	public StatusStorage setType(String type) {
+		// Strip path separator prefix or suffix
+		this.type = PathUtil.stripPrePostSlashes(type);
+		return this;
+	}
+
+	@Override
+	public DateTime getLastUpdateTime(String identifier, int id) throws IOException {
+		Iteration iteration = getIteration(identifier, id);
+
+		return new DateTime(iteration == null ? 0 : iteration.getLastTime());
+	}
+
+	@Override
+	public DateTime getStatusUpdateTime(String identifier, int id, Status status)
+			throws IOException {
+		Iteration iteration = getIteration(identifier, id);
+		Long time = iteration == null ? null : iteration.times.get(status);
+
+		return new DateTime(time == null ? 0 : time);
+	}
+
+	@Override
+	public int getCurrentIterNo(String identifier) throws IOException {
+		ConcurrentNavigableMap<Integer, Iteration> iterations = index.get(identifier);
+
+		if (iterations == null || iterations.isEmpty()) {
+			return 0;
+		}
+
+		try {
+			return Math.max(iterations.lastKey(), 0);
+		} catch (NoSuchElementException e) {
+			// Removed concurrently
+			return 0;
+		}
+	}
+
+	@Override
+	public Status checkStatus(String identifier, int id) throws IOException {
+		Iteration iteration = getIteration(identifier, id);
+
+		return iteration == null ? Status.PENDING : iteration.getStatus();
+	}
+
+	@Override
+	public ListenableFuture<Status> checkStatusAsync(String identifier, int id) {
+		try {
+			return Futures.immediateFuture(checkStatus(identifier, id));
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public Map<String, Status> checkStatuses(Collection<String> identifiers, int id)
+			throws IOException {
+		Map<String, Status> statuses = Maps.newHashMapWithExpectedSize(identifiers.size());
+
+		for (String identifier : identifiers) {
+			statuses.put(identifier, checkStatus(identifier, id));
+		}
+
+		return statuses;
+	}
+
+	@Override
+	public ListenableFuture<Map<String, Status>> checkStatusesAsync(Collection<String> identifiers,
+	                                                                int id) {
+		try {
+			return Futures.immediateFuture(checkStatuses(identifiers, id));
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public SortedMap<Integer, IterationStatus> getStatusRange(String identifier, int from, int to)
+			throws IOException {
+		SortedMap<Integer, IterationStatus> range = new TreeMap<Integer, IterationStatus>();
+		ConcurrentNavigableMap<Integer, Iteration> iterations = index.get(identifier);
+
+		if (iterations == null || from > to) {
+			return range;
+		}
+
+		for (Map.Entry<Integer, Iteration> entry
+				: iterations.subMap(from, true, to, true).entrySet()) {
+			Status status = entry.getValue().getStatus();
+
+			if (status != Status.PENDING) {
+				range.put(entry.getKey(), new IterationStatus(entry.getKey(), status,
+						new DateTime(entry.getValue().times.get(status))));
+			}
+		}
+
+		return range;
+	}
+
+	@Override
+	public ListenableFuture<SortedMap<Integer, IterationStatus>> getStatusRangeAsync(
+			String identifier, int from, int to) {
+		try {
+			return Futures.immediateFuture(getStatusRange(identifier, from, to));
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public void clearAllStatuses(String identifier, int jobId) throws IOException {
+		write(StatusJournal.Record.clear(identifier, jobId));
+	}
+
+	@Override
+	public void removeStatus(String identifier, int jobId, Status status) throws IOException {
+		write(StatusJournal.Record.remove(identifier, jobId, status));
+	}
+
+	@Override
+	public ListenableFuture<Void> clearAllStatusesAsync(final String identifier,
+	                                                    final int jobId) {
+		return StorageExecutor.get().submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				clearAllStatuses(identifier, jobId);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public ListenableFuture<Void> removeStatusAsync(final String identifier, final int jobId,
+	                                                final Status status) {
+		return StorageExecutor.get().submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				removeStatus(identifier, jobId, status);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void commitStatus(String identifier, int jobId, Status status, DateTime time,
+	                         boolean overwrite) throws IOException {
+		write(StatusJournal.Record.commit(identifier, jobId, status, time.getMillis(), overwrite));
+	}
+
+	@Override
+	public ListenableFuture<Void> commitStatusAsync(final String identifier, final int jobId,
+	                                                final Status status, final DateTime time,
+	                                                final boolean overwrite) {
+		return StorageExecutor.get().submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				commitStatus(identifier, jobId, status, time, overwrite);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public int getAttemptCount(String identifier, int id) throws IOException {
+		Iteration iteration = getIteration(identifier, id);
+
+		return iteration == null ? 0 : iteration.attempts;
+	}
+
+	@Override
+	public void commitAttemptCount(String identifier, int jobId, int attempts)
+			throws IOException {
+		write(StatusJournal.Record.attempts(identifier, jobId, attempts));
+	}
+
+	@Override
+	public String getWatermark(String identifier, String name) throws IOException {
+		Map<String, String> identifierWatermarks = watermarks.get(identifier);
+
+		return identifierWatermarks == null ? null : identifierWatermarks.get(name);
+	}
+
+	@Override
+	public void commitWatermark(String identifier, String name, String watermark)
+			throws IOException {
+		write(StatusJournal.Record.watermark(identifier, name, watermark));
+	}
+
+	private Iteration getIteration(String identifier, int id) {
+		Map<Integer, Iteration> iterations = index.get(identifier);
+
+		return iterations == null ? null : iterations.get(id);
+	}
+
+	private void write(StatusJournal.Record record) throws IOException {
+		StatusJournal opened = journal;
+
+		if (opened == null) {
+			throw new IOException("Status storage is not initialized: " + this);
+		}
+
+		opened.write(record);
+	}
+
+	// Applies a synced or replayed record to the index
+	private void apply(StatusJournal.Record record) {
+		if (record.getOp() == StatusJournal.Op.WATERMARK) {
+			ConcurrentMap<String, String> identifierWatermarks =
+					watermarks.get(record.getIdentifier());
+			if (identifierWatermarks == null) {
+				watermarks.putIfAbsent(record.getIdentifier(),
+						Maps.<String, String>newConcurrentMap());
+				identifierWatermarks = watermarks.get(record.getIdentifier());
+			}
+			identifierWatermarks.put(record.getName(), record.getWatermark());
+			return;
+		}
+
+		ConcurrentNavigableMap<Integer, Iteration> iterations = index.get(record.getIdentifier());
+		if (iterations == null) {
+			index.putIfAbsent(record.getIdentifier(),
+					new ConcurrentSkipListMap<Integer, Iteration>());
+			iterations = index.get(record.getIdentifier());
+		}
+
+		Iteration iteration = iterations.get(record.getId());
+		if (iteration == null) {
+			iteration = new Iteration();
+		}
+
+		switch (record.getOp()) {
+			case COMMIT:
+				iteration = iteration.commit(record.getStatus(), record.getTime(),
+						record.isOverwrite());
+				break;
+			case REMOVE:
+				iteration = iteration.remove(record.getStatus());
+				break;
+			case CLEAR:
+				iteration = new Iteration();
+				break;
+			case ATTEMPTS:
+				iteration = iteration.withAttempts(record.getAttempts());
+				break;
+			default:
+				throw new IllegalStateException("Unknown journal record " + record.getOp());
+		}
+
+		if (iteration.isEmpty()) {
+			iterations.remove(record.getId());
+		} else {
+			iterations.put(record.getId(), iteration);
+		}
+	}
+
+	// Adds the records rebuilding the index to a snapshot
+	private void snapshot(StatusJournal.Snapshot snapshot) throws IOException {
+		for (Map.Entry<String, ConcurrentNavigableMap<Integer, Iteration>> identifier
+				: index.entrySet()) {
+			for (Map.Entry<Integer, Iteration> iteration : identifier.getValue().entrySet()) {
+				for (Map.Entry<Status, Long> status : iteration.getValue().times.entrySet()) {
+					snapshot.add(StatusJournal.Record.commit(identifier.getKey(),
+							iteration.getKey(), status.getKey(), status.getValue(), false));
+				}
+
+				if (iteration.getValue().attempts != 0) {
+					snapshot.add(StatusJournal.Record.attempts(identifier.getKey(),
+							iteration.getKey(), iteration.getValue().attempts));
+				}
+			}
+		}
+
+		for (Map.Entry<String, ConcurrentMap<String, String>> identifier : watermarks.entrySet()) {
+			for (Map.Entry<String, String> watermark : identifier.getValue().entrySet()) {
+				snapshot.add(StatusJournal.Record.watermark(identifier.getKey(),
+						watermark.getKey(), watermark.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * Statuses and attempt count of one iteration. Instances are immutable
+	 * so that reads do not need to lock.
+	 */
+	private static class Iteration {
+		private final Map<Status, Long> times;
+		private final int attempts;
+
+		private Iteration() {
+			this(Maps.<Status, Long>newEnumMap(Status.class), 0);
+		}
+
+		private Iteration(Map<Status, Long> times, int attempts) {
+			this.times = times;
+			this.attempts = attempts;
+		}
+
+		private Iteration commit(Status status, long time, boolean overwrite) {
+			Map<Status, Long> committed = overwrite
+					? Maps.<Status, Long>newEnumMap(Status.class)
+					: Maps.newEnumMap(times);
+			committed.put(status, time);
+			return new Iteration(committed, attempts);
+		}
+
+		private Iteration remove(Status status) {
+			if (times.containsKey(status) == false) {
+				return this;
+			}
+
+			Map<Status, Long> removed = Maps.newEnumMap(times);
+			removed.remove(status);
+			return new Iteration(removed, attempts);
+		}
+
+		private Iteration withAttempts(int attempts) {
+			return new Iteration(times, attempts);
+		}
+
+		private boolean isEmpty() {
+			return times.isEmpty() && attempts == 0;
+		}
+
+		private long getLastTime() {
+			long last = 0;
+			for (long time : times.values()) {
+				last = Math.max(time, last);
+			}
+			return last;
+		}
+
+		private Status getStatus() {
+			if (times.containsKey(Status.SUCCESS)) {
+				return Status.SUCCESS;
+			}
+
+			if (times.containsKey(Status.IN_PROGRESS)) {
+				return Status.IN_PROGRESS;
+			}
+
+			if (times.containsKey(Status.ERROR)) {
+				return Status.ERROR;
+			}
+
+			return Status.PENDING;
+		}
+
+	}
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ElementType.FIELD, ElementType.PARAMETER})
+	@BindingAnnotation
+	public @interface FileStorageRoot {}
+
+	public static final String SYNC = "file_sync";
+	public static final String SNAPSHOT_INTERVAL = "file_snapshot_interval";
+}
@@ -6,6 +6,7 @@
 
 package com.turn.sorcerer.status.impl;
 
+import com.turn.sorcerer.status.IterationStatus;
 import com.turn.sorcerer.status.Status;
 import com.turn.sorcerer.status.StatusStorage;
 
@@ -15,12 +16,31 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.BindingAnnotation;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -41,12 +61,70 @@ public class HDFSStatusStorage implements StatusStorage {
 
 	private static final Joiner JOINER = Joiner.on(Path.SEPARATOR);
 
+	// Characters of identifiers that cannot be put in a glob pattern
+	private static final CharMatcher GLOB_CHARACTERS = CharMatcher.anyOf("{}[]*?,\\");
+
+	// File holding the number of failed execution attempts of an iteration
+	private static final String ATTEMPTS_FILE = "ATTEMPTS";
+
+	// Directory holding the watermarks of an identifier, next to its iterations
+	private static final String WATERMARKS_DIR = "_watermarks";
+
+	// Directory holding the high-water mark of an identifier, an empty file
+	// named after its highest iteration number
+	private static final String HIGH_WATER_MARK_DIR = "_current";
+
+	// Separates the status from its commit time in compact status file names
+	private static final char TIME_SEPARATOR = '@';
+
+	// Status file name (without commit time) -> status
+	private static final Map<String, Status> STATUS_FILES;
+	static {
+		ImmutableMap.Builder<String, Status> builder = ImmutableMap.builder();
+		for (Status status : Status.values()) {
+			builder.put(status.getString(), status);
+		}
+		STATUS_FILES = builder.build();
+	}
+
 	private String type;
 
 	@Inject
 	@HDFSStorageRoot
 	private String root;
 
+	@Inject(optional = true)
+	@Named(COMPACT_LAYOUT)
+	private Boolean compact = false;
+
+	@Inject(optional = true)
+	@Named(MIGRATE_LAYOUT)
+	private Boolean migrate = false;
+
+	@Inject(optional = true)
+	@Named(BUCKETED_LAYOUT)
+	private Boolean bucketed = false;
+
+	private boolean migrated = false;
+
+	// Identifier -> high-water mark known to be persisted
+	private final ConcurrentMap<String, Integer> highWaterMarks = Maps.newConcurrentMap();
+
+	public HDFSStatusStorage() {
+
+	}
+
+	HDFSStatusStorage(FileSystem fs, String root, boolean compact) {
+		this(fs, root, compact, false);
+	}
+
+	HDFSStatusStorage(FileSystem fs, String root, boolean compact, boolean bucketed) {
+		this.fs = fs;
+		this.root = root;
+		this.compact = compact;
+		this.bucketed = bucketed;
+	}
+
 	public void init() throws IOException {
 		if (fs == null) {
 			try {
@@ -64,9 +142,163 @@ public class HDFSStatusStorage implements StatusStorage {
 		if (fs.exists(new Path(root, type)) == false) {
 			fs.mkdirs(new Path(root, type));
 		}
+
+		if (migrate && migrated == false) {
+			if (bucketed) {
+				logger.info("Moved {} {} iterations to the bucketed layout",
+						migrateBuckets(), type);
+			}
+
+			if (compact) {
+				logger.info("Migrated {} {} status files to the compact layout",
+						migrateLayout(), type);
+			}
+
+			migrated = true;
+		}
+	}
+
+	/**
+	 * Moves the iteration directories of the flat layout into their bucket.
+	 * If the iteration directory already exists in its bucket, e.g. after an
+	 * interrupted migration, its files are moved one by one.
+	 *
+	 * @return Number of moved iteration directories
+	 */
+	int migrateBuckets() throws IOException {
+		FileStatus[] iterations = fs.globStatus(new Path(JOINER.join(root, type, "*", "*")));
+
+		if (iterations == null) {
+			return 0;
+		}
+
+		int moved = 0;
+		for (FileStatus iteration : iterations) {
+			String name = iteration.getPath().getName();
+
+			if (iteration.isDirectory() == false || isIteration(name) == false) {
+				continue;
+			}
+
+			Path bucket = new Path(iteration.getPath().getParent(),
+					IterationBuckets.of(Integer.parseInt(name)));
+			Path target = new Path(bucket, name);
+
+			fs.mkdirs(bucket);
+
+			// Renaming onto an existing directory would move the iteration into it
+			if (fs.exists(target)) {
+				for (FileStatus file : fs.listStatus(iteration.getPath())) {
+					fs.rename(file.getPath(), new Path(target, file.getPath().getName()));
+				}
+				fs.delete(iteration.getPath(), true);
+				moved++;
+			} else if (fs.rename(iteration.getPath(), target)) {
+				moved++;
+			}
+		}
+
+		return moved;
+	}
+
+	/**
+	 * Renames the status files of the legacy layout to the compact layout.
+	 * The modification time of a legacy status file becomes its commit time.
+	 * Each rename is atomic so readers see either file, and both are read as
+	 * the same status.
+	 *
+	 * @return Number of migrated status files
+	 */
+	int migrateLayout() throws IOException {
+		FileStatus[] files = fs.globStatus(new Path(bucketed
+				? JOINER.join(root, type, "*", "*", "*", "*")
+				: JOINER.join(root, type, "*", "*", "*")));
+
+		if (files == null) {
+			return 0;
+		}
+
+		int migrated = 0;
+		for (FileStatus file : files) {
+			String name = file.getPath().getName();
+
+			if (STATUS_FILES.containsKey(name) == false
+					|| isIteration(file.getPath().getParent().getName()) == false) {
+				continue;
+			}
+
+			Path compactPath = new Path(file.getPath().getParent(),
+					name + TIME_SEPARATOR + file.getModificationTime());
+
+			if (fs.rename(file.getPath(), compactPath)) {
+				migrated++;
+			}
+		}
+
+		return migrated;
+	}
+
+	private static boolean isIteration(String name) {
+		try {
+			Integer.parseInt(name);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Parses the status files of an iteration. Files of both layouts are
+	 * read: {@code STATUS} files of the legacy layout, whose commit time is
+	 * their modification time, and {@code STATUS@time} files of the compact
+	 * layout. Other files (e.g. the attempt count) are ignored.
+	 *
+	 * @return Commit time in milliseconds of each status
+	 */
+	private static Map<Status, Long> parseStatuses(Iterable<FileStatus> files) {
+		Map<Status, Long> statuses = Maps.newEnumMap(Status.class);
+
+		for (FileStatus file : files) {
+			String name = file.getPath().getName();
+			int separator = name.indexOf(TIME_SEPARATOR);
+
+			Status status = STATUS_FILES.get(separator < 0 ? name : name.substring(0, separator));
+			if (status == null) {
+				continue;
+			}
+
+			long time;
+			try {
+				time = separator < 0
+						? file.getModificationTime()
+						: Long.parseLong(name.substring(separator + 1));
+			} catch (NumberFormatException e) {
+				continue;
+			}
+
+			// Latest commit if the status was committed more than once
+			Long previous = statuses.get(status);
+			statuses.put(status, previous == null ? time : Math.max(previous, time));
+		}
+
+		return statuses;
+	}
+
+	// Statuses of an iteration with their commit time, in a single listing
+	private Map<Status, Long> readStatuses(String identifier, int id) throws IOException {
+		try {
+			return parseStatuses(Arrays.asList(
+					fs.listStatus(new Path(getStatusPath(identifier, id)))));
+		} catch (FileNotFoundException fnfe) {
+			return Collections.emptyMap();
+		}
 	}
 
 	private String getStatusPath(String identifier, int id) {
+		if (bucketed) {
+			return JOINER.join(getStatusPath(identifier), IterationBuckets.of(id), id);
+		}
+
 		return JOINER.join(getStatusPath(identifier), id);
 	}
 
@@ -111,6 +343,11 @@ public class HDFSStatusStorage implements StatusStorage {
 			maxTS = Math.max(fileStatus.getModificationTime(), maxTS);
 		}
 
+		// Compact status files carry their commit time in their name
+		for (long time : parseStatuses(Arrays.asList(fileStatuses)).values()) {
+			maxTS = Math.max(time, maxTS);
+		}
+
 		return new DateTime(maxTS);
 	}
 
@@ -128,13 +365,9 @@ public class HDFSStatusStorage implements StatusStorage {
 			}
 		}
 
-		Path statusPath = new Path(getStatusPath(identifier, id), status.getString());
-
-		if (fs.exists(statusPath)) {
-			return new DateTime(fs.getFileStatus(statusPath).getModificationTime());
-		}
+		Long time = readStatuses(identifier, id).get(status);
 
-		return new DateTime(0);
+		return new DateTime(time == null ? 0 : time);
 	}
 
 	@Override
@@ -150,27 +383,132 @@ public class HDFSStatusStorage implements StatusStorage {
 			}
 		}
 
-		int maxIterNo = 0;
+		int current = readHighWaterMark(identifier);
+		highWaterMarks.put(identifier, current);
+
+		return current;
+	}
+
+	/**
+	 * Reads the high-water mark of an identifier, a listing of a directory
+	 * holding a single file. Identifiers committed by previous versions have
+	 * no high-water mark, it is then initialized from their iterations.
+	 */
+	private int readHighWaterMark(String identifier) throws IOException {
+		FileStatus[] marks;
+
+		try {
+			marks = fs.listStatus(new Path(getStatusPath(identifier), HIGH_WATER_MARK_DIR));
+		} catch (FileNotFoundException fnfe) {
+			marks = new FileStatus[0];
+		}
+
+		// More than one mark if a commit was interrupted
+		int current = -1;
+		for (FileStatus mark : marks) {
+			try {
+				current = Math.max(Integer.parseInt(mark.getPath().getName()), current);
+			} catch (NumberFormatException e) {
+				continue;
+			}
+		}
+
+		if (current >= 0) {
+			return current;
+		}
+
+		current = scanIterations(identifier);
 
-		Path directoryPath = new Path(getStatusPath(identifier));
+		if (current > 0) {
+			writeHighWaterMark(identifier, current);
+		}
+
+		return current;
+	}
 
+	/**
+	 * Raises the high-water mark of an identifier to an iteration, before a
+	 * status of the iteration is committed. The mark of the new iteration is
+	 * created before the lower marks are deleted, so that the directory is
+	 * never empty.
+	 */
+	private void raiseHighWaterMark(String identifier, int id) throws IOException {
+		Integer current = highWaterMarks.get(identifier);
+
+		if (current == null) {
+			current = readHighWaterMark(identifier);
+		}
+
+		if (current >= id) {
+			highWaterMarks.put(identifier, current);
+			return;
+		}
+
+		writeHighWaterMark(identifier, id);
+		highWaterMarks.put(identifier, id);
+	}
+
+	private void writeHighWaterMark(String identifier, int id) throws IOException {
+		Path marks = new Path(getStatusPath(identifier), HIGH_WATER_MARK_DIR);
+
+		try {
+			fs.create(new Path(marks, String.valueOf(id)), false).close();
+		} catch (FileAlreadyExistsException e) {
+			// Raised concurrently
+		}
+
+		for (FileStatus mark : fs.listStatus(marks)) {
+			try {
+				if (Integer.parseInt(mark.getPath().getName()) < id) {
+					fs.delete(mark.getPath(), false);
+				}
+			} catch (NumberFormatException e) {
+				continue;
+			}
+		}
+	}
+
+	/**
+	 * Finds the highest iteration of an identifier by listing its iteration
+	 * directories, and those of its highest bucket
+	 */
+	private int scanIterations(String identifier) throws IOException {
 		FileStatus[] fileStatuses;
 
 		try {
-			fileStatuses = fs.listStatus(directoryPath);
+			fileStatuses = fs.listStatus(new Path(getStatusPath(identifier)));
 		} catch (FileNotFoundException fnfe ) {
 			return 0;
 		}
 
+		int maxIterNo = 0;
+		Integer maxBucket = null;
+
 		for (FileStatus fileStatus : fileStatuses) {
-			int iterNo;
-			try {
-				iterNo = Integer.parseInt(fileStatus.getPath().getName());
-			} catch (NumberFormatException e) {
+			String name = fileStatus.getPath().getName();
+
+			Integer bucket = IterationBuckets.parse(name);
+			if (bucket != null) {
+				maxBucket = maxBucket == null ? bucket : Math.max(bucket, maxBucket);
 				continue;
 			}
 
-			maxIterNo = Math.max(iterNo, maxIterNo);
+			if (isIteration(name)) {
+				maxIterNo = Math.max(Integer.parseInt(name), maxIterNo);
+			}
+		}
+
+		if (maxBucket == null) {
+			return maxIterNo;
+		}
+
+		for (FileStatus fileStatus : fs.listStatus(new Path(getStatusPath(identifier),
+				IterationBuckets.name(maxBucket)))) {
+			String name = fileStatus.getPath().getName();
+
+			if (isIteration(name)) {
+				maxIterNo = Math.max(Integer.parseInt(name), maxIterNo);
+			}
 		}
 
 		return maxIterNo;
@@ -191,21 +529,204 @@ public class HDFSStatusStorage implements StatusStorage {
 			}
 		}
 
-		Path successPath = new Path(getStatusPath(identifier, id), Status.SUCCESS.getString());
+		// Single listing instead of checking each status file
+		return getStatus(readStatuses(identifier, id).keySet());
+	}
 
-		if (fs.exists(successPath)) {
-			return Status.SUCCESS;
+	@Override
+	public Map<String, Status> checkStatuses(Collection<String> identifiers, int id)
+			throws IOException {
+		Map<String, Status> statuses = Maps.newHashMapWithExpectedSize(identifiers.size());
+
+		if (identifiers.isEmpty()) {
+			return statuses;
 		}
 
-		Path progressPath = new Path(getStatusPath(identifier, id), Status.IN_PROGRESS.getString());
+		boolean globSafe = true;
+		for (String identifier : identifiers) {
+			statuses.put(identifier, Status.PENDING);
+			globSafe &= GLOB_CHARACTERS.matchesNoneOf(identifier);
+		}
 
-		if (fs.exists(progressPath)) {
-			return Status.IN_PROGRESS;
+		// Identifiers that cannot be put in a glob pattern are checked one by one
+		if (id == -1 || globSafe == false) {
+			for (String identifier : identifiers) {
+				statuses.put(identifier, checkStatus(identifier, id));
+			}
+			return statuses;
 		}
 
-		Path errorPath = new Path(getStatusPath(identifier, id), Status.ERROR.getString());
+		if (fs == null) {
+			try {
+				fs = FileSystem.get(new Configuration());
+			} catch (IOException e) {
+				logger.error("Filesystem unreachable!", e);
+				throw e;
+			}
+		}
 
-		if (fs.exists(errorPath)) {
+		// Single glob over the iteration directories of all identifiers:
+		// root/type/{identifier1,identifier2,...}/[bucket/]id/*
+		FileStatus[] files = fs.globStatus(new Path(JOINER.join(root, type,
+				"{" + Joiner.on(',').join(identifiers) + "}",
+				bucketed ? IterationBuckets.of(id) + Path.SEPARATOR + id : id, "*")));
+
+		if (files == null) {
+			return statuses;
+		}
+
+		ListMultimap<String, FileStatus> byIdentifier = ArrayListMultimap.create();
+		for (FileStatus file : files) {
+			Path identifierPath = file.getPath().getParent().getParent();
+			if (bucketed) {
+				identifierPath = identifierPath.getParent();
+			}
+			byIdentifier.put(identifierPath.getName(), file);
+		}
+
+		for (String identifier : byIdentifier.keySet()) {
+			statuses.put(identifier,
+					getStatus(parseStatuses(byIdentifier.get(identifier)).keySet()));
+		}
+
+		return statuses;
+	}
+
+	@Override
+	public SortedMap<Integer, IterationStatus> getStatusRange(String identifier, int from, int to)
+			throws IOException {
+		Preconditions.checkNotNull(identifier);
+
+		if (fs == null) {
+			try {
+				fs = FileSystem.get(new Configuration());
+			} catch (IOException e) {
+				logger.error("Filesystem unreachable!", e);
+				throw e;
+			}
+		}
+
+		SortedMap<Integer, IterationStatus> range = new TreeMap<Integer, IterationStatus>();
+
+		if (bucketed) {
+			return getBucketedStatusRange(identifier, from, to, range);
+		}
+
+		FileStatus[] iterations;
+
+		try {
+			iterations = fs.listStatus(new Path(getStatusPath(identifier)));
+		} catch (FileNotFoundException fnfe) {
+			return range;
+		}
+
+		// Iteration directories of the range
+		List<String> names = Lists.newArrayList();
+		for (FileStatus iteration : iterations) {
+			int iterNo;
+			try {
+				iterNo = Integer.parseInt(iteration.getPath().getName());
+			} catch (NumberFormatException e) {
+				continue;
+			}
+
+			if (iterNo >= from && iterNo <= to) {
+				names.add(iteration.getPath().getName());
+			}
+		}
+
+		if (names.isEmpty()) {
+			return range;
+		}
+
+		// Status files of all iterations of the range, with their times:
+		// root/type/identifier/{iteration1,iteration2,...}/*
+		FileStatus[] files = fs.globStatus(new Path(JOINER.join(getStatusPath(identifier),
+				"{" + Joiner.on(',').join(names) + "}", "*")));
+
+		return toRange(files, range);
+	}
+
+	/**
+	 * Range scan of the bucketed layout: a single glob over the buckets of
+	 * the range, bounded by the high-water mark, then a glob over the status
+	 * files of the iterations of the range
+	 */
+	private SortedMap<Integer, IterationStatus> getBucketedStatusRange(
+			String identifier, int from, int to, SortedMap<Integer, IterationStatus> range)
+			throws IOException {
+		to = Math.min(to, readHighWaterMark(identifier));
+		from = Math.max(from, 0);
+
+		if (from > to) {
+			return range;
+		}
+
+		String buckets = "{" + Joiner.on(',').join(IterationBuckets.between(from, to)) + "}";
+
+		// root/type/identifier/{bucket1,bucket2,...}/*
+		FileStatus[] iterations = fs.globStatus(new Path(JOINER.join(getStatusPath(identifier),
+				buckets, "*")));
+
+		if (iterations == null) {
+			return range;
+		}
+
+		List<String> names = Lists.newArrayList();
+		for (FileStatus iteration : iterations) {
+			String name = iteration.getPath().getName();
+
+			if (isIteration(name) && Integer.parseInt(name) >= from
+					&& Integer.parseInt(name) <= to) {
+				names.add(name);
+			}
+		}
+
+		if (names.isEmpty()) {
+			return range;
+		}
+
+		// root/type/identifier/{bucket1,...}/{iteration1,iteration2,...}/*
+		return toRange(fs.globStatus(new Path(JOINER.join(getStatusPath(identifier), buckets,
+				"{" + Joiner.on(',').join(names) + "}", "*"))), range);
+	}
+
+	// Status and status time of each iteration of the status files of a range
+	private static SortedMap<Integer, IterationStatus> toRange(
+			FileStatus[] files, SortedMap<Integer, IterationStatus> range) {
+		if (files == null) {
+			return range;
+		}
+
+		ListMultimap<Integer, FileStatus> byIteration = ArrayListMultimap.create();
+		for (FileStatus file : files) {
+			byIteration.put(Integer.parseInt(file.getPath().getParent().getName()), file);
+		}
+
+		for (Integer iterNo : byIteration.keySet()) {
+			Map<Status, Long> statuses = parseStatuses(byIteration.get(iterNo));
+			Status status = getStatus(statuses.keySet());
+
+			if (status != Status.PENDING) {
+				range.put(iterNo, new IterationStatus(iterNo, status,
+						new DateTime(statuses.get(status))));
+			}
+		}
+
+		return range;
+	}
+
+	// Status represented by the status files of an iteration
+	private static Status getStatus(Set<Status> statuses) {
+		if (statuses.contains(Status.SUCCESS)) {
+			return Status.SUCCESS;
+		}
+
+		if (statuses.contains(Status.IN_PROGRESS)) {
+			return Status.IN_PROGRESS;
+		}
+
+		if (statuses.contains(Status.ERROR)) {
 			return Status.ERROR;
 		}
 
@@ -248,10 +769,19 @@ public class HDFSStatusStorage implements StatusStorage {
 			}
 		}
 
-		Path statusPath = new Path(getStatusPath(identifier, jobId), status.getString());
+		FileStatus[] files;
+
+		try {
+			files = fs.listStatus(new Path(getStatusPath(identifier, jobId)));
+		} catch (FileNotFoundException fnfe) {
+			return;
+		}
 
-		if (fs.exists(statusPath)) {
-			fs.delete(statusPath, true);
+		// Status files of both layouts
+		for (FileStatus file : files) {
+			if (parseStatuses(Collections.singleton(file)).containsKey(status)) {
+				fs.delete(file.getPath(), true);
+			}
 		}
 	}
 
@@ -268,8 +798,15 @@ public class HDFSStatusStorage implements StatusStorage {
 			}
 		}
 
+		raiseHighWaterMark(identifier, jobId);
+
 		Path directoryPath = new Path(getStatusPath(identifier, jobId));
 
+		if (compact) {
+			commitCompactStatus(directoryPath, status, time, overwrite);
+			return;
+		}
+
 		// Clear old status
 		if (overwrite && fs.exists(directoryPath)) {
 			fs.delete(directoryPath, true);
@@ -288,8 +825,153 @@ public class HDFSStatusStorage implements StatusStorage {
 		logger.debug("Created new status file: " + path.toUri());
 	}
 
+	/**
+	 * Commits a status in the compact layout: a single create of a
+	 * {@code STATUS@time} file, which also creates the iteration directory,
+	 * instead of checking and creating the directory, creating the status
+	 * file and setting its time
+	 *
+	 * <p>
+	 * With {@code overwrite}, the other status files are deleted after the
+	 * new one is created, so that readers never see the iteration without a
+	 * status, and the attempt count is kept.
+	 * </p>
+	 */
+	private void commitCompactStatus(Path directoryPath, Status status, DateTime time,
+	                                 boolean overwrite) throws IOException {
+		Path path = new Path(directoryPath,
+				status.getString() + TIME_SEPARATOR + time.getMillis());
+
+		try {
+			fs.create(path, false).close();
+			logger.debug("Created new status file: " + path.toUri());
+		} catch (FileAlreadyExistsException e) {
+			// Same status committed at the same time
+			if (overwrite == false) {
+				return;
+			}
+		}
+
+		if (overwrite) {
+			for (FileStatus file : fs.listStatus(directoryPath)) {
+				if (file.getPath().getName().equals(path.getName()) == false
+						&& parseStatuses(Collections.singleton(file)).isEmpty() == false) {
+					fs.delete(file.getPath(), true);
+				}
+			}
+		}
+	}
+
+	@Override
+	public int getAttemptCount(String identifier, int id) throws IOException {
+		Preconditions.checkNotNull(identifier);
+
+		if (fs == null) {
+			try {
+				fs = FileSystem.get(new Configuration());
+			} catch (IOException e) {
+				logger.error("Filesystem unreachable!", e);
+				throw e;
+			}
+		}
+
+		Path attemptsPath = new Path(getStatusPath(identifier, id), ATTEMPTS_FILE);
+
+		if (fs.exists(attemptsPath) == false) {
+			return 0;
+		}
+
+		FSDataInputStream in = fs.open(attemptsPath);
+		try {
+			return in.readInt();
+		} finally {
+			in.close();
+		}
+	}
+
+	@Override
+	public void commitAttemptCount(String identifier, int jobId, int attempts) throws IOException {
+		Preconditions.checkNotNull(identifier);
+
+		if (fs == null) {
+			try {
+				fs = FileSystem.get(new Configuration());
+			} catch (IOException e) {
+				logger.error("Filesystem unreachable!", e);
+				throw e;
+			}
+		}
+
+		Path attemptsPath = new Path(getStatusPath(identifier, jobId), ATTEMPTS_FILE);
+
+		// Parent directories are created if they don't exist
+		FSDataOutputStream out = fs.create(attemptsPath, true);
+		try {
+			out.writeInt(attempts);
+		} finally {
+			out.close();
+		}
+	}
+
+	@Override
+	public String getWatermark(String identifier, String name) throws IOException {
+		Preconditions.checkNotNull(identifier);
+		Preconditions.checkNotNull(name);
+
+		if (fs == null) {
+			try {
+				fs = FileSystem.get(new Configuration());
+			} catch (IOException e) {
+				logger.error("Filesystem unreachable!", e);
+				throw e;
+			}
+		}
+
+		Path watermarkPath = new Path(JOINER.join(getStatusPath(identifier), WATERMARKS_DIR, name));
+
+		if (fs.exists(watermarkPath) == false) {
+			return null;
+		}
+
+		FSDataInputStream in = fs.open(watermarkPath);
+		try {
+			return in.readUTF();
+		} finally {
+			in.close();
+		}
+	}
+
+	@Override
+	public void commitWatermark(String identifier, String name, String watermark)
+			throws IOException {
+		Preconditions.checkNotNull(identifier);
+		Preconditions.checkNotNull(name);
+
+		if (fs == null) {
+			try {
+				fs = FileSystem.get(new Configuration());
+			} catch (IOException e) {
+				logger.error("Filesystem unreachable!", e);
+				throw e;
+			}
+		}
+
+		Path watermarkPath = new Path(JOINER.join(getStatusPath(identifier), WATERMARKS_DIR, name));
+
+		FSDataOutputStream out = fs.create(watermarkPath, true);
+		try {
+			out.writeUTF(watermark);
+		} finally {
+			out.close();
+		}
+	}
+
 	@Retention(RetentionPolicy.RUNTIME)
 	@Target({ElementType.FIELD, ElementType.PARAMETER})
 	@BindingAnnotation
 	public @interface HDFSStorageRoot {}
+
+	public static final String COMPACT_LAYOUT = "hdfs_compact_layout";
+	public static final String MIGRATE_LAYOUT = "hdfs_migrate_layout";
+	public static final String BUCKETED_LAYOUT = "hdfs_bucketed_layout";
 }
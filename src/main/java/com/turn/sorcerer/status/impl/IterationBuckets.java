@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Buckets of iterations in the bucketed layout of the HDFS and Zookeeper
+ * storage layers
+ *
+ * <p>
+ * Iterations are grouped by iteration number into buckets of {@link #SIZE}
+ * consecutive iterations, {@code identifier/bucket-N/iteration}, so that no
+ * directory or node has an unbounded number of children as iterations
+ * accumulate.
+ * </p>
+ *
+ * @author tshiou
+ */
+final class IterationBuckets {
+
+	static final int SIZE = 1000;
+
+	private static final String PREFIX = "bucket-";
+
+	private IterationBuckets() {
+
+	}
+
+	/**
+	 * Returns the name of the bucket of an iteration
+	 */
+	static String of(int id) {
+		return name(Math.floorDiv(id, SIZE));
+	}
+
+	/**
+	 * Returns the name of a bucket from its number
+	 */
+	static String name(int bucket) {
+		return PREFIX + bucket;
+	}
+
+	/**
+	 * Returns the names of the buckets of the iterations from {@code from}
+	 * to {@code to} (inclusive), in order
+	 */
+	static List<String> between(int from, int to) {
+		List<String> buckets = Lists.newArrayList();
+
+		for (int bucket = Math.floorDiv(from, SIZE); bucket <= Math.floorDiv(to, SIZE); bucket++) {
+			buckets.add(name(bucket));
+		}
+
+		return buckets;
+	}
+
+	/**
+	 * Returns the number of a bucket name, or null if the name is not a
+	 * bucket
+	 */
+	static Integer parse(String name) {
+		if (name.startsWith(PREFIX) == false) {
+			return null;
+		}
+
+		try {
+			return Integer.parseInt(name.substring(PREFIX.length()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+
+import java.util.SortedMap;
+
+import org.joda.time.DateTime;
+
+/**
+ * Statuses and attempt counts of the iterations of one task or pipeline, in
+ * an open addressing hash table keyed by iteration number. Not thread-safe.
+ *
+ * @author tshiou
+ */
+class IterationTable {
+
+	private static final Status[] STATUSES = Status.values();
+
+	// Slot holds an iteration, status bits are below
+	private static final byte USED = (byte) 0x80;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] ids;
+	private byte[] masks;
+	private long[] times;
+	private int[] attempts;
+
+	private int size = 0;
+
+	// Highest iteration number, recomputed when that iteration is removed
+	private int max = 0;
+	private boolean maxStale = false;
+
+	IterationTable() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the highest iteration number in the table, or 0 if it is empty
+	 */
+	int getMaxId() {
+		if (maxStale) {
+			max = 0;
+			for (int slot = 0; slot < ids.length; slot++) {
+				if (masks[slot] != 0) {
+					max = Math.max(ids[slot], max);
+				}
+			}
+			maxStale = false;
+		}
+
+		return max;
+	}
+
+	/**
+	 * Returns the iteration numbers in the table, in no particular order
+	 */
+	int[] getIds() {
+		int[] result = new int[size];
+		int i = 0;
+
+		for (int slot = 0; slot < ids.length; slot++) {
+			if (masks[slot] != 0) {
+				result[i++] = ids[slot];
+			}
+		}
+
+		return result;
+	}
+
+	boolean has(int id, Status status) {
+		int slot = find(id);
+
+		return slot >= 0 && (masks[slot] & bit(status)) != 0;
+	}
+
+	/**
+	 * Returns the commit time of a status, only defined if the iteration
+	 * has the status
+	 */
+	long getTime(int id, Status status) {
+		int slot = find(id);
+
+		return slot < 0 ? 0 : times[slot * STATUSES.length + status.ordinal()];
+	}
+
+	/**
+	 * Returns the latest commit time of the statuses of an iteration, or -1
+	 * if the iteration has no status
+	 */
+	long getLastTime(int id) {
+		int slot = find(id);
+
+		if (slot < 0 || (masks[slot] & ~USED) == 0) {
+			return -1;
+		}
+
+		long last = 0;
+		for (Status status : STATUSES) {
+			if ((masks[slot] & bit(status)) != 0) {
+				last = Math.max(times[slot * STATUSES.length + status.ordinal()], last);
+			}
+		}
+
+		return last;
+	}
+
+	/**
+	 * Returns the status of an iteration, SUCCESS taking precedence over
+	 * IN_PROGRESS over ERROR
+	 */
+	Status getStatus(int id) {
+		int slot = find(id);
+
+		return slot < 0 ? Status.PENDING : getStatus(masks[slot]);
+	}
+
+	private static Status getStatus(byte mask) {
+		if ((mask & bit(Status.SUCCESS)) != 0) {
+			return Status.SUCCESS;
+		}
+
+		if ((mask & bit(Status.IN_PROGRESS)) != 0) {
+			return Status.IN_PROGRESS;
+		}
+
+		if ((mask & bit(Status.ERROR)) != 0) {
+			return Status.ERROR;
+		}
+
+		return Status.PENDING;
+	}
+
+	/**
+	 * Adds the statuses of the iterations from {@code from} to {@code to}
+	 * (inclusive) to a range, except pending iterations
+	 */
+	void getRange(int from, int to, SortedMap<Integer, IterationStatus> range) {
+		for (int slot = 0; slot < ids.length; slot++) {
+			int id = ids[slot];
+
+			if (masks[slot] == 0 || id < from || id > to) {
+				continue;
+			}
+
+			Status status = getStatus(masks[slot]);
+			if (status != Status.PENDING) {
+				range.put(id, new IterationStatus(id, status,
+						new DateTime(times[slot * STATUSES.length + status.ordinal()])));
+			}
+		}
+	}
+
+	/**
+	 * Commits a status, removing the other statuses of the iteration if
+	 * {@code overwrite} is set
+	 */
+	void put(int id, Status status, long time, boolean overwrite) {
+		int slot = insert(id);
+
+		if (overwrite) {
+			masks[slot] = USED;
+		}
+
+		masks[slot] |= bit(status);
+		times[slot * STATUSES.length + status.ordinal()] = time;
+	}
+
+	/**
+	 * Removes a status, returning whether the iteration had it
+	 */
+	boolean remove(int id, Status status) {
+		int slot = find(id);
+
+		if (slot < 0 || (masks[slot] & bit(status)) == 0) {
+			return false;
+		}
+
+		masks[slot] &= ~bit(status);
+		if (masks[slot] == USED && attempts[slot] == 0) {
+			delete(slot);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes the statuses and attempt count of an iteration
+	 */
+	void clear(int id) {
+		int slot = find(id);
+
+		if (slot >= 0) {
+			delete(slot);
+		}
+	}
+
+	int getAttempts(int id) {
+		int slot = find(id);
+
+		return slot < 0 ? 0 : attempts[slot];
+	}
+
+	void setAttempts(int id, int count) {
+		if (count == 0) {
+			int slot = find(id);
+			if (slot >= 0) {
+				attempts[slot] = 0;
+				if (masks[slot] == USED) {
+					delete(slot);
+				}
+			}
+			return;
+		}
+
+		attempts[insert(id)] = count;
+	}
+
+	private static byte bit(Status status) {
+		return (byte) (1 << status.ordinal());
+	}
+
+	private int home(int id) {
+		// Spread sequential iteration numbers over the table
+		int hash = id * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (ids.length - 1);
+	}
+
+	private int find(int id) {
+		int slot = home(id);
+
+		while (masks[slot] != 0) {
+			if (ids[slot] == id) {
+				return slot;
+			}
+			slot = (slot + 1) & (ids.length - 1);
+		}
+
+		return -1;
+	}
+
+	private int insert(int id) {
+		int slot = find(id);
+
+		if (slot >= 0) {
+			return slot;
+		}
+
+		// Keep the load factor under 3/4
+		if ((size + 1) * 4 > ids.length * 3) {
+			resize(ids.length * 2);
+		}
+
+		slot = home(id);
+		while (masks[slot] != 0) {
+			slot = (slot + 1) & (ids.length - 1);
+		}
+
+		ids[slot] = id;
+		masks[slot] = USED;
+		attempts[slot] = 0;
+		size++;
+
+		if (size == 1 || id > max) {
+			max = id;
+		}
+
+		return slot;
+	}
+
+	// Removes the iteration of a slot and shifts back the following
+	// iterations of the probe sequence, so that lookups need no tombstones
+	private void delete(int slot) {
+		int id = ids[slot];
+		int hole = slot;
+		int next = (hole + 1) & (ids.length - 1);
+
+		while (masks[next] != 0) {
+			int home = home(ids[next]);
+
+			// Move unless the home slot is cyclically in (hole, next]
+			boolean inRange = hole <= next
+					? hole < home && home <= next
+					: hole < home || home <= next;
+
+			if (inRange == false) {
+				move(next, hole);
+				hole = next;
+			}
+
+			next = (next + 1) & (ids.length - 1);
+		}
+
+		masks[hole] = 0;
+		size--;
+
+		if (id == max) {
+			maxStale = true;
+		}
+	}
+
+	private void move(int from, int to) {
+		ids[to] = ids[from];
+		masks[to] = masks[from];
+		attempts[to] = attempts[from];
+		System.arraycopy(times, from * STATUSES.length, times, to * STATUSES.length,
+				STATUSES.length);
+	}
+
+	private void resize(int capacity) {
+		int[] oldIds = ids;
+		byte[] oldMasks = masks;
+		long[] oldTimes = times;
+		int[] oldAttempts = attempts;
+
+		allocate(capacity);
+
+		for (int from = 0; from < oldIds.length; from++) {
+			if (oldMasks[from] == 0) {
+				continue;
+			}
+
+			int to = home(oldIds[from]);
+			while (masks[to] != 0) {
+				to = (to + 1) & (capacity - 1);
+			}
+
+			ids[to] = oldIds[from];
+			masks[to] = oldMasks[from];
+			attempts[to] = oldAttempts[from];
+			System.arraycopy(oldTimes, from * STATUSES.length, times, to * STATUSES.length,
+					STATUSES.length);
+		}
+	}
+
+	private void allocate(int capacity) {
+		ids = new int[capacity];
+		masks = new byte[capacity];
+		times = new long[capacity * STATUSES.length];
+		attempts = new int[capacity];
+	}
+}
@@ -6,132 +6,660 @@
 
 package com.turn.sorcerer.status.impl;
 
+import com.turn.sorcerer.status.AsyncStatusStorage;
+import com.turn.sorcerer.status.IterationStatus;
 import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusListener;
 import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.WatchableStatusStorage;
+import com.turn.sorcerer.status.impl.util.PathUtil;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.joda.time.DateTime;
 
 /**
- * Class Description Here
+ * In-memory status storage
+ *
+ * <p>
+ * The iterations of each task or pipeline are kept in an
+ * {@link IterationTable}, keyed by iteration number without boxing, with a
+ * status bitmask and commit times in milliseconds per iteration. Tables are
+ * guarded by read-write locks striped by identifier, so that the tasks of an
+ * iteration committing their statuses from different threads rarely contend.
+ * </p>
+ *
+ * <p>
+ * Statuses are lost on restart unless a journal directory is configured.
+ * Each change is then appended to a {@link StatusJournal} when it is
+ * applied, and the journal is synced to disk every {@code flush_interval}
+ * milliseconds by a background thread, so that writers do not wait for the
+ * disk. Statuses committed since the last sync are lost if the machine
+ * crashes. The journal is replayed on initialization, before pipelines are
+ * scheduled.
+ * </p>
  *
  * @author tshiou
  */
-public class MemoryStatusStorage implements StatusStorage {
+public class MemoryStatusStorage implements WatchableStatusStorage, AsyncStatusStorage {
 
 	private static final Logger logger =
 			LoggerFactory.getLogger(MemoryStatusStorage.class);
 
-	private final Table<String, Integer, ConcurrentMap<Status, DateTime>> store;
+	private static final int LOCK_STRIPES = 64;
+
+	private String type = "default";
+
+	// Journal root directory, statuses are not journaled if not set
+	@Inject(optional = true)
+	@Named(JOURNAL)
+	private String journalRoot = null;
+
+	@Inject(optional = true)
+	@Named(FLUSH_INTERVAL)
+	private Integer flushInterval = 100;
+
+	@Inject(optional = true)
+	@Named(SNAPSHOT_INTERVAL)
+	private Integer snapshotInterval = 10000;
+
+	private volatile StatusJournal journal;
+	private ScheduledExecutorService flusher;
+	private Thread shutdownHook;
+
+	// identifier -> statuses and attempt counts of its iterations
+	private final ConcurrentMap<String, IterationTable> store;
+
+	private final Striped<ReadWriteLock> locks;
+
+	// identifier -> name -> watermark
+	private final ConcurrentMap<String, ConcurrentMap<String, String>> watermarks;
+
+	// Listeners waiting for a status, notified in-process on commit. Change
+	// listeners are kept with a null status.
+	private final Table<String, Integer, List<Watch>> watches;
 
 	public MemoryStatusStorage() {
 		logger.debug("New instance of memory status storage");
-		store =	HashBasedTable.create();
+		store = Maps.newConcurrentMap();
+		locks = Striped.readWriteLock(LOCK_STRIPES);
+		watermarks = Maps.newConcurrentMap();
+		watches = HashBasedTable.create();
+	}
+
+	MemoryStatusStorage(String journalRoot, int flushInterval, int snapshotInterval) {
+		this();
+		this.journalRoot = journalRoot;
+		this.flushInterval = flushInterval;
+		this.snapshotInterval = snapshotInterval;
 	}
 
 	@Override
-	public void init() throws IOException {
+	public synchronized void init() throws IOException {
+		if (journalRoot == null || journal != null) {
+			return;
+		}
+
+		final StatusJournal opened = new StatusJournal(new File(journalRoot, type), true,
+				snapshotInterval, new StatusJournal.State() {
+					@Override
+					public void apply(StatusJournal.Record record) {
+						replay(record);
+					}
+
+					@Override
+					public void snapshot(StatusJournal.Snapshot snapshot) throws IOException {
+						MemoryStatusStorage.this.snapshot(snapshot);
+					}
+				});
+		opened.open();
+
+		logger.info("Loaded {} identifiers from {}", store.size(), opened);
+
+		flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("sorcerer-journal-%d")
+				.setDaemon(true)
+				.build());
+		flusher.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flush(opened);
+			}
+		}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+
+		// Sync the last changes on a normal exit
+		shutdownHook = new Thread() {
+			@Override
+			public void run() {
+				flush(opened);
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
 
+		journal = opened;
+	}
+
+	/**
+	 * Syncs and closes the journal
+	 */
+	synchronized void close() throws IOException {
+		if (journal == null) {
+			return;
+		}
+
+		flusher.shutdownNow();
+		Runtime.getRuntime().removeShutdownHook(shutdownHook);
+
+		journal.close();
+		journal = null;
+	}
+
+	private static void flush(StatusJournal journal) {
+		try {
+			journal.flush();
+		} catch (IOException e) {
+			logger.error("Could not sync status journal " + journal, e);
+		}
 	}
 
 	@Override
 	public StatusStorage setType(String type) {
+		// Strip path separator prefix or suffix
+		this.type = PathUtil.stripPrePostSlashes(type);
 		return this;
 	}
 
 	@Override
 	public DateTime getLastUpdateTime(String identifier, int id) throws IOException {
-		ConcurrentMap<Status, DateTime> statuses = store.get(identifier, id);
+		IterationTable table = store.get(identifier);
 
-		if (statuses == null) {
+		if (table == null) {
 			return null;
 		}
 
-		DateTime lastDt = new DateTime().withYear(1970);
-
-		for (DateTime dt : statuses.values()) {
-			if (dt.isAfter(lastDt)) {
-				lastDt = dt;
-			}
+		long time;
+		Lock lock = locks.get(identifier).readLock();
+		lock.lock();
+		try {
+			time = table.getLastTime(id);
+		} finally {
+			lock.unlock();
 		}
 
-		return lastDt;
+		return time < 0 ? null : new DateTime(time);
 	}
 
 	@Override
 	public DateTime getStatusUpdateTime(String identifier, int id, Status status) throws IOException {
-		ConcurrentMap<Status, DateTime> statuses = store.get(identifier, id);
+		IterationTable table = store.get(identifier);
 
-		if (statuses != null) {
-			return statuses.get(status);
+		if (table == null) {
+			return null;
 		}
 
-		return null;
+		Lock lock = locks.get(identifier).readLock();
+		lock.lock();
+		try {
+			return table.has(id, status) ? new DateTime(table.getTime(id, status)) : null;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	@Override
 	public int getCurrentIterNo(String identifier) throws IOException {
-		int maxIterNo = 0;
-		for (Integer i : store.columnKeySet()) {
-			maxIterNo = Math.max(i, maxIterNo);
+		IterationTable table = store.get(identifier);
+
+		if (table == null) {
+			return 0;
+		}
+
+		// Recomputing the highest iteration number after a removal writes
+		Lock lock = locks.get(identifier).writeLock();
+		lock.lock();
+		try {
+			return Math.max(table.getMaxId(), 0);
+		} finally {
+			lock.unlock();
 		}
-		return maxIterNo;
 	}
 
 	@Override
 	public Status checkStatus(String identifier, int id) throws IOException {
-		ConcurrentMap<Status, DateTime> statuses = store.get(identifier, id);
+		IterationTable table = store.get(identifier);
 
-		if (statuses == null || statuses.size() == 0) {
+		if (table == null) {
 			return Status.PENDING;
 		}
 
-		Set<Status> stati = statuses.keySet();
+		Lock lock = locks.get(identifier).readLock();
+		lock.lock();
+		try {
+			return table.getStatus(id);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Map<String, Status> checkStatuses(Collection<String> identifiers, int id)
+			throws IOException {
+		Map<String, Status> statuses = Maps.newHashMapWithExpectedSize(identifiers.size());
 
-		if (stati.contains(Status.SUCCESS)) {
-			return Status.SUCCESS;
+		for (String identifier : identifiers) {
+			statuses.put(identifier, checkStatus(identifier, id));
 		}
 
-		if (stati.contains(Status.IN_PROGRESS)) {
-			return Status.IN_PROGRESS;
+		return statuses;
+	}
+
+	@Override
+	public SortedMap<Integer, IterationStatus> getStatusRange(String identifier, int from, int to)
+			throws IOException {
+		SortedMap<Integer, IterationStatus> range = new TreeMap<Integer, IterationStatus>();
+		IterationTable table = store.get(identifier);
+
+		if (table == null) {
+			return range;
 		}
 
-		if (stati.contains(Status.ERROR)) {
-			return Status.ERROR;
+		Lock lock = locks.get(identifier).readLock();
+		lock.lock();
+		try {
+			table.getRange(from, to, range);
+		} finally {
+			lock.unlock();
 		}
 
-		return Status.PENDING;
+		return range;
 	}
 
 	@Override
 	public void clearAllStatuses(String identifier, int jobId) throws IOException {
-		store.remove(identifier, jobId);
+		IterationTable table = store.get(identifier);
+		StatusJournal journal = this.journal;
+
+		if (table != null) {
+			Lock lock = locks.get(identifier).writeLock();
+			lock.lock();
+			try {
+				if (journal != null) {
+					journal.append(StatusJournal.Record.clear(identifier, jobId));
+				}
+				table.clear(jobId);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		notifyWatches(identifier, jobId, null, false);
 	}
 
 	@Override
 	public void removeStatus(String identifier, int jobId, Status status) throws IOException {
-		ConcurrentMap<Status, DateTime> statuses = store.get(identifier, jobId);
+		IterationTable table = store.get(identifier);
+
+		if (table == null) {
+			return;
+		}
 
-		statuses.remove(status);
+		boolean removed;
+		StatusJournal journal = this.journal;
+		Lock lock = locks.get(identifier).writeLock();
+		lock.lock();
+		try {
+			if (journal != null && table.has(jobId, status)) {
+				journal.append(StatusJournal.Record.remove(identifier, jobId, status));
+			}
+			removed = table.remove(jobId, status);
+		} finally {
+			lock.unlock();
+		}
+
+		if (removed) {
+			notifyWatches(identifier, jobId, status, false);
+		}
 	}
 
 	@Override
 	public void commitStatus(String identifier, int jobId, Status status, DateTime time, boolean overwrite) throws IOException {
-		ConcurrentMap<Status, DateTime> statuses = store.get(identifier, jobId);
+		IterationTable table = getTable(identifier);
+		StatusJournal journal = this.journal;
+
+		Lock lock = locks.get(identifier).writeLock();
+		lock.lock();
+		try {
+			// Journaled under the lock, in the order the changes are applied
+			if (journal != null) {
+				journal.append(StatusJournal.Record.commit(
+						identifier, jobId, status, time.getMillis(), overwrite));
+			}
+			table.put(jobId, status, time.getMillis(), overwrite);
+		} finally {
+			lock.unlock();
+		}
+
+		notifyWatches(identifier, jobId, status, true);
+	}
+
+	private IterationTable getTable(String identifier) {
+		IterationTable table = store.get(identifier);
+
+		if (table == null) {
+			store.putIfAbsent(identifier, new IterationTable());
+			table = store.get(identifier);
+		}
+
+		return table;
+	}
+
+	// Statuses are in memory, asynchronous calls complete right away
+
+	@Override
+	public ListenableFuture<Status> checkStatusAsync(String identifier, int id) {
+		try {
+			return Futures.immediateFuture(checkStatus(identifier, id));
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public ListenableFuture<Map<String, Status>> checkStatusesAsync(Collection<String> identifiers,
+	                                                                int id) {
+		try {
+			return Futures.immediateFuture(checkStatuses(identifiers, id));
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public ListenableFuture<SortedMap<Integer, IterationStatus>> getStatusRangeAsync(
+			String identifier, int from, int to) {
+		try {
+			return Futures.immediateFuture(getStatusRange(identifier, from, to));
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
 
-		if (statuses == null || overwrite) {
-			statuses = new ConcurrentHashMap<Status, DateTime>();
-			store.put(identifier, jobId, statuses);
+	@Override
+	public ListenableFuture<Void> clearAllStatusesAsync(String identifier, int jobId) {
+		try {
+			clearAllStatuses(identifier, jobId);
+			return Futures.immediateFuture(null);
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public ListenableFuture<Void> removeStatusAsync(String identifier, int jobId, Status status) {
+		try {
+			removeStatus(identifier, jobId, status);
+			return Futures.immediateFuture(null);
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public ListenableFuture<Void> commitStatusAsync(String identifier, int jobId, Status status,
+	                                                DateTime time, boolean overwrite) {
+		try {
+			commitStatus(identifier, jobId, status, time, overwrite);
+			return Futures.immediateFuture(null);
+		} catch (IOException e) {
+			return Futures.immediateFailedFuture(e);
+		}
+	}
+
+	@Override
+	public void watchStatus(String identifier, int id, Status status, StatusListener listener)
+			throws IOException {
+		addWatch(identifier, id, new Watch(status, listener));
+
+		// Registered before checking so a concurrent commit is not missed
+		if (getStatusUpdateTime(identifier, id, status) != null) {
+			notifyWatches(identifier, id, status, true);
+		}
+	}
+
+	@Override
+	public void watchChanges(String identifier, int id, StatusListener listener)
+			throws IOException {
+		addWatch(identifier, id, new Watch(null, listener));
+	}
+
+	private void addWatch(String identifier, int id, Watch watch) {
+		synchronized (watches) {
+			List<Watch> list = watches.get(identifier, id);
+			if (list == null) {
+				list = Lists.newArrayList();
+				watches.put(identifier, id, list);
+			}
+			list.add(watch);
+		}
+	}
+
+	// Notifies the change listeners of an iteration, and the listeners of
+	// the status if it was committed
+	private void notifyWatches(String identifier, int id, Status status, boolean committed) {
+		List<Watch> notified = Lists.newArrayList();
+
+		synchronized (watches) {
+			List<Watch> list = watches.get(identifier, id);
+			if (list == null) {
+				return;
+			}
+
+			Iterator<Watch> it = list.iterator();
+			while (it.hasNext()) {
+				Watch watch = it.next();
+				if (watch.status == null || (committed && watch.status == status)) {
+					notified.add(watch);
+					it.remove();
+				}
+			}
+
+			if (list.isEmpty()) {
+				watches.remove(identifier, id);
+			}
+		}
+
+		for (Watch watch : notified) {
+			watch.listener.onStatus(identifier, id, status);
+		}
+	}
+
+	private static class Watch {
+		private final Status status;
+		private final StatusListener listener;
+
+		private Watch(Status status, StatusListener listener) {
+			this.status = status;
+			this.listener = listener;
 		}
+	}
+
+	@Override
+	public int getAttemptCount(String identifier, int id) throws IOException {
+		IterationTable table = store.get(identifier);
+
+		if (table == null) {
+			return 0;
+		}
+
+		Lock lock = locks.get(identifier).readLock();
+		lock.lock();
+		try {
+			return table.getAttempts(id);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void commitAttemptCount(String identifier, int jobId, int attempts) throws IOException {
+		IterationTable table = getTable(identifier);
+		StatusJournal journal = this.journal;
+
+		Lock lock = locks.get(identifier).writeLock();
+		lock.lock();
+		try {
+			if (journal != null) {
+				journal.append(StatusJournal.Record.attempts(identifier, jobId, attempts));
+			}
+			table.setAttempts(jobId, attempts);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String getWatermark(String identifier, String name) throws IOException {
+		Map<String, String> identifierWatermarks = watermarks.get(identifier);
+
+		return identifierWatermarks == null ? null : identifierWatermarks.get(name);
+	}
+
+	@Override
+	public void commitWatermark(String identifier, String name, String watermark) throws IOException {
+		StatusJournal journal = this.journal;
+
+		Lock lock = locks.get(identifier).writeLock();
+		lock.lock();
+		try {
+			if (journal != null) {
+				journal.append(StatusJournal.Record.watermark(identifier, name, watermark));
+			}
+			putWatermark(identifier, name, watermark);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void putWatermark(String identifier, String name, String watermark) {
+		ConcurrentMap<String, String> identifierWatermarks = watermarks.get(identifier);
+
+		if (identifierWatermarks == null) {
+			watermarks.putIfAbsent(identifier, Maps.<String, String>newConcurrentMap());
+			identifierWatermarks = watermarks.get(identifier);
+		}
+
+		identifierWatermarks.put(name, watermark);
+	}
 
-		statuses.put(status, time);
+	// Applies a journal record replayed on initialization
+	private void replay(StatusJournal.Record record) {
+		String identifier = record.getIdentifier();
+
+		Lock lock = locks.get(identifier).writeLock();
+		lock.lock();
+		try {
+			switch (record.getOp()) {
+				case COMMIT:
+					getTable(identifier).put(record.getId(), record.getStatus(),
+							record.getTime(), record.isOverwrite());
+					break;
+				case REMOVE:
+					getTable(identifier).remove(record.getId(), record.getStatus());
+					break;
+				case CLEAR:
+					getTable(identifier).clear(record.getId());
+					break;
+				case ATTEMPTS:
+					getTable(identifier).setAttempts(record.getId(), record.getAttempts());
+					break;
+				case WATERMARK:
+					putWatermark(identifier, record.getName(), record.getWatermark());
+					break;
+				default:
+					throw new IllegalStateException("Unknown journal record " + record.getOp());
+			}
+		} finally {
+			lock.unlock();
+		}
 	}
+
+	// Adds the records rebuilding the statuses to a journal snapshot. Each
+	// identifier is read under its lock, so that each of its changes is
+	// either in the snapshot or in the journal segment following it.
+	private void snapshot(StatusJournal.Snapshot snapshot) throws IOException {
+		Set<String> identifiers = Sets.newHashSet(store.keySet());
+		identifiers.addAll(watermarks.keySet());
+
+		for (String identifier : identifiers) {
+			List<StatusJournal.Record> records = Lists.newArrayList();
+
+			Lock lock = locks.get(identifier).readLock();
+			lock.lock();
+			try {
+				IterationTable table = store.get(identifier);
+
+				if (table != null) {
+					for (int id : table.getIds()) {
+						for (Status status : Status.values()) {
+							if (table.has(id, status)) {
+								records.add(StatusJournal.Record.commit(identifier, id, status,
+										table.getTime(id, status), false));
+							}
+						}
+
+						if (table.getAttempts(id) != 0) {
+							records.add(StatusJournal.Record.attempts(
+									identifier, id, table.getAttempts(id)));
+						}
+					}
+				}
+
+				Map<String, String> identifierWatermarks = watermarks.get(identifier);
+
+				if (identifierWatermarks != null) {
+					for (Map.Entry<String, String> watermark : identifierWatermarks.entrySet()) {
+						records.add(StatusJournal.Record.watermark(
+								identifier, watermark.getKey(), watermark.getValue()));
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			for (StatusJournal.Record record : records) {
+				snapshot.add(record);
+			}
+		}
+	}
+
+	public static final String JOURNAL = "memory_journal";
+	public static final String FLUSH_INTERVAL = "memory_flush_interval";
+	public static final String SNAPSHOT_INTERVAL = "memory_snapshot_interval";
 }
@@ -0,0 +1,758 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.Status;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-ahead log of status changes with periodic snapshots, making an
+ * in-memory status state durable in a local directory
+ *
+ * <pre>
+ * {directory}/snapshot
+ * {directory}/wal.{segment}
+ * {directory}/lock
+ * </pre>
+ *
+ * @author tshiou
+ */
+class StatusJournal {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(StatusJournal.class);
+
+	private static final String SNAPSHOT_FILE = "snapshot";
+	private static final String SEGMENT_PREFIX = "wal.";
+	private static final String LOCK_FILE = "lock";
+
+	private static final int SNAPSHOT_MAGIC = 0x53524352;
+	private static final int FORMAT_VERSION = 1;
+
+	// Record header: payload length and checksum
+	private static final int HEADER_BYTES = 8;
+
+	/**
+	 * In-memory state made durable by the journal
+	 */
+	interface State {
+
+		/**
+		 * Applies a record replayed on startup, or synced by {@link #write}
+		 */
+		void apply(Record record);
+
+		/**
+		 * Adds the records rebuilding the current state to a snapshot
+		 */
+		void snapshot(Snapshot snapshot) throws IOException;
+	}
+
+	/**
+	 * Snapshot being written
+	 */
+	interface Snapshot {
+		void add(Record record) throws IOException;
+	}
+
+	private final File directory;
+	private final boolean sync;
+	private final int snapshotInterval;
+	private final State state;
+
+	private FileChannel lockChannel;
+	private FileLock lock;
+
+	// Appending to the log, guards the fields below
+	private final Object appendLock = new Object();
+
+	private FileChannel log;
+	private long segment;
+
+	// Records to apply once synced, in log order
+	private final List<Record> pending = Lists.newArrayList();
+	private long appended = 0;
+
+	// Syncing the log, guards the fields below
+	private final Object syncLock = new Object();
+	private long durable = 0;
+
+	// Records in the segments since the last snapshot
+	private long records = 0;
+
+	StatusJournal(File directory, boolean sync, int snapshotInterval, State state) {
+		this.directory = directory;
+		this.sync = sync;
+		this.snapshotInterval = snapshotInterval;
+		this.state = state;
+	}
+
+	@Override
+	public String toString() {
+		return directory.toString();
+	}
+
+	boolean isOpen() {
+		synchronized (appendLock) {
+			return log != null;
+		}
+	}
+
+	/**
+	 * Locks the directory and replays the snapshot and the log into the
+	 * state
+	 */
+	void open() throws IOException {
+		Stopwatch stopwatch = Stopwatch.createStarted();
+
+		if (directory.isDirectory() == false && directory.mkdirs() == false) {
+			throw new IOException("Could not create " + directory);
+		}
+
+		// A second process appending to the same log would corrupt it
+		lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			lock = lockChannel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if (lock == null) {
+			lockChannel.close();
+			throw new IOException(directory + " is used by another status storage");
+		}
+
+		long first = loadSnapshot();
+		List<Long> segments = listSegments();
+
+		long last = first;
+		for (long s : segments) {
+			if (s < first) {
+				// Left over by a crash right after a snapshot
+				deleteSegment(s);
+			} else {
+				last = s;
+			}
+		}
+
+		FileChannel channel = FileChannel.open(segmentFile(last).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			// The segment may just have been created
+			syncDirectory();
+
+			for (long s = first; s < last; s++) {
+				if (segmentFile(s).exists()) {
+					replay(segmentFile(s), null);
+				}
+			}
+			replay(segmentFile(last), channel);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		synchronized (appendLock) {
+			log = channel;
+			segment = last;
+		}
+
+		logger.info("Replayed {} in {}", directory, stopwatch);
+	}
+
+	/**
+	 * Syncs the appended records and releases the directory
+	 */
+	void close() throws IOException {
+		if (isOpen() == false) {
+			return;
+		}
+
+		flush();
+
+		synchronized (appendLock) {
+			log.close();
+			log = null;
+		}
+
+		lock.release();
+		lockChannel.close();
+	}
+
+	/**
+	 * Appends a record and returns once it is synced and applied to the
+	 * state
+	 */
+	void write(Record record) throws IOException {
+		sync(append(record, true));
+	}
+
+	/**
+	 * Appends a record that the caller applies to the state itself, synced
+	 * by the next {@link #flush}. The caller appends and applies the records
+	 * of a part of the state in the same order, without letting
+	 * {@link State#snapshot} read that part in between (e.g. under a lock).
+	 */
+	void append(Record record) throws IOException {
+		append(record, false);
+	}
+
+	/**
+	 * Syncs the records appended so far
+	 */
+	void flush() throws IOException {
+		long target;
+
+		synchronized (appendLock) {
+			target = appended;
+		}
+
+		sync(target);
+	}
+
+	private long append(Record record, boolean apply) throws IOException {
+		ByteBuffer frame = record.frame();
+
+		synchronized (appendLock) {
+			if (log == null) {
+				throw new IOException("Journal is not open: " + directory);
+			}
+
+			long start = log.position();
+
+			try {
+				while (frame.hasRemaining()) {
+					log.write(frame);
+				}
+			} catch (IOException e) {
+				// Do not leave a partial record in front of the next ones
+				log.truncate(start);
+				throw e;
+			}
+
+			record.seq = ++appended;
+			if (apply) {
+				pending.add(record);
+			}
+
+			return record.seq;
+		}
+	}
+
+	private void sync(long seq) throws IOException {
+		synchronized (syncLock) {
+			if (durable >= seq) {
+				// Synced by another thread
+				return;
+			}
+
+			long target;
+			FileChannel channel;
+			synchronized (appendLock) {
+				target = appended;
+				channel = log;
+			}
+
+			if (channel == null) {
+				throw new IOException("Journal is not open: " + directory);
+			}
+
+			if (sync) {
+				channel.force(false);
+			}
+
+			List<Record> synced = Lists.newArrayList();
+			synchronized (appendLock) {
+				while (pending.isEmpty() == false && pending.get(0).seq <= target) {
+					synced.add(pending.remove(0));
+				}
+			}
+
+			for (Record record : synced) {
+				state.apply(record);
+			}
+
+			records += target - durable;
+			durable = target;
+
+			if (records >= snapshotInterval) {
+				try {
+					snapshot();
+				} catch (IOException e) {
+					// The log still holds the records, retried after the
+					// next snapshot interval
+					logger.warn("Could not snapshot " + directory, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts a new segment, writes the state to a snapshot and deletes the
+	 * previous segments. Only called with the sync lock held.
+	 */
+	private void snapshot() throws IOException {
+		long next;
+
+		synchronized (appendLock) {
+			// Records of the current segment not applied yet would be
+			// missing from the snapshot, retried after the next sync
+			if (pending.isEmpty() == false) {
+				return;
+			}
+
+			next = segment + 1;
+			FileChannel channel = FileChannel.open(segmentFile(next).toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			syncDirectory();
+
+			// Records appended since the last sync are not in the snapshot
+			// if they were not applied yet
+			if (sync) {
+				log.force(false);
+			}
+			log.close();
+
+			log = channel;
+			segment = next;
+			records = 0;
+		}
+
+		Stopwatch stopwatch = Stopwatch.createStarted();
+
+		File tmp = new File(directory, SNAPSHOT_FILE + ".tmp");
+		FileOutputStream file = new FileOutputStream(tmp);
+
+		try {
+			CRC32 crc = new CRC32();
+			final DataOutputStream out = new DataOutputStream(
+					new CheckedOutputStream(new BufferedOutputStream(file), crc));
+
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(next);
+
+			state.snapshot(new Snapshot() {
+				@Override
+				public void add(Record record) throws IOException {
+					ByteBuffer frame = record.frame();
+					out.write(frame.array(), frame.arrayOffset(), frame.remaining());
+				}
+			});
+
+			// End of the records
+			out.writeInt(0);
+			out.flush();
+
+			DataOutputStream trailer = new DataOutputStream(file);
+			trailer.writeLong(crc.getValue());
+			trailer.flush();
+
+			file.getFD().sync();
+		} finally {
+			file.close();
+		}
+
+		Files.move(tmp.toPath(), new File(directory, SNAPSHOT_FILE).toPath(),
+				StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		// The segments can only go once the rename is durable
+		syncDirectory();
+
+		for (long s : listSegments()) {
+			if (s < next) {
+				deleteSegment(s);
+			}
+		}
+
+		logger.debug("Wrote snapshot of {} in {}", directory, stopwatch);
+	}
+
+	// Replays the snapshot and returns the first segment following it
+	private long loadSnapshot() throws IOException {
+		File file = new File(directory, SNAPSHOT_FILE);
+
+		if (file.exists() == false) {
+			return 0;
+		}
+
+		ByteBuffer buffer = map(file);
+
+		try {
+			// Unlike the end of the log, a snapshot is never partially
+			// written, so a corrupt snapshot is an error
+			if (buffer.remaining() < 8) {
+				throw new IOException("Truncated snapshot " + file);
+			}
+
+			ByteBuffer content = buffer.duplicate();
+			content.limit(buffer.limit() - 8);
+
+			CRC32 crc = new CRC32();
+			crc.update(content.duplicate());
+			if (buffer.getLong(buffer.limit() - 8) != crc.getValue()) {
+				throw new IOException("Corrupt snapshot " + file);
+			}
+
+			if (content.getInt() != SNAPSHOT_MAGIC || content.getInt() != FORMAT_VERSION) {
+				throw new IOException("Unknown snapshot format " + file);
+			}
+
+			long next = content.getLong();
+
+			int length;
+			while ((length = content.getInt()) > 0) {
+				content.getInt();
+
+				ByteBuffer payload = content.slice();
+				payload.limit(length);
+				state.apply(Record.read(payload));
+
+				content.position(content.position() + length);
+			}
+
+			return next;
+		} catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Corrupt snapshot " + file, e);
+		}
+	}
+
+	// Replays a segment, truncating a torn record at its end if the segment
+	// is open for appending
+	private void replay(File file, FileChannel channel) throws IOException {
+		ByteBuffer buffer = map(file);
+		long valid = 0;
+
+		while (buffer.remaining() >= HEADER_BYTES) {
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+
+			if (length <= 0 || length > buffer.remaining()) {
+				break;
+			}
+
+			ByteBuffer payload = buffer.slice();
+			payload.limit(length);
+
+			CRC32 crc = new CRC32();
+			crc.update(payload.duplicate());
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+
+			Record record;
+			try {
+				record = Record.read(payload);
+			} catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+				break;
+			}
+
+			state.apply(record);
+			records++;
+
+			buffer.position(buffer.position() + length);
+			valid = buffer.position();
+		}
+
+		if (valid < buffer.limit()) {
+			logger.warn("Dropping {} bytes of incomplete log records at the end of {}",
+					buffer.limit() - valid, file);
+
+			// Record torn by a crash while it was appended
+			if (channel != null) {
+				channel.truncate(valid);
+			}
+		}
+
+		if (channel != null) {
+			channel.position(valid);
+		}
+	}
+
+	private List<Long> listSegments() {
+		List<Long> segments = Lists.newArrayList();
+		String[] names = directory.list();
+
+		if (names == null) {
+			return segments;
+		}
+
+		for (String name : names) {
+			if (name.startsWith(SEGMENT_PREFIX)) {
+				try {
+					segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length())));
+				} catch (NumberFormatException e) {
+					logger.warn("Ignoring unknown file {} in {}", name, directory);
+				}
+			}
+		}
+
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private File segmentFile(long s) {
+		return new File(directory, SEGMENT_PREFIX + s);
+	}
+
+	// Makes created, renamed and deleted entries of the directory durable
+	private void syncDirectory() throws IOException {
+		FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void deleteSegment(long s) throws IOException {
+		File file = segmentFile(s);
+
+		if (file.delete() == false && file.exists()) {
+			throw new IOException("Could not delete " + file);
+		}
+	}
+
+	private static ByteBuffer map(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			if (channel.size() == 0) {
+				return ByteBuffer.allocate(0);
+			}
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.load();
+			return buffer;
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(Charsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0 || length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+
+	/**
+	 * Operation of a journal record
+	 */
+	enum Op {
+		COMMIT,
+		REMOVE,
+		CLEAR,
+		ATTEMPTS,
+		WATERMARK
+	}
+
+	/**
+	 * Status change appended to the journal
+	 */
+	static class Record {
+		private final Op op;
+		private final String identifier;
+		private final int id;
+
+		private Status status;
+		private long time;
+		private boolean overwrite;
+		private int attempts;
+		private String name;
+		private String watermark;
+
+		// Position in the journal
+		private long seq;
+
+		private Record(Op op, String identifier, int id) {
+			this.op = op;
+			this.identifier = identifier;
+			this.id = id;
+		}
+
+		static Record commit(String identifier, int id, Status status, long time,
+		                     boolean overwrite) {
+			Record record = new Record(Op.COMMIT, identifier, id);
+			record.status = status;
+			record.time = time;
+			record.overwrite = overwrite;
+			return record;
+		}
+
+		static Record remove(String identifier, int id, Status status) {
+			Record record = new Record(Op.REMOVE, identifier, id);
+			record.status = status;
+			return record;
+		}
+
+		static Record clear(String identifier, int id) {
+			return new Record(Op.CLEAR, identifier, id);
+		}
+
+		static Record attempts(String identifier, int id, int attempts) {
+			Record record = new Record(Op.ATTEMPTS, identifier, id);
+			record.attempts = attempts;
+			return record;
+		}
+
+		static Record watermark(String identifier, String name, String watermark) {
+			Record record = new Record(Op.WATERMARK, identifier, 0);
+			record.name = name;
+			record.watermark = watermark;
+			return record;
+		}
+
+		Op getOp() {
+			return op;
+		}
+
+		String getIdentifier() {
+			return identifier;
+		}
+
+		int getId() {
+			return id;
+		}
+
+		Status getStatus() {
+			return status;
+		}
+
+		long getTime() {
+			return time;
+		}
+
+		boolean isOverwrite() {
+			return overwrite;
+		}
+
+		int getAttempts() {
+			return attempts;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		String getWatermark() {
+			return watermark;
+		}
+
+		// Payload preceded by its length and checksum
+		private ByteBuffer frame() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+
+			out.writeInt(0);
+			out.writeInt(0);
+
+			out.writeByte(op.ordinal());
+			writeString(out, identifier);
+			out.writeInt(id);
+
+			switch (op) {
+				case COMMIT:
+					out.writeByte(status.ordinal());
+					out.writeLong(time);
+					out.writeBoolean(overwrite);
+					break;
+				case REMOVE:
+					out.writeByte(status.ordinal());
+					break;
+				case ATTEMPTS:
+					out.writeInt(attempts);
+					break;
+				case WATERMARK:
+					writeString(out, name);
+					writeString(out, watermark);
+					break;
+				default:
+					break;
+			}
+
+			out.flush();
+			ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+			int length = frame.limit() - HEADER_BYTES;
+
+			CRC32 crc = new CRC32();
+			crc.update(frame.array(), HEADER_BYTES, length);
+
+			frame.putInt(0, length);
+			frame.putInt(4, (int) crc.getValue());
+			return frame;
+		}
+
+		private static Record read(ByteBuffer buffer) {
+			int op = buffer.get();
+			if (op < 0 || op >= Op.values().length) {
+				throw new IllegalArgumentException("Unknown journal record operation " + op);
+			}
+
+			Record record = new Record(Op.values()[op], readString(buffer), buffer.getInt());
+
+			switch (record.op) {
+				case COMMIT:
+					record.status = Status.values()[buffer.get()];
+					record.time = buffer.getLong();
+					record.overwrite = buffer.get() != 0;
+					break;
+				case REMOVE:
+					record.status = Status.values()[buffer.get()];
+					break;
+				case ATTEMPTS:
+					record.attempts = buffer.getInt();
+					break;
+				case WATERMARK:
+					record.name = readString(buffer);
+					record.watermark = readString(buffer);
+					break;
+				default:
+					break;
+			}
+
+			return record;
+		}
+	}
+}
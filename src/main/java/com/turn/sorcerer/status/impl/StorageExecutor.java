@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Process-wide pool running the blocking storage calls behind the
+ * asynchronous storage API, e.g. the HDFS calls of
+ * {@link ExecutorStatusStorage} and the Zookeeper transactions
+ *
+ * @author tshiou
+ */
+public class StorageExecutor {
+
+	// Storage calls wait on the network, not the CPU
+	private static final int THREADS = 16;
+
+	private static final StorageExecutor INSTANCE = new StorageExecutor(THREADS);
+
+	public static StorageExecutor get() {
+		return INSTANCE;
+	}
+
+	private final ListeningExecutorService executor;
+
+	StorageExecutor(int threads) {
+		executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder()
+						.setNameFormat("sorcerer-storage-%d")
+						.setDaemon(true)
+						.build()));
+	}
+
+	public <T> ListenableFuture<T> submit(Callable<T> call) {
+		return executor.submit(call);
+	}
+
+	/**
+	 * Executor for callbacks that may block on the storage
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.Status;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Maps;
+
+/**
+ * Statuses and attempt count of one iteration, stored as the data of the
+ * iteration node by the {@link ZookeeperStatusStorage}
+ *
+ * <p>
+ * Binary format:
+ * </p>
+ *
+ * <pre>
+ * byte   format version
+ * byte   statuses, one bit per status ordinal
+ * long   commit time in milliseconds of each status, in ordinal order
+ * int    attempt count
+ * </pre>
+ *
+ * @author tshiou
+ */
+class ZookeeperStatusRecord {
+
+	private static final byte FORMAT_VERSION = 1;
+
+	private final Map<Status, Long> times = Maps.newEnumMap(Status.class);
+	private int attempts = 0;
+
+	static ZookeeperStatusRecord decode(byte[] data) throws IOException {
+		ZookeeperStatusRecord record = new ZookeeperStatusRecord();
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+
+		try {
+			byte version = buffer.get();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unknown status record format: " + version);
+			}
+
+			byte statuses = buffer.get();
+			for (Status status : Status.values()) {
+				if ((statuses & (1 << status.ordinal())) != 0) {
+					record.times.put(status, buffer.getLong());
+				}
+			}
+
+			record.attempts = buffer.getInt();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated status record", e);
+		}
+
+		return record;
+	}
+
+	byte[] encode() {
+		ByteBuffer buffer = ByteBuffer.allocate(2 + 8 * times.size() + 4);
+
+		byte statuses = 0;
+		for (Status status : times.keySet()) {
+			statuses |= 1 << status.ordinal();
+		}
+
+		buffer.put(FORMAT_VERSION);
+		buffer.put(statuses);
+
+		// Enum map iterates in ordinal order
+		for (long time : times.values()) {
+			buffer.putLong(time);
+		}
+
+		buffer.putInt(attempts);
+
+		return buffer.array();
+	}
+
+	boolean has(Status status) {
+		return times.containsKey(status);
+	}
+
+	/**
+	 * Commit time of a status in milliseconds, null if the status is not set
+	 */
+	Long getTime(Status status) {
+		return times.get(status);
+	}
+
+	/**
+	 * Latest commit time in milliseconds, 0 if no status is set
+	 */
+	long getLastTime() {
+		long last = 0;
+		for (long time : times.values()) {
+			last = Math.max(time, last);
+		}
+		return last;
+	}
+
+	void put(Status status, long time) {
+		times.put(status, time);
+	}
+
+	/**
+	 * @return True if the status was set
+	 */
+	boolean remove(Status status) {
+		return times.remove(status) != null;
+	}
+
+	void clearStatuses() {
+		times.clear();
+	}
+
+	/**
+	 * Status represented by the record, with the same precedence as the
+	 * other storage layers
+	 */
+	Status getStatus() {
+		if (has(Status.SUCCESS)) {
+			return Status.SUCCESS;
+		}
+
+		if (has(Status.IN_PROGRESS)) {
+			return Status.IN_PROGRESS;
+		}
+
+		if (has(Status.ERROR)) {
+			return Status.ERROR;
+		}
+
+		return Status.PENDING;
+	}
+
+	int getAttempts() {
+		return attempts;
+	}
+
+	void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("times", times)
+				.add("attempts", attempts)
+				.toString();
+	}
+}
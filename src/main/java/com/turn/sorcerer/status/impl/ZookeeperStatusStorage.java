@@ -7,8 +7,12 @@
 package com.turn.sorcerer.status.impl;
 
 
+import com.turn.sorcerer.status.AsyncStatusStorage;
+import com.turn.sorcerer.status.IterationStatus;
 import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusListener;
 import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.WatchableStatusStorage;
 import com.turn.sorcerer.status.impl.util.PathUtil;
 
 import java.io.IOException;
@@ -16,17 +20,44 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.BindingAnnotation;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.retry.RetryUntilElapsed;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.data.Stat;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,9 +65,25 @@ import org.slf4j.LoggerFactory;
 /**
  * Zookeeper persistent storage layer implementation
  *
+ * <p>
+ * The statuses, commit times and attempt count of an iteration are stored
+ * as a {@link ZookeeperStatusRecord} in the data of the iteration node, so
+ * that reading them is a single {@code getData}. A running iteration also
+ * has an ephemeral {@code IN_PROGRESS} child node, its lease, so that the
+ * in-progress status disappears with the session of the process running
+ * it. Each transition updates the record (guarded by its version) and the
+ * lease in a single multi-op transaction.
+ * </p>
+ *
+ * <p>
+ * Iterations committed by previous versions have a status child node per
+ * status and no data. They are still read and are converted to a record on
+ * their next transition.
+ * </p>
+ *
  * @author tshiou
  */
-public class ZookeeperStatusStorage implements StatusStorage {
+public class ZookeeperStatusStorage implements WatchableStatusStorage, AsyncStatusStorage {
 	private static final Logger logger =
 			LoggerFactory.getLogger(ZookeeperStatusStorage.class);
 
@@ -66,11 +113,51 @@ public class ZookeeperStatusStorage implements StatusStorage {
 	@Named(RETRY_INTERVAL)
 	private Integer retryInterval;
 
+	@Inject(optional = true)
+	@Named(BUCKETED_LAYOUT)
+	private Boolean bucketed = false;
+
+	@Inject(optional = true)
+	@Named(MIGRATE_LAYOUT)
+	private Boolean migrate = false;
+
+	// Identifier -> high-water mark known to be persisted
+	private final ConcurrentMap<String, Integer> highWaterMarks = Maps.newConcurrentMap();
+
 	private CuratorFramework curator;
 	private boolean initialized = false;
 
 	private static final Joiner PATH = Joiner.on('/').skipNulls();
 
+	// Node holding the number of failed execution attempts of an iteration,
+	// in iterations committed by previous versions
+	private static final String ATTEMPTS_NODE = "ATTEMPTS";
+
+	// Ephemeral child node of a running iteration
+	private static final String LEASE_NODE = Status.IN_PROGRESS.toString();
+
+	// Transactions conflicting with a concurrent update are retried
+	private static final int MAX_UPDATE_ATTEMPTS = 5;
+
+	// Node holding the watermarks of an identifier, next to its iterations
+	private static final String WATERMARKS_NODE = "_watermarks";
+
+	// Node holding the high-water mark of an identifier, its highest
+	// iteration number
+	private static final String HIGH_WATER_MARK_NODE = "_current";
+
+	public ZookeeperStatusStorage() {
+
+	}
+
+	ZookeeperStatusStorage(String connectionString, String root, boolean bucketed) {
+		this.connectionString = connectionString;
+		this.root = root;
+		this.bucketed = bucketed;
+		this.retryDuration = 10000;
+		this.retryInterval = 500;
+	}
+
 	@Override
 	public void init() throws IOException {
 		logger.info("Initializing Zookeeper storage: {}", connectionString);
@@ -89,6 +176,99 @@ public class ZookeeperStatusStorage implements StatusStorage {
 		} catch (Exception e) {
 			throw new IOException(e);
 		}
+
+		if (bucketed && migrate) {
+			logger.info("Moved {} {} iterations to the bucketed layout", migrateBuckets(), type);
+		}
+	}
+
+	// Closes the Zookeeper session, ending the leases of running iterations
+	void close() {
+		if (curator != null) {
+			curator.close();
+		}
+	}
+
+	/**
+	 * Moves the iteration nodes of the flat layout into their bucket, each in
+	 * a single transaction that creates the iteration node in its bucket and
+	 * deletes the flat node. Running iterations are skipped, as their lease
+	 * belongs to the session of another process, and are moved by the next
+	 * migration.
+	 *
+	 * @return Number of moved iteration nodes
+	 */
+	int migrateBuckets() throws IOException {
+		String typePath = PATH.join(root, type);
+
+		int moved = 0;
+
+		try {
+			for (String identifier : curator.getChildren().forPath(typePath)) {
+				for (String child : curator.getChildren().forPath(PATH.join(typePath, identifier))) {
+					int id;
+					try {
+						id = Integer.parseInt(child);
+					} catch (NumberFormatException nfe) {
+						continue;
+					}
+
+					if (migrateIteration(PATH.join(typePath, identifier, child),
+							iterationPath(identifier, id))) {
+						moved++;
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+
+		return moved;
+	}
+
+	private boolean migrateIteration(String flatPath, String path) throws Exception {
+		Iteration iteration = read(flatPath);
+
+		if (iteration == null) {
+			return false;
+		}
+
+		if (iteration.leased) {
+			logger.warn("Not moving running iteration {}", flatPath);
+			return false;
+		}
+
+		mkdirs(path.substring(0, path.lastIndexOf('/')));
+
+		CuratorTransactionFinal transaction;
+
+		if (curator.checkExists().forPath(path) == null) {
+			transaction = curator.inTransaction()
+					.create().forPath(path, iteration.record.encode()).and();
+		} else {
+			// Already moved, the flat node is a leftover of an interrupted migration
+			transaction = curator.inTransaction()
+					.check().forPath(path).and();
+		}
+
+		for (String node : iteration.legacyNodes) {
+			transaction = transaction.delete().forPath(PATH.join(flatPath, node)).and();
+		}
+
+		transaction.delete().withVersion(iteration.version).forPath(flatPath).and().commit();
+
+		return true;
+	}
+
+	// Path of the node of an iteration
+	private String iterationPath(String identifier, int id) {
+		if (bucketed) {
+			return PATH.join(root, type, identifier, IterationBuckets.of(id), id);
+		}
+
+		return PATH.join(root, type, identifier, id);
 	}
 
 	@Override
@@ -100,54 +280,114 @@ public class ZookeeperStatusStorage implements StatusStorage {
 
 	@Override
 	public DateTime getLastUpdateTime(String identifier, int id) throws IOException {
+		Iteration iteration = read(iterationPath(identifier, id));
 
-		String path = PATH.join(root, type, identifier, id);
+		if (iteration == null) {
+			return new DateTime(0);
+		}
 
-		try {
-			if (curator.checkExists().forPath(path) == null) {
-				return new DateTime(0);
-			}
+		return new DateTime(Math.max(iteration.mtime, iteration.record.getLastTime()));
+	}
 
-			return new DateTime(curator.checkExists().forPath(path).getMtime());
+	@Override
+	public DateTime getStatusUpdateTime(String identifier, int id, Status status) throws IOException {
+		Iteration iteration = read(iterationPath(identifier, id));
 
-		} catch (Exception e) {
-			throw new IOException(e);
+		if (iteration == null || iteration.record.has(status) == false) {
+			return new DateTime(0);
 		}
+
+		return new DateTime(iteration.record.getTime(status));
 	}
 
 	@Override
-	public DateTime getStatusUpdateTime(String identifier, int id, Status status) throws IOException {
+	public int getCurrentIterNo(String identifier) throws IOException {
+		int current = readHighWaterMark(identifier).id;
+		highWaterMarks.put(identifier, current);
 
-		String path = PATH.join(root, type, identifier, id, status);
+		return current;
+	}
 
-		try {
-			if (curator.checkExists().forPath(path) == null) {
-				return new DateTime(0);
-			}
+	/**
+	 * High-water mark of an identifier as read from Zookeeper
+	 */
+	private static class HighWaterMark {
+		private final int id;
+
+		// Version of the node data, -1 if the node does not exist
+		private final int version;
 
-			return new DateTime(curator.checkExists().forPath(path).getCtime());
+		private HighWaterMark(int id, int version) {
+			this.id = id;
+			this.version = version;
+		}
+	}
 
+	/**
+	 * Reads the high-water mark of an identifier in a single call.
+	 * Identifiers committed by previous versions have no high-water mark
+	 * node, the mark is then found from their iterations and the node is
+	 * created by the next commit.
+	 */
+	private HighWaterMark readHighWaterMark(String identifier) throws IOException {
+		Stat stat = new Stat();
+
+		try {
+			byte[] data = curator.getData().storingStatIn(stat)
+					.forPath(PATH.join(root, type, identifier, HIGH_WATER_MARK_NODE));
+			return new HighWaterMark(Ints.fromByteArray(data), stat.getVersion());
+		} catch (KeeperException.NoNodeException e) {
+			// Committed by a previous version
 		} catch (Exception e) {
 			throw new IOException(e);
 		}
 
+		return new HighWaterMark(scanIterations(identifier), -1);
 	}
 
-	@Override
-	public int getCurrentIterNo(String identifier) throws IOException {
-
+	/**
+	 * Finds the highest iteration of an identifier by listing its iteration
+	 * nodes, and those of its highest bucket
+	 */
+	private int scanIterations(String identifier) throws IOException {
 		String path = PATH.join(root, type, identifier);
 
 		int maxIterNo = 0;
+		Integer maxBucket = null;
 		List<String> children;
 
 		try {
-			if (curator.checkExists().forPath(path) == null) {
-				return 0;
+			children = curator.getChildren().forPath(path);
+		} catch (KeeperException.NoNodeException e) {
+			return 0;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+
+		for (String child : children) {
+			Integer bucket = IterationBuckets.parse(child);
+			if (bucket != null) {
+				maxBucket = maxBucket == null ? bucket : Math.max(bucket, maxBucket);
+				continue;
 			}
 
-			children = curator.getChildren().forPath(path);
+			try {
+				maxIterNo = Math.max(Integer.parseInt(child), maxIterNo);
+			} catch (NumberFormatException nfe) {
+				continue;
+			}
+		}
+
+		if (maxBucket == null) {
+			return maxIterNo;
+		}
 
+		try {
+			children = curator.getChildren().forPath(
+					PATH.join(path, IterationBuckets.name(maxBucket)));
+		} catch (KeeperException.NoNodeException e) {
+			// Removed since listed
+			children = Collections.emptyList();
 		} catch (Exception e) {
 			throw new IOException(e);
 		}
@@ -165,107 +405,692 @@ public class ZookeeperStatusStorage implements StatusStorage {
 
 	@Override
 	public Status checkStatus(String identifier, int id) throws IOException {
+		Iteration iteration = read(iterationPath(identifier, id));
 
-		String path = PATH.join(root, type, identifier, id);
+		if (iteration == null) {
+			return Status.PENDING;
+		}
 
-		List<String> children;
+		return iteration.record.getStatus();
+	}
 
-		try {
-			if (curator.checkExists().forPath(path) == null) {
-				return Status.PENDING;
+	@Override
+	public ListenableFuture<Status> checkStatusAsync(String identifier, int id) {
+		final String path = iterationPath(identifier, id);
+
+		return Futures.transformAsync(readAsync(path, readData),
+				new AsyncFunction<CuratorEvent, Status>() {
+					@Override
+					public ListenableFuture<Status> apply(CuratorEvent read) throws IOException {
+						return Futures.immediateFuture(read == null
+								? Status.PENDING
+								: toIteration(path, read.getData(), read.getStat()).record.getStatus());
+					}
+				}, StorageExecutor.get().getExecutor());
+	}
+
+	@Override
+	public Map<String, Status> checkStatuses(Collection<String> identifiers, int id)
+			throws IOException {
+		return await(checkStatusesAsync(identifiers, id));
+	}
+
+	@Override
+	public ListenableFuture<Map<String, Status>> checkStatusesAsync(
+			Collection<String> identifiers, int id) {
+		final Map<String, String> paths = Maps.newHashMapWithExpectedSize(identifiers.size());
+		for (String identifier : identifiers) {
+			paths.put(iterationPath(identifier, id), identifier);
+		}
+
+		return Futures.transformAsync(readAllAsync(paths.keySet(), readData),
+				new AsyncFunction<Map<String, CuratorEvent>, Map<String, Status>>() {
+					@Override
+					public ListenableFuture<Map<String, Status>> apply(
+							Map<String, CuratorEvent> reads) throws IOException {
+						Map<String, Status> statuses = Maps.newHashMapWithExpectedSize(paths.size());
+
+						for (Map.Entry<String, String> entry : paths.entrySet()) {
+							CuratorEvent read = reads.get(entry.getKey());
+							statuses.put(entry.getValue(), read == null
+									? Status.PENDING
+									: toIteration(entry.getKey(), read.getData(), read.getStat())
+											.record.getStatus());
+						}
+
+						return Futures.immediateFuture(statuses);
+					}
+				}, StorageExecutor.get().getExecutor());
+	}
+
+	@Override
+	public SortedMap<Integer, IterationStatus> getStatusRange(String identifier, int from, int to)
+			throws IOException {
+		return await(getStatusRangeAsync(identifier, from, to));
+	}
+
+	@Override
+	public ListenableFuture<SortedMap<Integer, IterationStatus>> getStatusRangeAsync(
+			String identifier, final int from, final int to) {
+		final List<String> parents;
+
+		if (bucketed) {
+			// Buckets of the range, bounded by the high-water mark
+			int last;
+			try {
+				last = Math.min(to, readHighWaterMark(identifier).id);
+			} catch (IOException e) {
+				return Futures.immediateFailedFuture(e);
 			}
 
-			children = curator.getChildren().forPath(path);
+			parents = Lists.newArrayList();
+			if (Math.max(from, 0) <= last) {
+				for (String bucket : IterationBuckets.between(Math.max(from, 0), last)) {
+					parents.add(PATH.join(root, type, identifier, bucket));
+				}
+			}
+		} else {
+			parents = Collections.singletonList(PATH.join(root, type, identifier));
+		}
+
+		// Iterations of the identifier (of each bucket), then the records of
+		// the iterations of the range
+		return Futures.transformAsync(readAllAsync(parents, listChildren),
+				new AsyncFunction<Map<String, CuratorEvent>, SortedMap<Integer, IterationStatus>>() {
+					@Override
+					public ListenableFuture<SortedMap<Integer, IterationStatus>> apply(
+							Map<String, CuratorEvent> listings) {
+						final Map<String, Integer> iterPaths = Maps.newHashMap();
+
+						for (Map.Entry<String, CuratorEvent> listing : listings.entrySet()) {
+							for (String child : listing.getValue().getChildren()) {
+								int iterNo;
+								try {
+									iterNo = Integer.parseInt(child);
+								} catch (NumberFormatException nfe) {
+									continue;
+								}
+
+								if (iterNo >= from && iterNo <= to) {
+									iterPaths.put(PATH.join(listing.getKey(), child), iterNo);
+								}
+							}
+						}
+
+						return Futures.transformAsync(readAllAsync(iterPaths.keySet(), readData),
+								new AsyncFunction<Map<String, CuratorEvent>,
+										SortedMap<Integer, IterationStatus>>() {
+									@Override
+									public ListenableFuture<SortedMap<Integer, IterationStatus>> apply(
+											Map<String, CuratorEvent> reads) throws IOException {
+										return Futures.immediateFuture(toRange(iterPaths, reads));
+									}
+								}, StorageExecutor.get().getExecutor());
+					}
+				}, MoreExecutors.directExecutor());
+	}
+
+	// Status and status time of each iteration of a range scan
+	private SortedMap<Integer, IterationStatus> toRange(Map<String, Integer> iterPaths,
+	                                                    Map<String, CuratorEvent> reads)
+			throws IOException {
+		SortedMap<Integer, IterationStatus> range = new TreeMap<Integer, IterationStatus>();
+
+		for (Map.Entry<String, CuratorEvent> entry : reads.entrySet()) {
+			CuratorEvent read = entry.getValue();
+			ZookeeperStatusRecord record =
+					toIteration(entry.getKey(), read.getData(), read.getStat()).record;
+			Status status = record.getStatus();
+
+			if (status != Status.PENDING) {
+				int iterNo = iterPaths.get(entry.getKey());
+				range.put(iterNo, new IterationStatus(iterNo, status,
+						new DateTime(record.getTime(status))));
+			}
+		}
+
+		return range;
+	}
+
+	/**
+	 * Starts a background read of a path
+	 *
+	 * @return Future of the result of the read, null if the path does not
+	 *         exist
+	 */
+	private ListenableFuture<CuratorEvent> readAsync(String path, BackgroundRead read) {
+		final SettableFuture<CuratorEvent> future = SettableFuture.create();
 
+		try {
+			read.start(path, new BackgroundCallback() {
+				@Override
+				public void processResult(CuratorFramework client, CuratorEvent event) {
+					KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+
+					if (code == KeeperException.Code.OK) {
+						future.set(event);
+					} else if (code == KeeperException.Code.NONODE) {
+						future.set(null);
+					} else {
+						future.setException(
+								new IOException(KeeperException.create(code, event.getPath())));
+					}
+				}
+			});
 		} catch (Exception e) {
-			throw new IOException(e);
+			future.setException(new IOException(e));
 		}
 
-		if (children.contains(Status.SUCCESS.toString())) {
-			return Status.SUCCESS;
+		return future;
+	}
+
+	/**
+	 * Starts a background read of every path without waiting for the
+	 * previous ones, so that the reads are pipelined on the connection and
+	 * cost a single round trip instead of one per path
+	 *
+	 * @return Future of the result of the read of every path that exists
+	 */
+	private ListenableFuture<Map<String, CuratorEvent>> readAllAsync(Collection<String> paths,
+	                                                                BackgroundRead read) {
+		final List<String> ordered = Lists.newArrayList(paths);
+
+		List<ListenableFuture<CuratorEvent>> reads = Lists.newArrayListWithCapacity(ordered.size());
+		for (String path : ordered) {
+			reads.add(readAsync(path, read));
 		}
 
-		if (children.contains(Status.IN_PROGRESS.toString())) {
-			return Status.IN_PROGRESS;
+		return Futures.transform(Futures.allAsList(reads),
+				new Function<List<CuratorEvent>, Map<String, CuratorEvent>>() {
+					@Override
+					public Map<String, CuratorEvent> apply(List<CuratorEvent> events) {
+						Map<String, CuratorEvent> results = Maps.newHashMap();
+
+						for (int i = 0; i < ordered.size(); i++) {
+							if (events.get(i) != null) {
+								results.put(ordered.get(i), events.get(i));
+							}
+						}
+
+						return results;
+					}
+				}, MoreExecutors.directExecutor());
+	}
+
+	// Waits for an asynchronous call
+	private <T> T await(ListenableFuture<T> future) throws IOException {
+		return Futures.getChecked(future, IOException.class, connectionTimeout, TimeUnit.MILLISECONDS);
+	}
+
+	private interface BackgroundRead {
+		void start(String path, BackgroundCallback callback) throws Exception;
+	}
+
+	private final BackgroundRead listChildren = new BackgroundRead() {
+		@Override
+		public void start(String path, BackgroundCallback callback) throws Exception {
+			curator.getChildren().inBackground(callback).forPath(path);
 		}
+	};
 
-		if (children.contains(Status.ERROR.toString())) {
-			return Status.ERROR;
+	private final BackgroundRead readData = new BackgroundRead() {
+		@Override
+		public void start(String path, BackgroundCallback callback) throws Exception {
+			curator.getData().inBackground(callback).forPath(path);
 		}
+	};
 
-		return Status.PENDING;
+	// Not a read, but completes through the same callback
+	private final BackgroundRead deleteTree = new BackgroundRead() {
+		@Override
+		public void start(String path, BackgroundCallback callback) throws Exception {
+			curator.delete().deletingChildrenIfNeeded().inBackground(callback).forPath(path);
+		}
+	};
+
+	/**
+	 * Iteration node as read from Zookeeper
+	 */
+	private static class Iteration {
+		private final ZookeeperStatusRecord record;
+
+		// Version of the node data, for conditional updates
+		private final int version;
+		private final long mtime;
+
+		// The ephemeral lease of a running iteration exists
+		private final boolean leased;
+
+		// Status child nodes of an iteration committed by a previous version,
+		// empty once the iteration has been converted to a record
+		private final List<String> legacyNodes;
+
+		private Iteration(ZookeeperStatusRecord record, Stat stat, boolean leased,
+		                  List<String> legacyNodes) {
+			this.record = record;
+			this.version = stat.getVersion();
+			this.mtime = stat.getMtime();
+			this.leased = leased;
+			this.legacyNodes = legacyNodes;
+		}
 	}
 
-	@Override
-	public void clearAllStatuses(String identifier, int jobId) throws IOException {
-		String path = PATH.join(root, type, identifier, jobId);
+	// Reads an iteration node in a single call, null if it does not exist
+	private Iteration read(String path) throws IOException {
+		Stat stat = new Stat();
+		byte[] data;
 
 		try {
-			if (curator.checkExists().forPath(path) == null) {
+			data = curator.getData().storingStatIn(stat).forPath(path);
+		} catch (KeeperException.NoNodeException e) {
+			return null;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+
+		return toIteration(path, data, stat);
+	}
+
+	private Iteration toIteration(String path, byte[] data, Stat stat) throws IOException {
+		if (data != null && data.length > 0) {
+			ZookeeperStatusRecord record = ZookeeperStatusRecord.decode(data);
+
+			// The lease is the only child node of a converted iteration. Without
+			// it the process running the iteration is gone.
+			boolean leased = stat.getNumChildren() > 0;
+			if (leased == false) {
+				record.remove(Status.IN_PROGRESS);
+			}
+
+			return new Iteration(record, stat, leased, Collections.<String>emptyList());
+		}
+
+		return readLegacy(path, stat);
+	}
+
+	// Reads an iteration committed by a previous version, whose statuses are
+	// child nodes created at their commit time
+	private Iteration readLegacy(String path, Stat stat) throws IOException {
+		ZookeeperStatusRecord record = new ZookeeperStatusRecord();
+		List<String> legacyNodes = Lists.newArrayList();
+		boolean leased = false;
+
+		List<String> children;
+
+		try {
+			children = curator.getChildren().forPath(path);
+		} catch (KeeperException.NoNodeException e) {
+			children = Collections.emptyList();
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+
+		for (String child : children) {
+			String childPath = PATH.join(path, child);
+
+			try {
+				if (ATTEMPTS_NODE.equals(child)) {
+					record.setAttempts(Ints.fromByteArray(curator.getData().forPath(childPath)));
+					legacyNodes.add(child);
+					continue;
+				}
+
+				Status status = Status.valueOf(child);
+				Stat childStat = curator.checkExists().forPath(childPath);
+
+				if (childStat == null) {
+					continue;
+				}
+
+				record.put(status, childStat.getCtime());
+
+				if (LEASE_NODE.equals(child)) {
+					leased = true;
+				} else {
+					legacyNodes.add(child);
+				}
+			} catch (IllegalArgumentException e) {
+				// Not a status node
+			} catch (KeeperException.NoNodeException e) {
+				// Removed since listed
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+
+		return new Iteration(record, stat, leased, legacyNodes);
+	}
+
+	/**
+	 * Change to the record of an iteration
+	 */
+	private interface Update {
+		/**
+		 * @return False if the record is unchanged
+		 */
+		boolean apply(ZookeeperStatusRecord record);
+	}
+
+	/**
+	 * Updates the record of an iteration in a single transaction, which also
+	 * creates the iteration node if needed, acquires or releases the lease,
+	 * removes the status nodes of a previous version and raises the
+	 * high-water mark of the identifier. The transaction only applies to the
+	 * read versions of the record and of the high-water mark and is retried
+	 * if either was updated in between.
+	 *
+	 * @param renewLease Replace the lease, e.g. when the iteration is
+	 *                   started again
+	 * @param commit A status is committed, the high-water mark is raised to
+	 *               the iteration
+	 */
+	private void update(String identifier, int id, Update update, boolean renewLease,
+	                    boolean commit) throws IOException {
+		String path = iterationPath(identifier, id);
+		String markPath = PATH.join(root, type, identifier, HIGH_WATER_MARK_NODE);
+
+		for (int attempt = 1; ; attempt++) {
+			Iteration iteration = read(path);
+
+			// Marks known to be at least the iteration are not read again
+			Integer known = highWaterMarks.get(identifier);
+			HighWaterMark mark = commit && (known == null || known < id)
+					? readHighWaterMark(identifier)
+					: null;
+
+			ZookeeperStatusRecord record = iteration == null
+					? new ZookeeperStatusRecord()
+					: iteration.record;
+
+			if (update.apply(record) == false) {
 				return;
 			}
 
-			curator.delete().deletingChildrenIfNeeded().forPath(path);
+			boolean leased = iteration != null && iteration.leased;
+
+			try {
+				CuratorTransactionFinal transaction;
+
+				if (iteration == null) {
+					transaction = curator.inTransaction()
+							.create().forPath(path, record.encode()).and();
+				} else {
+					transaction = curator.inTransaction()
+							.setData().withVersion(iteration.version)
+							.forPath(path, record.encode()).and();
+
+					for (String node : iteration.legacyNodes) {
+						transaction = transaction.delete().forPath(PATH.join(path, node)).and();
+					}
+				}
+
+				if (leased && (renewLease || record.has(Status.IN_PROGRESS) == false)) {
+					transaction = transaction.delete().forPath(PATH.join(path, LEASE_NODE)).and();
+					leased = false;
+				}
+
+				if (leased == false && record.has(Status.IN_PROGRESS)) {
+					transaction = transaction.create().withMode(CreateMode.EPHEMERAL)
+							.forPath(PATH.join(path, LEASE_NODE)).and();
+				}
+
+				int current = mark == null ? id : Math.max(mark.id, id);
+
+				if (mark != null && mark.version < 0) {
+					transaction = transaction.create()
+							.forPath(markPath, Ints.toByteArray(current)).and();
+				} else if (mark != null && mark.id < id) {
+					transaction = transaction.setData().withVersion(mark.version)
+							.forPath(markPath, Ints.toByteArray(id)).and();
+				}
+
+				transaction.commit();
+
+				if (mark != null) {
+					highWaterMarks.put(identifier, current);
+				}
+				return;
+
+			} catch (KeeperException.NoNodeException
+					| KeeperException.NodeExistsException
+					| KeeperException.BadVersionException e) {
+				// Concurrent update, or first iteration of the identifier
+				if (attempt >= MAX_UPDATE_ATTEMPTS) {
+					throw new IOException(e);
+				}
+
+				if (iteration == null) {
+					mkdirs(path.substring(0, path.lastIndexOf('/')));
+				}
 
+				logger.debug("Retrying update of {} ({})", path, e.getClass().getSimpleName());
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	private void mkdirs(String path) throws IOException {
+		try {
+			ZKPaths.mkdirs(curator.getZookeeperClient().getZooKeeper(), path);
 		} catch (Exception e) {
 			throw new IOException(e);
 		}
 	}
 
 	@Override
-	public void removeStatus(String identifier, int jobId, Status status) throws IOException {
+	public void clearAllStatuses(String identifier, int jobId) throws IOException {
+		String path = iterationPath(identifier, jobId);
 
-		String path = PATH.join(root, type, identifier, jobId, status);
+		try {
+			curator.delete().deletingChildrenIfNeeded().forPath(path);
+		} catch (KeeperException.NoNodeException e) {
+			// No status
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public ListenableFuture<Void> clearAllStatusesAsync(String identifier, int jobId) {
+		// A missing iteration is read as null, i.e. nothing to delete
+		return Futures.transform(readAsync(iterationPath(identifier, jobId), deleteTree),
+				new Function<CuratorEvent, Void>() {
+					@Override
+					public Void apply(CuratorEvent delete) {
+						return null;
+					}
+				}, MoreExecutors.directExecutor());
+	}
+
+	@Override
+	public void removeStatus(String identifier, int jobId, final Status status) throws IOException {
+		update(identifier, jobId, new Update() {
+			@Override
+			public boolean apply(ZookeeperStatusRecord record) {
+				return record.remove(status);
+			}
+		}, false, false);
+	}
+
+	@Override
+	public ListenableFuture<Void> removeStatusAsync(final String identifier, final int jobId,
+	                                                final Status status) {
+		// Curator transactions are blocking
+		return StorageExecutor.get().submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				removeStatus(identifier, jobId, status);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void commitStatus(String identifier, int jobId, final Status status,
+	                         final DateTime time, final boolean overwrite) throws IOException {
+		update(identifier, jobId, new Update() {
+			@Override
+			public boolean apply(ZookeeperStatusRecord record) {
+				if (overwrite) {
+					record.clearStatuses();
+				}
+
+				record.put(status, time.getMillis());
+				return true;
+			}
+		}, status == Status.IN_PROGRESS, true);
+	}
+
+	@Override
+	public ListenableFuture<Void> commitStatusAsync(final String identifier, final int jobId,
+	                                                final Status status, final DateTime time,
+	                                                final boolean overwrite) {
+		// Curator transactions are blocking
+		return StorageExecutor.get().submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				commitStatus(identifier, jobId, status, time, overwrite);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void watchStatus(String identifier, int id, Status status,
+	                        StatusListener listener) throws IOException {
+		watchStatus(identifier, id, status, listener, new AtomicBoolean(false));
+	}
+
+	private void watchStatus(final String identifier, final int id, final Status status,
+	                         final StatusListener listener, final AtomicBoolean notified)
+			throws IOException {
+		String path = iterationPath(identifier, id);
+
+		CuratorWatcher watcher = new CuratorWatcher() {
+			@Override
+			public void process(WatchedEvent event) throws Exception {
+				if (event.getType() == Watcher.Event.EventType.None) {
+					// Watches survive disconnections but are lost with the
+					// session, the listener has to read and watch again
+					if (event.getState() == Watcher.Event.KeeperState.Expired
+							&& notified.compareAndSet(false, true)) {
+						listener.onStatus(identifier, id, null);
+					}
+					return;
+				}
+
+				// Watches are one-shot, read and watch again on changes
+				if (notified.get() == false) {
+					watchStatus(identifier, id, status, listener, notified);
+				}
+			}
+		};
+
+		Iteration iteration;
 
 		try {
-			if (curator.checkExists().forPath(path) == null) {
+			// Checking existence sets the watch whether the node exists or
+			// not, and fires when its record changes
+			if (curator.checkExists().usingWatcher(watcher).forPath(path) == null) {
 				return;
 			}
 
-			curator.delete().forPath(path);
+			iteration = read(path);
 
+			// Statuses of previous versions are child nodes
+			if (iteration != null && iteration.legacyNodes.isEmpty() == false) {
+				curator.getChildren().usingWatcher(watcher).forPath(path);
+			}
 		} catch (Exception e) {
 			throw new IOException(e);
 		}
+
+		if (iteration != null && iteration.record.has(status) && notified.compareAndSet(false, true)) {
+			listener.onStatus(identifier, id, status);
+		}
 	}
 
 	@Override
-	public void commitStatus(String identifier, int jobId, Status status, DateTime time, boolean overwrite)
-			throws IOException {
-		String path = PATH.join(root, type, identifier, jobId, status);
-
-		// Create ephemeral node for in progress
-		if (status == Status.IN_PROGRESS) {
-			// Destroy node if it already exists
-			try {
-				if (curator.checkExists().forPath(path) != null) {
-					curator.delete().forPath(path);
+	public void watchChanges(final String identifier, final int id,
+	                         final StatusListener listener) throws IOException {
+		String path = iterationPath(identifier, id);
+
+		CuratorWatcher watcher = new CuratorWatcher() {
+			@Override
+			public void process(WatchedEvent event) throws Exception {
+				// Disconnections do not change the statuses, but the watch is
+				// lost with the session and changes would go unnoticed
+				if (event.getType() != Watcher.Event.EventType.None
+						|| event.getState() == Watcher.Event.KeeperState.Expired) {
+					listener.onStatus(identifier, id, null);
 				}
-			} catch (Exception e) {
-				// ignore exception for this call
 			}
+		};
 
-			// Create ephemeral node
-			try {
-				curator.create()
-						.creatingParentsIfNeeded()
-						.withMode(CreateMode.EPHEMERAL)
-						.forPath(path);
-			} catch (Exception e) {
-				throw new IOException(e);
+		try {
+			// Statuses are in the data of the iteration node, which may not
+			// exist yet. The child watch fires when the IN_PROGRESS lease is
+			// acquired or ends with the session of the running process.
+			if (curator.checkExists().usingWatcher(watcher).forPath(path) != null) {
+				curator.getChildren().usingWatcher(watcher).forPath(path);
 			}
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
 
-		} else {
-			try {
-				ZKPaths.mkdirs(curator.getZookeeperClient().getZooKeeper(), path);
+	@Override
+	public int getAttemptCount(String identifier, int id) throws IOException {
+		Iteration iteration = read(iterationPath(identifier, id));
 
-				curator.checkExists().forPath(path).setCtime(time.getMillis());
+		return iteration == null ? 0 : iteration.record.getAttempts();
+	}
 
-			} catch (Exception e) {
-				throw new IOException(e);
+	@Override
+	public void commitAttemptCount(String identifier, int jobId, final int attempts)
+			throws IOException {
+		update(identifier, jobId, new Update() {
+			@Override
+			public boolean apply(ZookeeperStatusRecord record) {
+				record.setAttempts(attempts);
+				return true;
 			}
+		}, false, false);
+	}
+
+	@Override
+	public String getWatermark(String identifier, String name) throws IOException {
+		String path = PATH.join(root, type, identifier, WATERMARKS_NODE, name);
+
+		try {
+			if (curator.checkExists().forPath(path) == null) {
+				return null;
+			}
+
+			return new String(curator.getData().forPath(path), Charsets.UTF_8);
+
+		} catch (Exception e) {
+			throw new IOException(e);
 		}
+	}
+
+	@Override
+	public void commitWatermark(String identifier, String name, String watermark)
+			throws IOException {
+		String path = PATH.join(root, type, identifier, WATERMARKS_NODE, name);
 
+		try {
+			if (curator.checkExists().forPath(path) == null) {
+				curator.create()
+						.creatingParentsIfNeeded()
+						.forPath(path, watermark.getBytes(Charsets.UTF_8));
+			} else {
+				curator.setData().forPath(path, watermark.getBytes(Charsets.UTF_8));
+			}
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
 	}
 
 	@Retention(RetentionPolicy.RUNTIME)
@@ -282,4 +1107,6 @@ public class ZookeeperStatusStorage implements StatusStorage {
 	public static final String CONNECTION_TIMEOUT = "zk_connection_timeout";
 	public static final String RETRY_DURATION = "zk_retry_duration";
 	public static final String RETRY_INTERVAL = "zk_retry_interval";
+	public static final String BUCKETED_LAYOUT = "zk_bucketed_layout";
+	public static final String MIGRATE_LAYOUT = "zk_migrate_layout";
 }
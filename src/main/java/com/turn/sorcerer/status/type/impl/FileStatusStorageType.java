@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.type.impl;
+
+import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.impl.FileStatusStorage;
+import com.turn.sorcerer.status.type.StatusStorageType;
+
+/**
+ * Local directory status storage
+ *
+ * @author tshiou
+ */
+public class FileStatusStorageType implements StatusStorageType {
+
+	private String root;
+
+	// Default to syncing each group of writes to disk
+	private boolean sync = true;
+
+	// Default to compacting the log every 10000 records
+	private int snapshot_interval = 10000;
+
+	public String getRoot() {
+		return this.root;
+	}
+
+	public boolean isSync() {
+		return this.sync;
+	}
+
+	public int getSnapshotInterval() {
+		return this.snapshot_interval;
+	}
+
+	@Override
+	public Class<? extends StatusStorage> getStorageClass() {
+		return FileStatusStorage.class;
+	}
+
+	@Override
+	public String name() {
+		return "File @ " + root;
+	}
+}
@@ -19,10 +19,31 @@ public class HDFSStatusStorageType implements StatusStorageType {
 
 	private String root;
 
+	// Default to the legacy layout
+	private boolean compact_layout = false;
+
+	// Default to no migration of legacy status files
+	private boolean migrate_layout = false;
+
+	// Default to iterations directly under their task or pipeline
+	private boolean bucketed_layout = false;
+
 	public String getRoot() {
 		return this.root;
 	}
 
+	public boolean isCompactLayout() {
+		return this.compact_layout;
+	}
+
+	public boolean isMigrateLayout() {
+		return this.migrate_layout;
+	}
+
+	public boolean isBucketedLayout() {
+		return this.bucketed_layout;
+	}
+
 	@Override
 	public Class<? extends StatusStorage> getStorageClass() {
 		return HDFSStatusStorage.class;
@@ -17,7 +17,26 @@ import com.turn.sorcerer.status.impl.MemoryStatusStorage;
  */
 public class MemoryStatusStorageType implements StatusStorageType {
 
-	private String dummy;
+	// Default to statuses lost on restart
+	private String journal = null;
+
+	// Default to syncing the journal every 100 milliseconds
+	private int flush_interval = 100;
+
+	// Default to compacting the journal every 10000 records
+	private int snapshot_interval = 10000;
+
+	public String getJournal() {
+		return this.journal;
+	}
+
+	public int getFlushInterval() {
+		return this.flush_interval;
+	}
+
+	public int getSnapshotInterval() {
+		return this.snapshot_interval;
+	}
 
 	@Override
 	public Class<? extends StatusStorage> getStorageClass() {
@@ -26,6 +45,8 @@ public class MemoryStatusStorageType implements StatusStorageType {
 
 	@Override
 	public String name() {
-		return "In-memory status storage";
+		return journal == null
+				? "In-memory status storage"
+				: "In-memory status storage journaled @ " + journal;
 	}
 }
@@ -34,6 +34,12 @@ public class ZookeeperStatusStorageType implements StatusStorageType {
 	// Default retry duration = 1 min
 	private int retry_duration = 60000;
 
+	// Default to iterations directly under their task or pipeline
+	private boolean bucketed_layout = false;
+
+	// Default to no migration of flat iterations to buckets
+	private boolean migrate_layout = false;
+
 	public String getRoot() {
 		return this.root;
 	}
@@ -58,6 +64,14 @@ public class ZookeeperStatusStorageType implements StatusStorageType {
 		return this.retry_duration;
 	}
 
+	public boolean isBucketedLayout() {
+		return this.bucketed_layout;
+	}
+
+	public boolean isMigrateLayout() {
+		return this.migrate_layout;
+	}
+
 	@Override
 	public Class<? extends StatusStorage> getStorageClass() {
 		return ZookeeperStatusStorage.class;
@@ -8,8 +8,10 @@ package com.turn.sorcerer.task;
 
 import com.turn.sorcerer.util.TypedDictionary;
 
+import java.util.List;
 import java.util.Map;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 
 /**
@@ -22,6 +24,7 @@ public class Context {
 	private int iterationNumber;
 	private final TypedDictionary properties;
 	private final Map<String, Long> metrics = Maps.newHashMap();
+	private final Map<String, List<String>> inputs = Maps.newHashMap();
 
 	public Context(int iterationNumber) {
 		this.iterationNumber = iterationNumber;
@@ -50,4 +53,21 @@ public class Context {
 	public TypedDictionary getProperties() {
 		return this.properties;
 	}
+
+	/**
+	 * Provides the new inputs found by an incremental dependency of the task
+	 * (see {@link com.turn.sorcerer.dependency.IncrementalDependency})
+	 *
+	 * @param name Name of the input
+	 * @return Inputs that arrived since the last successful run of the task,
+	 *         empty if none
+	 */
+	public List<String> getInputs(String name) {
+		List<String> list = inputs.get(name);
+		return list == null ? ImmutableList.<String>of() : list;
+	}
+
+	public void putInputs(String name, List<String> list) {
+		inputs.put(name, ImmutableList.copyOf(list));
+	}
 }
@@ -7,13 +7,24 @@
 package com.turn.sorcerer.task.executable;
 
 import com.turn.sorcerer.dependency.Dependency;
+import com.turn.sorcerer.dependency.DependencyEvaluator;
+import com.turn.sorcerer.dependency.IncrementalDependency;
 import com.turn.sorcerer.exception.SorcererException;
 import com.turn.sorcerer.status.StatusManager;
 import com.turn.sorcerer.task.Context;
 import com.turn.sorcerer.task.Task;
 import com.turn.sorcerer.task.type.TaskType;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Class Description Here
@@ -21,11 +32,26 @@ import com.google.common.collect.ImmutableList;
  * @author tshiou
  */
 public class ExecutableTask {
+	private static final Logger logger =
+			LoggerFactory.getLogger(ExecutableTask.class);
 
 	private final int sequenceNumber;
 	private final TaskType type;
 	private final Task task;
 
+	// In-flight iteration consuming each incremental input, by task and input
+	// name, so that two iterations of a task never consume the same inputs
+	private static final ConcurrentMap<String, ExecutableTask> consumers =
+			Maps.newConcurrentMap();
+
+	private Dependency blockingDependency = null;
+
+	// Incremental dependencies of the last dependency check
+	private List<IncrementalDependency> incrementalDependencies = ImmutableList.of();
+
+	// Incremental inputs claimed by this iteration
+	private final List<String> claims = Lists.newArrayList();
+
 	protected ExecutableTask(TaskType type, Task task, int seq) {
 		this.type = type;
 		this.task = task;
@@ -37,22 +63,121 @@ public class ExecutableTask {
 	}
 
 	public boolean checkDependencies() {
+		// Dependencies are only built once per attempt
+		Collection<Dependency> dependencies = task.getDependencies(sequenceNumber);
+
 		// If the task doesn't have dependencies, return true
-		if (task.getDependencies(sequenceNumber) == null ||
-				task.getDependencies(sequenceNumber).size() == 0) {
+		if (dependencies == null || dependencies.size() == 0) {
+			blockingDependency = null;
+			incrementalDependencies = ImmutableList.of();
 			return true;
 		}
-		ImmutableList<Dependency> dependencies =
-				ImmutableList.copyOf(task.getDependencies(sequenceNumber));
 
-		// If any dependencies not met, return false
+		blockingDependency = prepareInputs(dependencies);
+		if (blockingDependency != null) {
+			return false;
+		}
+
+		blockingDependency = DependencyEvaluator.get().evaluate(dependencies, sequenceNumber);
+
+		if (blockingDependency != null) {
+			releaseInputs();
+		}
+
+		return blockingDependency == null;
+	}
+
+	/**
+	 * Claims the incremental dependencies for this iteration and provides
+	 * them the watermarks of the last successful run
+	 *
+	 * @return The incremental dependency that cannot be checked, because
+	 *         another iteration is consuming it or its watermark cannot be
+	 *         read, or null
+	 */
+	Dependency prepareInputs(Collection<Dependency> dependencies) {
+		List<IncrementalDependency> incremental = Lists.newArrayList();
+
 		for (Dependency dependency : dependencies) {
-			if (dependency.check(sequenceNumber) == false) {
-				return false;
+			if (dependency instanceof IncrementalDependency == false) {
+				continue;
+			}
+
+			IncrementalDependency input = (IncrementalDependency) dependency;
+			String key = type.getName() + ":" + input.getName();
+
+			ExecutableTask consumer = consumers.putIfAbsent(key, this);
+			if (consumer != null) {
+				logger.debug("Input {} of {} is being consumed by {}",
+						input.getName(), this, consumer);
+				releaseInputs();
+				return input;
 			}
+			claims.add(key);
+
+			try {
+				input.setWatermark(readWatermark(input.getName()));
+			} catch (IOException | RuntimeException e) {
+				logger.error("Could not read watermark of input {} of {}",
+						input.getName(), this, e);
+				releaseInputs();
+				return input;
+			}
+			incremental.add(input);
+		}
+
+		incrementalDependencies = incremental;
+		return null;
+	}
+
+	/**
+	 * Lets the other iterations of the task consume the incremental inputs
+	 * claimed by the last dependency check. Called once the task exits,
+	 * after the watermarks are committed.
+	 */
+	public void releaseInputs() {
+		for (String key : claims) {
+			consumers.remove(key, this);
 		}
+		claims.clear();
+		incrementalDependencies = ImmutableList.of();
+	}
+
+	/**
+	 * Provides the new inputs found by the incremental dependencies of the
+	 * last dependency check to the task
+	 */
+	public void addInputs(Context context) {
+		for (IncrementalDependency input : incrementalDependencies) {
+			context.putInputs(input.getName(), input.getNewInputs());
+		}
+	}
+
+	/**
+	 * Commits the watermarks of the inputs consumed by a successful run
+	 */
+	public void commitWatermarks() {
+		for (IncrementalDependency input : incrementalDependencies) {
+			if (input.getNewWatermark() != null) {
+				commitWatermark(input.getName(), input.getNewWatermark());
+			}
+		}
+	}
+
+	String readWatermark(String name) throws IOException {
+		return StatusManager.get().getTaskWatermark(type, name);
+	}
+
+	void commitWatermark(String name, String watermark) {
+		StatusManager.get().commitTaskWatermark(type, name, watermark);
+	}
 
-		return true;
+	/**
+	 * Provides the dependency that was not met during the last call to
+	 * {@link #checkDependencies()}, or null if all dependencies were met
+	 */
+	public Dependency getBlockingDependency() {
+		return blockingDependency;
 	}
 
 	public void execute(Context context) throws SorcererException {
@@ -40,6 +40,24 @@ public class TaskType {
 
 	private boolean external = false;
 
+	private Boolean virtual_threads;
+
+	private String timeout;
+
+	private Integer _timeout_seconds;
+
+	private int max_attempts = 1;
+
+	private String retry_delay = "1m";
+
+	private String max_retry_delay = "1h";
+
+	private List<String> retry_exceptions;
+
+	private Integer _retry_delay_seconds;
+
+	private Integer _max_retry_delay_seconds;
+
 	public TaskType() {}
 
 	// For mocking and testing
@@ -74,6 +92,102 @@ public class TaskType {
 		return this.external;
 	}
 
+	/**
+	 * Provides whether the task should execute on a virtual thread, or null
+	 * if the mode of the pipeline should be used
+	 */
+	public Boolean getVirtualThreads() {
+		return this.virtual_threads;
+	}
+
+	/**
+	 * Maximum number of times the task is executed for an iteration before
+	 * it is left in error. 1 means that failed tasks are not retried.
+	 */
+	public int getMaxAttempts() {
+		return this.max_attempts;
+	}
+
+	/**
+	 * Delay in seconds before the first retry of a failed task. The delay is
+	 * doubled for each following retry.
+	 */
+	public int getRetryDelay() {
+		if (_retry_delay_seconds == null) {
+			initRetryPolicyQuietly();
+		}
+
+		return _retry_delay_seconds;
+	}
+
+	/**
+	 * Upper bound in seconds of the delay between retries
+	 */
+	public int getMaxRetryDelay() {
+		if (_max_retry_delay_seconds == null) {
+			initRetryPolicyQuietly();
+		}
+
+		return _max_retry_delay_seconds;
+	}
+
+	/**
+	 * Fully qualified names of the exception classes for which a failed task
+	 * is retried, or null if the task is retried for any exception
+	 */
+	public List<String> getRetryExceptions() {
+		return this.retry_exceptions;
+	}
+
+	public void initRetryPolicy() throws SorcererException {
+		try {
+			_retry_delay_seconds = Math.max(0, parseSLA(retry_delay));
+			_max_retry_delay_seconds = Math.max(0, parseSLA(max_retry_delay));
+		} catch (Exception e) {
+			throw new SorcererException(
+					"Incorrectly formatted retry delay field for task " + this.name, e);
+		}
+	}
+
+	// Falls back to retrying without delay if the configuration is invalid
+	private void initRetryPolicyQuietly() {
+		try {
+			initRetryPolicy();
+		} catch (SorcererException e) {
+			_retry_delay_seconds = 0;
+			_max_retry_delay_seconds = 0;
+		}
+	}
+
+	/**
+	 * Maximum execution time of the task in seconds, or -1 if the task can
+	 * run indefinitely. Defaults to the SLA of the task.
+	 */
+	public int getTimeout() {
+		if (_timeout_seconds == null) {
+			try {
+				initTimeout();
+			} catch (SorcererException e) {
+				_timeout_seconds = -1;
+			}
+		}
+
+		return _timeout_seconds;
+	}
+
+	public void initTimeout() throws SorcererException {
+		if (timeout == null || timeout.trim().length() == 0) {
+			_timeout_seconds = getSLA();
+			return;
+		}
+
+		try {
+			_timeout_seconds = parseSLA(timeout);
+		} catch (Exception e) {
+			throw new SorcererException("Incorrectly formatted timeout field for task " + this.name, e);
+		}
+	}
+
 	public int getSLA() {
 		if (_sla_seconds == null) {
 			try {
@@ -103,7 +217,7 @@ public class TaskType {
 
 		char unit = trimmed.charAt(trimmed.length() - 1);
 
-		int num = Integer.parseInt(trimmed.substring(0, trimmed.length() - 2));
+		int num = Integer.parseInt(trimmed.substring(0, trimmed.length() - 1).trim());
 
 		switch (unit) {
 			case 'd':
@@ -126,6 +240,8 @@ public class TaskType {
 				.add("exec", this.exec)
 				.add("criticality", this.criticality.name())
 				.add("sla", this.sla)
+				.add("timeout", this.timeout)
+				.add("max_attempts", this.max_attempts)
 				.toString();
 	}
 
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to virtual threads (Java 21+) through reflection since Sorcerer is
+ * built for Java 8
+ *
+ * @author tshiou
+ */
+public class VirtualThreads {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(VirtualThreads.class);
+
+	private static final Method IS_VIRTUAL = getIsVirtual();
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Creates an executor starting a new virtual thread per task, or returns
+	 * null if the JVM does not support virtual threads
+	 */
+	public static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (Exception e) {
+			logger.debug("Virtual threads are not supported by this JVM", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Checks if the current thread is a virtual thread
+	 */
+	public static boolean isCurrentThreadVirtual() {
+		if (IS_VIRTUAL == null) {
+			return false;
+		}
+
+		try {
+			return (Boolean) IS_VIRTUAL.invoke(Thread.currentThread());
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static Method getIsVirtual() {
+		try {
+			return Thread.class.getMethod("isVirtual");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * DependencyCache tests
+ *
+ * @author tshiou
+ */
+@Test
+public class DependencyCacheTest {
+
+	private static class FakeTicker extends Ticker {
+		private long nanos = 0;
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+
+		private void advance(long millis) {
+			nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+		}
+	}
+
+	// Counts the checks reaching the underlying storage
+	private static class CountingDependency implements CacheableDependency {
+		private final String key;
+		private boolean met = false;
+		private int checks = 0;
+
+		private CountingDependency(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getCacheKey(int iterNo) {
+			return key;
+		}
+
+		@Override
+		public boolean check(int iterNo) {
+			checks++;
+			return met;
+		}
+	}
+
+	public void testPositiveResultsAreShared() {
+		DependencyCache cache = new DependencyCache(new FakeTicker());
+		CountingDependency a = new CountingDependency("path");
+		CountingDependency b = new CountingDependency("path");
+		a.met = true;
+
+		Assert.assertTrue(cache.check(a, 1));
+		Assert.assertTrue(cache.check(b, 1));
+		Assert.assertTrue(cache.check(a, 1));
+		Assert.assertEquals(a.checks + b.checks, 1);
+
+		// Other iterations are checked separately
+		b.met = false;
+		Assert.assertFalse(cache.check(b, 2));
+
+		Assert.assertEquals(cache.getHitCount(), 2);
+		Assert.assertEquals(cache.getMissCount(), 2);
+	}
+
+	public void testPositiveTtl() {
+		FakeTicker ticker = new FakeTicker();
+		DependencyCache cache = new DependencyCache(ticker);
+		CountingDependency d = new CountingDependency("path");
+		d.met = true;
+
+		Assert.assertTrue(cache.check(d, 1));
+
+		// Unmet again, seen as met until the entry expires
+		d.met = false;
+		ticker.advance(DependencyCache.POSITIVE_TTL_MILLIS - 1);
+		Assert.assertTrue(cache.check(d, 1));
+		Assert.assertEquals(d.checks, 1);
+
+		ticker.advance(1);
+		Assert.assertFalse(cache.check(d, 1));
+		Assert.assertEquals(d.checks, 2);
+
+		// Unmet checks after a met one start the backoff over
+		ticker.advance(DependencyCache.MIN_BACKOFF_MILLIS);
+		Assert.assertFalse(cache.check(d, 1));
+		Assert.assertEquals(d.checks, 3);
+	}
+
+	public void testNegativeBackoff() {
+		FakeTicker ticker = new FakeTicker();
+		DependencyCache cache = new DependencyCache(ticker);
+		CountingDependency d = new CountingDependency("path");
+
+		Assert.assertFalse(cache.check(d, 1));
+		Assert.assertEquals(d.checks, 1);
+
+		// Not checked again before the backoff
+		ticker.advance(DependencyCache.MIN_BACKOFF_MILLIS - 1);
+		Assert.assertFalse(cache.check(d, 1));
+		Assert.assertEquals(d.checks, 1);
+
+		ticker.advance(1);
+		Assert.assertFalse(cache.check(d, 1));
+		Assert.assertEquals(d.checks, 2);
+
+		// Backoff doubled after the second unmet check
+		ticker.advance(DependencyCache.MIN_BACKOFF_MILLIS);
+		Assert.assertFalse(cache.check(d, 1));
+		Assert.assertEquals(d.checks, 2);
+
+		d.met = true;
+		ticker.advance(DependencyCache.MIN_BACKOFF_MILLIS);
+		Assert.assertTrue(cache.check(d, 1));
+		Assert.assertEquals(d.checks, 3);
+
+		// Invalidated results are checked again
+		cache.invalidate("path", 1);
+		Assert.assertTrue(cache.check(d, 1));
+		Assert.assertEquals(d.checks, 4);
+	}
+
+	public void testBackoff() {
+		Assert.assertEquals(DependencyCache.getBackoffMillis(1), DependencyCache.MIN_BACKOFF_MILLIS);
+		Assert.assertEquals(DependencyCache.getBackoffMillis(2), 2 * DependencyCache.MIN_BACKOFF_MILLIS);
+		Assert.assertEquals(DependencyCache.getBackoffMillis(100), DependencyCache.MAX_BACKOFF_MILLIS);
+	}
+
+	public void testUncacheable() {
+		DependencyCache cache = new DependencyCache(new FakeTicker());
+		CountingDependency d = new CountingDependency(null);
+
+		cache.check(d, 1);
+		cache.check(d, 1);
+		Assert.assertEquals(d.checks, 2);
+		Assert.assertEquals(cache.getMissCount(), 0);
+	}
+}
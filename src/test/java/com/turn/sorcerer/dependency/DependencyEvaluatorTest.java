@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency;
+
+import com.turn.sorcerer.dependency.impl.BooleanDependency;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * DependencyEvaluator tests
+ *
+ * @author tshiou
+ */
+@Test
+public class DependencyEvaluatorTest {
+
+	// Dependency blocking until released
+	private static Dependency slowDependency(final CountDownLatch release) {
+		return new Dependency() {
+			@Override
+			public boolean check(int iterNo) {
+				try {
+					return release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					return false;
+				}
+			}
+		};
+	}
+
+	public void testAllMet() {
+		DependencyEvaluator evaluator = new DependencyEvaluator(4);
+
+		Assert.assertNull(evaluator.evaluate(null, 1));
+		Assert.assertNull(evaluator.evaluate(Lists.<Dependency>newArrayList(), 1));
+		Assert.assertNull(evaluator.evaluate(Lists.<Dependency>newArrayList(
+				new BooleanDependency(true), new BooleanDependency(true)), 1));
+	}
+
+	public void testConcurrentChecks() {
+		DependencyEvaluator evaluator = new DependencyEvaluator(4);
+		final CountDownLatch started = new CountDownLatch(4);
+
+		// Each check is only met once all of them have started, which cannot
+		// happen if they are checked one after the other
+		List<Dependency> dependencies = Lists.newArrayList();
+		for (int i = 0; i < 4; i++) {
+			dependencies.add(new Dependency() {
+				@Override
+				public boolean check(int iterNo) {
+					started.countDown();
+					try {
+						return started.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						return false;
+					}
+				}
+			});
+		}
+
+		Assert.assertNull(evaluator.evaluate(dependencies, 1));
+	}
+
+	public void testShortCircuit() {
+		DependencyEvaluator evaluator = new DependencyEvaluator(2);
+		CountDownLatch release = new CountDownLatch(1);
+
+		Dependency blocking = new BooleanDependency(false);
+
+		List<Dependency> dependencies = Lists.newArrayList();
+		dependencies.add(slowDependency(release));
+		dependencies.add(blocking);
+		for (int i = 0; i < 10; i++) {
+			dependencies.add(slowDependency(release));
+		}
+
+		// Returns without waiting for the slow dependencies
+		long start = System.nanoTime();
+		Assert.assertSame(evaluator.evaluate(dependencies, 1), blocking);
+		Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+		release.countDown();
+	}
+
+	public void testFailingCheck() {
+		DependencyEvaluator evaluator = new DependencyEvaluator(2);
+
+		Dependency failing = new Dependency() {
+			@Override
+			public boolean check(int iterNo) {
+				throw new IllegalStateException();
+			}
+		};
+
+		Assert.assertSame(evaluator.evaluate(Lists.newArrayList(
+				new BooleanDependency(true), failing), 1), failing);
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.dependency.impl;
+
+import com.turn.sorcerer.dependency.DependencyCache;
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.task.type.TaskType;
+
+import java.util.Collections;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * SorcererTaskDependency caching tests
+ *
+ * @author tshiou
+ */
+@Test
+public class SorcererTaskDependencyTest {
+
+	// Counts the checks reaching the state storage
+	private static class CountingDependency extends SorcererTaskDependency {
+		private boolean met = true;
+		private int checks = 0;
+
+		private CountingDependency(TaskType type) {
+			super(type);
+		}
+
+		private CountingDependency(TaskType type, int iterNo) {
+			super(type, iterNo);
+		}
+
+		@Override
+		boolean isCached() {
+			return true;
+		}
+
+		@Override
+		public boolean check(int iterNo) {
+			checks++;
+			return met;
+		}
+	}
+
+	private static TaskType task(String name) {
+		return new TaskType(name, Collections.<String>emptyList(), null);
+	}
+
+	public void testClearPinnedIteration() {
+		CountingDependency d = new CountingDependency(task("pinned"), 5);
+
+		Assert.assertTrue(DependencyCache.get().check(d, 10));
+		Assert.assertTrue(DependencyCache.get().check(d, 11));
+		Assert.assertEquals(d.checks, 1);
+
+		// Iteration 5 of the requisite task is cleared
+		d.met = false;
+		SorcererTaskDependency.CACHE_INVALIDATION.onStatus("pinned", 5, null);
+
+		Assert.assertFalse(DependencyCache.get().check(d, 10));
+		Assert.assertEquals(d.checks, 2);
+	}
+
+	public void testRerunIteration() {
+		CountingDependency d = new CountingDependency(task("rerun"));
+
+		Assert.assertTrue(DependencyCache.get().check(d, 7));
+		Assert.assertTrue(DependencyCache.get().check(d, 8));
+		Assert.assertEquals(d.checks, 2);
+
+		// Completions do not drop the result
+		SorcererTaskDependency.CACHE_INVALIDATION.onStatus("rerun", 7, Status.SUCCESS);
+		Assert.assertTrue(DependencyCache.get().check(d, 7));
+		Assert.assertEquals(d.checks, 2);
+
+		d.met = false;
+		SorcererTaskDependency.CACHE_INVALIDATION.onStatus("rerun", 7, Status.IN_PROGRESS);
+
+		Assert.assertFalse(DependencyCache.get().check(d, 7));
+		Assert.assertTrue(DependencyCache.get().check(d, 8));
+		Assert.assertEquals(d.checks, 3);
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.impl.MemoryStatusStorage;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Compares the thread count and tick jitter of the {@link PipelineTimer}
+ * with one sleeping thread per pipeline and per pipeline iteration
+ *
+ * <p>
+ * Run with {@code mvn test -P benchmark}
+ * </p>
+ *
+ * @author tshiou
+ */
+@Test(groups = "benchmark")
+public class PipelineTimerBenchmark {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(PipelineTimerBenchmark.class);
+
+	private static final int PIPELINES = 1000;
+	private static final int LOOKBACK = 7;
+	private static final int TASKS = 5;
+
+	private static final long INTERVAL_MILLIS = 1000;
+	private static final long DURATION_MILLIS = 10000;
+
+	// Ticks of the first intervals are not recorded since all ticks start at once
+	private static final long WARMUP_MILLIS = 2000;
+
+	private final StatusStorage tasks = new MemoryStatusStorage().setType("tasks");
+	private final StatusStorage pipelines = new MemoryStatusStorage().setType("pipelines");
+
+	// Tick start delays compared to the expected start, in microseconds
+	private final ConcurrentLinkedQueue<Long> jitter = new ConcurrentLinkedQueue<Long>();
+	private volatile long recordAfter;
+
+	public void benchmarkTimerDriver() throws Exception {
+		populateStorage();
+		jitter.clear();
+		recordAfter = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WARMUP_MILLIS);
+
+		int threadsBefore = threadCount();
+		PipelineTimer timer =
+				new PipelineTimer(PipelineTimer.TIMER_THREADS, PipelineTimer.TICK_THREADS);
+
+		List<JitterTick> ticks = Lists.newArrayList();
+		for (int p = 0; p < PIPELINES; p++) {
+			for (int i = 0; i <= LOOKBACK; i++) {
+				ticks.add(new IterationTick(p, i));
+			}
+			ticks.add(new PipelineTick(p));
+		}
+		for (JitterTick tick : ticks) {
+			tick.future = timer.schedule(tick, 0, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+
+		Thread.sleep(DURATION_MILLIS);
+		int threadsDuring = threadCount();
+		int registeredTicks = timer.getTickCount();
+
+		for (JitterTick tick : ticks) {
+			tick.future.cancel(false);
+		}
+
+		report("timer driver (" + timer.getThreads() + " timer and tick threads, "
+				+ registeredTicks + " registered ticks)", threadsDuring - threadsBefore);
+
+		Assert.assertTrue(threadsDuring - threadsBefore <= timer.getThreads());
+	}
+
+	public void benchmarkThreadPerLoop() throws Exception {
+		populateStorage();
+		jitter.clear();
+		recordAfter = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WARMUP_MILLIS);
+
+		int threadsBefore = threadCount();
+
+		List<SleeperThread> threads = Lists.newArrayList();
+		for (int p = 0; p < PIPELINES; p++) {
+			for (int i = 0; i <= LOOKBACK; i++) {
+				threads.add(new SleeperThread(new IterationTick(p, i)));
+			}
+			threads.add(new SleeperThread(new PipelineTick(p)));
+		}
+		for (SleeperThread thread : threads) {
+			thread.start();
+		}
+
+		Thread.sleep(DURATION_MILLIS);
+		int threadsDuring = threadCount();
+
+		for (SleeperThread thread : threads) {
+			thread.interrupt();
+		}
+		for (SleeperThread thread : threads) {
+			thread.join();
+		}
+
+		report("thread per pipeline and iteration", threadsDuring - threadsBefore);
+	}
+
+	private void populateStorage() throws IOException {
+		for (int p = 0; p < PIPELINES; p++) {
+			for (int i = 0; i <= LOOKBACK; i++) {
+				// Odd iterations are complete
+				if (i % 2 == 1) {
+					pipelines.commitStatus(pipelineName(p), i, Status.SUCCESS, DateTime.now(), true);
+				}
+				for (int t = 0; t < TASKS; t++) {
+					if (i % 2 == 1 || t == 0) {
+						tasks.commitStatus(taskName(p, t), i, Status.SUCCESS, DateTime.now(), true);
+					}
+				}
+			}
+		}
+	}
+
+	private static String pipelineName(int p) {
+		return "pipeline_" + p;
+	}
+
+	private static String taskName(int p, int t) {
+		return "pipeline_" + p + "_task_" + t;
+	}
+
+	private static int threadCount() {
+		return ManagementFactory.getThreadMXBean().getThreadCount();
+	}
+
+	private void report(String name, int threads) {
+		Long[] samples = jitter.toArray(new Long[0]);
+		Arrays.sort(samples);
+
+		logger.info(String.format(
+				"%s: %d pipelines x %d iterations, %d threads, %d ticks, "
+						+ "jitter p50=%.2fms p99=%.2fms max=%.2fms",
+				name, PIPELINES, LOOKBACK + 1, threads, samples.length,
+				percentile(samples, 0.50), percentile(samples, 0.99),
+				percentile(samples, 1.0)));
+	}
+
+	private static double percentile(Long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int i = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+		return sorted[Math.max(0, i)] / 1000.0;
+	}
+
+	// Records the delay between the expected and actual start of each tick
+	private abstract class JitterTick implements Runnable {
+		private long expectedStart = System.nanoTime();
+		protected volatile boolean done = false;
+		private volatile ScheduledFuture<?> future;
+
+		@Override
+		public void run() {
+			// Completed iterations are removed from the timer
+			if (done) {
+				if (future != null) {
+					future.cancel(false);
+				}
+				return;
+			}
+
+			long start = System.nanoTime();
+			if (start > recordAfter) {
+				jitter.add(Math.max(0, start - expectedStart) / 1000);
+			}
+
+			try {
+				tick();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+
+			expectedStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(INTERVAL_MILLIS);
+		}
+
+		protected abstract void tick() throws IOException;
+	}
+
+	private class PipelineTick extends JitterTick {
+		private final int p;
+
+		private PipelineTick(int p) {
+			this.p = p;
+		}
+
+		@Override
+		protected void tick() throws IOException {
+			for (int i = 0; i <= LOOKBACK; i++) {
+				pipelines.checkStatus(pipelineName(p), i);
+			}
+		}
+	}
+
+	private class IterationTick extends JitterTick {
+		private final int p;
+		private final int i;
+
+		private IterationTick(int p, int i) {
+			this.p = p;
+			this.i = i;
+		}
+
+		@Override
+		protected void tick() throws IOException {
+			for (int t = 0; t < TASKS; t++) {
+				tasks.checkStatus(taskName(p, t), i);
+			}
+
+			done = Status.SUCCESS.equals(pipelines.checkStatus(pipelineName(p), i));
+		}
+	}
+
+	// Previous model: a thread sleeping between ticks
+	private static class SleeperThread extends Thread {
+		private final JitterTick tick;
+
+		private SleeperThread(JitterTick tick) {
+			this.tick = tick;
+		}
+
+		@Override
+		public void run() {
+			while (tick.done == false) {
+				tick.run();
+				try {
+					Thread.sleep(INTERVAL_MILLIS);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.impl.MemoryStatusStorage;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.joda.time.DateTime;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * RetentionCollector tests
+ *
+ * @author tshiou
+ */
+@Test
+public class RetentionCollectorTest {
+
+	// Collects the iterations of a given storage
+	private static class StorageCollector extends RetentionCollector {
+		private final StatusStorage storage;
+		private int from = -1;
+
+		private StorageCollector(StatusStorage storage) {
+			super(1000);
+			this.storage = storage;
+		}
+
+		@Override
+		SortedMap<Integer, IterationStatus> getStatusRange(String identifier, boolean pipeline,
+		                                                   int from, int to) {
+			this.from = from;
+			try {
+				return storage.getStatusRange(identifier, from, to);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		ListenableFuture<Integer> delete(String identifier, boolean pipeline, List<Integer> iterNos) {
+			try {
+				for (int iterNo : iterNos) {
+					storage.clearAllStatuses(identifier, iterNo);
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return Futures.immediateFuture(iterNos.size());
+		}
+	}
+
+	public void testCollect() throws IOException {
+		StatusStorage storage = new MemoryStatusStorage().setType("tasks");
+		long now = new DateTime(2015, 6, 1, 0, 0).getMillis();
+		DateTime old = new DateTime(now).minusDays(30);
+
+		for (int i = 0; i < 10; i++) {
+			storage.commitStatus("task", i, Status.SUCCESS, old, true);
+		}
+		storage.commitStatus("task", 3, Status.IN_PROGRESS, old, true);
+		storage.commitStatus("task", 8, Status.SUCCESS, new DateTime(now), true);
+
+		StorageCollector collector = new StorageCollector(storage);
+		RetentionCollector.Retention retention = new RetentionCollector.Retention(7, 9);
+
+		Assert.assertEquals(collector.collect("task", false, retention, now), 7);
+		Assert.assertEquals(collector.from, 0);
+		Assert.assertEquals(Lists.newArrayList(storage.getStatusRange("task", 0, 9).keySet()),
+				Arrays.asList(3, 8, 9));
+
+		// The next collection starts from the running iteration
+		storage.commitStatus("task", 3, Status.SUCCESS, old, true);
+		retention = new RetentionCollector.Retention(7, 10);
+
+		Assert.assertEquals(collector.collect("task", false, retention, now), 2);
+		Assert.assertEquals(collector.from, 3);
+		Assert.assertEquals(Lists.newArrayList(storage.getStatusRange("task", 0, 9).keySet()),
+				Arrays.asList(8));
+
+		Assert.assertEquals(collector.collect("task", false, retention, now), 0);
+		Assert.assertEquals(collector.from, 8);
+
+		// Pipelines and tasks of the same name have their own marks
+		Assert.assertEquals(collector.collect("task", true, retention, now), 0);
+		Assert.assertEquals(collector.from, 0);
+	}
+
+	public void testKeptForever() throws IOException {
+		StatusStorage storage = new MemoryStatusStorage().setType("tasks");
+		long now = new DateTime(2015, 6, 1, 0, 0).getMillis();
+		storage.commitStatus("task", 1, Status.SUCCESS, new DateTime(now).minusDays(30), true);
+
+		StorageCollector collector = new StorageCollector(storage);
+
+		// A pipeline without a lookback window keeps the tasks it shares
+		RetentionCollector.Retention retention = new RetentionCollector.Retention(0, 0)
+				.merge(new RetentionCollector.Retention(7, 10));
+
+		Assert.assertEquals(collector.collect("task", false, retention, now), 0);
+		Assert.assertEquals(collector.from, -1);
+		Assert.assertEquals(storage.checkStatus("task", 1), Status.SUCCESS);
+	}
+
+	public void testExpired() {
+		DateTime cutoff = new DateTime(2015, 6, 1, 0, 0);
+
+		SortedMap<Integer, IterationStatus> statuses = new TreeMap<Integer, IterationStatus>();
+		statuses.put(1, new IterationStatus(1, Status.SUCCESS, cutoff.minusDays(30)));
+		statuses.put(2, new IterationStatus(2, Status.ERROR, cutoff.minusDays(1)));
+		statuses.put(3, new IterationStatus(3, Status.IN_PROGRESS, cutoff.minusDays(30)));
+		statuses.put(4, new IterationStatus(4, Status.SUCCESS, cutoff));
+		statuses.put(5, new IterationStatus(5, Status.SUCCESS, cutoff.plusDays(1)));
+
+		Assert.assertEquals(RetentionCollector.getExpired(statuses, cutoff.getMillis()),
+				Arrays.asList(1, 2));
+	}
+
+	public void testMerge() {
+		RetentionCollector.Retention merged = new RetentionCollector.Retention(7, 100)
+				.merge(new RetentionCollector.Retention(30, 50));
+
+		Assert.assertEquals(merged.days, 30);
+		Assert.assertEquals(merged.firstKept, 50);
+
+		// Kept forever by one of the pipelines
+		merged = merged.merge(new RetentionCollector.Retention(0, 200));
+
+		Assert.assertEquals(merged.days, 0);
+		Assert.assertEquals(merged.firstKept, 50);
+
+		Assert.assertSame(merged.merge(null), merged);
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import com.turn.sorcerer.pipeline.type.PipelineType;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TaskExecutionPool tests
+ *
+ * @author tshiou
+ */
+@Test
+public class TaskExecutionPoolTest {
+
+	private static PipelineType pipelineType(String name, int max, int min, double weight)
+			throws Exception {
+		PipelineType type = new PipelineType();
+		set(type, "name", name);
+		set(type, "threads", max);
+		set(type, "min_threads", min);
+		set(type, "weight", weight);
+		return type;
+	}
+
+	private static void set(Object o, String field, Object value) throws Exception {
+		Field f = o.getClass().getDeclaredField(field);
+		f.setAccessible(true);
+		f.set(o, value);
+	}
+
+	private static Callable<String> blockingTask(final String name, final CountDownLatch latch,
+	                                             final List<String> started) {
+		return new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				synchronized (started) {
+					started.add(name);
+				}
+				latch.await(10, TimeUnit.SECONDS);
+				return name;
+			}
+		};
+	}
+
+	private static void waitForStarted(List<String> started, int count)
+			throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			synchronized (started) {
+				if (started.size() >= count) {
+					return;
+				}
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	private static void waitForRunning(TaskExecutionPool pool, int count)
+			throws InterruptedException {
+		for (int i = 0; i < 100 && pool.getRunningCount() > count; i++) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static int getAll(List<ListenableFuture<String>> futures) throws Exception {
+		for (ListenableFuture<String> future : futures) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		return futures.size();
+	}
+
+	public void testGlobalBound() throws Exception {
+		TaskExecutionPool pool = new TaskExecutionPool(2);
+		CountDownLatch latch = new CountDownLatch(1);
+		List<String> started = Lists.newArrayList();
+
+		List<ListenableFuture<String>> futures = Lists.newArrayList();
+		for (int i = 0; i < 5; i++) {
+			futures.add(pool.submit(null, blockingTask("t" + i, latch, started)));
+		}
+
+		waitForStarted(started, 2);
+		Assert.assertEquals(pool.getRunningCount(), 2);
+		Assert.assertEquals(pool.getQueuedCount(), 3);
+
+		latch.countDown();
+		Assert.assertEquals(getAll(futures), 5);
+		Assert.assertEquals(pool.getQueuedCount(), 0);
+	}
+
+	public void testPipelineQuotas() throws Exception {
+		TaskExecutionPool pool = new TaskExecutionPool(4);
+		CountDownLatch latch = new CountDownLatch(1);
+		List<String> started = Lists.newArrayList();
+
+		// Pipeline a is capped at 1 slot, pipeline b is guaranteed 2 slots
+		PipelineType a = pipelineType("a", 1, 0, 1);
+		PipelineType b = pipelineType("b", 0, 2, 1);
+
+		List<ListenableFuture<String>> futures = Lists.newArrayList();
+		for (int i = 0; i < 4; i++) {
+			futures.add(pool.submit(a, blockingTask("a", latch, started)));
+		}
+		for (int i = 0; i < 4; i++) {
+			futures.add(pool.submit(b, blockingTask("b", latch, started)));
+		}
+
+		waitForStarted(started, 4);
+
+		synchronized (started) {
+			Assert.assertEquals(started.size(), 4);
+			Assert.assertEquals(started.lastIndexOf("a"), started.indexOf("a"));
+		}
+
+		latch.countDown();
+		Assert.assertEquals(getAll(futures), 8);
+	}
+
+	public void testWeightedFairQueuing() throws Exception {
+		TaskExecutionPool pool = new TaskExecutionPool(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		List<String> started = Lists.newArrayList();
+
+		// Occupy the only slot so that the following tasks are queued
+		ListenableFuture<String> blocker = pool.submit(null, blockingTask("blocker", latch, started));
+		waitForStarted(started, 1);
+
+		PipelineType heavy = pipelineType("heavy", 0, 0, 2);
+		PipelineType light = pipelineType("light", 0, 0, 1);
+
+		List<ListenableFuture<String>> futures = Lists.newArrayList();
+		for (int i = 0; i < 4; i++) {
+			futures.add(pool.submit(light, blockingTask("light", latch, started)));
+		}
+		for (int i = 0; i < 4; i++) {
+			futures.add(pool.submit(heavy, blockingTask("heavy", latch, started)));
+		}
+
+		latch.countDown();
+		blocker.get(10, TimeUnit.SECONDS);
+		getAll(futures);
+
+		// The heavy pipeline gets two slots for each slot of the light pipeline
+		int heavyCount = 0;
+		for (String name : started.subList(1, 7)) {
+			if (name.equals("heavy")) {
+				heavyCount++;
+			}
+		}
+		Assert.assertEquals(heavyCount, 4);
+	}
+
+	public void testPriorityOrder() throws Exception {
+		TaskExecutionPool pool = new TaskExecutionPool(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		List<String> started = Lists.newArrayList();
+
+		ListenableFuture<String> blocker = pool.submit(null, blockingTask("blocker", latch, started));
+		waitForStarted(started, 1);
+
+		List<ListenableFuture<String>> futures = Lists.newArrayList();
+		futures.add(pool.submit(null, blockingTask("leaf", latch, started), false,
+				new TaskPriority(Long.MAX_VALUE, 1)));
+		futures.add(pool.submit(null, blockingTask("chain", latch, started), false,
+				new TaskPriority(Long.MAX_VALUE, 5)));
+		futures.add(pool.submit(null, blockingTask("sla", latch, started), false,
+				new TaskPriority(System.currentTimeMillis(), 1)));
+
+		latch.countDown();
+		blocker.get(10, TimeUnit.SECONDS);
+		getAll(futures);
+
+		Assert.assertEquals(started, Lists.newArrayList("blocker", "sla", "chain", "leaf"));
+	}
+
+	public void testAbandon() throws Exception {
+		TaskExecutionPool pool = new TaskExecutionPool(1);
+		CountDownLatch hung = new CountDownLatch(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		List<String> started = Lists.newArrayList();
+
+		ListenableFuture<String> hungFuture = pool.submit(null, blockingTask("hung", hung, started));
+		ListenableFuture<String> next = pool.submit(null, blockingTask("next", latch, started));
+
+		waitForStarted(started, 1);
+		Assert.assertEquals(pool.getQueuedCount(), 1);
+
+		// The slot of the hung task is given to the queued task
+		Assert.assertTrue(pool.abandon(hungFuture));
+		waitForStarted(started, 2);
+		Assert.assertEquals(pool.getRunningCount(), 1);
+		Assert.assertFalse(pool.abandon(hungFuture));
+
+		// The abandoned task returning later does not release a slot again
+		hung.countDown();
+		hungFuture.get(10, TimeUnit.SECONDS);
+		Assert.assertEquals(pool.getRunningCount(), 1);
+
+		latch.countDown();
+		next.get(10, TimeUnit.SECONDS);
+
+		// The slot is released right after the future completes
+		waitForRunning(pool, 0);
+		Assert.assertFalse(pool.abandon(next));
+	}
+}
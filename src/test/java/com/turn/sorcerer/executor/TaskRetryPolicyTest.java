@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import com.turn.sorcerer.exception.SorcererException;
+import com.turn.sorcerer.task.type.TaskType;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.ConnectException;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TaskRetryPolicy tests
+ *
+ * @author tshiou
+ */
+@Test
+public class TaskRetryPolicyTest {
+
+	private static TaskType taskType(int maxAttempts, String... retryExceptions)
+			throws Exception {
+		TaskType type = new TaskType("task", null, null);
+		set(type, "max_attempts", maxAttempts);
+		if (retryExceptions.length > 0) {
+			set(type, "retry_exceptions", Arrays.asList(retryExceptions));
+		}
+		return type;
+	}
+
+	private static void set(Object o, String field, Object value) throws Exception {
+		Field f = o.getClass().getDeclaredField(field);
+		f.setAccessible(true);
+		f.set(o, value);
+	}
+
+	public void testMaxAttempts() throws Exception {
+		TaskType noRetry = taskType(1);
+		Assert.assertFalse(TaskRetryPolicy.shouldRetry(noRetry, 1, new IOException()));
+
+		TaskType retry = taskType(3);
+		Assert.assertTrue(TaskRetryPolicy.shouldRetry(retry, 1, new IOException()));
+		Assert.assertTrue(TaskRetryPolicy.shouldRetry(retry, 2, new IOException()));
+		Assert.assertFalse(TaskRetryPolicy.shouldRetry(retry, 3, new IOException()));
+	}
+
+	public void testRetryableExceptions() throws Exception {
+		TaskType t = taskType(3, IOException.class.getName());
+
+		// Subclasses and causes of retryable exceptions are retried
+		Assert.assertTrue(TaskRetryPolicy.isRetryable(t, new ConnectException()));
+		Assert.assertTrue(TaskRetryPolicy.isRetryable(t,
+				new SorcererException("wrapped", new IOException())));
+
+		Assert.assertFalse(TaskRetryPolicy.isRetryable(t, new IllegalStateException()));
+		Assert.assertFalse(TaskRetryPolicy.shouldRetry(t, 1, new IllegalStateException()));
+	}
+
+	public void testBackoff() {
+		// Doubles with each attempt
+		Assert.assertEquals(TaskRetryPolicy.getBackoffMillis(1000, 0, 1, 1.0), 1000);
+		Assert.assertEquals(TaskRetryPolicy.getBackoffMillis(1000, 0, 2, 1.0), 2000);
+		Assert.assertEquals(TaskRetryPolicy.getBackoffMillis(1000, 0, 4, 1.0), 8000);
+
+		// Capped by the maximum delay
+		Assert.assertEquals(TaskRetryPolicy.getBackoffMillis(1000, 5000, 4, 1.0), 5000);
+		Assert.assertEquals(TaskRetryPolicy.getBackoffMillis(1000, 5000, 100, 1.0), 5000);
+
+		// Jitter keeps at least half of the delay
+		Assert.assertEquals(TaskRetryPolicy.getBackoffMillis(1000, 0, 2, 0.0), 1000);
+	}
+}
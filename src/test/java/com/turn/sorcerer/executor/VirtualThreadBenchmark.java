@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.executor;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Compares executing tasks blocked on I/O on the fixed platform thread pool
+ * with executing them on virtual threads (Java 21+)
+ *
+ * <p>
+ * Run with {@code mvn test -P benchmark}
+ * </p>
+ *
+ * @author tshiou
+ */
+@Test(groups = "benchmark")
+public class VirtualThreadBenchmark {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(VirtualThreadBenchmark.class);
+
+	private static final int TASKS = 10000;
+	private static final long BLOCK_MILLIS = 200;
+
+	// Module thread bound of the platform pool
+	private static final int POOL_THREADS = 200;
+
+	public void benchmarkFixedPool() throws Exception {
+		run("fixed pool (" + POOL_THREADS + " threads)", false);
+	}
+
+	public void benchmarkVirtualThreads() throws Exception {
+		if (new TaskExecutionPool(POOL_THREADS).isVirtualThreadSupported() == false) {
+			logger.info("virtual threads: not supported by this JVM, skipping");
+			return;
+		}
+
+		run("virtual threads", true);
+	}
+
+	private void run(String name, boolean virtual) throws Exception {
+		TaskExecutionPool pool = new TaskExecutionPool(POOL_THREADS);
+
+		final AtomicInteger blocked = new AtomicInteger();
+		final AtomicInteger peakBlocked = new AtomicInteger();
+
+		Callable<Integer> task = new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				int current = blocked.incrementAndGet();
+				int peak;
+				while (current > (peak = peakBlocked.get())
+						&& peakBlocked.compareAndSet(peak, current) == false) {
+					// retry
+				}
+
+				Thread.sleep(BLOCK_MILLIS);
+
+				blocked.decrementAndGet();
+				return current;
+			}
+		};
+
+		int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+		ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+
+		long start = System.nanoTime();
+
+		List<ListenableFuture<Integer>> futures = Lists.newArrayListWithCapacity(TASKS);
+		for (int i = 0; i < TASKS; i++) {
+			futures.add(pool.submit(null, task, virtual));
+		}
+		for (ListenableFuture<Integer> future : futures) {
+			future.get(10, TimeUnit.MINUTES);
+		}
+
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		int peakThreads = ManagementFactory.getThreadMXBean().getPeakThreadCount() - threadsBefore;
+
+		logger.info(String.format(
+				"%s: %d tasks blocking %dms, wall time %dms, "
+						+ "peak platform threads +%d, peak concurrently blocked tasks %d",
+				name, TASKS, BLOCK_MILLIS, elapsedMillis, peakThreads, peakBlocked.get()));
+
+		Assert.assertEquals(pool.getRunningCount(), 0);
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.pipeline.executable;
+
+import com.turn.sorcerer.task.type.TaskType;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * TaskReadyQueue tests
+ *
+ * @author tshiou
+ */
+@Test
+public class TaskReadyQueueTest {
+
+	// a -> (b, c) -> d
+	private TaskReadyQueue diamond() {
+		List<TaskType> tasks = ImmutableList.of(
+				new TaskType("d", Collections.<String>emptyList(), null),
+				new TaskType("c", ImmutableList.of("d"), null),
+				new TaskType("b", ImmutableList.of("d"), null),
+				new TaskType("a", ImmutableList.of("b", "c"), null)
+		);
+
+		return new TaskReadyQueue(CompiledTaskGraph.compile(tasks));
+	}
+
+	private static List<String> names(List<TaskType> tasks) {
+		List<String> names = Lists.newArrayList();
+		for (TaskType t : tasks) {
+			names.add(t.getName());
+		}
+		return names;
+	}
+
+	public void testTopologicalOrder() {
+		CompiledTaskGraph graph = diamond().getGraph();
+
+		Assert.assertEquals(graph.size(), 4);
+		Assert.assertEquals(graph.indexOf("a"), 0);
+		Assert.assertEquals(graph.indexOf("d"), 3);
+		Assert.assertEquals(graph.getParents(graph.indexOf("d")).length, 2);
+		Assert.assertEquals(graph.indexOf("e"), -1);
+
+		Assert.assertEquals(graph.getRemainingPath(graph.indexOf("a")), 3);
+		Assert.assertEquals(graph.getRemainingPath(graph.indexOf("b")), 2);
+		Assert.assertEquals(graph.getRemainingPath(graph.indexOf("d")), 1);
+		Assert.assertEquals(graph.getDownstreamSLA(graph.indexOf("a")), -1);
+	}
+
+	public void testReleaseOnCompletion() {
+		TaskReadyQueue queue = diamond();
+
+		Assert.assertEquals(names(queue.poll()), ImmutableList.of("a"));
+		Assert.assertTrue(queue.poll().isEmpty());
+
+		queue.markComplete("a");
+		Assert.assertEquals(names(queue.poll()), ImmutableList.of("b", "c"));
+
+		queue.markComplete("b");
+		Assert.assertTrue(queue.poll().isEmpty());
+
+		queue.markComplete("c");
+		Assert.assertEquals(names(queue.poll()), ImmutableList.of("d"));
+	}
+
+	public void testDeferAndIncomplete() {
+		TaskReadyQueue queue = diamond();
+		queue.poll();
+
+		queue.defer("a");
+		Assert.assertTrue(queue.poll().isEmpty());
+
+		queue.promoteDeferred();
+		Assert.assertEquals(names(queue.poll()), ImmutableList.of("a"));
+
+		queue.markComplete("a");
+		Assert.assertEquals(names(queue.poll()), ImmutableList.of("b", "c"));
+
+		// Children of an incomplete task are no longer ready
+		queue.markIncomplete("a");
+		Assert.assertFalse(queue.isComplete("a"));
+		Assert.assertEquals(names(queue.poll()), ImmutableList.of("a"));
+
+		queue.markComplete("a");
+		Assert.assertEquals(names(queue.poll()), ImmutableList.of("b", "c"));
+	}
+
+	public void testPromote() {
+		TaskReadyQueue queue = diamond();
+		queue.poll();
+
+		queue.defer("a");
+		queue.promote("a");
+		Assert.assertEquals(names(queue.poll()), ImmutableList.of("a"));
+
+		// Only deferred tasks are promoted
+		queue.promote("a");
+		Assert.assertTrue(queue.poll().isEmpty());
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testCycle() {
+		CompiledTaskGraph.compile(ImmutableList.of(
+				new TaskType("a", ImmutableList.of("b"), null),
+				new TaskType("b", ImmutableList.of("a"), null)
+		));
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status;
+
+import com.turn.sorcerer.status.impl.MemoryStatusStorage;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import org.joda.time.DateTime;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * StatusWriteQueue tests
+ *
+ * @author tshiou
+ */
+@Test
+public class StatusWriteQueueTest {
+
+	// Long enough that only explicit flushes write
+	private static final long DELAY = 3600000;
+
+	public void testCoalesceTaskLifecycle() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+		try {
+			StatusWriteQueue queue = new StatusWriteQueue(storage, DELAY, timer);
+
+			queue.commit("task", 1, Status.IN_PROGRESS, DateTime.now(), false);
+			queue.remove("task", 1, Status.IN_PROGRESS);
+			queue.commit("task", 1, Status.SUCCESS, DateTime.now(), true);
+
+			// Nothing is written before the flush
+			Assert.assertEquals(storage.writes, 0);
+			Assert.assertEquals(queue.size(), 1);
+
+			Futures.getUnchecked(queue.flush("task", 1));
+
+			Assert.assertEquals(storage.writes, 1);
+			Assert.assertEquals(queue.size(), 0);
+			Assert.assertEquals(storage.checkStatus("task", 1), Status.SUCCESS);
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	public void testRemoveAfterFlush() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+		try {
+			StatusWriteQueue queue = new StatusWriteQueue(storage, DELAY, timer);
+
+			queue.commit("task", 1, Status.IN_PROGRESS, DateTime.now(), false);
+			Futures.getUnchecked(queue.flush("task", 1));
+			Assert.assertEquals(storage.checkStatus("task", 1), Status.IN_PROGRESS);
+
+			// The removal of a written status is not cancelled by the commit
+			queue.commit("task", 1, Status.ERROR, DateTime.now(), false);
+			queue.remove("task", 1, Status.IN_PROGRESS);
+			Futures.getUnchecked(queue.flush());
+
+			Assert.assertEquals(storage.writes, 3);
+			Assert.assertEquals(storage.checkStatus("task", 1), Status.ERROR);
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	public void testFlushIdentifiers() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+		try {
+			StatusWriteQueue queue = new StatusWriteQueue(storage, DELAY, timer);
+
+			queue.commit("a", 1, Status.SUCCESS, DateTime.now(), false);
+			queue.commit("b", 1, Status.SUCCESS, DateTime.now(), false);
+			queue.commit("b", 2, Status.SUCCESS, DateTime.now(), false);
+			queue.commit("c", 1, Status.SUCCESS, DateTime.now(), false);
+
+			Futures.getUnchecked(queue.flush(ImmutableList.of("a", "b"), 1));
+			Assert.assertEquals(storage.writes, 2);
+
+			Futures.getUnchecked(queue.flush("b"));
+			Assert.assertEquals(storage.writes, 3);
+			Assert.assertEquals(storage.checkStatus("c", 1), Status.PENDING);
+			Assert.assertEquals(queue.size(), 1);
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	public void testScheduledFlush() throws Exception {
+		CountingStorage storage = new CountingStorage();
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+		try {
+			StatusWriteQueue queue = new StatusWriteQueue(storage, 10, timer);
+
+			queue.commit("task", 1, Status.SUCCESS, DateTime.now(), false);
+			queue.commit("task", 2, Status.SUCCESS, DateTime.now(), false);
+
+			for (int i = 0; i < 100 && queue.size() > 0; i++) {
+				Thread.sleep(10);
+			}
+			Futures.getUnchecked(queue.flush("task"));
+
+			Assert.assertEquals(storage.checkStatus("task", 1), Status.SUCCESS);
+			Assert.assertEquals(storage.checkStatus("task", 2), Status.SUCCESS);
+		} finally {
+			timer.shutdownNow();
+		}
+	}
+
+	// Counts the status writes reaching the storage layer
+	private static class CountingStorage extends MemoryStatusStorage {
+		private volatile int writes = 0;
+
+		@Override
+		public void clearAllStatuses(String identifier, int jobId) throws IOException {
+			writes++;
+			super.clearAllStatuses(identifier, jobId);
+		}
+
+		@Override
+		public void removeStatus(String identifier, int jobId, Status status) throws IOException {
+			writes++;
+			super.removeStatus(identifier, jobId, status);
+		}
+
+		@Override
+		public void commitStatus(String identifier, int jobId, Status status, DateTime time,
+		                         boolean overwrite) throws IOException {
+			writes++;
+			super.commitStatus(identifier, jobId, status, time, overwrite);
+		}
+	}
+}
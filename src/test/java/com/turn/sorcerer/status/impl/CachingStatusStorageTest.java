@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.Status;
+import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.WatchableStatusStorage;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.joda.time.DateTime;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * CachingStatusStorage tests
+ *
+ * @author tshiou
+ */
+@Test
+public class CachingStatusStorageTest {
+
+	private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	private static class FakeTicker extends Ticker {
+		private long nanos = 0;
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+
+		private void advance(long millis) {
+			nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+		}
+	}
+
+	// Counts the status reads reaching the storage
+	private static class CountingStorage extends MemoryStatusStorage {
+		private int reads = 0;
+		private int bulkReads = 0;
+		private Collection<String> lastBulkRead;
+		private int asyncReads = 0;
+
+		// Change run while a status is being read, after the storage was read
+		private Runnable duringRead = null;
+
+		@Override
+		public Map<String, Status> checkStatuses(Collection<String> identifiers, int id)
+				throws IOException {
+			bulkReads++;
+			lastBulkRead = ImmutableSet.copyOf(identifiers);
+			return super.checkStatuses(identifiers, id);
+		}
+
+		@Override
+		public Status checkStatus(String identifier, int id) throws IOException {
+			reads++;
+			Status status = super.checkStatus(identifier, id);
+
+			if (duringRead != null) {
+				Runnable change = duringRead;
+				duringRead = null;
+				change.run();
+			}
+
+			return status;
+		}
+
+		@Override
+		public ListenableFuture<Status> checkStatusAsync(String identifier, int id) {
+			asyncReads++;
+			return super.checkStatusAsync(identifier, id);
+		}
+	}
+
+	public void testSlowReadDoesNotOverwrite() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		final CachingStatusStorage cache =
+				new CachingStatusStorage(storage, TTL_MILLIS, new FakeTicker());
+
+		storage.commitStatus("task", 1, Status.IN_PROGRESS, DateTime.now(), false);
+
+		storage.duringRead = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					cache.commitStatus("task", 1, Status.SUCCESS, DateTime.now(), true);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+
+		// The read returns the status it read, but does not cache it
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.IN_PROGRESS);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.SUCCESS);
+		Assert.assertEquals(storage.reads, 1);
+	}
+
+	public void testSlowReadAfterUnknownChange() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		final CachingStatusStorage cache =
+				new CachingStatusStorage(storage, TTL_MILLIS, new FakeTicker());
+
+		storage.duringRead = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					cache.commitStatus("task", 1, Status.IN_PROGRESS, DateTime.now(), false);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.PENDING);
+
+		// The status after the commit is not known, it is read again
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.IN_PROGRESS);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.IN_PROGRESS);
+		Assert.assertEquals(storage.reads, 2);
+	}
+
+	public void testReadsAreCached() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		CachingStatusStorage cache = new CachingStatusStorage(storage, TTL_MILLIS, new FakeTicker());
+
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.PENDING);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.PENDING);
+		Assert.assertEquals(storage.reads, 1);
+		Assert.assertEquals(cache.getHitCount(), 1);
+		Assert.assertEquals(cache.getMissCount(), 1);
+
+		// Iterations are cached separately
+		Assert.assertEquals(cache.checkStatus("task", 2), Status.PENDING);
+		Assert.assertEquals(storage.reads, 2);
+	}
+
+	public void testWriteThrough() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		CachingStatusStorage cache = new CachingStatusStorage(storage, TTL_MILLIS, new FakeTicker());
+
+		cache.checkStatus("task", 1);
+
+		cache.commitStatus("task", 1, Status.IN_PROGRESS, DateTime.now(), false);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.IN_PROGRESS);
+
+		cache.commitStatus("task", 1, Status.SUCCESS, DateTime.now(), false);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.SUCCESS);
+
+		// A lower precedence status does not hide a committed success
+		cache.commitStatus("task", 1, Status.ERROR, DateTime.now(), false);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.SUCCESS);
+
+		cache.clearAllStatuses("task", 1);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.PENDING);
+
+		Assert.assertEquals(storage.reads, 1);
+		Assert.assertEquals(storage.checkStatus("task", 1), Status.PENDING);
+	}
+
+	public void testRemoveReadsAgain() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		CachingStatusStorage cache = new CachingStatusStorage(storage, TTL_MILLIS, new FakeTicker());
+
+		cache.commitStatus("task", 1, Status.ERROR, DateTime.now(), false);
+		cache.commitStatus("task", 1, Status.IN_PROGRESS, DateTime.now(), false);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.IN_PROGRESS);
+
+		// The status hidden by the removed status is read from the storage
+		cache.removeStatus("task", 1, Status.IN_PROGRESS);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.ERROR);
+		Assert.assertEquals(storage.reads, 2);
+	}
+
+	public void testBulkReadOfMisses() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		CachingStatusStorage cache = new CachingStatusStorage(storage, TTL_MILLIS, new FakeTicker());
+
+		storage.commitStatus("b", 1, Status.SUCCESS, DateTime.now(), false);
+		cache.checkStatus("a", 1);
+
+		Map<String, Status> statuses = cache.checkStatuses(ImmutableList.of("a", "b", "c"), 1);
+		Assert.assertEquals(statuses, ImmutableMap.of(
+				"a", Status.PENDING, "b", Status.SUCCESS, "c", Status.PENDING));
+
+		// Only the identifiers missing from the cache are read, in one bulk read
+		Assert.assertEquals(storage.bulkReads, 1);
+		Assert.assertEquals(storage.lastBulkRead, ImmutableSet.of("b", "c"));
+
+		cache.checkStatuses(ImmutableList.of("a", "b", "c"), 1);
+		Assert.assertEquals(storage.bulkReads, 1);
+	}
+
+	public void testAsyncReads() throws Exception {
+		CountingStorage storage = new CountingStorage();
+		CachingStatusStorage cache = new CachingStatusStorage(storage, TTL_MILLIS, new FakeTicker());
+
+		storage.commitStatus("task", 1, Status.SUCCESS, DateTime.now(), false);
+
+		Assert.assertEquals(cache.checkStatusAsync("task", 1).get(), Status.SUCCESS);
+		Assert.assertEquals(cache.checkStatusAsync("task", 1).get(), Status.SUCCESS);
+		Assert.assertEquals(storage.asyncReads, 1);
+
+		// Asynchronous writes are written through as well
+		cache.commitStatusAsync("task", 2, Status.IN_PROGRESS, DateTime.now(), true).get();
+		Assert.assertEquals(cache.checkStatusAsync("task", 2).get(), Status.IN_PROGRESS);
+		Assert.assertEquals(storage.asyncReads, 1);
+	}
+
+	public void testExpiry() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		FakeTicker ticker = new FakeTicker();
+		CachingStatusStorage cache = new CachingStatusStorage(storage, TTL_MILLIS, ticker);
+
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.PENDING);
+
+		// Written by another process
+		storage.commitStatus("task", 1, Status.SUCCESS, DateTime.now(), false);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.PENDING);
+
+		ticker.advance(TTL_MILLIS);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.SUCCESS);
+	}
+
+	public void testWatchInvalidation() throws IOException {
+		CountingStorage storage = new CountingStorage();
+		StatusStorage cache = CachingStatusStorage.wrap(storage, TTL_MILLIS, new FakeTicker());
+
+		Assert.assertTrue(cache instanceof WatchableStatusStorage);
+
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.PENDING);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.PENDING);
+		Assert.assertEquals(storage.reads, 1);
+
+		// Written by another process, the watch drops the cached status
+		storage.commitStatus("task", 1, Status.SUCCESS, DateTime.now(), false);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.SUCCESS);
+		Assert.assertEquals(storage.reads, 2);
+
+		storage.clearAllStatuses("task", 1);
+		Assert.assertEquals(cache.checkStatus("task", 1), Status.PENDING);
+		Assert.assertEquals(storage.reads, 3);
+	}
+}
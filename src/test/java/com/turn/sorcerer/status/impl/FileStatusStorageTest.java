@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.Status;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.joda.time.DateTime;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * FileStatusStorage tests
+ *
+ * @author tshiou
+ */
+@Test
+public class FileStatusStorageTest {
+
+	private static FileStatusStorage open(File root, int snapshotInterval) throws IOException {
+		FileStatusStorage storage = new FileStatusStorage(root.getPath(), true, snapshotInterval);
+		storage.setType("tasks");
+		storage.init();
+		return storage;
+	}
+
+	public void testRestart() throws IOException {
+		File root = Files.createTempDir();
+		DateTime time = new DateTime(2015, 1, 1, 0, 0);
+
+		FileStatusStorage storage = open(root, 1000);
+		storage.commitStatus("a", 1, Status.IN_PROGRESS, time, false);
+		storage.commitStatus("a", 1, Status.SUCCESS, time.plusHours(1), false);
+		storage.commitStatus("b", 1, Status.ERROR, time, false);
+		storage.commitStatus("b", 2, Status.SUCCESS, time, false);
+		storage.clearAllStatuses("b", 2);
+		storage.commitAttemptCount("b", 1, 2);
+		storage.commitWatermark("a", "offset", "42");
+		storage.close();
+
+		storage = open(root, 1000);
+		Assert.assertEquals(storage.checkStatuses(ImmutableList.of("a", "b"), 1),
+				ImmutableMap.of("a", Status.SUCCESS, "b", Status.ERROR));
+		Assert.assertEquals(storage.getStatusUpdateTime("a", 1, Status.IN_PROGRESS), time);
+		Assert.assertEquals(storage.getLastUpdateTime("a", 1), time.plusHours(1));
+		Assert.assertEquals(storage.checkStatus("b", 2), Status.PENDING);
+		Assert.assertEquals(storage.getCurrentIterNo("b"), 1);
+		Assert.assertEquals(storage.getAttemptCount("b", 1), 2);
+		Assert.assertEquals(storage.getWatermark("a", "offset"), "42");
+		storage.close();
+	}
+
+	public void testTornLog() throws IOException {
+		File root = Files.createTempDir();
+
+		FileStatusStorage storage = open(root, 1000);
+		storage.commitStatus("a", 1, Status.SUCCESS, DateTime.now(), false);
+		storage.commitStatus("a", 2, Status.SUCCESS, DateTime.now(), false);
+		storage.close();
+
+		// Cut the last record short, as a crash while appending would
+		File log = new File(new File(root, "tasks"), "wal.0");
+		RandomAccessFile file = new RandomAccessFile(log, "rw");
+		file.setLength(log.length() - 3);
+		file.close();
+
+		storage = open(root, 1000);
+		Assert.assertEquals(storage.checkStatus("a", 1), Status.SUCCESS);
+		Assert.assertEquals(storage.checkStatus("a", 2), Status.PENDING);
+
+		// Records appended after the torn one are readable
+		storage.commitStatus("a", 3, Status.SUCCESS, DateTime.now(), false);
+		storage.close();
+
+		storage = open(root, 1000);
+		Assert.assertEquals(storage.getCurrentIterNo("a"), 3);
+		Assert.assertEquals(storage.checkStatus("a", 2), Status.PENDING);
+		storage.close();
+	}
+
+	public void testSnapshot() throws IOException {
+		File root = Files.createTempDir();
+		DateTime time = new DateTime(2015, 1, 1, 0, 0);
+
+		FileStatusStorage storage = open(root, 10);
+		for (int i = 1; i <= 25; i++) {
+			storage.commitStatus("a", i, Status.SUCCESS, time.plusHours(i), false);
+		}
+		storage.removeStatus("a", 25, Status.SUCCESS);
+		storage.close();
+
+		// Compacted into the snapshot, only the segment since remains
+		File directory = new File(root, "tasks");
+		Assert.assertTrue(new File(directory, "snapshot").exists());
+		Assert.assertFalse(new File(directory, "wal.0").exists());
+		Assert.assertTrue(new File(directory, "wal.2").exists());
+
+		storage = open(root, 10);
+		Assert.assertEquals(storage.getStatusRange("a", 1, 30).size(), 24);
+		Assert.assertEquals(storage.getStatusRange("a", 1, 30).get(12).getTime(),
+				time.plusHours(12));
+		Assert.assertEquals(storage.getCurrentIterNo("a"), 24);
+		storage.close();
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void testLocked() throws IOException {
+		File root = Files.createTempDir();
+
+		FileStatusStorage storage = open(root, 1000);
+		try {
+			open(root, 1000);
+		} finally {
+			storage.close();
+		}
+	}
+}
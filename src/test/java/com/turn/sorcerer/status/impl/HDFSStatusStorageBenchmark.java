@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.Status;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.io.Files;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Compares the legacy and compact layouts of the {@link HDFSStatusStorage}
+ * against a {@link MiniDFSCluster}
+ *
+ * <p>
+ * Run with {@code mvn test -P benchmark}
+ * </p>
+ *
+ * @author tshiou
+ */
+@Test(groups = "benchmark")
+public class HDFSStatusStorageBenchmark {
+
+	private static final Logger logger =
+			LoggerFactory.getLogger(HDFSStatusStorageBenchmark.class);
+
+	private static final int TASKS = 50;
+	private static final int ITERATIONS = 20;
+	private static final int CHECKS = 5;
+
+	private MiniDFSCluster cluster;
+	private FileSystem fs;
+
+	@BeforeClass
+	public void startCluster() throws IOException {
+		File baseDir = Files.createTempDir();
+
+		Configuration conf = new Configuration();
+		conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, baseDir.getAbsolutePath());
+
+		cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+		fs = cluster.getFileSystem();
+	}
+
+	@AfterClass
+	public void stopCluster() {
+		if (cluster != null) {
+			cluster.shutdown();
+		}
+	}
+
+	public void benchmarkLegacyLayout() throws IOException {
+		run("legacy layout", new HDFSStatusStorage(fs, "/sorcerer/legacy", false));
+	}
+
+	public void benchmarkCompactLayout() throws IOException {
+		run("compact layout", new HDFSStatusStorage(fs, "/sorcerer/compact", true));
+	}
+
+	public void benchmarkMigration() throws IOException {
+		HDFSStatusStorage legacy = new HDFSStatusStorage(fs, "/sorcerer/migrate", false);
+		legacy.setType("tasks");
+		legacy.init();
+
+		DateTime time = new DateTime(2015, 1, 1, 0, 0);
+		for (int t = 0; t < TASKS; t++) {
+			for (int i = 0; i < ITERATIONS; i++) {
+				legacy.commitStatus(taskName(t), i, Status.SUCCESS, time, false);
+			}
+		}
+
+		HDFSStatusStorage compact = new HDFSStatusStorage(fs, "/sorcerer/migrate", true);
+		compact.setType("tasks");
+
+		long start = System.nanoTime();
+		int migrated = compact.migrateLayout();
+		long elapsed = System.nanoTime() - start;
+
+		logger.info(String.format("migration: %d status files in %.2fms",
+				migrated, elapsed / 1000000.0));
+
+		Assert.assertEquals(migrated, TASKS * ITERATIONS);
+		Assert.assertEquals(compact.checkStatus(taskName(0), 0), Status.SUCCESS);
+		Assert.assertEquals(compact.getStatusUpdateTime(taskName(0), 0, Status.SUCCESS), time);
+	}
+
+	public void benchmarkBucketedLayout() throws IOException {
+		HDFSStatusStorage flat = new HDFSStatusStorage(fs, "/sorcerer/bucketed", true);
+		flat.setType("tasks");
+		flat.init();
+
+		DateTime time = new DateTime(2015, 1, 1, 0, 0);
+		for (int i = 0; i < 3 * IterationBuckets.SIZE; i += 100) {
+			flat.commitStatus(taskName(0), i, Status.SUCCESS, time, false);
+		}
+
+		HDFSStatusStorage bucketed = new HDFSStatusStorage(fs, "/sorcerer/bucketed", true, true);
+		bucketed.setType("tasks");
+
+		long start = System.nanoTime();
+		int moved = bucketed.migrateBuckets();
+		long elapsed = System.nanoTime() - start;
+
+		logger.info(String.format("bucket migration: %d iterations in %.2fms",
+				moved, elapsed / 1000000.0));
+
+		Assert.assertEquals(moved, 30);
+		Assert.assertEquals(bucketed.getCurrentIterNo(taskName(0)), 2900);
+		Assert.assertEquals(bucketed.checkStatus(taskName(0), 1500), Status.SUCCESS);
+		Assert.assertEquals(bucketed.getStatusRange(taskName(0), 950, 2050).keySet().size(), 11);
+
+		run("bucketed layout", new HDFSStatusStorage(fs, "/sorcerer/bucketed", true, true));
+	}
+
+	private void run(String name, HDFSStatusStorage storage) throws IOException {
+		storage.setType("tasks");
+		storage.init();
+
+		long commitNanos = 0;
+		long checkNanos = 0;
+
+		for (int i = 0; i < ITERATIONS; i++) {
+			for (int t = 0; t < TASKS; t++) {
+				long start = System.nanoTime();
+				storage.commitStatus(taskName(t), i, Status.IN_PROGRESS, DateTime.now(), true);
+				commitNanos += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int c = 0; c < CHECKS; c++) {
+					Assert.assertEquals(storage.checkStatus(taskName(t), i), Status.IN_PROGRESS);
+				}
+				checkNanos += System.nanoTime() - start;
+
+				start = System.nanoTime();
+				storage.commitStatus(taskName(t), i, Status.SUCCESS, DateTime.now(), true);
+				commitNanos += System.nanoTime() - start;
+			}
+		}
+
+		int commits = 2 * TASKS * ITERATIONS;
+		int checks = CHECKS * TASKS * ITERATIONS;
+
+		logger.info(String.format(
+				"%s: %d commits avg=%.3fms, %d checks avg=%.3fms",
+				name, commits, commitNanos / 1000000.0 / commits,
+				checks, checkNanos / 1000000.0 / checks));
+	}
+
+	private static String taskName(int t) {
+		return "task_" + t;
+	}
+}
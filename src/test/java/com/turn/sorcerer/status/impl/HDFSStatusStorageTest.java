@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.Status;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.io.Files;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.joda.time.DateTime;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * HDFSStatusStorage tests against a {@link MiniDFSCluster}
+ *
+ * @author tshiou
+ */
+@Test
+public class HDFSStatusStorageTest {
+
+	private MiniDFSCluster cluster;
+	private FileSystem fs;
+
+	@BeforeClass
+	public void startCluster() throws IOException {
+		File baseDir = Files.createTempDir();
+
+		Configuration conf = new Configuration();
+		conf.set(MiniDFSCluster.HDFS_MINIDFS_BASEDIR, baseDir.getAbsolutePath());
+
+		cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+		fs = cluster.getFileSystem();
+	}
+
+	@AfterClass
+	public void stopCluster() {
+		if (cluster != null) {
+			cluster.shutdown();
+		}
+	}
+
+	public void testCompactOverwrite() throws IOException {
+		HDFSStatusStorage storage = open("/sorcerer/overwrite", true);
+
+		storage.commitStatus("task", 1, Status.IN_PROGRESS, DateTime.now(), false);
+		storage.commitStatus("task", 1, Status.ERROR, DateTime.now(), false);
+		storage.commitAttemptCount("task", 1, 2);
+
+		DateTime time = new DateTime(2015, 1, 1, 0, 0);
+		storage.commitStatus("task", 1, Status.SUCCESS, time, true);
+
+		Assert.assertEquals(storage.checkStatus("task", 1), Status.SUCCESS);
+		Assert.assertEquals(storage.getStatusUpdateTime("task", 1, Status.SUCCESS), time);
+		Assert.assertNull(storage.getStatusUpdateTime("task", 1, Status.ERROR));
+
+		// The attempt count is kept
+		Assert.assertEquals(storage.getAttemptCount("task", 1), 2);
+		Assert.assertEquals(
+				fs.listStatus(new Path("/sorcerer/overwrite/tasks/task/1")).length, 2);
+	}
+
+	public void testOverwriteIsNeverPending() throws Exception {
+		final HDFSStatusStorage storage = open("/sorcerer/pending", true);
+		storage.commitStatus("task", 1, Status.IN_PROGRESS, DateTime.now(), true);
+
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicInteger pending = new AtomicInteger();
+
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				while (done.get() == false) {
+					try {
+						if (storage.checkStatus("task", 1) == Status.PENDING) {
+							pending.incrementAndGet();
+						}
+					} catch (IOException e) {
+						pending.incrementAndGet();
+					}
+				}
+			}
+		};
+		reader.start();
+
+		Status[] transitions = {Status.ERROR, Status.IN_PROGRESS, Status.SUCCESS};
+		DateTime time = DateTime.now();
+		for (int i = 0; i < 60; i++) {
+			storage.commitStatus("task", 1, transitions[i % transitions.length],
+					time.plusMillis(i), true);
+		}
+
+		done.set(true);
+		reader.join();
+
+		Assert.assertEquals(pending.get(), 0);
+		Assert.assertEquals(storage.checkStatus("task", 1), Status.SUCCESS);
+	}
+
+	public void testLegacyStatusesReadByCompactLayout() throws IOException {
+		HDFSStatusStorage legacy = open("/sorcerer/mixed", false);
+		legacy.commitStatus("task", 1, Status.ERROR, DateTime.now(), false);
+
+		HDFSStatusStorage compact = open("/sorcerer/mixed", true);
+		Assert.assertEquals(compact.checkStatus("task", 1), Status.ERROR);
+
+		// Overwriting deletes the legacy status file too
+		compact.commitStatus("task", 1, Status.SUCCESS, DateTime.now(), true);
+		Assert.assertEquals(compact.checkStatus("task", 1), Status.SUCCESS);
+		Assert.assertNull(compact.getStatusUpdateTime("task", 1, Status.ERROR));
+	}
+
+	private HDFSStatusStorage open(String root, boolean compact) throws IOException {
+		HDFSStatusStorage storage = new HDFSStatusStorage(fs, root, compact);
+		storage.setType("tasks");
+		storage.init();
+		return storage;
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * IterationBuckets tests
+ *
+ * @author tshiou
+ */
+@Test
+public class IterationBucketsTest {
+
+	public void testBuckets() {
+		Assert.assertEquals(IterationBuckets.of(0), "bucket-0");
+		Assert.assertEquals(IterationBuckets.of(999), "bucket-0");
+		Assert.assertEquals(IterationBuckets.of(1000), "bucket-1");
+		Assert.assertEquals(IterationBuckets.of(-1), "bucket--1");
+
+		Assert.assertEquals(IterationBuckets.between(950, 2050),
+				Arrays.asList("bucket-0", "bucket-1", "bucket-2"));
+		Assert.assertEquals(IterationBuckets.between(5, 10), Arrays.asList("bucket-0"));
+
+		Assert.assertEquals(IterationBuckets.parse(IterationBuckets.of(12345)), Integer.valueOf(12));
+		Assert.assertNull(IterationBuckets.parse("12345"));
+		Assert.assertNull(IterationBuckets.parse("bucket-x"));
+		Assert.assertNull(IterationBuckets.parse("_current"));
+	}
+}
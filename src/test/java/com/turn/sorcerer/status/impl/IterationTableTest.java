@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * IterationTable tests
+ *
+ * @author tshiou
+ */
+@Test
+public class IterationTableTest {
+
+	public void testStatuses() {
+		IterationTable table = new IterationTable();
+
+		table.put(7, Status.ERROR, 100, false);
+		table.put(7, Status.IN_PROGRESS, 200, false);
+		table.setAttempts(7, 2);
+
+		Assert.assertEquals(table.getStatus(7), Status.IN_PROGRESS);
+		Assert.assertEquals(table.getTime(7, Status.ERROR), 100);
+		Assert.assertEquals(table.getLastTime(7), 200);
+		Assert.assertEquals(table.getAttempts(7), 2);
+
+		// Overwriting keeps the attempt count
+		table.put(7, Status.SUCCESS, 300, true);
+		Assert.assertFalse(table.has(7, Status.ERROR));
+		Assert.assertEquals(table.getStatus(7), Status.SUCCESS);
+		Assert.assertEquals(table.getAttempts(7), 2);
+
+		Assert.assertTrue(table.remove(7, Status.SUCCESS));
+		Assert.assertFalse(table.remove(7, Status.SUCCESS));
+		Assert.assertEquals(table.getLastTime(7), -1);
+		Assert.assertEquals(table.size(), 1);
+
+		table.setAttempts(7, 0);
+		Assert.assertEquals(table.size(), 0);
+		Assert.assertEquals(table.getStatus(7), Status.PENDING);
+		Assert.assertEquals(table.getMaxId(), 0);
+	}
+
+	public void testAgainstMap() {
+		IterationTable table = new IterationTable();
+		Map<Integer, Long> expected = Maps.newHashMap();
+		Random random = new Random(42);
+
+		// Small key space so that removals shift back colliding iterations
+		for (int i = 0; i < 100000; i++) {
+			int id = random.nextInt(2000);
+
+			if (random.nextInt(3) == 0) {
+				table.clear(id);
+				expected.remove(id);
+			} else {
+				table.put(id, Status.SUCCESS, i, true);
+				expected.put(id, (long) i);
+			}
+		}
+
+		Assert.assertEquals(table.size(), expected.size());
+
+		int max = 0;
+		for (int id = 0; id < 2000; id++) {
+			Long time = expected.get(id);
+			Assert.assertEquals(table.has(id, Status.SUCCESS), time != null);
+			if (time != null) {
+				Assert.assertEquals(table.getTime(id, Status.SUCCESS), (long) time);
+				max = id;
+			}
+		}
+		Assert.assertEquals(table.getMaxId(), max);
+
+		SortedMap<Integer, IterationStatus> range = new TreeMap<Integer, IterationStatus>();
+		table.getRange(100, 199, range);
+		for (Map.Entry<Integer, IterationStatus> entry : range.entrySet()) {
+			Assert.assertEquals(entry.getValue().getTime().getMillis(),
+					(long) expected.get(entry.getKey()));
+		}
+		Assert.assertEquals(range.size(), Maps.filterKeys(expected,
+				Range.closed(100, 199)).size());
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SortedMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.joda.time.DateTime;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * MemoryStatusStorage tests
+ *
+ * @author tshiou
+ */
+@Test
+public class MemoryStatusStorageTest {
+
+	public void testCheckStatuses() throws IOException {
+		MemoryStatusStorage storage = new MemoryStatusStorage();
+
+		storage.commitStatus("a", 1, Status.SUCCESS, DateTime.now(), false);
+		storage.commitStatus("b", 1, Status.ERROR, DateTime.now(), false);
+		storage.commitStatus("c", 2, Status.SUCCESS, DateTime.now(), false);
+
+		Assert.assertEquals(storage.checkStatuses(ImmutableList.of("a", "b", "c"), 1),
+				ImmutableMap.of("a", Status.SUCCESS, "b", Status.ERROR, "c", Status.PENDING));
+	}
+
+	public void testStatusRange() throws IOException {
+		MemoryStatusStorage storage = new MemoryStatusStorage();
+		DateTime time = new DateTime(2015, 1, 1, 0, 0);
+
+		storage.commitStatus("task", 1, Status.SUCCESS, time, false);
+		storage.commitStatus("task", 2, Status.ERROR, time.plusHours(1), false);
+		storage.commitStatus("task", 3, Status.ERROR, time.plusHours(2), false);
+		storage.commitStatus("task", 3, Status.SUCCESS, time.plusHours(3), false);
+		storage.commitStatus("task", 6, Status.SUCCESS, time, false);
+		storage.commitStatus("other", 4, Status.SUCCESS, time, false);
+
+		SortedMap<Integer, IterationStatus> range = storage.getStatusRange("task", 2, 5);
+
+		// Pending iterations are not returned
+		Assert.assertEquals(ImmutableList.copyOf(range.keySet()), ImmutableList.of(2, 3));
+
+		Assert.assertEquals(range.get(2).getStatus(), Status.ERROR);
+		Assert.assertEquals(range.get(2).getTime(), time.plusHours(1));
+
+		// Time of the resolved status
+		Assert.assertEquals(range.get(3).getStatus(), Status.SUCCESS);
+		Assert.assertEquals(range.get(3).getTime(), time.plusHours(3));
+
+		Assert.assertTrue(storage.getStatusRange("missing", 0, 10).isEmpty());
+	}
+
+	public void testCurrentIterNo() throws IOException {
+		MemoryStatusStorage storage = new MemoryStatusStorage();
+
+		storage.commitStatus("a", 3, Status.SUCCESS, DateTime.now(), false);
+		storage.commitStatus("b", 9, Status.SUCCESS, DateTime.now(), false);
+		storage.removeStatus("c", 1, Status.SUCCESS);
+
+		// Iterations of other identifiers are not counted
+		Assert.assertEquals(storage.getCurrentIterNo("a"), 3);
+		Assert.assertEquals(storage.getCurrentIterNo("c"), 0);
+
+		storage.clearAllStatuses("b", 9);
+		Assert.assertEquals(storage.getCurrentIterNo("b"), 0);
+		Assert.assertNull(storage.getLastUpdateTime("b", 9));
+	}
+
+	public void testJournal() throws IOException {
+		File root = Files.createTempDir();
+		DateTime time = new DateTime(2015, 1, 1, 0, 0);
+
+		MemoryStatusStorage storage = new MemoryStatusStorage(root.getPath(), 10, 10);
+		storage.setType("tasks");
+		storage.init();
+		for (int i = 1; i <= 25; i++) {
+			storage.commitStatus("a", i, Status.IN_PROGRESS, time, false);
+			storage.commitStatus("a", i, Status.SUCCESS, time.plusHours(i), true);
+		}
+		storage.clearAllStatuses("a", 25);
+		storage.commitAttemptCount("a", 24, 2);
+		storage.commitWatermark("a", "offset", "42");
+		storage.close();
+
+		// Compacted into a snapshot while statuses were committed
+		Assert.assertTrue(new File(new File(root, "tasks"), "snapshot").exists());
+
+		storage = new MemoryStatusStorage(root.getPath(), 10, 10);
+		storage.setType("tasks");
+		storage.init();
+
+		Assert.assertEquals(storage.getCurrentIterNo("a"), 24);
+		Assert.assertEquals(storage.getStatusRange("a", 1, 30).size(), 24);
+		Assert.assertEquals(storage.getStatusUpdateTime("a", 12, Status.SUCCESS),
+				time.plusHours(12));
+		Assert.assertNull(storage.getStatusUpdateTime("a", 12, Status.IN_PROGRESS));
+		Assert.assertEquals(storage.getAttemptCount("a", 24), 2);
+		Assert.assertEquals(storage.getWatermark("a", "offset"), "42");
+		storage.close();
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.Status;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * ZookeeperStatusRecord tests
+ *
+ * @author tshiou
+ */
+@Test
+public class ZookeeperStatusRecordTest {
+
+	public void testRoundTrip() throws IOException {
+		ZookeeperStatusRecord record = new ZookeeperStatusRecord();
+		record.put(Status.ERROR, 1420070400000L);
+		record.put(Status.IN_PROGRESS, 1420074000000L);
+		record.setAttempts(3);
+
+		byte[] data = record.encode();
+		Assert.assertEquals(data.length, 2 + 2 * 8 + 4);
+
+		ZookeeperStatusRecord decoded = ZookeeperStatusRecord.decode(data);
+		Assert.assertEquals(decoded.getStatus(), Status.IN_PROGRESS);
+		Assert.assertEquals(decoded.getTime(Status.ERROR), Long.valueOf(1420070400000L));
+		Assert.assertEquals(decoded.getTime(Status.IN_PROGRESS), Long.valueOf(1420074000000L));
+		Assert.assertNull(decoded.getTime(Status.SUCCESS));
+		Assert.assertEquals(decoded.getLastTime(), 1420074000000L);
+		Assert.assertEquals(decoded.getAttempts(), 3);
+	}
+
+	public void testEmpty() throws IOException {
+		ZookeeperStatusRecord decoded =
+				ZookeeperStatusRecord.decode(new ZookeeperStatusRecord().encode());
+
+		Assert.assertEquals(decoded.getStatus(), Status.PENDING);
+		Assert.assertEquals(decoded.getLastTime(), 0);
+		Assert.assertEquals(decoded.getAttempts(), 0);
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void testTruncated() throws IOException {
+		ZookeeperStatusRecord record = new ZookeeperStatusRecord();
+		record.put(Status.SUCCESS, 1420070400000L);
+
+		byte[] data = record.encode();
+		ZookeeperStatusRecord.decode(Arrays.copyOf(data, data.length - 1));
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.status.impl;
+
+import com.turn.sorcerer.status.IterationStatus;
+import com.turn.sorcerer.status.Status;
+
+import java.io.IOException;
+import java.util.SortedMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import org.apache.curator.test.TestingServer;
+import org.joda.time.DateTime;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * ZookeeperStatusStorage tests, in the flat and bucketed layouts, against a
+ * {@link TestingServer}
+ *
+ * @author tshiou
+ */
+@Test
+public class ZookeeperStatusStorageTest {
+
+	private TestingServer server;
+
+	@BeforeClass
+	public void startServer() throws Exception {
+		server = new TestingServer();
+	}
+
+	@AfterClass
+	public void stopServer() throws IOException {
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	public void testFlatLayout() throws IOException {
+		testLifecycle("/sorcerer/flat", false);
+	}
+
+	public void testBucketedLayout() throws IOException {
+		testLifecycle("/sorcerer/bucketed", true);
+	}
+
+	public void testLeaseEndsWithSession() throws IOException {
+		ZookeeperStatusStorage running = open("/sorcerer/lease", false);
+		running.commitStatus("task", 1, Status.IN_PROGRESS, DateTime.now(), false);
+		running.commitStatus("task", 1, Status.ERROR, DateTime.now(), false);
+
+		ZookeeperStatusStorage other = open("/sorcerer/lease", false);
+
+		try {
+			Assert.assertEquals(other.checkStatus("task", 1), Status.IN_PROGRESS);
+
+			running.close();
+
+			// The other statuses of the iteration are persistent
+			Assert.assertEquals(other.checkStatus("task", 1), Status.ERROR);
+		} finally {
+			other.close();
+		}
+	}
+
+	// Runs the statuses of several iterations, across a bucket boundary,
+	// through the transitions of a task
+	private void testLifecycle(String root, boolean bucketed) throws IOException {
+		ZookeeperStatusStorage storage = open(root, bucketed);
+		DateTime time = new DateTime(2015, 1, 1, 0, 0);
+
+		try {
+			Assert.assertEquals(storage.checkStatus("task", 999), Status.PENDING);
+			Assert.assertEquals(storage.getCurrentIterNo("task"), 0);
+
+			storage.commitStatus("task", 999, Status.IN_PROGRESS, time, false);
+			Assert.assertEquals(storage.checkStatus("task", 999), Status.IN_PROGRESS);
+
+			storage.removeStatus("task", 999, Status.IN_PROGRESS);
+			storage.commitStatus("task", 999, Status.SUCCESS, time.plusHours(1), true);
+			Assert.assertEquals(storage.checkStatus("task", 999), Status.SUCCESS);
+			Assert.assertEquals(storage.getStatusUpdateTime("task", 999, Status.SUCCESS),
+					time.plusHours(1));
+
+			storage.commitStatus("task", 1000, Status.ERROR, time.plusHours(2), false);
+			storage.commitAttemptCount("task", 1000, 2);
+			Assert.assertEquals(storage.getAttemptCount("task", 1000), 2);
+			Assert.assertEquals(Futures.getUnchecked(storage.checkStatusAsync("task", 1000)),
+					Status.ERROR);
+
+			storage.commitStatus("other", 1000, Status.SUCCESS, time, false);
+			Assert.assertEquals(storage.checkStatuses(ImmutableList.of("task", "other", "none"), 1000),
+					ImmutableMap.of("task", Status.ERROR, "other", Status.SUCCESS, "none", Status.PENDING));
+
+			SortedMap<Integer, IterationStatus> range = storage.getStatusRange("task", 990, 1010);
+			Assert.assertEquals(ImmutableList.copyOf(range.keySet()), ImmutableList.of(999, 1000));
+			Assert.assertEquals(range.get(1000).getStatus(), Status.ERROR);
+
+			Assert.assertEquals(storage.getCurrentIterNo("task"), 1000);
+
+			storage.clearAllStatuses("task", 1000);
+			Assert.assertEquals(storage.checkStatus("task", 1000), Status.PENDING);
+			Assert.assertEquals(storage.getAttemptCount("task", 1000), 0);
+
+			// The high-water mark is not lowered
+			Assert.assertEquals(storage.getCurrentIterNo("task"), 1000);
+
+			storage.commitWatermark("task", "input", "part-0001");
+			Assert.assertEquals(storage.getWatermark("task", "input"), "part-0001");
+		} finally {
+			storage.close();
+		}
+	}
+
+	private ZookeeperStatusStorage open(String root, boolean bucketed) throws IOException {
+		ZookeeperStatusStorage storage =
+				new ZookeeperStatusStorage(server.getConnectString(), root, bucketed);
+		storage.setType("tasks");
+		storage.init();
+		return storage;
+	}
+}
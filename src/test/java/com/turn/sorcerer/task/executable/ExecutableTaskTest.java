@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015, Turn Inc. All Rights Reserved.
+ * Use of this source code is governed by a BSD-style license that can be found
+ * in the LICENSE file.
+ */
+
+package com.turn.sorcerer.task.executable;
+
+import com.turn.sorcerer.dependency.Dependency;
+import com.turn.sorcerer.dependency.impl.HDFSIncrementalDependency;
+import com.turn.sorcerer.status.StatusStorage;
+import com.turn.sorcerer.status.impl.MemoryStatusStorage;
+import com.turn.sorcerer.task.Context;
+import com.turn.sorcerer.task.type.TaskType;
+import com.turn.sorcerer.tasks.TestTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.hadoop.fs.Path;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * ExecutableTask incremental input tests, with the watermarks in a
+ * {@link MemoryStatusStorage} and the inputs on the local filesystem
+ *
+ * @author tshiou
+ */
+@Test
+public class ExecutableTaskTest {
+
+	// Task reading and committing its watermarks in a given storage
+	private static class IncrementalTask extends ExecutableTask {
+		private final StatusStorage storage;
+
+		private IncrementalTask(StatusStorage storage, String name, int seq) {
+			super(new TaskType(name, Collections.<String>emptyList(), null), new TestTask() {
+				@Override
+				protected String name() {
+					return "incremental";
+				}
+
+				@Override
+				protected int getTaskCount() {
+					return 0;
+				}
+			}, seq);
+			this.storage = storage;
+		}
+
+		@Override
+		String readWatermark(String name) throws IOException {
+			return storage.getWatermark(name(), name);
+		}
+
+		@Override
+		void commitWatermark(String name, String watermark) {
+			try {
+				storage.commitWatermark(name(), name, watermark);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private static class Input extends HDFSIncrementalDependency {
+		private final File directory;
+
+		private Input(File directory) {
+			super("input");
+			this.directory = directory;
+		}
+
+		@Override
+		public Collection<String> directories(int iterNo) {
+			return ImmutableList.of(directory.getAbsolutePath());
+		}
+	}
+
+	public void testWatermarks() throws IOException {
+		StatusStorage storage = new MemoryStatusStorage().setType("tasks");
+		File directory = Files.createTempDir();
+		write(directory, "a", 1000);
+		write(directory, "b", 2000);
+
+		IncrementalTask first = new IncrementalTask(storage, "watermarks", 1);
+		Input input = new Input(directory);
+
+		Assert.assertNull(first.prepareInputs(ImmutableList.<Dependency>of(input)));
+		Assert.assertTrue(input.check(1));
+
+		Context context = new Context(1);
+		first.addInputs(context);
+		Assert.assertEquals(names(context.getInputs("input")), ImmutableList.of("a", "b"));
+
+		first.commitWatermarks();
+		first.releaseInputs();
+		Assert.assertNotNull(storage.getWatermark("watermarks", "input"));
+
+		// The next iteration only gets the files after the watermark
+		IncrementalTask second = new IncrementalTask(storage, "watermarks", 2);
+		input = new Input(directory);
+
+		Assert.assertNull(second.prepareInputs(ImmutableList.<Dependency>of(input)));
+		Assert.assertFalse(input.check(2));
+
+		write(directory, "c", 3000);
+		Assert.assertTrue(input.check(2));
+
+		context = new Context(2);
+		second.addInputs(context);
+		Assert.assertEquals(names(context.getInputs("input")), ImmutableList.of("c"));
+	}
+
+	public void testOneConsumerPerInput() throws IOException {
+		StatusStorage storage = new MemoryStatusStorage().setType("tasks");
+		File directory = Files.createTempDir();
+
+		IncrementalTask first = new IncrementalTask(storage, "consumers", 1);
+		IncrementalTask second = new IncrementalTask(storage, "consumers", 2);
+		Input input = new Input(directory);
+
+		Assert.assertNull(first.prepareInputs(ImmutableList.<Dependency>of(new Input(directory))));
+		Assert.assertSame(second.prepareInputs(ImmutableList.<Dependency>of(input)), input);
+
+		// Other tasks are not blocked
+		IncrementalTask other = new IncrementalTask(storage, "other", 2);
+		Assert.assertNull(other.prepareInputs(ImmutableList.<Dependency>of(new Input(directory))));
+
+		first.releaseInputs();
+		Assert.assertNull(second.prepareInputs(ImmutableList.<Dependency>of(input)));
+	}
+
+	public void testInvalidWatermark() throws IOException {
+		StatusStorage storage = new MemoryStatusStorage().setType("tasks");
+		File directory = Files.createTempDir();
+		write(directory, "a", 1000);
+
+		storage.commitWatermark("invalid", "input", "not a watermark");
+
+		IncrementalTask task = new IncrementalTask(storage, "invalid", 1);
+		Input input = new Input(directory);
+
+		Assert.assertNull(task.prepareInputs(ImmutableList.<Dependency>of(input)));
+		Assert.assertFalse(input.check(1));
+		Assert.assertTrue(input.getNewInputs().isEmpty());
+
+		// Clearing the watermark consumes all files again
+		input.setWatermark(null);
+		Assert.assertTrue(input.check(1));
+	}
+
+	private static void write(File directory, String name, long time) throws IOException {
+		File file = new File(directory, name);
+		Files.touch(file);
+		Assert.assertTrue(file.setLastModified(time));
+	}
+
+	private static List<String> names(List<String> paths) {
+		List<String> names = Lists.newArrayList();
+		for (String path : paths) {
+			names.add(new Path(path).getName());
+		}
+		return names;
+	}
+}